@@ -111,5 +111,85 @@ public enum ConfigurationKeys {
    /**
     * @see WapServerConfig#fallbackValidation
     */
-   FallbackValidation
+   FallbackValidation,
+   /**
+    * @see WapServerConfig#transactionConcurrencyMode
+    */
+   TransactionConcurrencyMode,
+   /**
+    * @see WapServerConfig#groupCommitMaxBatchSize
+    */
+   GroupCommitMaxBatchSize,
+   /**
+    * @see WapServerConfig#groupCommitMaxLingerMillis
+    */
+   GroupCommitMaxLingerMillis,
+   /**
+    * @see WapServerConfig#maintenanceIntervalMinutes
+    */
+   MaintenanceIntervalMinutes,
+   /**
+    * @see WapServerConfig#compactionIntervalHours
+    */
+   CompactionIntervalHours,
+   /**
+    * @see WapServerConfig#compactionSizeThresholdMb
+    */
+   CompactionSizeThresholdMb,
+   /**
+    * @see WapServerConfig#compactionGarbagePercent
+    */
+   CompactionGarbagePercent,
+   /**
+    * @see WapServerConfig#enableResourceStatusIndex
+    */
+   EnableResourceStatusIndex,
+   /**
+    * @see WapServerConfig#shardCount
+    */
+   ShardCount,
+   /**
+    * @see WapServerConfig#shardPrefixes
+    */
+   ShardPrefixes,
+   /**
+    * @see WapServerConfig#mutationJournalEnabled
+    */
+   EnableMutationJournal,
+   /**
+    * @see WapServerConfig#mutationJournalSegmentSizeMb
+    */
+   MutationJournalSegmentSizeMb,
+   /**
+    * @see WapServerConfig#mutationJournalRetentionHours
+    */
+   MutationJournalRetentionHours,
+   /**
+    * @see WapServerConfig#asyncContainerDeletionThreshold
+    */
+   AsyncContainerDeletionThreshold,
+   /**
+    * @see WapServerConfig#containerDeletionBatchSize
+    */
+   ContainerDeletionBatchSize,
+   /**
+    * @see WapServerConfig#containerDeletionPauseMillis
+    */
+   ContainerDeletionPauseMillis,
+   /**
+    * @see WapServerConfig#maxPageSize
+    */
+   MaxPageSize,
+   /**
+    * @see WapServerConfig#enableTargetIndex
+    */
+   EnableTargetIndex,
+   /**
+    * @see WapServerConfig#enableTextIndex
+    */
+   EnableTextIndex,
+   /**
+    * @see WapServerConfig#enableTimeIndex
+    */
+   EnableTimeIndex
 }
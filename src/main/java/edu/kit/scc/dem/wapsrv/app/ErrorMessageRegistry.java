@@ -19,7 +19,7 @@ public final class ErrorMessageRegistry {
     * Error message for getting head options of a container with parameters except an IRI.
     */
    public static final String CONTAINER_GET_HEAD_OPTIONS_NO_PARAMETERS_ALLOWED_BUT_IRIS
-         = "No parameters allowed in container GET|HEAD|OPTIONS requests beside iris=[0|1]";
+         = "No parameters allowed in container GET|HEAD|OPTIONS requests beside iris=[0|1] and pageSize";
    /**
     * Error message for posting a container deletion with parameters.
     */
@@ -94,7 +94,7 @@ public final class ErrorMessageRegistry {
    /**
     * Error message for invalid PAGE request because of wrong parameters.
     */
-   public static final String PAGE_INVALID_GIVEN_PARAMETERS = "Only iris and page parameters allowed in page requests";
+   public static final String PAGE_INVALID_GIVEN_PARAMETERS = "Only iris, page (or cursor), pageSize and time range parameters allowed in page requests";
    /**
     * Error message annotation request with not allowed parameters.
     */
@@ -162,6 +162,42 @@ public final class ErrorMessageRegistry {
     * Error message for not existing page.
     */
    public static final String PAGE_NOT_EXISTENT = "The page with the given number does not exist";
+   /**
+    * Error message for a page cursor that cannot be continued anymore.
+    */
+   public static final String PAGE_CURSOR_EXPIRED
+         = "The page cursor is no longer valid, the container has been reorganized. Start again with the first page";
+   /**
+    * Error message for an export in an unknown format.
+    */
+   public static final String EXPORT_UNKNOWN_FORMAT = "Exports can only be requested as format=[ndjson|nquads|rdf_thrift]";
+   /**
+    * Error message for unknown or conflicting parameters in target requests.
+    */
+   public static final String TARGET_INVALID_GIVEN_PARAMETERS = "Only target, prefix, iris, page (or cursor) and "
+         + "pageSize parameters allowed in target requests";
+   /**
+    * Error message for a missing target in target requests.
+    */
+   public static final String TARGET_MISSING = "The target parameter has to be the IRI of the target";
+   /**
+    * Error message for a search without words to search for.
+    */
+   public static final String SEARCH_NO_WORDS = "The q parameter has to contain words to search for";
+   /**
+    * Error message for a rebuild of the full-text index if it is not used.
+    */
+   public static final String SEARCH_NO_INDEX = "The full-text index is not enabled";
+   /**
+    * Error message for invalid time ranges in page requests.
+    */
+   public static final String PAGE_INVALID_TIME_RANGE = "The createdAfter, createdBefore, modifiedAfter and "
+         + "modifiedBefore parameters have to be xsd:dateTime values, created and modified cannot be combined";
+   /**
+    * Error message for a change page older than the journal.
+    */
+   public static final String CHANGES_EXPIRED = "The requested changes have been removed from the journal, harvest "
+         + "again from the first page";
    /**
     * Error message for missing IRI in PAGE request.
     */
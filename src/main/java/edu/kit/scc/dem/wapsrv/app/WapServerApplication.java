@@ -3,17 +3,26 @@ package edu.kit.scc.dem.wapsrv.app;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
 import edu.kit.scc.dem.wapsrv.installer.WapServerInstaller;
-import edu.kit.scc.dem.wapsrv.repository.WapObjectRepository;
+import edu.kit.scc.dem.wapsrv.service.BulkLoadService;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -95,13 +104,20 @@ public class WapServerApplication implements ApplicationContextAware{
    */
   public static void main(String[] args){
     boolean manualInstall = false;
+    String[] bulkLoadArgs = null;
     // We only intercept the --install argument and ignore the rest
     if(args != null){
-      for(String arg : args){
+      for(int i = 0; i < args.length; i++){
+        String arg = args[i];
         if("--install".equals(arg)){
           manualInstall = true;
           break;
         }
+        if("--bulk-load".equals(arg)){
+          // All following arguments belong to the bulk load
+          bulkLoadArgs = Arrays.copyOfRange(args, i + 1, args.length);
+          break;
+        }
         if("--create-config".equals(arg)){
           if(!WapServerConfig.isConfigFileExistent()){
             File file = WapServerConfig.createDefaultConfigurationFile();
@@ -140,17 +156,69 @@ public class WapServerApplication implements ApplicationContextAware{
     if(System.getProperty("spring.config.location") == null){
       System.setProperty("spring.config.location", WapServerConfig.getWapServerConfigFile().getAbsolutePath());
     }
+    if(bulkLoadArgs != null){
+      bulkLoad(bulkLoadArgs);
+      return; // exit the application
+    }
     // apply http config prior to Spring startup
     WapServerConfig.applyHttpConfigBeforeSpringInit();
     SpringApplication.run(WapServerApplication.class, args);
   }
 
+  /**
+   * Marks the repository of the RDF backend implementation configured as the
+   * primary one, so the services use it instead of the other backends
+   * available. The repository is not registered a second time, which would
+   * initialize it twice.
+   *
+   * @param environment The environment holding the configuration
+   * @return The post processor marking the repository
+   */
   @Bean
-  public WapObjectRepository repository(){
-    System.out.println("Obtaining RDF backend implementation.");
-    String rdfBackendName = getRunningApplicationContext().getBean(WapServerConfig.class).getRdfBackendImplementation();
-    System.out.println("Using RDF backend named : " + rdfBackendName);
-    return (WapObjectRepository) getRunningApplicationContext().getBean(rdfBackendName);
+  public static BeanFactoryPostProcessor primaryRepository(Environment environment){
+    return beanFactory -> {
+      String rdfBackendName = environment.getProperty("RdfBackendImplementation",
+              WapServerConfig.RDF_BACKEND_IMPLEMENTATION_DEFAULT);
+      System.out.println("Using RDF backend named : " + rdfBackendName);
+      beanFactory.getBeanDefinition(rdfBackendName).setPrimary(true);
+    };
+  }
+
+  /**
+   * Loads annotation dumps into a container without starting the web server
+   * and the SPARQL endpoints, so the bulk loader has exclusive access to the
+   * database.
+   *
+   * @param args The container IRI followed by the files to load
+   */
+  private static void bulkLoad(String[] args){
+    if(args.length < 2){
+      System.out.println("Usage : --bulk-load <container IRI> <file> [<file> ...]\n"
+              + "Files ending with .nq are read as N-Quads, all others as NDJSON with one JSON-LD annotation per line.");
+      return;
+    }
+    List<File> files = new ArrayList<File>();
+    for(int i = 1; i < args.length; i++){
+      File file = new File(args[i]);
+      if(!file.canRead()){
+        System.out.println("Cannot read file : " + file.getAbsolutePath());
+        return;
+      }
+      files.add(file);
+    }
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(WapServerApplication.class)
+            .web(WebApplicationType.NONE).run("--SparqlReadPort=-1", "--SparqlWritePort=-1",
+            "--MaintenanceIntervalMinutes=0", "--EnableResourceStatusIndex=false", "--EnableTargetIndex=false",
+            "--EnableTextIndex=false", "--EnableTimeIndex=false");
+    try{
+      BulkLoadService bulkLoadService = context.getBean(BulkLoadService.class);
+      long loaded = bulkLoadService.loadAnnotations(args[0], files, Runtime.getRuntime().availableProcessors());
+      System.out.println("Bulk load finished, annotations loaded : " + loaded);
+    } catch(WapException e){
+      System.out.println("Bulk load failed : " + e.getMessage());
+    } finally{
+      context.close();
+    }
   }
 
   /**
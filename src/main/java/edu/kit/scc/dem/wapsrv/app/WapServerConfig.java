@@ -17,6 +17,7 @@ import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 import edu.kit.scc.dem.wapsrv.controller.WapPathMatcher;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
 import java.util.Arrays;
 
 /**
@@ -52,6 +53,27 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
    * spaces within or before/after.
    */
   public static final String WAP_ENDPOINT = WAP_ENDPOINT_WITHOUT_TRAILING_SLASH + "/";
+  /**
+   * The endpoint of the status resources of containers deleted in the
+   * background, followed by the id of the deletion
+   */
+  public static final String DELETION_ENDPOINT = "/deletions";
+  /**
+   * The endpoint streaming all annotations of a container
+   */
+  public static final String EXPORT_ENDPOINT = "/export";
+  /**
+   * The endpoint of the change discovery feed
+   */
+  public static final String CHANGES_ENDPOINT = "/changes";
+  /**
+   * The endpoint of the pages of the annotations on a target
+   */
+  public static final String TARGETS_ENDPOINT = "/targets";
+  /**
+   * The endpoint of the full-text search of the annotations
+   */
+  public static final String SEARCH_ENDPOINT = "/search";
   /**
    * The SSLConfig file to use
    */
@@ -89,7 +111,27 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
           = "NTRIPLES*application/n-triples" + "|RDF_JSON*application/rdf+json";
   private static final String CORS_ALLOWED_ORIGINS_PATH_DEFAULT = "./cors_allowed_origins.conf";
   private static final boolean FALLBACK_VALIDATION_DEFAULT = true;
-  private static final String RDF_BACKEND_IMPLEMENTATION_DEFAULT = "jena";
+  static final String RDF_BACKEND_IMPLEMENTATION_DEFAULT = "jena";
+  private static final String TRANSACTION_CONCURRENCY_MODE_DEFAULT = "Serialized";
+  private static final int GROUP_COMMIT_MAX_BATCH_SIZE_DEFAULT = 1;
+  private static final long GROUP_COMMIT_MAX_LINGER_MILLIS_DEFAULT = 5;
+  private static final int MAINTENANCE_INTERVAL_MINUTES_DEFAULT = 0;
+  private static final int COMPACTION_INTERVAL_HOURS_DEFAULT = 0;
+  private static final long COMPACTION_SIZE_THRESHOLD_MB_DEFAULT = 0;
+  private static final int COMPACTION_GARBAGE_PERCENT_DEFAULT = 0;
+  private static final boolean ENABLE_RESOURCE_STATUS_INDEX_DEFAULT = true;
+  private static final int SHARD_COUNT_DEFAULT = 4;
+  private static final String SHARD_PREFIXES_DEFAULT = "";
+  private static final boolean MUTATION_JOURNAL_ENABLED_DEFAULT = false;
+  private static final int MUTATION_JOURNAL_SEGMENT_SIZE_MB_DEFAULT = 64;
+  private static final int MUTATION_JOURNAL_RETENTION_HOURS_DEFAULT = 168;
+  private static final int ASYNC_CONTAINER_DELETION_THRESHOLD_DEFAULT = 10000;
+  private static final int CONTAINER_DELETION_BATCH_SIZE_DEFAULT = 1000;
+  private static final int CONTAINER_DELETION_PAUSE_MILLIS_DEFAULT = 50;
+  private static final int MAX_PAGE_SIZE_DEFAULT = 1000;
+  private static final boolean ENABLE_TARGET_INDEX_DEFAULT = true;
+  private static final boolean ENABLE_TEXT_INDEX_DEFAULT = false;
+  private static final boolean ENABLE_TIME_INDEX_DEFAULT = true;
 
   /**
    * The single instance of the configuration
@@ -244,6 +286,113 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
 
   @Value("${RdfBackendImplementation:" + RDF_BACKEND_IMPLEMENTATION_DEFAULT + "}")
   private String rdfBackendImplementation;
+  /**
+   * The way concurrent transactions on the database are coordinated
+   * <ul>
+   * <li>Serialized ==> Only one transaction at a time, reading or writing
+   * <li>ConcurrentReads ==> Readers run in parallel, only writers are serialized
+   * </ul>
+   */
+  @Value("${TransactionConcurrencyMode:" + TRANSACTION_CONCURRENCY_MODE_DEFAULT + "}")
+  private String transactionConcurrencyMode;
+  /**
+   * The maximum number of annotation POSTs written with a single commit. Values below 2
+   * disable group commit, every request is committed on its own then.
+   */
+  @Value("${GroupCommitMaxBatchSize:" + GROUP_COMMIT_MAX_BATCH_SIZE_DEFAULT + "}")
+  private int groupCommitMaxBatchSize;
+  /**
+   * The maximum time in ms the group commit writer waits for further annotation
+   * POSTs before committing a batch
+   */
+  @Value("${GroupCommitMaxLingerMillis:" + GROUP_COMMIT_MAX_LINGER_MILLIS_DEFAULT + "}")
+  private long groupCommitMaxLingerMillis;
+  /**
+   * The time in minutes between two runs of the database maintenance, 0 disables it
+   */
+  @Value("${MaintenanceIntervalMinutes:" + MAINTENANCE_INTERVAL_MINUTES_DEFAULT + "}")
+  private int maintenanceIntervalMinutes;
+  /**
+   * The time in hours after which the database is compacted, 0 disables the schedule
+   */
+  @Value("${CompactionIntervalHours:" + COMPACTION_INTERVAL_HOURS_DEFAULT + "}")
+  private int compactionIntervalHours;
+  /**
+   * The database size in MB above which the database is compacted, 0 disables the threshold
+   */
+  @Value("${CompactionSizeThresholdMb:" + COMPACTION_SIZE_THRESHOLD_MB_DEFAULT + "}")
+  private long compactionSizeThresholdMb;
+  /**
+   * The growth in percent since the last compaction above which the database is compacted, 0 disables the threshold
+   */
+  @Value("${CompactionGarbagePercent:" + COMPACTION_GARBAGE_PERCENT_DEFAULT + "}")
+  private int compactionGarbagePercent;
+  /**
+   * Enables or disables the in-memory index answering existence and deletion checks
+   */
+  @Value("${EnableResourceStatusIndex:" + ENABLE_RESOURCE_STATUS_INDEX_DEFAULT + "}")
+  private boolean enableResourceStatusIndex;
+  /**
+   * The number of TDB2 datasets the sharded repository distributes the containers to
+   */
+  @Value("${ShardCount:" + SHARD_COUNT_DEFAULT + "}")
+  private int shardCount;
+  /**
+   * The shards of the top level containers by container name prefix, e.g. a=1,b=2
+   */
+  @Value("${ShardPrefixes:" + SHARD_PREFIXES_DEFAULT + "}")
+  private String shardPrefixes;
+  /**
+   * Whether the creations, updates and deletions of WapObjects are journaled
+   */
+  @Value("${EnableMutationJournal:" + MUTATION_JOURNAL_ENABLED_DEFAULT + "}")
+  private boolean mutationJournalEnabled;
+  /**
+   * The size in MB a segment file of the mutation journal is rolled over at
+   */
+  @Value("${MutationJournalSegmentSizeMb:" + MUTATION_JOURNAL_SEGMENT_SIZE_MB_DEFAULT + "}")
+  private int mutationJournalSegmentSizeMb;
+  /**
+   * The hours segments of the mutation journal are kept after their last write
+   */
+  @Value("${MutationJournalRetentionHours:" + MUTATION_JOURNAL_RETENTION_HOURS_DEFAULT + "}")
+  private int mutationJournalRetentionHours;
+  /**
+   * The number of annotations above which a container is deleted in the background
+   */
+  @Value("${AsyncContainerDeletionThreshold:" + ASYNC_CONTAINER_DELETION_THRESHOLD_DEFAULT + "}")
+  private int asyncContainerDeletionThreshold;
+  /**
+   * The number of annotations deleted per transaction of a background container deletion
+   */
+  @Value("${ContainerDeletionBatchSize:" + CONTAINER_DELETION_BATCH_SIZE_DEFAULT + "}")
+  private int containerDeletionBatchSize;
+  /**
+   * The milliseconds a background container deletion pauses between its batches
+   */
+  @Value("${ContainerDeletionPauseMillis:" + CONTAINER_DELETION_PAUSE_MILLIS_DEFAULT + "}")
+  private int containerDeletionPauseMillis;
+  /**
+   * The max. number of annotations per page a client may request
+   */
+  @Value("${MaxPageSize:" + MAX_PAGE_SIZE_DEFAULT + "}")
+  private int maxPageSize;
+  /**
+   * Whether the in-memory index of the targets of the annotations is used
+   */
+  @Value("${EnableTargetIndex:" + ENABLE_TARGET_INDEX_DEFAULT + "}")
+  private boolean enableTargetIndex;
+  /**
+   * Whether the in-memory full-text index of the annotations is used. Off by
+   * default, as it holds all texts on the heap and is rebuilt at every start
+   */
+  @Value("${EnableTextIndex:" + ENABLE_TEXT_INDEX_DEFAULT + "}")
+  private boolean enableTextIndex;
+  /**
+   * Whether the in-memory index of the created and modified times of the annotations is used
+   */
+  @Value("${EnableTimeIndex:" + ENABLE_TIME_INDEX_DEFAULT + "}")
+  private boolean enableTimeIndex;
 
   /**
    * The cors configuration to use
@@ -362,6 +511,26 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
     props.put(ConfigurationKeys.SimpleFormatters.toString(), SIMPLE_FORMATTERS_DEFAULT);
     props.put(ConfigurationKeys.CorsAllowedOriginsPath.toString(), CORS_ALLOWED_ORIGINS_PATH_DEFAULT);
     props.put(ConfigurationKeys.FallbackValidation.toString(), FALLBACK_VALIDATION_DEFAULT + "");
+    props.put(ConfigurationKeys.TransactionConcurrencyMode.toString(), TRANSACTION_CONCURRENCY_MODE_DEFAULT);
+    props.put(ConfigurationKeys.GroupCommitMaxBatchSize.toString(), GROUP_COMMIT_MAX_BATCH_SIZE_DEFAULT + "");
+    props.put(ConfigurationKeys.GroupCommitMaxLingerMillis.toString(), GROUP_COMMIT_MAX_LINGER_MILLIS_DEFAULT + "");
+    props.put(ConfigurationKeys.MaintenanceIntervalMinutes.toString(), MAINTENANCE_INTERVAL_MINUTES_DEFAULT + "");
+    props.put(ConfigurationKeys.CompactionIntervalHours.toString(), COMPACTION_INTERVAL_HOURS_DEFAULT + "");
+    props.put(ConfigurationKeys.CompactionSizeThresholdMb.toString(), COMPACTION_SIZE_THRESHOLD_MB_DEFAULT + "");
+    props.put(ConfigurationKeys.CompactionGarbagePercent.toString(), COMPACTION_GARBAGE_PERCENT_DEFAULT + "");
+    props.put(ConfigurationKeys.EnableResourceStatusIndex.toString(), ENABLE_RESOURCE_STATUS_INDEX_DEFAULT + "");
+    props.put(ConfigurationKeys.ShardCount.toString(), SHARD_COUNT_DEFAULT + "");
+    props.put(ConfigurationKeys.ShardPrefixes.toString(), SHARD_PREFIXES_DEFAULT);
+    props.put(ConfigurationKeys.EnableMutationJournal.toString(), MUTATION_JOURNAL_ENABLED_DEFAULT + "");
+    props.put(ConfigurationKeys.MutationJournalSegmentSizeMb.toString(), MUTATION_JOURNAL_SEGMENT_SIZE_MB_DEFAULT + "");
+    props.put(ConfigurationKeys.MutationJournalRetentionHours.toString(), MUTATION_JOURNAL_RETENTION_HOURS_DEFAULT + "");
+    props.put(ConfigurationKeys.AsyncContainerDeletionThreshold.toString(), ASYNC_CONTAINER_DELETION_THRESHOLD_DEFAULT + "");
+    props.put(ConfigurationKeys.ContainerDeletionBatchSize.toString(), CONTAINER_DELETION_BATCH_SIZE_DEFAULT + "");
+    props.put(ConfigurationKeys.ContainerDeletionPauseMillis.toString(), CONTAINER_DELETION_PAUSE_MILLIS_DEFAULT + "");
+    props.put(ConfigurationKeys.MaxPageSize.toString(), MAX_PAGE_SIZE_DEFAULT + "");
+    props.put(ConfigurationKeys.EnableTargetIndex.toString(), ENABLE_TARGET_INDEX_DEFAULT + "");
+    props.put(ConfigurationKeys.EnableTextIndex.toString(), ENABLE_TEXT_INDEX_DEFAULT + "");
+    props.put(ConfigurationKeys.EnableTimeIndex.toString(), ENABLE_TIME_INDEX_DEFAULT + "");
     if(ConfigurationKeys.values().length != props.size()){
       throw new RuntimeException("Default properties and the ConfigurationKeys enum not in sync");
     }
@@ -595,6 +764,12 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
       if(!checkPort(ConfigurationKeys.SparqlWritePort, portsUsed, props)){
         return false;
       }
+      String concurrencyMode = props.getProperty(ConfigurationKeys.TransactionConcurrencyMode.toString());
+      if(concurrencyMode != null && parseConcurrencyMode(concurrencyMode) == null){
+        logger.error("Invalid transaction concurrency mode, use one of "
+                + Arrays.asList(TransactionRepository.ConcurrencyMode.values()) + " : " + concurrencyMode);
+        return false;
+      }
       // We may have invalid ips, which will result in spring not starting. This is already logged by spring
       // therefore we do not test it here
       // the other variables are not check for consistency so far as they are orthogonal and do not interfere
@@ -715,6 +890,40 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
     corsAllowedOriginsPath
             = getProperty(props, ConfigurationKeys.CorsAllowedOriginsPath, CORS_ALLOWED_ORIGINS_PATH_DEFAULT);
     fallbackValidation = getProperty(props, ConfigurationKeys.FallbackValidation, FALLBACK_VALIDATION_DEFAULT);
+    transactionConcurrencyMode = getProperty(props, ConfigurationKeys.TransactionConcurrencyMode,
+            TRANSACTION_CONCURRENCY_MODE_DEFAULT);
+    groupCommitMaxBatchSize = getProperty(props, ConfigurationKeys.GroupCommitMaxBatchSize,
+            GROUP_COMMIT_MAX_BATCH_SIZE_DEFAULT);
+    groupCommitMaxLingerMillis = getProperty(props, ConfigurationKeys.GroupCommitMaxLingerMillis,
+            GROUP_COMMIT_MAX_LINGER_MILLIS_DEFAULT);
+    maintenanceIntervalMinutes = getProperty(props, ConfigurationKeys.MaintenanceIntervalMinutes,
+            MAINTENANCE_INTERVAL_MINUTES_DEFAULT);
+    compactionIntervalHours = getProperty(props, ConfigurationKeys.CompactionIntervalHours,
+            COMPACTION_INTERVAL_HOURS_DEFAULT);
+    compactionSizeThresholdMb = getProperty(props, ConfigurationKeys.CompactionSizeThresholdMb,
+            COMPACTION_SIZE_THRESHOLD_MB_DEFAULT);
+    compactionGarbagePercent = getProperty(props, ConfigurationKeys.CompactionGarbagePercent,
+            COMPACTION_GARBAGE_PERCENT_DEFAULT);
+    enableResourceStatusIndex = getProperty(props, ConfigurationKeys.EnableResourceStatusIndex,
+            ENABLE_RESOURCE_STATUS_INDEX_DEFAULT);
+    shardCount = getProperty(props, ConfigurationKeys.ShardCount, SHARD_COUNT_DEFAULT);
+    shardPrefixes = getProperty(props, ConfigurationKeys.ShardPrefixes, SHARD_PREFIXES_DEFAULT);
+    mutationJournalEnabled = getProperty(props, ConfigurationKeys.EnableMutationJournal,
+            MUTATION_JOURNAL_ENABLED_DEFAULT);
+    mutationJournalSegmentSizeMb = getProperty(props, ConfigurationKeys.MutationJournalSegmentSizeMb,
+            MUTATION_JOURNAL_SEGMENT_SIZE_MB_DEFAULT);
+    mutationJournalRetentionHours = getProperty(props, ConfigurationKeys.MutationJournalRetentionHours,
+            MUTATION_JOURNAL_RETENTION_HOURS_DEFAULT);
+    asyncContainerDeletionThreshold = getProperty(props, ConfigurationKeys.AsyncContainerDeletionThreshold,
+            ASYNC_CONTAINER_DELETION_THRESHOLD_DEFAULT);
+    containerDeletionBatchSize = getProperty(props, ConfigurationKeys.ContainerDeletionBatchSize,
+            CONTAINER_DELETION_BATCH_SIZE_DEFAULT);
+    containerDeletionPauseMillis = getProperty(props, ConfigurationKeys.ContainerDeletionPauseMillis,
+            CONTAINER_DELETION_PAUSE_MILLIS_DEFAULT);
+    maxPageSize = getProperty(props, ConfigurationKeys.MaxPageSize, MAX_PAGE_SIZE_DEFAULT);
+    enableTargetIndex = getProperty(props, ConfigurationKeys.EnableTargetIndex, ENABLE_TARGET_INDEX_DEFAULT);
+    enableTextIndex = getProperty(props, ConfigurationKeys.EnableTextIndex, ENABLE_TEXT_INDEX_DEFAULT);
+    enableTimeIndex = getProperty(props, ConfigurationKeys.EnableTimeIndex, ENABLE_TIME_INDEX_DEFAULT);
   }
 
   private String getProperty(Properties newProps, ConfigurationKeys key, String defaultValue){
@@ -932,6 +1141,213 @@ public class WapServerConfig extends WebMvcConfigurationSupport{
     return rdfBackendImplementation;
   }
 
+  /**
+   * Returns the way concurrent transactions on the database are coordinated.
+   * Unknown values fall back to the serialized mode.
+   *
+   * @return The transaction concurrency mode
+   */
+  public TransactionRepository.ConcurrencyMode getTransactionConcurrencyMode(){
+    TransactionRepository.ConcurrencyMode mode = parseConcurrencyMode(transactionConcurrencyMode);
+    return mode == null ? TransactionRepository.ConcurrencyMode.Serialized : mode;
+  }
+
+  /**
+   * Gets the maximum number of annotation POSTs written with a single commit.
+   * Values below 2 disable group commit.
+   *
+   * @return The maximum group commit batch size
+   */
+  public int getGroupCommitMaxBatchSize(){
+    return groupCommitMaxBatchSize;
+  }
+
+  /**
+   * Gets the maximum time in ms the group commit writer waits for further
+   * annotation POSTs before committing a batch.
+   *
+   * @return The maximum linger time in ms
+   */
+  public long getGroupCommitMaxLingerMillis(){
+    return groupCommitMaxLingerMillis;
+  }
+
+  /**
+   * Gets the time between two runs of the database maintenance, which purges deleted
+   * objects and compacts the database
+   *
+   * @return The interval in minutes, 0 or less if disabled
+   */
+  public int getMaintenanceIntervalMinutes(){
+    return maintenanceIntervalMinutes;
+  }
+
+  /**
+   * Gets the time after which the database is compacted regardless of its size
+   *
+   * @return The interval in hours, 0 or less if not scheduled
+   */
+  public int getCompactionIntervalHours(){
+    return compactionIntervalHours;
+  }
+
+  /**
+   * Gets the database size above which the database is compacted
+   *
+   * @return The size in MB, 0 or less if disabled
+   */
+  public long getCompactionSizeThresholdMb(){
+    return compactionSizeThresholdMb;
+  }
+
+  /**
+   * Gets the growth of the database since the last compaction, or since the start,
+   * above which the database is compacted. The database never shrinks by itself, so
+   * the growth estimates the space taken by overwritten and purged data.
+   *
+   * @return The growth in percent, 0 or less if disabled
+   */
+  public int getCompactionGarbagePercent(){
+    return compactionGarbagePercent;
+  }
+
+  /**
+   * Checks whether existence and deletion checks are answered from the in-memory
+   * resource status index
+   *
+   * @return True, if the index is enabled
+   */
+  public boolean isResourceStatusIndexEnabled(){
+    return enableResourceStatusIndex;
+  }
+
+  /**
+   * Gets the number of TDB2 datasets the sharded repository distributes the
+   * containers to
+   *
+   * @return The number of shards
+   */
+  public int getShardCount(){
+    return shardCount;
+  }
+
+  /**
+   * Gets the shards assigned to the top level containers by prefix of their name,
+   * as comma separated list of prefix=shard
+   *
+   * @return The prefix map, empty if all containers are assigned by hash
+   */
+  public String getShardPrefixes(){
+    return shardPrefixes;
+  }
+
+  /**
+   * Checks whether the creations, updates and deletions of WapObjects are
+   * appended to the mutation journal
+   *
+   * @return True, if the mutation journal is used
+   */
+  public boolean isMutationJournalEnabled(){
+    return mutationJournalEnabled;
+  }
+
+  /**
+   * Gets the size a segment file of the mutation journal is rolled over at
+   *
+   * @return The segment size in MB
+   */
+  public int getMutationJournalSegmentSizeMb(){
+    return mutationJournalSegmentSizeMb;
+  }
+
+  /**
+   * Gets the time segments of the mutation journal are kept after their last
+   * write
+   *
+   * @return The retention in hours, 0 to keep them forever
+   */
+  public int getMutationJournalRetentionHours(){
+    return mutationJournalRetentionHours;
+  }
+
+  /**
+   * Gets the number of annotations above which the annotations of a deleted
+   * container are deleted in the background
+   *
+   * @return The threshold, 0 to delete all containers within the request
+   */
+  public int getAsyncContainerDeletionThreshold(){
+    return asyncContainerDeletionThreshold;
+  }
+
+  /**
+   * Gets the number of annotations deleted per transaction of a background
+   * container deletion
+   *
+   * @return The batch size
+   */
+  public int getContainerDeletionBatchSize(){
+    return containerDeletionBatchSize;
+  }
+
+  /**
+   * Gets the time a background container deletion pauses between its batches
+   *
+   * @return The pause in milliseconds
+   */
+  public int getContainerDeletionPauseMillis(){
+    return containerDeletionPauseMillis;
+  }
+
+  /**
+   * Gets the max. number of annotations per page a client may request with the
+   * pageSize parameter
+   *
+   * @return The max. page size, not above the default page size to disable client page sizes
+   */
+  public int getMaxPageSize(){
+    return maxPageSize;
+  }
+
+  /**
+   * Checks whether the in-memory index of the targets of the annotations is used
+   *
+   * @return true if enabled, false otherwise
+   */
+  public boolean isTargetIndexEnabled(){
+    return enableTargetIndex;
+  }
+
+  /**
+   * Checks whether the in-memory full-text index of the annotations is used
+   *
+   * @return true if enabled, false otherwise
+   */
+  public boolean isTextIndexEnabled(){
+    return enableTextIndex;
+  }
+
+  /**
+   * Checks whether the in-memory index of the created and modified times of the annotations is used
+   *
+   * @return true if enabled, false otherwise
+   */
+  public boolean isTimeIndexEnabled(){
+    return enableTimeIndex;
+  }
+
+  private static TransactionRepository.ConcurrencyMode parseConcurrencyMode(String value){
+    if(value == null){
+      return null;
+    }
+    for(TransactionRepository.ConcurrencyMode mode : TransactionRepository.ConcurrencyMode.values()){
+      if(mode.toString().equalsIgnoreCase(value.trim())){
+        return mode;
+      }
+    }
+    return null;
+  }
+
   @PostConstruct
   private void postConstruct(){
     corsConfig = new CorsConfiguration(getCorsAllowedOriginsPath());
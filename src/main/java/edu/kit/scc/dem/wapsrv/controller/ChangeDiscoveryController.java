@@ -0,0 +1,195 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.ResourceDeletedException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.service.JournalService;
+
+/**
+ * The WAP Controller used to discover the changes of annotations and containers, in the style of the IIIF Change
+ * Discovery API. The feed is an OrderedCollection of Create, Update and Delete activities, server-wide or restricted
+ * to a container and everything below it. Its pages are ranges of the sequence numbers of the mutation journal, so
+ * reading a page costs the size of the range, not the size of the container. The journal is not indexed by container
+ * though, a page of a container reads all {@value #PAGE_SPAN} entries of its range and keeps those below the
+ * container. Following the feed of a container therefore costs as much as following the server-wide one, and the
+ * pages of a container with few changes are mostly empty. Clients remember the page they stopped at and read it and
+ * its next pages again to get everything that changed since.
+ */
+@RestController
+@RequestMapping(WapServerConfig.CHANGES_ENDPOINT)
+public class ChangeDiscoveryController {
+   /**
+    * The number of journal entries covered by one page
+    */
+   public static final int PAGE_SPAN = 1000;
+   /**
+    * The JSON-LD context of the Change Discovery API
+    */
+   public static final String CONTEXT = "http://iiif.io/api/discovery/1/context.json";
+   /**
+    * The content type of the feed
+    */
+   public static final MediaType CONTENT_TYPE = MediaType
+         .parseMediaType("application/ld+json;profile=\"https://www.w3.org/ns/activitystreams\"");
+   /**
+    * The logger to use
+    */
+   private final Logger logger = LoggerFactory.getLogger(this.getClass());
+   /**
+    * The journal service
+    */
+   @Autowired
+   private JournalService journalService;
+   /**
+    * The configuration
+    */
+   @Autowired
+   private WapServerConfig wapServerConfig;
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to the change feed. Without a page the collection is
+    * returned, linking to its first and last page.
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  containerIri
+    *                      The IRI of the container to restrict the feed to, null for all changes
+    * @param  from
+    *                      The sequence number the page starts at, null for the collection
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs, e.g. the journal is not enabled or the page has already been
+    *                      removed from the journal
+    */
+   @RequestMapping(method = {RequestMethod.GET})
+   public ResponseEntity<?> getChanges(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam(value = "container", required = false) String containerIri,
+         @RequestParam(value = "from", required = false) Long from) throws WapException {
+      logger.debug("read changes of " + (containerIri == null ? "all containers" : containerIri) + " from " + from);
+      final long first = journalService.getFirstSequence();
+      final long next = journalService.getNextSequence();
+      Map<String, Object> body = new LinkedHashMap<String, Object>();
+      body.put("@context", CONTEXT);
+      if (from == null) {
+         body.put("id", getCollectionIri(containerIri));
+         body.put("type", "OrderedCollection");
+         body.put("first", getPageReference(containerIri, first));
+         // The page of the newest entry, the first one if the journal is empty
+         final long last = next > first ? Math.max(first, pageStart(next - 1)) : first;
+         body.put("last", getPageReference(containerIri, last));
+      } else {
+         final long start = Math.max(1, from);
+         if (start < first && first > 1) {
+            throw new ResourceDeletedException(ErrorMessageRegistry.CHANGES_EXPIRED);
+         }
+         final long end = pageStart(start) + PAGE_SPAN;
+         List<MutationJournal.Entry> entries = journalService.readChanges(start, end, containerIri);
+         body.put("id", getPageIri(containerIri, start));
+         body.put("type", "OrderedCollectionPage");
+         Map<String, Object> partOf = new LinkedHashMap<String, Object>();
+         partOf.put("id", getCollectionIri(containerIri));
+         partOf.put("type", "OrderedCollection");
+         body.put("partOf", partOf);
+         if (start > first) {
+            body.put("prev", getPageReference(containerIri, Math.max(first, pageStart(start - 1))));
+         }
+         if (end < next) {
+            body.put("next", getPageReference(containerIri, end));
+         }
+         List<Map<String, Object>> activities = new ArrayList<Map<String, Object>>(entries.size());
+         for (MutationJournal.Entry entry : entries) {
+            activities.add(toActivity(entry));
+         }
+         body.put("orderedItems", activities);
+      }
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      responseHeaders.setContentType(CONTENT_TYPE);
+      return new ResponseEntity<>(body, responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to the change feed
+    *
+    * @param  request
+    *                 The request the client sent
+    * @param  headers
+    *                 The headers of the request
+    * @return         A response object to sent to the client
+    */
+   @RequestMapping(method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsChanges(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * Gets the sequence number the page containing the given one starts at. Pages are aligned to multiples of
+    * {@value #PAGE_SPAN}, so their IRIs stay the same while the journal grows.
+    *
+    * @param  sequence
+    *                  The sequence number
+    * @return          The sequence number the page starts at
+    */
+   static long pageStart(long sequence) {
+      return ((sequence - 1) / PAGE_SPAN) * PAGE_SPAN + 1;
+   }
+
+   private Map<String, Object> toActivity(MutationJournal.Entry entry) {
+      Map<String, Object> object = new LinkedHashMap<String, Object>();
+      object.put("id", entry.getIri());
+      object.put("type", entry.getIri().endsWith("/") ? "AnnotationCollection" : "Annotation");
+      Map<String, Object> activity = new LinkedHashMap<String, Object>();
+      activity.put("type", entry.getType().toString());
+      activity.put("object", object);
+      activity.put("endTime", Instant.ofEpochMilli(entry.getTimestamp()).toString());
+      return activity;
+   }
+
+   private Map<String, Object> getPageReference(String containerIri, long from) {
+      Map<String, Object> page = new LinkedHashMap<String, Object>();
+      page.put("id", getPageIri(containerIri, from));
+      page.put("type", "OrderedCollectionPage");
+      return page;
+   }
+
+   private String getCollectionIri(String containerIri) {
+      final String iri = wapServerConfig.getBaseUrl() + WapServerConfig.CHANGES_ENDPOINT;
+      return containerIri == null ? iri : iri + "?container=" + URLEncoder.encode(containerIri, StandardCharsets.UTF_8);
+   }
+
+   private String getPageIri(String containerIri, long from) {
+      final String iri = getCollectionIri(containerIri);
+      return iri + (containerIri == null ? "?" : "&") + "from=" + from;
+   }
+}
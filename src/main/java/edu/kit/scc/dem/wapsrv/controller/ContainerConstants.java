@@ -29,6 +29,10 @@ public final class ContainerConstants {
     * The HTTP status code for successful DELETE requests of containers
     */
    public static final int DELETE_CONTAINER_SUCCESS_CODE = 204;
+   /**
+    * The HTTP status code for DELETE requests of containers whose annotations are deleted in the background
+    */
+   public static final int DELETE_CONTAINER_ACCEPTED_CODE = 202;
    /**
     * Set of allowed HTTP methods on containers
     */
@@ -117,9 +117,12 @@ public class ContainerController extends WapController {
             throw new HttpHeaderException(ErrorMessageRegistry.CONTAINER_UNALLOWED_PREFERENCE_COMBINATION);
          }
       }
+      // The pageSize param applies to the embedded first page and the first/last links
+      final int pageSize = getRequestedPageSize(request);
+      final int otherParameters = request.getParameterMap().size() - (pageSize == 0 ? 0 : 1);
       // We may get requests that have params ==> return error if it is not the iris param and if it is
-      if (!request.getParameterMap().isEmpty()) {
-         if (request.getParameter("iris") != null && request.getParameterMap().size() == 1) {
+      if (otherParameters != 0) {
+         if (request.getParameter("iris") != null && otherParameters == 1) {
             try {
                int iris = Integer.parseInt(request.getParameter("iris"));
                if (iris == ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS) {
@@ -155,7 +158,7 @@ public class ContainerController extends WapController {
             = getContentNegotiator(headers.getFirst("Accept"), Type.CONTAINER, profileRegistry, formatRegistry);
       final Formatter formatter = contentNegotiator.getFormatter();
       final String iri = extractIri(request);
-      Container container = containerService.getContainer(iri, preferences);
+      Container container = containerService.getContainer(iri, preferences, pageSize);
       HttpHeaders responseHeaders = new HttpHeaders();
       responseHeaders.add("Link", ContainerConstants.LINK_TYPE);
       responseHeaders.add("Link", ContainerConstants.LINK_ANNOTATION_PROTOCOL);
@@ -359,8 +362,15 @@ public class ContainerController extends WapController {
       }
       String iri = extractIri(request);
       // If Match header contains the Etag value.
-      containerService.deleteContainer(iri, stripQuotes(etag));
+      String statusIri = containerService.deleteContainer(iri, stripQuotes(etag));
       // If something went wrong, the code here is never reached, an Exception has been thrown.
+      if (statusIri != null) {
+         // The annotations are still being deleted, the client may follow their progress
+         final HttpHeaders responseHeaders = new HttpHeaders();
+         responseHeaders.setLocation(URI.create(statusIri));
+         return new ResponseEntity<>(responseHeaders,
+               HttpStatus.valueOf(ContainerConstants.DELETE_CONTAINER_ACCEPTED_CODE));
+      }
       return new ResponseEntity<>(HttpStatus.valueOf(ContainerConstants.DELETE_CONTAINER_SUCCESS_CODE));
    }
 
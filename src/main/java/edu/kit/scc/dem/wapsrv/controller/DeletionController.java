@@ -0,0 +1,99 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.service.ContainerDeletion;
+import edu.kit.scc.dem.wapsrv.service.ContainerService;
+
+/**
+ * The WAP Controller used to read the status of containers deleted in the background. The DELETE request of such a
+ * container answers with 202 Accepted and the status resource of the deletion in the Location header. Deletions still
+ * pending at a restart are resumed under the same id, those finished before are not known anymore and answer with 404.
+ */
+@RestController
+@RequestMapping(WapServerConfig.DELETION_ENDPOINT + "/{id}")
+public class DeletionController {
+   /**
+    * The logger to use
+    */
+   private final Logger logger = LoggerFactory.getLogger(this.getClass());
+   /**
+    * The container service
+    */
+   @Autowired
+   private ContainerService containerService;
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to read the status of a deletion
+    * 
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  id
+    *                      The id of the deletion
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs, e.g. the deletion does not exist
+    */
+   @RequestMapping(method = {RequestMethod.GET})
+   public ResponseEntity<?> getDeletion(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @PathVariable("id") String id) throws WapException {
+      logger.debug("read status of deletion " + id);
+      ContainerDeletion deletion = containerService.getContainerDeletion(id);
+      Map<String, Object> body = new LinkedHashMap<String, Object>();
+      body.put("id", deletion.getId());
+      body.put("container", deletion.getContainerIri());
+      body.put("state", deletion.getState().toString());
+      body.put("total", deletion.getTotal());
+      body.put("deleted", deletion.getDeleted());
+      body.put("started", Instant.ofEpochMilli(deletion.getStarted()).toString());
+      if (deletion.getFinished() != 0) {
+         body.put("finished", Instant.ofEpochMilli(deletion.getFinished()).toString());
+      }
+      if (deletion.getError() != null) {
+         body.put("error", deletion.getError());
+      }
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      responseHeaders.setContentType(MediaType.APPLICATION_JSON);
+      return new ResponseEntity<>(body, responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to the status of a deletion
+    * 
+    * @param  request
+    *                 The request the client sent
+    * @param  headers
+    *                 The headers of the request
+    * @return         A response object to sent to the client
+    */
+   @RequestMapping(method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsDeletion(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.OK);
+   }
+}
@@ -0,0 +1,138 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalHttpParameterException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.service.ExportService;
+import edu.kit.scc.dem.wapsrv.service.ExportService.ExportFormat;
+
+/**
+ * The WAP Controller used to export all annotations of a container with one request, instead of paging through it.
+ * The annotations are streamed to the client while they are read, compressed with gzip if the client accepts it. As
+ * the response is written directly, errors after the export has started can only be seen as an incomplete response.
+ */
+@RestController
+@RequestMapping(WapServerConfig.EXPORT_ENDPOINT)
+public class ExportController {
+   /**
+    * The logger to use
+    */
+   private final Logger logger = LoggerFactory.getLogger(this.getClass());
+   /**
+    * The export service
+    */
+   @Autowired
+   private ExportService exportService;
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to export a container
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  response
+    *                      The response the export is written to
+    * @param  containerIri
+    *                      The IRI of the container to export
+    * @param  format
+    *                      The format of the export, one of ndjson, nquads and rdf_thrift
+    * @param  recursive
+    *                      true to export the containers below the container too
+    * @throws WapException
+    *                      in case any error occurs before the export starts, e.g. the container does not exist
+    * @throws IOException
+    *                      if writing the response fails
+    */
+   @RequestMapping(method = {RequestMethod.GET})
+   public void getExport(HttpServletRequest request, HttpServletResponse response,
+         @RequestParam(value = "container") String containerIri,
+         @RequestParam(value = "format", defaultValue = "ndjson") String format,
+         @RequestParam(value = "recursive", defaultValue = "false") boolean recursive)
+         throws WapException, IOException {
+      final ExportFormat exportFormat = ExportFormat.fromName(format);
+      if (exportFormat == null) {
+         throw new IllegalHttpParameterException(ErrorMessageRegistry.EXPORT_UNKNOWN_FORMAT);
+      }
+      logger.info("export container " + containerIri);
+      // Fails with the usual error response as long as nothing has been written
+      exportService.checkExportable(containerIri);
+      final boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+      response.setStatus(HttpStatus.OK.value());
+      response.setContentType(exportFormat.getContentType());
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (gzip) {
+         response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      }
+      OutputStream out = response.getOutputStream();
+      if (gzip) {
+         out = new GZIPOutputStream(out, 64 * 1024);
+      }
+      exportService.exportContainer(containerIri, recursive, exportFormat, out);
+      if (gzip) {
+         ((GZIPOutputStream) out).finish();
+      }
+      out.flush();
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to export a container
+    *
+    * @param  request
+    *                 The request the client sent
+    * @param  headers
+    *                 The headers of the request
+    * @return         A response object to sent to the client
+    */
+   @RequestMapping(method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsExport(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * Checks whether the Accept-Encoding header of the client contains gzip, without a quality of 0
+    *
+    * @param  acceptEncoding
+    *                        The Accept-Encoding header, may be null
+    * @return                true if the response may be compressed with gzip
+    */
+   static boolean acceptsGzip(String acceptEncoding) {
+      if (acceptEncoding == null) {
+         return false;
+      }
+      for (String part : acceptEncoding.split(",")) {
+         String[] coding = part.trim().split(";");
+         if (!coding[0].trim().equalsIgnoreCase("gzip")) {
+            continue;
+         }
+         for (int n = 1; n < coding.length; n++) {
+            if (coding[n].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+               return false;
+            }
+         }
+         return true;
+      }
+      return false;
+   }
+}
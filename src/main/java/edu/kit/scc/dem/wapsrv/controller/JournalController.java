@@ -0,0 +1,117 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.service.JournalService;
+
+/**
+ * The WAP Controller used to read the journal of the creations, updates and deletions of annotations and containers.
+ * The entries are read starting at a sequence number, the response tells the sequence number to continue with. Entries
+ * before the first one still available have been deleted by the retention of the journal.
+ */
+@RestController
+@RequestMapping("/journal")
+public class JournalController {
+   /**
+    * The number of entries returned if no limit is requested
+    */
+   public static final int DEFAULT_LIMIT = 1000;
+   /**
+    * The maximal number of entries returned by one request
+    */
+   public static final int MAX_LIMIT = 10000;
+   /**
+    * The logger to use
+    */
+   private final Logger logger = LoggerFactory.getLogger(this.getClass());
+   /**
+    * The journal service
+    */
+   @Autowired
+   private JournalService journalService;
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to read the journal
+    * 
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  from
+    *                      The sequence number of the first entry to read
+    * @param  limit
+    *                      The maximal number of entries to read, capped at {@value #MAX_LIMIT}
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs, e.g. the journal is not enabled
+    */
+   @RequestMapping(method = {RequestMethod.GET})
+   public ResponseEntity<?> getJournal(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam(value = "from", defaultValue = "0") long from,
+         @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit) throws WapException {
+      logger.debug("read journal from " + from);
+      long first = journalService.getFirstSequence();
+      List<MutationJournal.Entry> entries = journalService.readJournal(from, Math.max(1, Math.min(limit, MAX_LIMIT)));
+      List<Map<String, Object>> entryList = new ArrayList<Map<String, Object>>(entries.size());
+      for (MutationJournal.Entry entry : entries) {
+         Map<String, Object> entryMap = new LinkedHashMap<String, Object>();
+         entryMap.put("sequence", entry.getSequence());
+         entryMap.put("timestamp", Instant.ofEpochMilli(entry.getTimestamp()).toString());
+         entryMap.put("type", entry.getType().toString());
+         entryMap.put("iri", entry.getIri());
+         if (entry.getEtag() != null) {
+            entryMap.put("etag", entry.getEtag());
+         }
+         entryList.add(entryMap);
+      }
+      Map<String, Object> body = new LinkedHashMap<String, Object>();
+      body.put("first", first);
+      // The sequence number to continue reading from
+      body.put("next", entries.isEmpty() ? journalService.getNextSequence()
+            : entries.get(entries.size() - 1).getSequence() + 1);
+      body.put("entries", entryList);
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      responseHeaders.setContentType(MediaType.APPLICATION_JSON);
+      return new ResponseEntity<>(body, responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to read the journal
+    * 
+    * @param  request
+    *                 The request the client sent
+    * @param  headers
+    *                 The headers of the request
+    * @return         A response object to sent to the client
+    */
+   @RequestMapping(method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsJournal(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.OK);
+   }
+}
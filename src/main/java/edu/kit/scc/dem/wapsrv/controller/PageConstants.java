@@ -39,6 +39,10 @@ public final class PageConstants {
     * Values to use in HTTP vary header to inform caches that the answer changes with the value of these headers
     */
    public static final List<String> VARY_LIST = Arrays.asList(new String[] {"Accept"});
+   /**
+    * The query parameter a client may choose the number of annotations per page with
+    */
+   public static final String PAGE_SIZE_PARAMETER = "pageSize";
 
    /**
     * The constructor
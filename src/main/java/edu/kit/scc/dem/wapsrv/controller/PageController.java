@@ -25,10 +25,12 @@ import edu.kit.scc.dem.wapsrv.model.formats.Format;
 import edu.kit.scc.dem.wapsrv.model.formats.FormatRegistry;
 import edu.kit.scc.dem.wapsrv.model.formats.Formatter;
 import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.repository.TimeIndex;
 import edu.kit.scc.dem.wapsrv.service.ContainerService;
 
 /**
- * The WAP Controller used for requests to Pages
+ * The WAP Controller used for requests to Pages. Pages of the annotations created or modified within a time range are
+ * requested with the createdAfter and createdBefore or the modifiedAfter and modifiedBefore parameters.
  * 
  * @author  Matthias Dressel
  * @author  Michael Hitzker
@@ -76,23 +78,28 @@ public class PageController extends WapController {
     * @param  iris
     *                      The value of the iris query parameter
     * @param  pageNr
-    *                      The value of the page query parameter
+    *                      The value of the page query parameter, ignored if a cursor is given
+    * @param  cursor
+    *                      The value of the cursor query parameter, null for numbered pages
     * @return              A response object to sent to the client
     * @throws WapException
     *                      in case any error occurs
     */
-   private ResponseEntity<?> getHeadOptionsPage(HttpServletRequest request, HttpHeaders headers, int iris, int pageNr)
-         throws WapException {
+   private ResponseEntity<?> getHeadOptionsPage(HttpServletRequest request, HttpHeaders headers, int iris, int pageNr,
+         String cursor) throws WapException {
       final String httpMethod = request.getMethod();
       logger.info(httpMethod + " Page");
       final boolean isOptionsRequest = isOptionsRequest(httpMethod);
-      // We may get requests that have more the page and iris params ==> return error
-      if (request.getParameterMap().size() > 2) {
+      // We may get requests that have more the page (or cursor), iris, pageSize and time range params ==> return error
+      final int pageSize = getRequestedPageSize(request);
+      final TimeIndex.Range range = getRequestedTimeRange(request);
+      if (request.getParameterMap().size() > (pageSize == 0 ? 2 : 3) + getTimeRangeParameters(request)) {
          throw new IllegalHttpParameterException(ErrorMessageRegistry.PAGE_INVALID_GIVEN_PARAMETERS);
       }
       // Check for valid parameter values
       if ((iris != ContainerPreference.PREFER_CONTAINED_IRIS
-            && iris != ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS) || pageNr < 0) {
+            && iris != ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS) || pageNr < 0
+            || (cursor != null && cursor.isEmpty())) {
          throw new IllegalPageIriException();
       }
       final ContentNegotiator contentNegotiator
@@ -100,7 +107,14 @@ public class PageController extends WapController {
       final Formatter formatter = contentNegotiator.getFormatter();
       final String containerIri = extractIri(request);
       final int containerPreference = iris;
-      final Page page = containerService.getPage(containerIri, containerPreference, pageNr);
+      final Page page;
+      if (range == null) {
+         page = cursor == null ? containerService.getPage(containerIri, containerPreference, pageNr, pageSize)
+               : containerService.getPage(containerIri, containerPreference, cursor, pageSize);
+      } else {
+         page = cursor == null ? containerService.getPage(containerIri, range, containerPreference, pageNr, pageSize)
+               : containerService.getPage(containerIri, range, containerPreference, cursor, pageSize);
+      }
       // If something went wrong fetching the page, the code here is never reached, an
       // Exception has been thrown
       // Create Headers for the response
@@ -124,6 +138,57 @@ public class PageController extends WapController {
       }
    }
 
+   /**
+    * Gets the time range a client asked for with the createdAfter and createdBefore or the modifiedAfter and
+    * modifiedBefore parameters.
+    * 
+    * @param  request
+    *                 The request
+    * @return         The requested time range, null if none of the parameters is given
+    * @throws IllegalHttpParameterException
+    *                 if a time is no xsd:dateTime or created and modified parameters are combined
+    */
+   private TimeIndex.Range getRequestedTimeRange(HttpServletRequest request) {
+      final String createdAfter = request.getParameter(TimeIndex.Range.CREATED_AFTER);
+      final String createdBefore = request.getParameter(TimeIndex.Range.CREATED_BEFORE);
+      final String modifiedAfter = request.getParameter(TimeIndex.Range.MODIFIED_AFTER);
+      final String modifiedBefore = request.getParameter(TimeIndex.Range.MODIFIED_BEFORE);
+      final boolean created = createdAfter != null || createdBefore != null;
+      final boolean modified = modifiedAfter != null || modifiedBefore != null;
+      if (created && modified) {
+         throw new IllegalHttpParameterException(ErrorMessageRegistry.PAGE_INVALID_TIME_RANGE);
+      }
+      if (created) {
+         return new TimeIndex.Range(false, parseTime(createdAfter), parseTime(createdBefore));
+      }
+      if (modified) {
+         return new TimeIndex.Range(true, parseTime(modifiedAfter), parseTime(modifiedBefore));
+      }
+      return null;
+   }
+
+   private int getTimeRangeParameters(HttpServletRequest request) {
+      int count = 0;
+      for (String name : new String[] {TimeIndex.Range.CREATED_AFTER, TimeIndex.Range.CREATED_BEFORE,
+            TimeIndex.Range.MODIFIED_AFTER, TimeIndex.Range.MODIFIED_BEFORE}) {
+         if (request.getParameter(name) != null) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   private Long parseTime(String time) {
+      if (time == null) {
+         return null;
+      }
+      final Long millis = TimeIndex.parseTime(time);
+      if (millis == null) {
+         throw new IllegalHttpParameterException(ErrorMessageRegistry.PAGE_INVALID_TIME_RANGE);
+      }
+      return millis;
+   }
+
    /**
     * This method implements the endpoint for HTTP GET requests to pages
     * 
@@ -139,11 +204,11 @@ public class PageController extends WapController {
     * @throws WapException
     *                      in case any error occurs
     */
-   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "page"},
+   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "page", "!cursor"},
          method = {RequestMethod.GET})
    public ResponseEntity<?> getPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
          @RequestParam("iris") int iris, @RequestParam("page") int pageNr) throws WapException {
-      return getHeadOptionsPage(request, headers, iris, pageNr);
+      return getHeadOptionsPage(request, headers, iris, pageNr, null);
    }
 
    /**
@@ -161,11 +226,11 @@ public class PageController extends WapController {
     * @throws WapException
     *                      in case any error occurs
     */
-   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "page"},
+   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "page", "!cursor"},
          method = {RequestMethod.HEAD})
    public ResponseEntity<?> headPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
          @RequestParam("iris") int iris, @RequestParam("page") int pageNr) throws WapException {
-      return getHeadOptionsPage(request, headers, iris, pageNr);
+      return getHeadOptionsPage(request, headers, iris, pageNr, null);
    }
 
    /**
@@ -183,10 +248,76 @@ public class PageController extends WapController {
     * @throws WapException
     *                      in case any error occurs
     */
-   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "page"},
+   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "page", "!cursor"},
          method = {RequestMethod.OPTIONS})
    public ResponseEntity<?> optionsPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
          @RequestParam("iris") int iris, @RequestParam("page") int pageNr) throws WapException {
-      return getHeadOptionsPage(request, headers, iris, pageNr);
+      return getHeadOptionsPage(request, headers, iris, pageNr, null);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to pages addressed by a cursor
+    * 
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  iris
+    *                      The value of the IRIs query parameter
+    * @param  cursor
+    *                      The value of the cursor query parameter
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "cursor"},
+         method = {RequestMethod.GET})
+   public ResponseEntity<?> getCursorPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam("iris") int iris, @RequestParam("cursor") String cursor) throws WapException {
+      return getHeadOptionsPage(request, headers, iris, 0, cursor);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP HEAD requests to pages addressed by a cursor
+    * 
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  iris
+    *                      The value of the IRIs query parameter
+    * @param  cursor
+    *                      The value of the cursor query parameter
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "cursor"},
+         method = {RequestMethod.HEAD})
+   public ResponseEntity<?> headCursorPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam("iris") int iris, @RequestParam("cursor") String cursor) throws WapException {
+      return getHeadOptionsPage(request, headers, iris, 0, cursor);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to pages addressed by a cursor
+    * 
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  iris
+    *                      The value of the IRIs query parameter
+    * @param  cursor
+    *                      The value of the cursor query parameter
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   @RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris", "cursor"},
+         method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsCursorPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam("iris") int iris, @RequestParam("cursor") String cursor) throws WapException {
+      return getHeadOptionsPage(request, headers, iris, 0, cursor);
    }
 }
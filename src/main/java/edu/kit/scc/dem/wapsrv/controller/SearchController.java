@@ -0,0 +1,204 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalHttpParameterException;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.repository.TextIndex;
+import edu.kit.scc.dem.wapsrv.service.SearchService;
+
+/**
+ * The WAP Controller used for the full-text search of the annotations. The result is an AnnotationPage of the
+ * AnnotationCollection of all hits, which tells their total number. The hits are ordered by relevance and list the
+ * IRI of the annotation, its score and the fragments of its texts with the words found marked with &lt;em&gt;.
+ */
+@RestController
+@RequestMapping(WapServerConfig.SEARCH_ENDPOINT)
+public class SearchController {
+   /**
+    * The path of the full-text index below the search endpoint
+    */
+   public static final String INDEX_PATH = "/index";
+   /**
+    * The JSON-LD context of the result
+    */
+   public static final String CONTEXT = "http://www.w3.org/ns/anno.jsonld";
+   /**
+    * The content type of the result
+    */
+   public static final MediaType CONTENT_TYPE = MediaType
+         .parseMediaType("application/ld+json;profile=\"http://www.w3.org/ns/anno.jsonld\"");
+   /**
+    * The logger to use
+    */
+   private final Logger logger = LoggerFactory.getLogger(this.getClass());
+   /**
+    * The search service
+    */
+   @Autowired
+   private SearchService searchService;
+   /**
+    * The configuration
+    */
+   @Autowired
+   private WapServerConfig wapServerConfig;
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to search the annotations
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  query
+    *                      The words to search for, words ending with * match all words starting with them
+    * @param  pageNr
+    *                      The number of the page
+    * @param  pageSize
+    *                      The number of hits per page, null for the configured page size
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs, e.g. the page does not exist
+    */
+   @RequestMapping(method = {RequestMethod.GET})
+   public ResponseEntity<?> getSearch(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam(value = "q") String query, @RequestParam(value = "page", defaultValue = "0") int pageNr,
+         @RequestParam(value = PageConstants.PAGE_SIZE_PARAMETER, required = false) Integer pageSize)
+         throws WapException {
+      logger.debug("search for " + query + " page " + pageNr);
+      if (!TextIndex.isSearchable(query)) {
+         throw new IllegalHttpParameterException(ErrorMessageRegistry.SEARCH_NO_WORDS);
+      }
+      if (pageNr < 0 || (pageSize != null && pageSize <= 0)) {
+         throw new IllegalPageIriException();
+      }
+      final int size = searchService.getPageSize(pageSize == null ? 0 : pageSize);
+      TextIndex.Hits hits = searchService.search(query, pageNr, size);
+      final String collectionIri = getCollectionIri(query, pageSize);
+      final int lastPage = Math.max(0, (hits.getTotal() - 1) / size);
+      Map<String, Object> collection = new LinkedHashMap<String, Object>();
+      collection.put("id", collectionIri);
+      collection.put("type", "AnnotationCollection");
+      collection.put("label", "Search results for " + query);
+      collection.put("total", hits.getTotal());
+      collection.put("first", getPageIri(collectionIri, 0));
+      collection.put("last", getPageIri(collectionIri, lastPage));
+      Map<String, Object> body = new LinkedHashMap<String, Object>();
+      body.put("@context", CONTEXT);
+      body.put("id", getPageIri(collectionIri, pageNr));
+      body.put("type", "AnnotationPage");
+      body.put("partOf", collection);
+      body.put("startIndex", pageNr * size);
+      if (pageNr > 0) {
+         body.put("prev", getPageIri(collectionIri, pageNr - 1));
+      }
+      if (pageNr < lastPage) {
+         body.put("next", getPageIri(collectionIri, pageNr + 1));
+      }
+      List<Map<String, Object>> items = new ArrayList<Map<String, Object>>(hits.getHits().size());
+      for (TextIndex.Hit hit : hits.getHits()) {
+         Map<String, Object> item = new LinkedHashMap<String, Object>();
+         item.put("id", hit.getAnnotationIri());
+         item.put("type", "Annotation");
+         item.put("score", Math.round(hit.getScore() * 1000) / 1000.0);
+         item.put("highlight", hit.getHighlights());
+         items.add(item);
+      }
+      body.put("items", items);
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      responseHeaders.setContentType(CONTENT_TYPE);
+      return new ResponseEntity<>(body, responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to search the annotations
+    *
+    * @param  request
+    *                 The request the client sent
+    * @param  headers
+    *                 The headers of the request
+    * @return         A response object to sent to the client
+    */
+   @RequestMapping(method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsSearch(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.GET, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.OK);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP POST requests to rebuild the full-text index. The rebuild runs in
+    * the background, searches scan the database until it is finished.
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs, e.g. the full-text index is not enabled
+    */
+   @RequestMapping(value = INDEX_PATH, method = {RequestMethod.POST})
+   public ResponseEntity<?> postIndex(HttpServletRequest request, @RequestHeader HttpHeaders headers)
+         throws WapException {
+      logger.info("rebuild text index");
+      searchService.rebuildIndex();
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.POST, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.ACCEPTED);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to rebuild the full-text index
+    *
+    * @param  request
+    *                 The request the client sent
+    * @param  headers
+    *                 The headers of the request
+    * @return         A response object to sent to the client
+    */
+   @RequestMapping(value = INDEX_PATH, method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsIndex(HttpServletRequest request, @RequestHeader HttpHeaders headers) {
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders
+            .setAllow(new HashSet<HttpMethod>(Arrays.asList(new HttpMethod[] {HttpMethod.POST, HttpMethod.OPTIONS})));
+      return new ResponseEntity<>(responseHeaders, HttpStatus.OK);
+   }
+
+   private String getCollectionIri(String query, Integer pageSize) {
+      return wapServerConfig.getBaseUrl() + WapServerConfig.SEARCH_ENDPOINT + "?q="
+            + URLEncoder.encode(query, StandardCharsets.UTF_8)
+            + (pageSize == null ? "" : "&" + PageConstants.PAGE_SIZE_PARAMETER + "=" + pageSize);
+   }
+
+   private String getPageIri(String collectionIri, int pageNr) {
+      return collectionIri + "&page=" + pageNr;
+   }
+}
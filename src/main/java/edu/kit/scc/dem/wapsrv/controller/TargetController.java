@@ -0,0 +1,220 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalHttpParameterException;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.model.ContainerPreference;
+import edu.kit.scc.dem.wapsrv.model.FormattableObject.Type;
+import edu.kit.scc.dem.wapsrv.model.Page;
+import edu.kit.scc.dem.wapsrv.model.formats.ContentNegotiator;
+import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.model.formats.FormatRegistry;
+import edu.kit.scc.dem.wapsrv.model.formats.Formatter;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.service.TargetService;
+
+/**
+ * The WAP Controller used for requests to the annotations on a target, e.g. all annotations on an image or a canvas.
+ * The annotations are returned as pages, with the same content negotiation as the pages of containers. The target is
+ * given as parameter, with prefix=true the annotations on all targets starting with it are returned.
+ */
+@RestController
+@RequestMapping(WapServerConfig.TARGETS_ENDPOINT)
+public class TargetController extends WapController {
+   /**
+    * The parameters allowed in target requests
+    */
+   private static final Set<String> PARAMETERS = new HashSet<String>(
+         Arrays.asList("target", "prefix", "iris", "page", "cursor", PageConstants.PAGE_SIZE_PARAMETER));
+   /**
+    * The JSON-LD profile registry
+    */
+   @Autowired
+   JsonLdProfileRegistry profileRegistry;
+   /**
+    * The format registry
+    */
+   @Autowired
+   FormatRegistry formatRegistry;
+   /**
+    * The logger to use
+    */
+   private final Logger logger = LoggerFactory.getLogger(this.getClass());
+   /**
+    * The target service
+    */
+   @Autowired
+   private TargetService targetService;
+
+   @Override
+   protected boolean isValidServiceFormat(Format format) {
+      // Not write to a target page
+      return false;
+   }
+
+   /**
+    * Called by all endpoints to generate the response
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  targetIri
+    *                      The value of the target query parameter
+    * @param  prefix
+    *                      The value of the prefix query parameter
+    * @param  iris
+    *                      The value of the iris query parameter
+    * @param  pageNr
+    *                      The value of the page query parameter, ignored if a cursor is given
+    * @param  cursor
+    *                      The value of the cursor query parameter, null for numbered pages
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   private ResponseEntity<?> getHeadOptionsTargetPage(HttpServletRequest request, String targetIri, boolean prefix,
+         int iris, int pageNr, String cursor) throws WapException {
+      final String httpMethod = request.getMethod();
+      logger.info(httpMethod + " Target Page");
+      final boolean isOptionsRequest = isOptionsRequest(httpMethod);
+      if (!PARAMETERS.containsAll(request.getParameterMap().keySet())
+            || (cursor != null && request.getParameter("page") != null)) {
+         throw new IllegalHttpParameterException(ErrorMessageRegistry.TARGET_INVALID_GIVEN_PARAMETERS);
+      }
+      if (targetIri.isEmpty()) {
+         throw new IllegalHttpParameterException(ErrorMessageRegistry.TARGET_MISSING);
+      }
+      final int pageSize = getRequestedPageSize(request);
+      if ((iris != ContainerPreference.PREFER_CONTAINED_IRIS
+            && iris != ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS) || pageNr < 0
+            || (cursor != null && cursor.isEmpty())) {
+         throw new IllegalPageIriException();
+      }
+      final ContentNegotiator contentNegotiator
+            = getContentNegotiator(request.getHeader("Accept"), Type.PAGE, profileRegistry, formatRegistry);
+      final Formatter formatter = contentNegotiator.getFormatter();
+      final HttpHeaders responseHeaders = new HttpHeaders();
+      responseHeaders.setAllow(PageConstants.ALLOWED_METHODS);
+      responseHeaders.setVary(PageConstants.VARY_LIST);
+      if (isOptionsRequest) {
+         // No body ==> no ContentType header
+         return new ResponseEntity<>(responseHeaders, HttpStatus.valueOf(PageConstants.GET_PAGE_SUCCESS_CODE));
+      }
+      final Page page = cursor == null ? targetService.getPage(targetIri, prefix, iris, pageNr, pageSize)
+            : targetService.getPage(targetIri, prefix, iris, cursor, pageSize);
+      responseHeaders.set(HttpHeaders.CONTENT_TYPE, formatter.getContentType());
+      final String responseBody = formatter.format(page);
+      // As for pages, the body of HEAD requests is needed for the correct content length
+      return new ResponseEntity<>(responseBody, responseHeaders,
+            HttpStatus.valueOf(PageConstants.GET_PAGE_SUCCESS_CODE));
+   }
+
+   /**
+    * This method implements the endpoint for HTTP GET requests to the annotations on a target
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  targetIri
+    *                      The IRI of the target
+    * @param  prefix
+    *                      true for the annotations on all targets starting with the IRI
+    * @param  iris
+    *                      The value of the IRIs query parameter, embedded annotations by default
+    * @param  pageNr
+    *                      The value of the page query parameter
+    * @param  cursor
+    *                      The value of the cursor query parameter
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   @RequestMapping(method = {RequestMethod.GET})
+   public ResponseEntity<?> getTargetPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam(value = "target") String targetIri,
+         @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+         @RequestParam(value = "iris", defaultValue = "0") int iris,
+         @RequestParam(value = "page", defaultValue = "0") int pageNr,
+         @RequestParam(value = "cursor", required = false) String cursor) throws WapException {
+      return getHeadOptionsTargetPage(request, targetIri, prefix, iris, pageNr, cursor);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP HEAD requests to the annotations on a target
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  targetIri
+    *                      The IRI of the target
+    * @param  prefix
+    *                      true for the annotations on all targets starting with the IRI
+    * @param  iris
+    *                      The value of the IRIs query parameter, embedded annotations by default
+    * @param  pageNr
+    *                      The value of the page query parameter
+    * @param  cursor
+    *                      The value of the cursor query parameter
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   @RequestMapping(method = {RequestMethod.HEAD})
+   public ResponseEntity<?> headTargetPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam(value = "target") String targetIri,
+         @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+         @RequestParam(value = "iris", defaultValue = "0") int iris,
+         @RequestParam(value = "page", defaultValue = "0") int pageNr,
+         @RequestParam(value = "cursor", required = false) String cursor) throws WapException {
+      return getHeadOptionsTargetPage(request, targetIri, prefix, iris, pageNr, cursor);
+   }
+
+   /**
+    * This method implements the endpoint for HTTP OPTIONS requests to the annotations on a target
+    *
+    * @param  request
+    *                      The request the client sent
+    * @param  headers
+    *                      The headers of the request
+    * @param  targetIri
+    *                      The IRI of the target
+    * @param  prefix
+    *                      true for the annotations on all targets starting with the IRI
+    * @param  iris
+    *                      The value of the IRIs query parameter, embedded annotations by default
+    * @param  pageNr
+    *                      The value of the page query parameter
+    * @param  cursor
+    *                      The value of the cursor query parameter
+    * @return              A response object to sent to the client
+    * @throws WapException
+    *                      in case any error occurs
+    */
+   @RequestMapping(method = {RequestMethod.OPTIONS})
+   public ResponseEntity<?> optionsTargetPage(HttpServletRequest request, @RequestHeader HttpHeaders headers,
+         @RequestParam(value = "target") String targetIri,
+         @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+         @RequestParam(value = "iris", defaultValue = "0") int iris,
+         @RequestParam(value = "page", defaultValue = "0") int pageNr,
+         @RequestParam(value = "cursor", required = false) String cursor) throws WapException {
+      return getHeadOptionsTargetPage(request, targetIri, prefix, iris, pageNr, cursor);
+   }
+}
@@ -1,8 +1,10 @@
 package edu.kit.scc.dem.wapsrv.controller;
 
+import javax.servlet.http.HttpServletRequest;
 import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.exceptions.FormatException;
 import edu.kit.scc.dem.wapsrv.exceptions.FormatNotAvailableException;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
 import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
 import edu.kit.scc.dem.wapsrv.model.FormattableObject.Type;
 import edu.kit.scc.dem.wapsrv.model.formats.ContentNegotiator;
@@ -112,4 +114,30 @@ public abstract class WapController extends BasicController {
          return new ContentNegotiator(null, type, profileRegistry, formatRegistry);
       }
    }
+
+   /**
+    * Gets the number of annotations per page a client asked for with the pageSize parameter. The service reduces it
+    * to the max. page size configured in {@link WapServerConfig}.
+    * 
+    * @param  request
+    *                 The request
+    * @return         The requested page size, 0 if the parameter is not given
+    * @throws IllegalPageIriException
+    *                 if the parameter is not a positive number
+    */
+   protected int getRequestedPageSize(HttpServletRequest request) {
+      final String pageSize = request.getParameter(PageConstants.PAGE_SIZE_PARAMETER);
+      if (pageSize == null) {
+         return 0;
+      }
+      try {
+         final int size = Integer.parseInt(pageSize);
+         if (size < 1) {
+            throw new IllegalPageIriException();
+         }
+         return size;
+      } catch (NumberFormatException ex) {
+         throw new IllegalPageIriException(ex);
+      }
+   }
 }
@@ -23,6 +23,10 @@ import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
  * Container : \@RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, method = RequestMethod.GET)<br>
  * Page : \@RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris","page"}, method =
  * RequestMethod.GET)<br>
+ * Page by cursor : \@RequestMapping(value = WapPathMatcher.CONTAINER_AND_PAGE_PATTERN, params = {"iris","cursor"},
+ * method = RequestMethod.GET)<br>
+ * The optional pageSize parameter does not take part in this decision, it is accepted by containers and pages alike
+ * and read by the controllers.
  * 
  * @author  Matthias Dressel
  * @author  Michael Hitzker
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.scc.dem.wapsrv.dao;
+
+import java.util.List;
+
+/**
+ * DAO fragment for sequence information which cannot be expressed by Spring
+ * Data query methods. It is implemented by ISequenceBatchDaoImpl and available
+ * via ISequenceDao.
+ */
+public interface ISequenceBatchDao{
+
+  /**
+   * Append sequence resources for all provided annotations to one sequence
+   * identified by sequenceIri. The sequence resources are written using JDBC
+   * batch inserts in the order of the provided list.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   * @param annotationIris The IRIs of the annotations.
+   *
+   * @return The number of written sequence resources.
+   */
+  int appendAll(String sequenceIri, List<String> annotationIris);
+
+}
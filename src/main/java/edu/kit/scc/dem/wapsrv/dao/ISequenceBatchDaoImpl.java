@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.scc.dem.wapsrv.dao;
+
+import edu.kit.scc.dem.wapsrv.model.ext.SequenceResource;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implementation of ISequenceBatchDao. Spring Data picks it up by its name and
+ * uses it for the methods of ISequenceDao declared in ISequenceBatchDao.<br>
+ * The batch inserts are executed with plain JDBC, as Hibernate does not batch
+ * inserts of entities with ids generated by the database.
+ */
+public class ISequenceBatchDaoImpl implements ISequenceBatchDao{
+
+  /**
+   * The number of inserts sent to the database in one batch
+   */
+  private static final int BATCH_SIZE = 1000;
+  private static final String INSERT = "insert into " + SequenceResource.TABLE_NAME
+          + " (sequence_iri, annotation_iri) values (?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /**
+   * Creates the DAO for the provided data source.
+   *
+   * @param dataSource The data source holding the sequence information.
+   */
+  @Autowired
+  public ISequenceBatchDaoImpl(DataSource dataSource){
+    jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+  @Override
+  @Transactional
+  public int appendAll(String sequenceIri, List<String> annotationIris){
+    if(annotationIris.isEmpty()){
+      return 0;
+    }
+    jdbcTemplate.batchUpdate(INSERT, annotationIris, BATCH_SIZE, (ps, annotationIri) -> {
+      ps.setString(1, sequenceIri);
+      ps.setString(2, annotationIri);
+    });
+    return annotationIris.size();
+  }
+}
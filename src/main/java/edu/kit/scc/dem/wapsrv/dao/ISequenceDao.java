@@ -21,6 +21,9 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * DAO interface used by Spring Data in order to provide database access to
@@ -28,9 +31,17 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * by the default JpaRepository, some findBy methods are provided in order to
  * access sequence resources more directly.
  *
+ * The members of a sequence are ordered by their id. Large sequences should be
+ * read using the keyset methods, which continue after the id of the last member
+ * read instead of skipping all members before the requested ones, and modified
+ * using the bulk deletes and batch inserts instead of loading the members
+ * first. Their queries order by sequence IRI and id, which is the order of
+ * the index on both, so that databases read the rows in index order instead of
+ * sorting them.
+ *
  * @author jejkal
  */
-public interface ISequenceDao extends JpaRepository<SequenceResource, Long>{
+public interface ISequenceDao extends JpaRepository<SequenceResource, Long>, ISequenceBatchDao{
 
   /**
    * Find all sequence resources belonging to one sequence identified by
@@ -55,6 +66,16 @@ public interface ISequenceDao extends JpaRepository<SequenceResource, Long>{
    */
   Page<SequenceResource> findBySequenceIriEquals(String sequenceIri, Pageable pgbl);
 
+  /**
+   * Count the sequence resources belonging to one sequence identified by
+   * sequenceIri without loading them.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   *
+   * @return The number of sequence resources.
+   */
+  long countBySequenceIriEquals(String sequenceIri);
+
   /**
    * Find a single sequence information associated with the provided
    * annotationIri.
@@ -65,4 +86,71 @@ public interface ISequenceDao extends JpaRepository<SequenceResource, Long>{
    */
   Optional<SequenceResource> findByAnnotationIriEquals(String annotationIri);
 
+  /**
+   * Find the sequence resources belonging to one sequence identified by
+   * sequenceIri that follow the sequence resource with the provided id (keyset
+   * pagination). Only the size of the provided Pageable object is relevant, its
+   * page number should be 0.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   * @param id The id of the last sequence resource already read, 0 to start with
+   * the first one.
+   * @param pgbl The pageable object defining the max. number of elements.
+   *
+   * @return The sequence resources following the provided id, ordered by id.
+   */
+  @Query("select s from SequenceResource s where s.sequenceIri = ?1 and s.id > ?2 order by s.sequenceIri, s.id")
+  List<SequenceResource> findNextBySequenceIri(String sequenceIri, Long id, Pageable pgbl);
+
+  /**
+   * Find the ids of the sequence resources belonging to one sequence identified
+   * by sequenceIri within the range defined by the provided Pageable object.
+   * Only the ids are read, which is answered by the index of the table.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   * @param pgbl The pageable object defining the range.
+   *
+   * @return The ids, ordered.
+   */
+  @Query("select s.id from SequenceResource s where s.sequenceIri = ?1 order by s.sequenceIri, s.id")
+  List<Long> findIdsBySequenceIri(String sequenceIri, Pageable pgbl);
+
+  /**
+   * Find the annotation IRIs of all sequence resources belonging to one sequence
+   * identified by sequenceIri without loading the sequence resources.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   *
+   * @return The annotation IRIs, ordered by id.
+   */
+  @Query("select s.annotationIri from SequenceResource s where s.sequenceIri = ?1 order by s.sequenceIri, s.id")
+  List<String> findAnnotationIrisBySequenceIri(String sequenceIri);
+
+  /**
+   * Delete all sequence resources belonging to one sequence identified by
+   * sequenceIri with a single statement.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   *
+   * @return The number of deleted sequence resources.
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from SequenceResource s where s.sequenceIri = ?1")
+  int deleteAllBySequenceIri(String sequenceIri);
+
+  /**
+   * Delete the sequence resources of one annotation from one sequence
+   * identified by sequenceIri with a single statement.
+   *
+   * @param sequenceIri The IRI of the sequence.
+   * @param annotationIri The IRI of the annotation.
+   *
+   * @return The number of deleted sequence resources.
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from SequenceResource s where s.sequenceIri = ?1 and s.annotationIri = ?2")
+  int deleteBySequenceIriAndAnnotationIri(String sequenceIri, String annotationIri);
+
 }
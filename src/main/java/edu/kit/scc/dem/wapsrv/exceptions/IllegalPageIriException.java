@@ -15,7 +15,8 @@ public class IllegalPageIriException extends WapException {
     * The common error message
     */
    public static final String ERROR_MESSAGE
-         = "Page iris must be of this form : CONTAINER_IRI?iris=[0|1]&page=[int>=0], the page parameter is optional";
+         = "Page iris must be of this form : CONTAINER_IRI?iris=[0|1]&page=[int>=0]&pageSize=[int>0], the page and "
+               + "pageSize parameters are optional";
    /**
     * The serial version UID for java serialization
     */
@@ -102,9 +102,11 @@ public interface ModelFactory {
     *                                true, if the minimalContainer was requested
     * @param  preferIrisOnly
     *                                true, if only the IRIS without the body should be returned.
+    * @param  pageSize
+    *                                the number of annotations per page, used for the first and last page
     * @return                        The container created
     */
-   Container createContainer(Dataset dataset, boolean preferMinimalContainer, boolean preferIrisOnly);
+   Container createContainer(Dataset dataset, boolean preferMinimalContainer, boolean preferIrisOnly, int pageSize);
 
    /**
     * Creates a container with the given dataset as backend
@@ -124,6 +126,8 @@ public interface ModelFactory {
     *                        the IRI of the container requested
     * @param  pageNr
     *                        the pageNumber requested
+    * @param  pageSize
+    *                        the number of annotations per page
     * @param  preferIrisOnly
     *                        true, if only the IRIS without the body should be returned.
     * @param  annoTotalCount
@@ -136,7 +140,32 @@ public interface ModelFactory {
     *                        true, if the page is created for embedding it into a container.
     * @return                The page
     */
-   Page createPage(Dataset dataset, String containerIri, int pageNr, boolean preferIrisOnly, boolean isEmbedded,
+   Page createPage(Dataset dataset, String containerIri, int pageNr, int pageSize, boolean preferIrisOnly,
+         boolean isEmbedded, int annoTotalCount, String modified, String label);
+
+   /**
+    * Creates a new page addressed by a cursor instead of a page number. The position of its annotations within the
+    * container is not known, it has no previous page and a next page only if one is set.
+    * 
+    * @param  dataset
+    *                        The dataset to use as data backend
+    * @param  containerIri
+    *                        The IRI of the container
+    * @param  cursor
+    *                        The cursor of the page
+    * @param  pageSize
+    *                        The number of annotations per page
+    * @param  preferIrisOnly
+    *                        true to list only annotation IRIs, false to embed whole annotations
+    * @param  annoTotalCount
+    *                        The total count of annotations in the container
+    * @param  modified
+    *                        The modified value of the container
+    * @param  label
+    *                        The label of the container
+    * @return                The new page
+    */
+   Page createPage(Dataset dataset, String containerIri, String cursor, int pageSize, boolean preferIrisOnly,
          int annoTotalCount, String modified, String label);
 
    /**
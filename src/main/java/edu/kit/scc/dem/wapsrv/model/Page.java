@@ -24,7 +24,7 @@ public interface Page extends FormattableObject {
    /**
     * Returns the pageNr of the page
     * 
-    * @return the pageNr
+    * @return the pageNr, -1 if the page is addressed by a cursor
     */
    int getPageNr();
 
@@ -59,10 +59,19 @@ public interface Page extends FormattableObject {
    /**
     * Returns the absolute position in the container of the first annotation in this page. Numbering starts with 0.
     * 
-    * @return The index of the first annotation in this page in the underlying container
+    * @return The index of the first annotation in this page in the underlying container, -1 if the page is addressed
+    *         by a cursor
     */
    int getFirstAnnotationPosition();
 
+   /**
+    * Sets the next page to the page addressed by the given cursor, replacing the numbered one if there is any.
+    * 
+    * @param cursor
+    *               The cursor of the next page, continuing after the last annotation of this page
+    */
+   void setNextCursor(String cursor);
+
    /**
     * Adds an annotation to this page and also registers its IRI. Makes no sense in conjunction with PreferIriesOnly.
     * 
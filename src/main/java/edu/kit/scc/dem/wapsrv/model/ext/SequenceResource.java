@@ -17,24 +17,42 @@ package edu.kit.scc.dem.wapsrv.model.ext;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 /**
+ * One member of a sequence. The members of a sequence are ordered by their id.
+ * The table and column names are fixed as they are also used by the batch
+ * inserts in ISequenceBatchDaoImpl. The index on sequence IRI and id serves
+ * counting, paging and deleting the members of a sequence, the index on the
+ * annotation IRI serves removing single members.
  *
  * @author jejkal
  */
 @Entity
+@Table(name = SequenceResource.TABLE_NAME, indexes = {
+  @Index(name = "idx_sequence_resource_sequence", columnList = "sequence_iri, id"),
+  @Index(name = "idx_sequence_resource_annotation", columnList = "annotation_iri")})
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SequenceResource implements Serializable{
 
+  /**
+   * The name of the table
+   */
+  public static final String TABLE_NAME = "sequence_resource";
+
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
+  @Column(name = "sequence_iri")
   private String sequenceIri;
+  @Column(name = "annotation_iri")
   private String annotationIri;
 
   public SequenceResource(){
@@ -41,5 +41,9 @@ public enum Format {
    /**
     * NQuads
     */
-   NQUADS;
+   NQUADS,
+   /**
+    * RDF Thrift, a binary format only used for exports
+    */
+   RDF_THRIFT;
 }
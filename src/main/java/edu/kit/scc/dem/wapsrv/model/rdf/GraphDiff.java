@@ -0,0 +1,230 @@
+package edu.kit.scc.dem.wapsrv.model.rdf;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.rdf.api.BlankNode;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.apache.commons.rdf.api.Triple;
+import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
+
+/**
+ * The triples to remove from and to add to a graph to turn it into another one. Blank nodes of the two graphs never
+ * equal each other, so they are compared by their content: every blank node is identified by a digest over its
+ * triples, including the blank nodes they lead to. A blank node together with everything below it is kept if the
+ * other graph holds one with the same content at the same place, otherwise it is replaced as a whole. This keeps the
+ * diff of typical annotations, whose bodies and targets are trees of blank nodes, as small as the change. Blank nodes
+ * referenced more than once or in a cycle are not trees, for graphs with such nodes all triples are replaced.
+ */
+public final class GraphDiff {
+   private final List<Triple> removed;
+   private final List<Triple> added;
+
+   private GraphDiff(List<Triple> removed, List<Triple> added) {
+      this.removed = removed;
+      this.added = added;
+   }
+
+   /**
+    * Computes the diff turning the old graph into the new one. Both graphs are only read.
+    *
+    * @param  oldGraph
+    *                  The graph to change
+    * @param  newGraph
+    *                  The graph to change it into
+    * @return          The diff
+    */
+   public static GraphDiff between(Graph oldGraph, Graph newGraph) {
+      Side oldSide = new Side(oldGraph);
+      Side newSide = new Side(newGraph);
+      Map<String, List<List<Triple>>> oldUnits = oldSide.units();
+      Map<String, List<List<Triple>>> newUnits = newSide.units();
+      if (oldUnits == null || newUnits == null) {
+         return new GraphDiff(oldSide.triples, newSide.triples);
+      }
+      List<Triple> removed = new ArrayList<Triple>();
+      List<Triple> added = new ArrayList<Triple>();
+      for (Map.Entry<String, List<List<Triple>>> entry : oldUnits.entrySet()) {
+         List<List<Triple>> units = entry.getValue();
+         int kept = Math.min(units.size(), newUnits.getOrDefault(entry.getKey(), Collections.emptyList()).size());
+         units.subList(kept, units.size()).forEach(removed::addAll);
+      }
+      for (Map.Entry<String, List<List<Triple>>> entry : newUnits.entrySet()) {
+         List<List<Triple>> units = entry.getValue();
+         int kept = Math.min(units.size(), oldUnits.getOrDefault(entry.getKey(), Collections.emptyList()).size());
+         units.subList(kept, units.size()).forEach(added::addAll);
+      }
+      return new GraphDiff(removed, added);
+   }
+
+   /**
+    * Gets the triples to remove from the old graph
+    *
+    * @return The removed triples
+    */
+   public List<Triple> getRemoved() {
+      return removed;
+   }
+
+   /**
+    * Gets the triples to add to the old graph
+    *
+    * @return The added triples
+    */
+   public List<Triple> getAdded() {
+      return added;
+   }
+
+   /**
+    * Checks whether the graphs are equal
+    *
+    * @return true if nothing has to be changed
+    */
+   public boolean isEmpty() {
+      return removed.isEmpty() && added.isEmpty();
+   }
+
+   /**
+    * Removes and adds the triples of the diff. Applied to the old graph it then equals the new one.
+    *
+    * @param graph
+    *              The graph to change
+    */
+   public void applyTo(Graph graph) {
+      removed.forEach(graph::remove);
+      added.forEach(graph::add);
+   }
+
+   /**
+    * One of the graphs compared, with its triples grouped by blank node
+    */
+   private static final class Side {
+      private final List<Triple> triples = new ArrayList<Triple>();
+      private final Map<BlankNode, List<Triple>> blankNodeTriples = new HashMap<BlankNode, List<Triple>>();
+      private final Map<BlankNode, Integer> references = new HashMap<BlankNode, Integer>();
+      private final Map<BlankNode, String> digests = new HashMap<BlankNode, String>();
+      private final Set<BlankNode> inProgress = new HashSet<BlankNode>();
+
+      private Side(Graph graph) {
+         graph.iterate().forEach(triple -> {
+            triples.add(triple);
+            if (triple.getSubject() instanceof BlankNode) {
+               blankNodeTriples.computeIfAbsent((BlankNode) triple.getSubject(), b -> new ArrayList<Triple>())
+                     .add(triple);
+            }
+            if (triple.getObject() instanceof BlankNode) {
+               references.merge((BlankNode) triple.getObject(), 1, Integer::sum);
+            }
+         });
+      }
+
+      /**
+       * Groups the triples into the units kept or replaced as a whole, by their key. These are the triples with an
+       * IRI as subject, each with the blank nodes below it, and the blank nodes not referenced at all.
+       *
+       * @return The units by key, null if the blank nodes do not form trees
+       */
+      private Map<String, List<List<Triple>>> units() {
+         if (references.values().stream().anyMatch(count -> count > 1)) {
+            return null;
+         }
+         Map<String, List<List<Triple>>> units = new LinkedHashMap<String, List<List<Triple>>>();
+         int covered = 0;
+         for (Triple triple : triples) {
+            if (triple.getSubject() instanceof BlankNode) {
+               continue;
+            }
+            String objectKey = key(triple.getObject());
+            if (objectKey == null) {
+               return null;
+            }
+            List<Triple> unit = new ArrayList<Triple>();
+            unit.add(triple);
+            collect(triple.getObject(), unit);
+            covered += unit.size();
+            units.computeIfAbsent(triple.getSubject().ntriplesString() + " " + triple.getPredicate().ntriplesString()
+                  + " " + objectKey, k -> new ArrayList<List<Triple>>()).add(unit);
+         }
+         for (BlankNode blankNode : blankNodeTriples.keySet()) {
+            if (references.containsKey(blankNode)) {
+               continue;
+            }
+            String key = key(blankNode);
+            if (key == null) {
+               return null;
+            }
+            List<Triple> unit = new ArrayList<Triple>();
+            collect(blankNode, unit);
+            covered += unit.size();
+            units.computeIfAbsent(key, k -> new ArrayList<List<Triple>>()).add(unit);
+         }
+         // Blank nodes only referenced from each other in a cycle are not reached from any unit
+         return covered == triples.size() ? units : null;
+      }
+
+      /**
+       * Gets the key of a term, blank nodes are keyed by their content.
+       *
+       * @param  term
+       *              The term
+       * @return      The key, null if a blank node is part of a cycle
+       */
+      private String key(RDFTerm term) {
+         if (!(term instanceof BlankNode)) {
+            return term.ntriplesString();
+         }
+         BlankNode blankNode = (BlankNode) term;
+         String digest = digests.get(blankNode);
+         if (digest != null) {
+            return digest;
+         }
+         if (!inProgress.add(blankNode)) {
+            return null;
+         }
+         List<String> lines = new ArrayList<String>();
+         for (Triple triple : blankNodeTriples.getOrDefault(blankNode, Collections.emptyList())) {
+            String objectKey = key(triple.getObject());
+            if (objectKey == null) {
+               return null;
+            }
+            lines.add(triple.getPredicate().ntriplesString() + " " + objectKey);
+         }
+         Collections.sort(lines);
+         digest = "_:" + sha256(String.join("\n", lines));
+         inProgress.remove(blankNode);
+         digests.put(blankNode, digest);
+         return digest;
+      }
+
+      private void collect(RDFTerm term, List<Triple> unit) {
+         if (term instanceof BlankNode) {
+            for (Triple triple : blankNodeTriples.getOrDefault((BlankNode) term, Collections.emptyList())) {
+               unit.add(triple);
+               collect(triple.getObject(), unit);
+            }
+         }
+      }
+   }
+
+   private static String sha256(String value) {
+      try {
+         byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+         StringBuilder builder = new StringBuilder(hash.length * 2);
+         for (byte b : hash) {
+            builder.append(String.format("%02x", b));
+         }
+         return builder.toString();
+      } catch (NoSuchAlgorithmException e) {
+         throw new InternalServerException("SHA-256 not available: " + e.getMessage());
+      }
+   }
+}
@@ -1,8 +1,12 @@
 package edu.kit.scc.dem.wapsrv.model.rdf;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.function.Consumer;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.RDF;
 import edu.kit.scc.dem.wapsrv.exceptions.WapException;
@@ -73,6 +77,58 @@ public interface RdfBackend {
     */
    String getOutput(Dataset dataset, Format format) throws WapException;
 
+   /**
+    * Reads the quads from the given stream graph by graph. The triples of a graph are passed to the consumer as soon
+    * as the quads of the next graph begin, so the quads of one graph have to be written together, as in a dump of the
+    * database. This allows reading dumps too large to be held in memory.
+    * 
+    * @param  in
+    *                      The stream to read
+    * @param  format
+    *                      The format
+    * @param  consumer
+    *                      Receives the triples of each graph in the default graph of a data set
+    * @throws WapException
+    *                      If the data cannot be parsed
+    */
+   void readGraphs(InputStream in, Format format, Consumer<Dataset> consumer) throws WapException;
+
+   /**
+    * Starts writing quads to the given stream graph by graph, the counterpart of
+    * {@link #readGraphs(InputStream, Format, Consumer)}. Each graph is written as soon as it is passed to the writer,
+    * so output too large to be held in memory can be written. Only formats that can hold named graphs and be written
+    * as a stream are supported.
+    * 
+    * @param  out
+    *                      The stream to write to, it is not closed by the writer
+    * @param  format
+    *                      The format
+    * @return              The writer, it must be finished to complete the output
+    * @throws WapException
+    *                      If the format is not supported
+    */
+   GraphWriter writeGraphs(OutputStream out, Format format) throws WapException;
+
+   /**
+    * Writes graphs to a stream, see {@link RdfBackend#writeGraphs(OutputStream, Format)}
+    */
+   interface GraphWriter {
+      /**
+       * Writes the triples in the default graph of the data set as the named graph given
+       * 
+       * @param graphName
+       *                  The name of the graph
+       * @param dataset
+       *                  The data set
+       */
+      void write(BlankNodeOrIRI graphName, Dataset dataset);
+
+      /**
+       * Completes the output and flushes it to the stream
+       */
+      void finish();
+   }
+
    /**
     * Tests whether the given format is usable by the actual RdfBackend implementation
     * 
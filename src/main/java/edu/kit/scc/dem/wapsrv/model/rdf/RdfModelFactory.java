@@ -9,6 +9,7 @@ import org.apache.commons.rdf.api.Quad;
 import org.apache.commons.rdf.api.RDF;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
 import edu.kit.scc.dem.wapsrv.model.Annotation;
 import edu.kit.scc.dem.wapsrv.model.AnnotationList;
@@ -93,15 +94,23 @@ public class RdfModelFactory implements ModelFactory {
    }
 
    @Override
-   public Page createPage(Dataset dataset, String containerIri, int pageNr, boolean preferIrisOnly, boolean isEmbedded,
+   public Page createPage(Dataset dataset, String containerIri, int pageNr, int pageSize, boolean preferIrisOnly,
+         boolean isEmbedded, int annoTotalCount, String modified, String label) {
+      return new RdfPage(dataset, containerIri, pageNr, pageSize, preferIrisOnly, isEmbedded, annoTotalCount, modified,
+            label, rdfBackend);
+   }
+
+   @Override
+   public Page createPage(Dataset dataset, String containerIri, String cursor, int pageSize, boolean preferIrisOnly,
          int annoTotalCount, String modified, String label) {
-      return new RdfPage(dataset, containerIri, pageNr, preferIrisOnly, isEmbedded, annoTotalCount, modified, label,
+      return new RdfPage(dataset, containerIri, cursor, pageSize, preferIrisOnly, annoTotalCount, modified, label,
             rdfBackend);
    }
 
    @Override
-   public Container createContainer(Dataset dataset, boolean preferMinimalContainer, boolean preferIrisOnly) {
-      return new RdfOutputContainer(dataset, preferMinimalContainer, preferIrisOnly, rdfBackend);
+   public Container createContainer(Dataset dataset, boolean preferMinimalContainer, boolean preferIrisOnly,
+         int pageSize) {
+      return new RdfOutputContainer(dataset, preferMinimalContainer, preferIrisOnly, pageSize, rdfBackend);
    }
 
    @Override
@@ -121,6 +130,6 @@ public class RdfModelFactory implements ModelFactory {
    @Override
    public Container createContainer(Dataset dataset) {
       // Default is preferMinimalContainer and irisOnly
-      return createContainer(dataset, true, true);
+      return createContainer(dataset, true, true, WapServerConfig.getInstance().getPageSize());
    }
 }
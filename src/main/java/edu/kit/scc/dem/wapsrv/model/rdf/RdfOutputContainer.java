@@ -1,14 +1,17 @@
 package edu.kit.scc.dem.wapsrv.model.rdf;
 
+import java.util.Optional;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Triple;
 import org.apache.commons.rdf.simple.Types;
-import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.model.Container;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AsVocab;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.LdpVocab;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 
 /**
  * The class is used to generate the correct output representation of the Container. It extends the Container class and
@@ -22,6 +25,11 @@ import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
  * @version 1.1
  */
 public class RdfOutputContainer extends RdfContainer {
+   /**
+    * The number of annotations per page
+    */
+   private final int pageSize;
+
    /**
     * Instantiates a new RDF output container.
     *
@@ -31,12 +39,15 @@ public class RdfOutputContainer extends RdfContainer {
     *                               true, if prefer minimal container was requested
     * @param preferIrisOnly
     *                               true, if prefer iris only was requested
+    * @param pageSize
+    *                               the number of annotations per page for the first and last page
     * @param rdfBackend
     *                               the RDF backend to be used
     */
-   public RdfOutputContainer(Dataset dataset, boolean preferMinimalContainer, boolean preferIrisOnly,
+   public RdfOutputContainer(Dataset dataset, boolean preferMinimalContainer, boolean preferIrisOnly, int pageSize,
          RdfBackend rdfBackend) {
       super(dataset, preferMinimalContainer, preferIrisOnly, rdfBackend);
+      this.pageSize = pageSize;
       if (preferIrisOnly) {
          setIri(getIriString() + "?iris=1", false);
       } else {
@@ -50,18 +61,17 @@ public class RdfOutputContainer extends RdfContainer {
     */
    @Override
    public Dataset getDataset() {
-      // Because the sequence head is also included we need to substract 1
-      long annoCount = dataset.getGraph().stream(Container.toAnnotationSeqIri(iri), null, null).count() - 1;
+      long annoCount = getMemberCount(Container.toAnnotationSeqIri(iri));
       Literal annoCountLiteral
             = rdfBackend.getRdf().createLiteral(String.valueOf(annoCount), Types.XSD_NONNEGATIVEINTEGER);
       dataset.getGraph().add(iri, AsVocab.totalItems, annoCountLiteral);
       // Don't show first and last if there are no Annotation, hence no page.
       if (annoCount != 0) {
-         int pageCount
-               = (int) (Math.floor((annoCount - 1.0f) / (WapServerConfig.getInstance().getPageSize() + 0.0f)) + 1);
-         IRI firstIri = rdfBackend.getRdf().createIRI(getIriString() + "&page=0");
+         int pageCount = (int) (Math.floor((annoCount - 1.0f) / (pageSize + 0.0f)) + 1);
+         String pageSizeParameter = RdfPage.toPageSizeParameter(pageSize);
+         IRI firstIri = rdfBackend.getRdf().createIRI(getIriString() + "&page=0" + pageSizeParameter);
          int lastPage = pageCount == 0 ? 0 : pageCount - 1;
-         IRI lastIri = rdfBackend.getRdf().createIRI(getIriString() + "&page=" + lastPage);
+         IRI lastIri = rdfBackend.getRdf().createIRI(getIriString() + "&page=" + lastPage + pageSizeParameter);
          dataset.getGraph().add(iri, AsVocab.first, firstIri);
          dataset.getGraph().add(iri, AsVocab.last, lastIri);
       }
@@ -69,7 +79,8 @@ public class RdfOutputContainer extends RdfContainer {
       if (!preferMinimalContainer) {
          // Add subcontainer in contains according to the sequence
          dataset.getGraph().stream(Container.toContainerSeqIri(iri), null, null).forEach(t -> {
-            if (!t.getObject().equals(RdfVocab.seq)) {
+            if (!t.getObject().equals(RdfVocab.seq) && !t.getPredicate().equals(WapVocab.memberCount)
+                  && !t.getPredicate().equals(WapVocab.seqEpoch)) {
                dataset.getGraph().add(iri, LdpVocab.contains, t.getObject());
             }
          });
@@ -80,4 +91,22 @@ public class RdfOutputContainer extends RdfContainer {
       dataset.getGraph().remove(Container.toAnnotationSeqIri(iri), null, null);
       return super.getDataset();
    }
+
+   /**
+    * Gets the number of members of a sequence. The count is maintained in the sequence itself, only sequences not
+    * changed since then have to be counted.
+    * 
+    * @param  seqIri
+    *                the IRI of the sequence
+    * @return        the number of members
+    */
+   private long getMemberCount(BlankNodeOrIRI seqIri) {
+      Optional<? extends Triple> counter = dataset.getGraph().stream(seqIri, WapVocab.memberCount, null).findFirst();
+      if (counter.isPresent()) {
+         return Long.parseLong(((Literal) counter.get().getObject()).getLexicalForm());
+      }
+      // The sequence head is not a member
+      return dataset.getGraph().stream(seqIri, null, null).filter(t -> !t.getPredicate().equals(RdfVocab.type))
+            .count();
+   }
 }
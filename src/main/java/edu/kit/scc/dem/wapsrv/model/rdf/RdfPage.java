@@ -45,6 +45,10 @@ public class RdfPage implements Page {
    private String containerIri;
    private boolean preferIrisOnly;
    private AsCollection asCollection;
+   /**
+    * The IRI of the next page if addressed by a cursor
+    */
+   private String nextCursorPage;
 
    /**
     * Creates a new RdfPage object using the given parameters
@@ -55,6 +59,8 @@ public class RdfPage implements Page {
     *                           .
     * @param pageNr
     *                           The page number
+    * @param pageSize
+    *                           The number of annotations per page
     * @param preferIrisOnly
     *                           true to list only annotation IRIs, false to embed whole annotations
     * @param isEmbedded
@@ -68,25 +74,76 @@ public class RdfPage implements Page {
     * @param rdfBackend
     *                           The RDF backend
     */
-   public RdfPage(Dataset dataset, String containerIriString, int pageNr, boolean preferIrisOnly, boolean isEmbedded,
-         int annoTotalCount, String modified, String label, RdfBackend rdfBackend) {
+   public RdfPage(Dataset dataset, String containerIriString, int pageNr, int pageSize, boolean preferIrisOnly,
+         boolean isEmbedded, int annoTotalCount, String modified, String label, RdfBackend rdfBackend) {
       this.dataset = dataset;
       this.rdfBackend = rdfBackend;
       this.pageNr = pageNr;
       this.itemTotalCount = annoTotalCount;
       this.containerIri = containerIriString;
       this.preferIrisOnly = preferIrisOnly;
-      this.itemsPerPage = WapServerConfig.getInstance().getPageSize();
+      this.itemsPerPage = pageSize;
       iriPreferOnly = getIriPreferOnly();
       iriFull = getIriforPage(pageNr);
       // IRI containerIri = rdfBackend.getRdf().createIRI(containerIriString);
       // Put basic information
+      addBasicInformation(isEmbedded, modified, label);
+      // Set startIndex
+      dataset.getGraph().add(iriFull, AsVocab.startIndex, rdfBackend.getRdf()
+            .createLiteral(String.valueOf(getFirstAnnotationPosition()), Types.XSD_NONNEGATIVEINTEGER));
+      // Put next/prev pages
+      if (hasNextPage()) {
+         dataset.getGraph().add(iriFull, AsVocab.next, getIriforPage(pageNr + 1));
+      }
+      if (hasPreviousPage()) {
+         dataset.getGraph().add(iriFull, AsVocab.prev, getIriforPage(pageNr - 1));
+      }
+   }
+
+   /**
+    * Creates a new RdfPage object addressed by a cursor using the given parameters. The position of its annotations
+    * is not known, therefore the page has no start index and no previous page.
+    * 
+    * @param dataset
+    *                           The data set used as data backend
+    * @param containerIriString
+    *                           The IRI of the container
+    * @param cursor
+    *                           The cursor of the page
+    * @param pageSize
+    *                           The number of annotations per page
+    * @param preferIrisOnly
+    *                           true to list only annotation IRIs, false to embed whole annotations
+    * @param annoTotalCount
+    *                           The total count of annotations in this container
+    * @param modified
+    *                           The modified value of the underlying container
+    * @param label
+    *                           The label of the underlying container
+    * @param rdfBackend
+    *                           The RDF backend
+    */
+   public RdfPage(Dataset dataset, String containerIriString, String cursor, int pageSize, boolean preferIrisOnly,
+         int annoTotalCount, String modified, String label, RdfBackend rdfBackend) {
+      this.dataset = dataset;
+      this.rdfBackend = rdfBackend;
+      this.pageNr = -1;
+      this.itemTotalCount = annoTotalCount;
+      this.containerIri = containerIriString;
+      this.preferIrisOnly = preferIrisOnly;
+      this.itemsPerPage = pageSize;
+      iriPreferOnly = getIriPreferOnly();
+      iriFull = getIriforCursor(cursor);
+      addBasicInformation(false, modified, label);
+   }
+
+   private void addBasicInformation(boolean isEmbedded, String modified, String label) {
       dataset.getGraph().add(iriFull, RdfVocab.type, AsVocab.orderedCollectionPage);
       if (!isEmbedded) {
          // --- part of content start
          dataset.getGraph().add(iriFull, AsVocab.partOf, iriPreferOnly);
          dataset.getGraph().add(iriPreferOnly, AsVocab.totalItems,
-               rdfBackend.getRdf().createLiteral(String.valueOf(annoTotalCount), Types.XSD_NONNEGATIVEINTEGER));
+               rdfBackend.getRdf().createLiteral(String.valueOf(itemTotalCount), Types.XSD_NONNEGATIVEINTEGER));
          dataset.getGraph().add(iriPreferOnly, DcTermsVocab.modified,
                rdfBackend.getRdf().createLiteral(String.valueOf(modified), Types.XSD_DATETIME));
          dataset.getGraph().add(iriPreferOnly, AsVocab.first, getIriforPage(0));
@@ -96,29 +153,38 @@ public class RdfPage implements Page {
          // --- part of content end
       }
       asCollection = new AsCollection(dataset.getGraph(), iriFull);
-      // Set startIndex
-      dataset.getGraph().add(iriFull, AsVocab.startIndex, rdfBackend.getRdf()
-            .createLiteral(String.valueOf(getFirstAnnotationPosition()), Types.XSD_NONNEGATIVEINTEGER));
-      // Put next/prev pages
-      if (hasNextPage()) {
-         dataset.getGraph().add(iriFull, AsVocab.next, getIriforPage(pageNr + 1));
-      }
-      if (hasPreviousPage()) {
-         dataset.getGraph().add(iriFull, AsVocab.prev, getIriforPage(pageNr - 1));
-      }
    }
 
    private IRI getIriPreferOnly() {
-      return rdfBackend.getRdf().createIRI(containerIri + "?iris=" + (preferIrisOnly ? 1 : 0));
+      // Collections of query results have parameters already
+      final String separator = containerIri.indexOf('?') < 0 ? "?" : "&";
+      return rdfBackend.getRdf().createIRI(containerIri + separator + "iris=" + (preferIrisOnly ? 1 : 0));
    }
 
    private IRI getIriforPage(int pageNr) {
-      return rdfBackend.getRdf().createIRI(getIriPreferOnly().getIRIString() + "&page=" + pageNr);
+      return rdfBackend.getRdf()
+            .createIRI(getIriPreferOnly().getIRIString() + "&page=" + pageNr + toPageSizeParameter(itemsPerPage));
+   }
+
+   private IRI getIriforCursor(String cursor) {
+      return rdfBackend.getRdf()
+            .createIRI(getIriPreferOnly().getIRIString() + "&cursor=" + cursor + toPageSizeParameter(itemsPerPage));
+   }
+
+   /**
+    * Gets the page size parameter for page IRIs. The configured page size is the default and not stated.
+    * 
+    * @param  pageSize
+    *                  The number of annotations per page
+    * @return          The parameter to append to page IRIs, empty for the default page size
+    */
+   static String toPageSizeParameter(int pageSize) {
+      return pageSize == WapServerConfig.getInstance().getPageSize() ? "" : "&pageSize=" + pageSize;
    }
 
    @Override
    public String getIri() {
-      return iriPreferOnly.getIRIString() + "&page=" + pageNr;
+      return iriFull.getIRIString();
    }
 
    @Override
@@ -144,10 +210,13 @@ public class RdfPage implements Page {
 
    @Override
    public String getNextPage() {
+      if (nextCursorPage != null) {
+         return nextCursorPage;
+      }
       if (!hasNextPage()) {
          return null;
       } else {
-         return iriPreferOnly.getIRIString() + "&page=" + (pageNr + 1);
+         return getIriforPage(pageNr + 1).getIRIString();
       }
    }
 
@@ -156,18 +225,29 @@ public class RdfPage implements Page {
       if (!hasPreviousPage()) {
          return null;
       } else {
-         return iriPreferOnly.getIRIString() + "&page=" + (pageNr - 1);
+         return getIriforPage(pageNr - 1).getIRIString();
       }
    }
 
    @Override
    public int getFirstAnnotationPosition() {
+      if (pageNr < 0) {
+         return -1;
+      }
       // This value has to be delivered as part of the page metadata.
       return pageNr * itemsPerPage;
       // Attention, the sequence count from 1, but this counts up from 0 as usual
       // which means external view: annotation 20 (counted from 0) means annotation 21 in the sequence.
    }
 
+   @Override
+   public void setNextCursor(String cursor) {
+      IRI nextIri = getIriforCursor(cursor);
+      dataset.getGraph().remove(iriFull, AsVocab.next, null);
+      dataset.getGraph().add(iriFull, AsVocab.next, nextIri);
+      nextCursorPage = nextIri.getIRIString();
+   }
+
    @Override
    public void addAnnotation(Annotation anno) {
       if (preferIrisOnly) {
@@ -202,6 +282,10 @@ public class RdfPage implements Page {
    }
 
    private boolean hasNextPage() {
+      if (pageNr < 0) {
+         // Only known by the one reading the annotations of the page
+         return false;
+      }
       // 2 pages (0 and 1) ==> 1 no next (1<2-1==false), 0 has next (0<2-1==true)
       return pageNr < getPageCount() - 1;
    }
@@ -50,6 +50,11 @@ public abstract class RdfWapObject implements WapObject {
    public RdfWapObject(Dataset dataset, RdfBackend rdfBackend) {
       this.dataset = dataset;
       this.rdfBackend = rdfBackend;
+      if (dataset instanceof WapObjectView) {
+         // Read view of the database, the ETag is already hidden there
+         etag = ((WapObjectView) dataset).getEtag();
+         return;
+      }
       // Extract ETag and remove from data set.
       Optional<? extends Triple> etagTriple = dataset.getGraph().stream(iri, WapVocab.etag, null).findFirst();
       if (etagTriple.isPresent()) {
@@ -0,0 +1,260 @@
+package edu.kit.scc.dem.wapsrv.model.rdf;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.apache.commons.rdf.api.Triple;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Read view of a WapObject stored in the database. The triples are read directly from the named graph of the
+ * WapObject, nothing is copied. The ETag stored along with the WapObject is hidden from the view and available via
+ * {@link #getEtag()} instead.<br>
+ * The view is only valid as long as the transaction it has been created in. The first modification copies the visible
+ * triples into a new in-memory data set, all further operations work on this copy and the database stays untouched.
+ */
+public final class WapObjectView implements Dataset {
+   /**
+    * The named graph of the WapObject in the database
+    */
+   private final Graph source;
+   /**
+    * The RDF implementation used to create the copy
+    */
+   private final RDF rdf;
+   /**
+    * The default graph of the view
+    */
+   private final Graph graph = new ViewGraph();
+   /**
+    * The ETag of the WapObject, null if none is stored
+    */
+   private final String etag;
+   /**
+    * The copy created by the first modification, null as long as unmodified
+    */
+   private Dataset copy;
+
+   /**
+    * Creates a new view of the given named graph
+    *
+    * @param source
+    *               The named graph of the WapObject
+    * @param rdf
+    *               The RDF implementation used to create the copy on modification
+    */
+   public WapObjectView(Graph source, RDF rdf) {
+      this.source = source;
+      this.rdf = rdf;
+      Optional<? extends Triple> etagTriple = source.stream(null, WapVocab.etag, null).findFirst();
+      if (etagTriple.isPresent()) {
+         etag = RdfUtilities.nStringToString(etagTriple.get().getObject().ntriplesString());
+      } else {
+         etag = null;
+      }
+   }
+
+   /**
+    * Gets the ETag stored with the WapObject.
+    *
+    * @return The ETag, null if none is stored
+    */
+   public String getEtag() {
+      return etag;
+   }
+
+   /**
+    * Checks whether the view has been modified and therefore works on a copy.
+    *
+    * @return true if the view has been copied
+    */
+   public boolean isCopied() {
+      return copy != null;
+   }
+
+   private Stream<? extends Triple> visible(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+      if (WapVocab.etag.equals(predicate)) {
+         return Stream.empty();
+      }
+      return source.stream(subject, predicate, object).filter(t -> !WapVocab.etag.equals(t.getPredicate()));
+   }
+
+   private Dataset copy() {
+      if (copy == null) {
+         Dataset newCopy = rdf.createDataset();
+         Graph copyGraph = newCopy.getGraph();
+         visible(null, null, null).forEach(copyGraph::add);
+         copy = newCopy;
+      }
+      return copy;
+   }
+
+   private Quad toQuad(Triple triple) {
+      return rdf.createQuad(null, triple.getSubject(), triple.getPredicate(), triple.getObject());
+   }
+
+   @Override
+   public void add(Quad quad) {
+      copy().add(quad);
+   }
+
+   @Override
+   public void add(BlankNodeOrIRI graphName, BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+      copy().add(graphName, subject, predicate, object);
+   }
+
+   @Override
+   public boolean contains(Quad quad) {
+      if (copy != null) {
+         return copy.contains(quad);
+      }
+      return contains(quad.getGraphName(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+   }
+
+   @Override
+   public boolean contains(Optional<BlankNodeOrIRI> graphName, BlankNodeOrIRI subject, IRI predicate,
+         RDFTerm object) {
+      if (copy != null) {
+         return copy.contains(graphName, subject, predicate, object);
+      }
+      // The view has only the default graph
+      if (graphName != null && graphName.isPresent()) {
+         return false;
+      }
+      return graph.contains(subject, predicate, object);
+   }
+
+   @Override
+   public Graph getGraph() {
+      return graph;
+   }
+
+   @Override
+   public Optional<Graph> getGraph(BlankNodeOrIRI graphName) {
+      if (copy != null) {
+         return copy.getGraph(graphName);
+      }
+      return Optional.empty();
+   }
+
+   @Override
+   public Stream<BlankNodeOrIRI> getGraphNames() {
+      if (copy != null) {
+         return copy.getGraphNames();
+      }
+      return Stream.empty();
+   }
+
+   @Override
+   public void remove(Quad quad) {
+      copy().remove(quad);
+   }
+
+   @Override
+   public void remove(Optional<BlankNodeOrIRI> graphName, BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+      copy().remove(graphName, subject, predicate, object);
+   }
+
+   @Override
+   public void clear() {
+      copy().clear();
+   }
+
+   @Override
+   public long size() {
+      if (copy != null) {
+         return copy.size();
+      }
+      return graph.size();
+   }
+
+   @Override
+   public Stream<? extends Quad> stream() {
+      if (copy != null) {
+         return copy.stream();
+      }
+      return visible(null, null, null).map(this::toQuad);
+   }
+
+   @Override
+   public Stream<? extends Quad> stream(Optional<BlankNodeOrIRI> graphName, BlankNodeOrIRI subject, IRI predicate,
+         RDFTerm object) {
+      if (copy != null) {
+         return copy.stream(graphName, subject, predicate, object);
+      }
+      if (graphName != null && graphName.isPresent()) {
+         return Stream.empty();
+      }
+      return visible(subject, predicate, object).map(this::toQuad);
+   }
+
+   /**
+    * The default graph of the view, reading the named graph until the view is copied
+    */
+   private class ViewGraph implements Graph {
+      @Override
+      public void add(Triple triple) {
+         copy().getGraph().add(triple);
+      }
+
+      @Override
+      public void add(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+         copy().getGraph().add(subject, predicate, object);
+      }
+
+      @Override
+      public boolean contains(Triple triple) {
+         return contains(triple.getSubject(), triple.getPredicate(), triple.getObject());
+      }
+
+      @Override
+      public boolean contains(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+         if (copy != null) {
+            return copy.getGraph().contains(subject, predicate, object);
+         }
+         return visible(subject, predicate, object).findAny().isPresent();
+      }
+
+      @Override
+      public void remove(Triple triple) {
+         copy().getGraph().remove(triple);
+      }
+
+      @Override
+      public void remove(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+         copy().getGraph().remove(subject, predicate, object);
+      }
+
+      @Override
+      public void clear() {
+         copy().getGraph().clear();
+      }
+
+      @Override
+      public long size() {
+         if (copy != null) {
+            return copy.getGraph().size();
+         }
+         return visible(null, null, null).count();
+      }
+
+      @Override
+      public Stream<? extends Triple> stream() {
+         return stream(null, null, null);
+      }
+
+      @Override
+      public Stream<? extends Triple> stream(BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+         if (copy != null) {
+            return copy.getGraph().stream(subject, predicate, object);
+         }
+         return visible(subject, predicate, object);
+      }
+   }
+}
@@ -0,0 +1,29 @@
+package edu.kit.scc.dem.wapsrv.model.rdf.vocabulary;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+/**
+ * This class provides the vocabulary for FOAF (http://xmlns.com/foaf/0.1/) this class currently only
+ * implements the needed "name" and "nick"
+ */
+public class FoafVocab {
+   /**
+    * name
+    */
+   public static IRI name = buildIri("name");
+   /**
+    * nick
+    */
+   public static IRI nick = buildIri("nick");
+   private static RDF rdf;
+   private static final String ROOT = "http://xmlns.com/foaf/0.1/";
+
+   private static IRI buildIri(String property) {
+      if (rdf == null) {
+         rdf = new SimpleRDF();
+      }
+      return rdf.createIRI(ROOT + property);
+   }
+}
@@ -19,10 +19,48 @@ public class WapVocab {
     * deleted - marks an item as deleted in the database
     */
    public static IRI deleted = buildIri("deleted");
+   /**
+    * purged - the value of the deleted tombstone of an item whose data has been purged by the database maintenance
+    */
+   public static IRI purged = buildIri("purged");
    /**
     * etag - under this the etag of an object is stored in the database
     */
    public static IRI etag = buildIri("etag");
+   /**
+    * memberCount - the number of members of a container sequence, maintained with every change of the sequence
+    */
+   public static IRI memberCount = buildIri("memberCount");
+   /**
+    * seqEpoch - the number of times the members of a container sequence have been renumbered, slots are only
+    * comparable within one epoch
+    */
+   public static IRI seqEpoch = buildIri("seqEpoch");
+   /**
+    * deletionPending - marks a deleted container whose annotations are still deleted in the background, the value is
+    * the id of the deletion
+    */
+   public static IRI deletionPending = buildIri("deletionPending");
+   /**
+    * journal - the graph and subject the state of the mutation journal is stored with in the database
+    */
+   public static IRI journal = buildIri("journal");
+   /**
+    * journalSequence - the sequence number of the last mutation journal entry committed with the database
+    */
+   public static IRI journalSequence = buildIri("journalSequence");
+   /**
+    * shardLayout - the graph and subject the layout of the shards is stored with in the first shard
+    */
+   public static IRI shardLayout = buildIri("shardLayout");
+   /**
+    * shardCount - the number of shards the containers are distributed to
+    */
+   public static IRI shardCount = buildIri("shardCount");
+   /**
+    * shardPrefixes - the prefixes of the container names assigned to shards, sorted list of prefix=shard
+    */
+   public static IRI shardPrefixes = buildIri("shardPrefixes");
    private static RDF rdf;
    private static final String ROOT = "http://dem.scc.kit.edu/wapserv/ns#";
 
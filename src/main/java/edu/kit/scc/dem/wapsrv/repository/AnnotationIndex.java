@@ -0,0 +1,50 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.util.Collection;
+import org.apache.commons.rdf.api.Dataset;
+
+/**
+ * Base of the derived indexes over the content of the annotations, like the
+ * {@link TargetIndex} and the {@link TextIndex}. The changes of a write
+ * transaction are read from the WapObjects recorded as its mutations in the
+ * {@link TransactionContext}, within the transaction, and applied after the
+ * commit.
+ *
+ * @param <S> The type of the state of the index
+ * @param <C> The type of the changes of one transaction
+ */
+public abstract class AnnotationIndex<S, C> extends DerivedIndex<S, C>{
+  /**
+   * Creates a new index, which is not available until it has been built.
+   *
+   * @param name The name of the index used in log messages
+   * @param threadName The name of the thread rebuilding the index
+   */
+  protected AnnotationIndex(String name, String threadName){
+    super(name, threadName);
+  }
+
+  /**
+   * Reads the changes of the WapObjects written in a transaction, within the
+   * transaction. Deleted ones and those which are no annotations have to be
+   * removed from the index.
+   *
+   * @param ds The dataset of the transaction
+   * @param mutations The mutations of the transaction
+   * @return The changes
+   */
+  protected abstract C readChanges(Dataset ds, Collection<MutationJournal.Entry> mutations);
+
+  /**
+   * Reads the changes of a transaction and returns them ready to be applied
+   * after the commit.
+   *
+   * @param ds The dataset of the transaction
+   * @param mutations The mutations of the transaction
+   * @return Applies the changes when run
+   */
+  Runnable read(Dataset ds, Collection<MutationJournal.Entry> mutations){
+    C changes = readChanges(ds, mutations);
+    return () -> apply(changes);
+  }
+}
@@ -1,6 +1,8 @@
 package edu.kit.scc.dem.wapsrv.repository;
 
+import java.util.Iterator;
 import org.apache.jena.query.Dataset;
+import edu.kit.scc.dem.wapsrv.model.WapObject;
 
 /**
  * The annotation repository is the interface to the storage database. It is used by the annotation service for all
@@ -21,4 +23,15 @@ public interface AnnotationRepository extends WapObjectRepository {
     * @return The dataset
     */
    Dataset getDataBase();
+
+   /**
+    * Writes the WapObjects with the bulk loader of the database. Each of them is stored along with its ETag. This is
+    * much faster than writing them in transactions, but the loader needs exclusive access to the database. It must
+    * therefore only be used while no other transactions are running, e.g. for offline imports.
+    * 
+    * @param  wapObjects
+    *                    The WapObjects to write, all with an ETag set
+    * @return            The number of WapObjects written
+    */
+   long bulkWriteObjectsToDatabase(Iterator<? extends WapObject> wapObjects);
 }
@@ -1,6 +1,8 @@
 package edu.kit.scc.dem.wapsrv.repository;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface to interact with the container repository
@@ -29,6 +31,37 @@ public interface ContainerRepository extends WapObjectRepository {
    List<String> getRangeOfObjectIrisFromSeq(String modelIri, String seqIri, int firstAnnotationIndex,
          int lastAnnotationIndex);
 
+   /**
+    * Gets the object iris of rdf:seq following the given member (keyset pagination). Contrary to
+    * {@link #getRangeOfObjectIrisFromSeq(String, String, int, int)} the members before are not skipped one by one,
+    * the range continues directly after the given member. Members removed or added before it meanwhile do not shift
+    * the range. The positions returned are only meant to be passed in again, they need not be consecutive.<br>
+    * <br>
+    * This default implementation uses the index within the seq as position.
+    *
+    * @param  modelIri
+    *                       the graph/model iri
+    * @param  seqIri
+    *                       the sequence iri
+    * @param  afterPosition
+    *                       the position of the member read last, 0 to start with the first member
+    * @param  afterIri
+    *                       the iri of the member read last, null to start with the first member
+    * @param  count
+    *                       the max. number of object iris
+    * @return               the object iris by position, in the order of rdf:seq
+    */
+   default Map<Long, String> getObjectIrisFromSeqAfter(String modelIri, String seqIri, long afterPosition,
+         String afterIri, int count) {
+      Map<Long, String> members = new LinkedHashMap<Long, String>();
+      long position = afterIri == null ? 0 : afterPosition;
+      for (String objIri : getRangeOfObjectIrisFromSeq(modelIri, seqIri, (int) position + 1,
+            (int) position + count)) {
+         members.put(++position, objIri);
+      }
+      return members;
+   }
+
    /**
     * Gets the all object iris of rdf:seq.
     *
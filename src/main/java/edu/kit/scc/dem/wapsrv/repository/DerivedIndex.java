@@ -0,0 +1,254 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base of the in-memory indexes derived from the database, like the
+ * {@link ResourceStatusIndex}. The state of the index is read from the
+ * database and then kept up to date with the changes of the committed write
+ * transactions of the repository. Writes not done by the repository have to
+ * {@link #invalidate()} the index, it is rebuilt in the background and
+ * unavailable meanwhile. Those seen only after their commit
+ * {@link #invalidateOnDemand() invalidate it on demand}, so it is rebuilt once
+ * with the next lookup instead of once per commit.
+ *
+ * @param <S> The type of the state of the index
+ * @param <C> The type of the changes of one transaction
+ */
+public abstract class DerivedIndex<S, C>{
+  private final Logger log = LoggerFactory.getLogger(DerivedIndex.class);
+  /**
+   * The name of the index used in log messages
+   */
+  private final String name;
+  /**
+   * Guards the state, lookups share it, changes and rebuilds hold it exclusively
+   */
+  protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /**
+   * Rebuilds the index in the background
+   */
+  private final ExecutorService rebuilder;
+  /**
+   * The current state, null while not available
+   */
+  private S state;
+  /**
+   * The changes applied since the running rebuild has started, null if none is
+   * running
+   */
+  private List<C> changesWhileRebuilding;
+  /**
+   * Counts the invalidations, a rebuild started before the last one is outdated
+   */
+  private long invalidations = 0;
+  /**
+   * Set while a rebuild is waiting to be started
+   */
+  private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+  /**
+   * Set while the index waits for the next lookup to be rebuilt
+   */
+  private final AtomicBoolean rebuildOnDemand = new AtomicBoolean();
+  private final AtomicLong rebuilds = new AtomicLong();
+
+  /**
+   * Creates a new index, which is not available until it has been built.
+   *
+   * @param name The name of the index used in log messages, e.g. resource
+   *          status index
+   * @param threadName The name of the thread rebuilding the index
+   */
+  protected DerivedIndex(String name, String threadName){
+    this.name = name;
+    rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, threadName);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Reads the state of the index from the database.
+   *
+   * @return The new state
+   */
+  protected abstract S read();
+
+  /**
+   * Applies the changes of a committed write transaction to a state. Called
+   * with the write lock held.
+   *
+   * @param state The state to change
+   * @param changes The changes
+   */
+  protected abstract void apply(S state, C changes);
+
+  /**
+   * Gets the current state. Has to be called with the lock held. Starts the
+   * rebuild of an index invalidated on demand.
+   *
+   * @return The state, null while the index is not available
+   */
+  protected S getState(){
+    if(state == null && rebuildOnDemand.compareAndSet(true, false)){
+      queueRebuild();
+    }
+    return state;
+  }
+
+  /**
+   * Builds the index from the database and makes it available.
+   */
+  public void build(){
+    rebuild();
+  }
+
+  /**
+   * Applies the changes of a committed write transaction.
+   *
+   * @param changes The changes
+   */
+  void apply(C changes){
+    lock.writeLock().lock();
+    try{
+      if(changesWhileRebuilding != null){
+        changesWhileRebuilding.add(changes);
+      }
+      if(state != null){
+        apply(state, changes);
+      }
+    } finally{
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Makes the index unavailable until {@link #invalidate()} has been called and
+   * the rebuild has finished. Used as soon as the database is changed by
+   * others.
+   */
+  public void suspend(){
+    lock.writeLock().lock();
+    try{
+      state = null;
+      invalidations++;
+    } finally{
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Makes the index unavailable and rebuilds it in the background. Used after
+   * the database has been changed by others.
+   */
+  public void invalidate(){
+    suspend();
+    queueRebuild();
+  }
+
+  /**
+   * Makes the index unavailable and rebuilds it with the next lookup. Used after
+   * the database has been changed by others, a series of such changes is
+   * followed by a single rebuild.
+   */
+  public void invalidateOnDemand(){
+    suspend();
+    rebuildOnDemand.set(true);
+  }
+
+  /**
+   * Queues a rebuild in the background, unless one is waiting already.
+   */
+  private void queueRebuild(){
+    // The rebuild waiting already reads all changes up to now
+    if(rebuildQueued.compareAndSet(false, true)){
+      rebuilder.execute(() -> {
+        rebuildQueued.set(false);
+        try{
+          rebuild();
+        } catch(RuntimeException e){
+          log.error("Rebuilding the " + name + " failed : " + e.getMessage(), e);
+        }
+      });
+    }
+  }
+
+  /**
+   * Stops the background rebuilds.
+   */
+  public void close(){
+    rebuilder.shutdownNow();
+  }
+
+  /**
+   * Reads the state from the database and installs it, unless the index has
+   * been invalidated meanwhile.
+   */
+  private void rebuild(){
+    long startInvalidations;
+    lock.writeLock().lock();
+    try{
+      startInvalidations = invalidations;
+      changesWhileRebuilding = new ArrayList<C>();
+    } finally{
+      lock.writeLock().unlock();
+    }
+    S newState;
+    try{
+      newState = read();
+    } catch(RuntimeException e){
+      lock.writeLock().lock();
+      try{
+        changesWhileRebuilding = null;
+      } finally{
+        lock.writeLock().unlock();
+      }
+      throw e;
+    }
+    lock.writeLock().lock();
+    try{
+      // Changes committed after the read began, the others are applied again
+      changesWhileRebuilding.forEach(changes -> apply(newState, changes));
+      changesWhileRebuilding = null;
+      if(invalidations == startInvalidations){
+        state = newState;
+        rebuilds.incrementAndGet();
+      }
+    } finally{
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Checks whether the index is available, it is not while being rebuilt.
+   *
+   * @return True, if lookups are answered
+   */
+  public boolean isAvailable(){
+    lock.readLock().lock();
+    try{
+      return getState() != null;
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of rebuilds of the index, including the first build.
+   *
+   * @return The number of rebuilds
+   */
+  public long getRebuilds(){
+    return rebuilds.get();
+  }
+}
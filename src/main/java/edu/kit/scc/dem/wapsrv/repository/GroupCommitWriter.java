@@ -0,0 +1,202 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfTransactionExecuter;
+
+/**
+ * Writes transactions of many requests with a single commit. The calling threads
+ * put their write transactions into a queue and wait. A single writer thread
+ * takes up to the maximum batch size of them, waiting at most the linger time
+ * for further ones to arrive, and executes them in one write transaction of the
+ * repository. The callers return after this transaction has been committed.<br>
+ * If one of the transactions of a batch fails, the batch is aborted, the failing
+ * caller gets its exception and the others are executed again without it.
+ */
+public class GroupCommitWriter{
+  /**
+   * The time in ms the writer thread waits for new transactions before checking
+   * for termination
+   */
+  private static final long POLL_INTERVAL = 100;
+  private final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+  /**
+   * The repository to write to
+   */
+  private final TransactionRepository repository;
+  /**
+   * The maximum number of transactions committed together
+   */
+  private final int maxBatchSize;
+  /**
+   * The maximum time in ms to wait for further transactions of a batch
+   */
+  private final long maxLingerMillis;
+  /**
+   * The transactions waiting to be written
+   */
+  private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<PendingWrite>();
+  /**
+   * The writer thread
+   */
+  private final Thread writer;
+  /**
+   * Set if the writer should terminate after writing the remaining transactions
+   */
+  private volatile boolean terminate = false;
+
+  /**
+   * Creates a new group commit writer and starts its writer thread.
+   *
+   * @param repository The repository to write to
+   * @param maxBatchSize The maximum number of transactions committed together
+   * @param maxLingerMillis The maximum time in ms to wait for further
+   *          transactions of a batch
+   */
+  public GroupCommitWriter(TransactionRepository repository, int maxBatchSize, long maxLingerMillis){
+    this.repository = repository;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.maxLingerMillis = Math.max(0, maxLingerMillis);
+    writer = new Thread("group-commit-writer"){
+      public void run(){
+        writeLoop();
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+    log.info("Group commit enabled with batch size {} and linger time {} ms.", this.maxBatchSize,
+            this.maxLingerMillis);
+  }
+
+  /**
+   * Executes the write transaction within the next batch and waits until this
+   * batch has been committed. If the calling thread is already within a
+   * transaction or the writer has been closed, the transaction is executed
+   * directly.
+   *
+   * @param transaction The write transaction
+   */
+  public void write(RdfTransactionExecuter transaction){
+    if(terminate || TransactionContext.current() != null){
+      repository.writeRdfTransaction(transaction);
+      return;
+    }
+    PendingWrite pendingWrite = new PendingWrite(transaction);
+    queue.add(pendingWrite);
+    if(terminate && queue.remove(pendingWrite)){
+      // Closed in the meantime, the writer may already be gone
+      repository.writeRdfTransaction(transaction);
+      return;
+    }
+    try{
+      pendingWrite.result.get();
+    } catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InternalServerException("Interrupted while waiting for the commit of the write");
+    } catch(ExecutionException e){
+      Throwable cause = e.getCause();
+      if(cause instanceof RuntimeException){
+        throw (RuntimeException) cause;
+      }
+      if(cause instanceof Error){
+        throw (Error) cause;
+      }
+      throw new InternalServerException("Writing failed : " + cause.getMessage());
+    }
+  }
+
+  /**
+   * Stops the writer thread. Transactions already queued are still written,
+   * later ones are executed directly by the calling thread.
+   */
+  public void close(){
+    terminate = true;
+    try{
+      writer.join();
+    } catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeLoop(){
+    while(!terminate || !queue.isEmpty()){
+      List<PendingWrite> batch = new ArrayList<PendingWrite>(maxBatchSize);
+      try{
+        PendingWrite first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if(first == null){
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        while(batch.size() < maxBatchSize){
+          long remaining = deadline - System.nanoTime();
+          PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if(next == null){
+            break;
+          }
+          batch.add(next);
+        }
+      } catch(InterruptedException e){
+        // Only used to wake up the writer, termination is checked in the loop
+      }
+      try{
+        commitBatch(batch);
+      } catch(Throwable t){
+        // Never leave a caller waiting forever
+        for(PendingWrite pendingWrite : batch){
+          pendingWrite.result.completeExceptionally(t);
+        }
+      }
+    }
+  }
+
+  private void commitBatch(List<PendingWrite> batch){
+    List<PendingWrite> remaining = new ArrayList<PendingWrite>(batch);
+    while(!remaining.isEmpty()){
+      PendingWrite[] current = new PendingWrite[1];
+      try{
+        repository.writeRdfTransaction(ds -> {
+          for(PendingWrite pendingWrite : remaining){
+            current[0] = pendingWrite;
+            pendingWrite.transaction.execute(ds);
+          }
+          current[0] = null;
+        });
+      } catch(RuntimeException e){
+        if(current[0] == null){
+          // The commit itself failed, this affects all of them
+          throw e;
+        }
+        // Sort out the failing one, the others are written again in a new transaction
+        current[0].result.completeExceptionally(e);
+        remaining.remove(current[0]);
+        continue;
+      }
+      log.debug("Committed {} writes in one transaction.", remaining.size());
+      for(PendingWrite pendingWrite : remaining){
+        pendingWrite.result.complete(null);
+      }
+      remaining.clear();
+    }
+  }
+
+  /**
+   * A write transaction waiting in the queue
+   */
+  private static class PendingWrite{
+    private final RdfTransactionExecuter transaction;
+    private final CompletableFuture<Void> result = new CompletableFuture<Void>();
+
+    PendingWrite(RdfTransactionExecuter transaction){
+      this.transaction = transaction;
+    }
+  }
+}
@@ -0,0 +1,965 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
+
+/**
+ * Durable, append-only journal of the creations, updates and deletions of
+ * WapObjects. Every entry gets a sequence number, consumers read the journal
+ * from the sequence number they have processed last.<br>
+ * The mutations of a write transaction are collected in its
+ * {@link TransactionContext} and written ahead of the commit with a single write
+ * and sync, see {@link #prepare(TransactionContext)}. The repository stores the
+ * sequence number of the last entry in the same transaction. The journal is not
+ * locked during the commit, transactions committing in parallel write their
+ * entries one after the other. Readers see the entries in the order of their
+ * sequence numbers, up to the first one whose transaction has neither been
+ * committed nor aborted yet. The entries of an aborted transaction are cut off,
+ * or voided if others have been written after them. Entries left over from a
+ * transaction not committed before a crash are removed by
+ * {@link #recover(long, Predicate)} when the journal is opened again, so the
+ * journal never lacks a committed mutation and never holds one that has not
+ * been committed.<br>
+ * The journal is stored in segment files named by the sequence number of their
+ * first entry. Every record consists of its length, the entry and a CRC32 of the
+ * entry, a torn record at the end of the last segment is cut off when the
+ * journal is opened. A new segment is started when the active one reaches the
+ * segment size, segments last written before the retention period are deleted
+ * then.<br>
+ * All repositories working on the same folder share one journal, see
+ * {@link #open(Path, long, long)}. The statistics of the journal are registered
+ * as MXBean {@value #OBJECT_NAME}.
+ */
+public class MutationJournal implements MutationJournalMXBean{
+  /**
+   * The name the statistics are registered with
+   */
+  public static final String OBJECT_NAME = "edu.kit.scc.dem.wapsrv:type=MutationJournal";
+  /**
+   * The name of the folder within the database folder the journal is stored in
+   */
+  public static final String FOLDER = "journal";
+  /**
+   * The extension of the segment files
+   */
+  private static final String SEGMENT_EXTENSION = ".journal";
+  /**
+   * The header of every segment, "WAPJ" followed by the format version
+   */
+  private static final int MAGIC = 0x5741504A;
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 8;
+  /**
+   * Set in the type of a record whose transaction has not been committed
+   */
+  private static final int VOIDED = 0x80;
+  /**
+   * The offset of the type within the encoded entry, after its sequence number
+   * and timestamp
+   */
+  private static final int TYPE_OFFSET = 16;
+  /**
+   * Records longer than this are considered corrupt
+   */
+  private static final int MAX_RECORD_BYTES = 1 << 20;
+  /**
+   * The minimal distance in bytes between the seek points of a segment
+   */
+  private static final int SEEK_POINT_BYTES = 16 * 1024;
+  /**
+   * The journals opened by folder
+   */
+  private static final Map<Path, MutationJournal> OPEN = new HashMap<Path, MutationJournal>();
+  private static final Logger log = LoggerFactory.getLogger(MutationJournal.class);
+  private final Path folder;
+  private final long segmentBytes;
+  private final long retentionMillis;
+  /**
+   * The segment files by the sequence number of their first entry
+   */
+  private final TreeMap<Long, Path> segments = new TreeMap<Long, Path>();
+  /**
+   * The positions of some records of every segment by their sequence number, so
+   * reads start at the closest one before their first entry. They are
+   * remembered while writing and, for the segments written before the journal
+   * has been opened, while reading.
+   */
+  private final Map<Long, NavigableMap<Long, Long>> seekPoints = new HashMap<Long, NavigableMap<Long, Long>>();
+  /**
+   * The segment appended to, null once closed
+   */
+  private FileChannel active;
+  private long activeStart;
+  /**
+   * The size of the active segment up to the last record readers may see, they
+   * do not read beyond
+   */
+  private volatile long activeSize;
+  private volatile long nextSequence;
+  /**
+   * The size of the active segment and the next sequence number after all
+   * records written, including those of transactions not committed yet
+   */
+  private long writtenSize;
+  private long writtenSequence;
+  /**
+   * The entries written ahead of transactions not yet visible to readers, by
+   * the sequence number of their first entry
+   */
+  private final TreeMap<Long, Prepared> pending = new TreeMap<Long, Prepared>();
+  /**
+   * The entries written ahead by the transaction of the current thread
+   */
+  private final ThreadLocal<Prepared> prepared = new ThreadLocal<Prepared>();
+  /**
+   * The number of repositories using this journal
+   */
+  private int users = 0;
+  private final AtomicLong appendedEntries = new AtomicLong();
+  private final AtomicLong failedEntries = new AtomicLong();
+  /**
+   * Whether the statistics could be registered
+   */
+  private boolean registered = false;
+
+  /**
+   * The type of a mutation
+   */
+  public enum Type{
+    /**
+     * The WapObject has been created
+     */
+    Create,
+    /**
+     * The WapObject has been changed, including a new ETag only
+     */
+    Update,
+    /**
+     * The WapObject has been deleted
+     */
+    Delete
+  }
+
+  /**
+   * The entries written ahead by a transaction
+   */
+  private static final class Prepared{
+    private final FileChannel channel;
+    private final long position;
+    private final long size;
+    private final long firstSequence;
+    private final long nextSequence;
+    private final int entries;
+    /**
+     * True, once the transaction has been committed or its entries voided
+     */
+    private boolean resolved;
+
+    private Prepared(FileChannel channel, long position, long size, long firstSequence, long nextSequence,
+            int entries){
+      this.channel = channel;
+      this.position = position;
+      this.size = size;
+      this.firstSequence = firstSequence;
+      this.nextSequence = nextSequence;
+      this.entries = entries;
+    }
+  }
+
+  /**
+   * An entry of the journal
+   */
+  public static final class Entry{
+    private final long sequence;
+    private final long timestamp;
+    private final Type type;
+    private final String iri;
+    private final String etag;
+    /**
+     * The position of the record in its segment and the position after it, -1
+     * if not read from a segment
+     */
+    private long position = -1;
+    private long end = -1;
+    /**
+     * True, if the transaction of the entry has not been committed
+     */
+    private boolean voided;
+
+    /**
+     * Creates a mutation not yet appended to the journal.
+     *
+     * @param type The type of the mutation
+     * @param iri The IRI of the WapObject
+     * @param etag The new ETag, null if deleted
+     */
+    public Entry(Type type, String iri, String etag){
+      this(0, 0, type, iri, etag);
+    }
+
+    private Entry(long sequence, long timestamp, Type type, String iri, String etag){
+      this.sequence = sequence;
+      this.timestamp = timestamp;
+      this.type = type;
+      this.iri = iri;
+      this.etag = etag;
+    }
+
+    /**
+     * Gets the sequence number of the entry.
+     *
+     * @return The sequence number, 0 if not appended yet
+     */
+    public long getSequence(){
+      return sequence;
+    }
+
+    /**
+     * Gets the time the entry has been appended.
+     *
+     * @return The time in milliseconds since the epoch
+     */
+    public long getTimestamp(){
+      return timestamp;
+    }
+
+    /**
+     * Gets the type of the mutation.
+     *
+     * @return The type
+     */
+    public Type getType(){
+      return type;
+    }
+
+    /**
+     * Gets the IRI of the WapObject.
+     *
+     * @return The IRI
+     */
+    public String getIri(){
+      return iri;
+    }
+
+    /**
+     * Gets the ETag of the WapObject after the mutation.
+     *
+     * @return The ETag, null if deleted
+     */
+    public String getEtag(){
+      return etag;
+    }
+  }
+
+  private MutationJournal(Path folder, long segmentBytes, long retentionMillis) throws IOException{
+    this.folder = folder;
+    this.segmentBytes = segmentBytes;
+    this.retentionMillis = retentionMillis;
+    Files.createDirectories(folder);
+    try(Stream<Path> files = Files.list(folder)){
+      files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_EXTENSION)).forEach(file -> {
+        String name = file.getFileName().toString();
+        try{
+          segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length())), file);
+        } catch(NumberFormatException e){
+          log.warn("Ignoring unknown file in the mutation journal : " + file);
+        }
+      });
+    }
+    if(segments.isEmpty()){
+      startSegment(1);
+    } else{
+      openActive(segments.lastKey(), entry -> true);
+    }
+    register();
+  }
+
+  /**
+   * Opens the last segment to append to it. A torn record at its end is cut
+   * off. The entries of transactions not committed are cut off as well if no
+   * committed one follows them, or else voided.
+   *
+   * @param start The sequence number the segment starts with
+   * @param committed Decides whether the transaction of an entry has been
+   *          committed
+   */
+  private void openActive(long start, Predicate<Entry> committed) throws IOException{
+    Path file = segments.get(start);
+    long[] kept = {start - 1, HEADER_BYTES};
+    List<Entry> uncommitted = new ArrayList<Entry>();
+    List<Entry> toVoid = new ArrayList<Entry>();
+    NavigableMap<Long, Long> points = new ConcurrentSkipListMap<Long, Long>();
+    long validSize = scan(file, HEADER_BYTES, Long.MAX_VALUE, entry -> {
+      addSeekPoint(points, entry);
+      if(entry.voided || !committed.test(entry)){
+        uncommitted.add(entry);
+      } else{
+        uncommitted.stream().filter(before -> !before.voided).forEach(toVoid::add);
+        uncommitted.clear();
+        kept[0] = entry.getSequence();
+        kept[1] = entry.end;
+      }
+      return true;
+    });
+    active = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if(validSize < HEADER_BYTES){
+      // Even the header is torn, the segment has been started right before a crash
+      active.truncate(0);
+      active.write(header(), 0);
+      kept[1] = HEADER_BYTES;
+    } else{
+      if(!toVoid.isEmpty()){
+        log.warn("Voiding {} mutation journal entries of transactions not committed", toVoid.size());
+        for(Entry entry : toVoid){
+          voidRecord(active, entry.position);
+        }
+      }
+      if(active.size() > kept[1]){
+        log.warn("Cutting off {} bytes of torn or uncommitted records at the end of the mutation journal",
+                active.size() - kept[1]);
+        active.truncate(kept[1]);
+      }
+    }
+    active.force(true);
+    points.tailMap(kept[0], false).clear();
+    seekPoints.put(start, points);
+    activeStart = start;
+    activeSize = kept[1];
+    writtenSize = kept[1];
+    nextSequence = kept[0] + 1;
+    writtenSequence = kept[0] + 1;
+  }
+
+  /**
+   * Opens the journal stored in the given folder. All callers opening the same
+   * folder share one journal, which is closed once all of them have closed it.
+   *
+   * @param folder The folder to store the segments in, created if needed
+   * @param segmentBytes The size in bytes a segment is rolled over at
+   * @param retentionMillis The time segments are kept after their last write, 0
+   *          to keep them forever
+   * @return The journal
+   */
+  public static MutationJournal open(Path folder, long segmentBytes, long retentionMillis){
+    Path key = folder.toAbsolutePath().normalize();
+    synchronized(OPEN){
+      MutationJournal journal = OPEN.get(key);
+      if(journal == null){
+        try{
+          journal = new MutationJournal(key, segmentBytes, retentionMillis);
+        } catch(IOException e){
+          throw new InternalServerException("Opening the mutation journal failed : " + e.getMessage());
+        }
+        OPEN.put(key, journal);
+      }
+      journal.users++;
+      return journal;
+    }
+  }
+
+  /**
+   * Closes the journal for one of its users, the files are closed once it is
+   * not used anymore.
+   */
+  public void close(){
+    synchronized(OPEN){
+      if(--users > 0){
+        return;
+      }
+      OPEN.remove(folder);
+    }
+    synchronized(this){
+      try{
+        if(active != null){
+          active.close();
+        }
+      } catch(IOException e){
+        log.warn("Closing the mutation journal failed : " + e.getMessage());
+      }
+      active = null;
+    }
+    unregister();
+  }
+
+  /**
+   * Reconciles the journal with a database that has committed its transactions
+   * one after the other, see {@link #recover(long, Predicate)}.
+   *
+   * @param lastCommitted The sequence number of the last entry committed with
+   *          the database, negative if the database has never recorded one
+   */
+  public void recover(long lastCommitted){
+    recover(lastCommitted, entry -> true);
+  }
+
+  /**
+   * Reconciles the journal with the database after it has been opened. Entries
+   * after the sequence number the database has committed last belong to
+   * transactions that have not been committed before a crash and are removed,
+   * as are those before it the predicate rejects. Only the last segment can
+   * hold such entries, as a segment is only rolled over when no transaction is
+   * pending. If the database is ahead, the journal continues after its sequence
+   * number, so numbers are never used twice.
+   *
+   * @param lastCommitted The sequence number of the last entry committed with
+   *          the database, negative if the database has never recorded one
+   * @param committed Decides whether the transaction of an entry up to the last
+   *          committed one has been committed
+   */
+  public synchronized void recover(long lastCommitted, Predicate<Entry> committed){
+    if(lastCommitted < 0 || active == null){
+      return;
+    }
+    try{
+      active.close();
+      if(writtenSequence - 1 > lastCommitted){
+        log.warn("Removing the mutation journal entries after {} of transactions not committed", lastCommitted);
+        while(segments.size() > 1 && segments.lastKey() > lastCommitted + 1){
+          seekPoints.remove(segments.lastKey());
+          Files.deleteIfExists(segments.remove(segments.lastKey()));
+        }
+      }
+      openActive(segments.lastKey(), entry -> entry.getSequence() <= lastCommitted && committed.test(entry));
+      if(nextSequence <= lastCommitted){
+        log.warn("The mutation journal ends before entry {} committed with the database, continuing after it",
+                lastCommitted);
+        nextSequence = lastCommitted + 1;
+        writtenSequence = lastCommitted + 1;
+      }
+    } catch(IOException e){
+      throw new InternalServerException("Recovering the mutation journal failed : " + e.getMessage());
+    }
+  }
+
+  /**
+   * Appends the mutations collected in the context of a transaction, unless
+   * they have been appended already.
+   *
+   * @param context The context of the transaction, may be null
+   */
+  public void append(TransactionContext context){
+    if(prepare(context) > 0){
+      publish();
+    }
+  }
+
+  /**
+   * Appends the mutations with consecutive sequence numbers.
+   *
+   * @param mutations The mutations
+   */
+  public void append(Collection<Entry> mutations){
+    if(prepare(mutations) > 0){
+      publish();
+    }
+  }
+
+  /**
+   * Writes the mutations collected in the context of a transaction ahead of its
+   * commit, unless they have been written already. See
+   * {@link #prepare(Collection)}.
+   *
+   * @param context The context of the transaction, may be null
+   * @return The sequence number of the last entry written, 0 if none
+   */
+  public long prepare(TransactionContext context){
+    Map<String, Entry> mutations = context == null ? null : context.takeMutations();
+    return mutations == null ? 0 : prepare(mutations.values());
+  }
+
+  /**
+   * Writes the mutations with consecutive sequence numbers and syncs them, but
+   * does not let readers see them yet. The journal is not locked meanwhile, the
+   * calling thread either {@link #publish() publishes} the entries after the
+   * commit of their transaction or {@link #discard() discards} them. If they
+   * cannot be written, the transaction must not be committed.
+   *
+   * @param mutations The mutations of a transaction not committed yet
+   * @return The sequence number of the last entry written, 0 if none
+   */
+  public long prepare(Collection<Entry> mutations){
+    if(mutations.isEmpty()){
+      return 0;
+    }
+    Prepared entries;
+    try{
+      synchronized(this){
+        if(active == null){
+          return 0;
+        }
+        entries = write(mutations);
+        pending.put(entries.firstSequence, entries);
+      }
+      prepared.set(entries);
+      // Outside of the lock, transactions writing ahead at the same time share the sync
+      entries.channel.force(false);
+      return entries.nextSequence - 1;
+    } catch(IOException e){
+      failedEntries.addAndGet(mutations.size());
+      discard();
+      throw new InternalServerException("Appending " + mutations.size() + " entries to the mutation journal failed : "
+              + e.getMessage());
+    }
+  }
+
+  /**
+   * Lets the readers see the entries written ahead by the calling thread, once
+   * their transaction has been committed. They become visible together with
+   * the entries written before them.
+   */
+  public void publish(){
+    Prepared entries = prepared.get();
+    if(entries == null){
+      return;
+    }
+    prepared.remove();
+    synchronized(this){
+      entries.resolved = true;
+      appendedEntries.addAndGet(entries.entries);
+      advance();
+    }
+  }
+
+  /**
+   * Removes the entries written ahead by the calling thread, as their
+   * transaction has not been committed. They are cut off if no others have
+   * been written after them, or else voided, so readers skip them.
+   */
+  public void discard(){
+    Prepared entries = prepared.get();
+    if(entries == null){
+      return;
+    }
+    prepared.remove();
+    synchronized(this){
+      try{
+        if(entries.channel == active && entries.size == writtenSize){
+          active.truncate(entries.position);
+          seekPoints.get(activeStart).tailMap(entries.firstSequence, true).clear();
+          writtenSize = entries.position;
+          writtenSequence = entries.firstSequence;
+          pending.remove(entries.firstSequence);
+        } else{
+          for(long position = entries.position; position < entries.size;){
+            position = voidRecord(entries.channel, position);
+          }
+        }
+      } catch(IOException e){
+        log.warn("Removing the entries of an aborted transaction failed, they are removed on recovery : "
+                + e.getMessage());
+      } finally{
+        entries.resolved = true;
+        advance();
+      }
+    }
+  }
+
+  /**
+   * Lets the readers see the entries up to the first ones whose transaction is
+   * still pending.
+   */
+  private void advance(){
+    while(!pending.isEmpty() && pending.firstEntry().getValue().resolved){
+      Prepared entries = pending.pollFirstEntry().getValue();
+      activeSize = entries.size;
+      nextSequence = entries.nextSequence;
+    }
+  }
+
+  /**
+   * Writes the entries after all others written so far, without syncing them.
+   *
+   * @param mutations The mutations
+   * @return The entries written
+   */
+  private synchronized Prepared write(Collection<Entry> mutations) throws IOException{
+    // The records of pending transactions may still have to be voided in the active segment
+    if(writtenSize >= segmentBytes && pending.isEmpty()){
+      rollOver();
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(mutations.size() * 128);
+    DataOutputStream out = new DataOutputStream(buffer);
+    ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+    DataOutputStream recordOut = new DataOutputStream(record);
+    CRC32 crc = new CRC32();
+    long timestamp = System.currentTimeMillis();
+    long sequence = writtenSequence;
+    NavigableMap<Long, Long> points = seekPoints.get(activeStart);
+    for(Entry mutation : mutations){
+      addSeekPoint(points, sequence, writtenSize + buffer.size());
+      record.reset();
+      recordOut.writeLong(sequence++);
+      recordOut.writeLong(timestamp);
+      recordOut.writeByte(mutation.getType().ordinal());
+      recordOut.writeUTF(mutation.getIri());
+      recordOut.writeUTF(mutation.getEtag() == null ? "" : mutation.getEtag());
+      crc.reset();
+      crc.update(record.toByteArray());
+      out.writeInt(record.size());
+      record.writeTo(out);
+      out.writeInt((int) crc.getValue());
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+    long position = writtenSize;
+    try{
+      while(bytes.hasRemaining()){
+        position += active.write(bytes, position);
+      }
+    } catch(IOException e){
+      // The sequence numbers are used again by the next write
+      points.tailMap(writtenSequence, true).clear();
+      throw e;
+    }
+    Prepared entries = new Prepared(active, writtenSize, position, writtenSequence, sequence, mutations.size());
+    writtenSize = position;
+    writtenSequence = sequence;
+    return entries;
+  }
+
+  /**
+   * Marks a record as belonging to a transaction that has not been committed.
+   *
+   * @param channel The segment
+   * @param position The position of the record
+   * @return The position after the record
+   */
+  private static long voidRecord(FileChannel channel, long position) throws IOException{
+    ByteBuffer length = ByteBuffer.allocate(4);
+    readFully(channel, length, position);
+    int size = length.getInt(0);
+    if(size <= TYPE_OFFSET || size > MAX_RECORD_BYTES){
+      throw new IOException("Invalid record at " + position);
+    }
+    ByteBuffer record = ByteBuffer.allocate(size + 4);
+    readFully(channel, record, position + 4);
+    byte[] bytes = record.array();
+    bytes[TYPE_OFFSET] |= VOIDED;
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, size);
+    record.putInt(size, (int) crc.getValue());
+    record.rewind();
+    long written = position + 4;
+    while(record.hasRemaining()){
+      written += channel.write(record, written);
+    }
+    return written;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+    while(buffer.hasRemaining()){
+      if(channel.read(buffer, position + buffer.position()) < 0){
+        throw new EOFException("Record ends after the segment");
+      }
+    }
+  }
+
+  /**
+   * Reads the entries starting at the given sequence number.
+   *
+   * @param fromSequence The sequence number of the first entry to read
+   * @param maxEntries The maximal number of entries to read
+   * @return The entries in the order of their sequence numbers, empty if none
+   *         is left or the requested ones have already been deleted
+   */
+  public List<Entry> read(long fromSequence, int maxEntries){
+    return read(fromSequence, Long.MAX_VALUE, maxEntries, entry -> true);
+  }
+
+  /**
+   * Reads the entries with sequence numbers within the given range that match
+   * the filter. Only the segments covering the range are read, starting at the
+   * seek point closest before the range, so the cost depends on the size of the
+   * range and not on the size of the journal. The first read of a segment
+   * written before the journal has been opened scans it from its start though.
+   *
+   * @param fromSequence The sequence number of the first entry to read
+   * @param toSequence The sequence number after the last entry to read
+   * @param filter Selects the entries to return
+   * @return The matching entries in the order of their sequence numbers
+   */
+  public List<Entry> read(long fromSequence, long toSequence, Predicate<Entry> filter){
+    return read(fromSequence, toSequence, Integer.MAX_VALUE, filter);
+  }
+
+  private List<Entry> read(long fromSequence, long toSequence, int maxEntries, Predicate<Entry> filter){
+    List<Map.Entry<Long, Path>> toRead;
+    Map<Long, NavigableMap<Long, Long>> points = new HashMap<Long, NavigableMap<Long, Long>>();
+    long start;
+    long size;
+    synchronized(this){
+      Long first = segments.floorKey(fromSequence);
+      toRead = new ArrayList<Map.Entry<Long, Path>>(
+              (first == null ? segments : segments.tailMap(first, true)).entrySet());
+      for(Map.Entry<Long, Path> segment : toRead){
+        points.put(segment.getKey(),
+                seekPoints.computeIfAbsent(segment.getKey(), key -> new ConcurrentSkipListMap<Long, Long>()));
+      }
+      start = activeStart;
+      size = activeSize;
+    }
+    List<Entry> entries = new ArrayList<Entry>(Math.min(maxEntries, 1024));
+    for(Map.Entry<Long, Path> segment : toRead){
+      if(entries.size() >= maxEntries || segment.getKey() >= toSequence){
+        break;
+      }
+      NavigableMap<Long, Long> segmentPoints = points.get(segment.getKey());
+      Map.Entry<Long, Long> seekPoint = segmentPoints.floorEntry(fromSequence);
+      try{
+        scan(segment.getValue(), seekPoint == null ? HEADER_BYTES : seekPoint.getValue(),
+                segment.getKey() == start ? size : Long.MAX_VALUE, entry -> {
+          addSeekPoint(segmentPoints, entry);
+          if(entry.getSequence() >= toSequence){
+            return false;
+          }
+          if(entry.getSequence() >= fromSequence && !entry.voided && filter.test(entry)){
+            entries.add(entry);
+          }
+          return entries.size() < maxEntries;
+        });
+      } catch(NoSuchFileException e){
+        // Deleted by the retention meanwhile
+      } catch(IOException e){
+        throw new InternalServerException("Reading the mutation journal failed : " + e.getMessage());
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Gets the sequence number of the oldest entry still available.
+   *
+   * @return The first sequence number, equal to the next one if the journal is
+   *         empty
+   */
+  @Override
+  public synchronized long getFirstSequence(){
+    return segments.firstKey();
+  }
+
+  /**
+   * Gets the sequence number the next entry will get.
+   *
+   * @return The next sequence number
+   */
+  @Override
+  public long getNextSequence(){
+    return nextSequence;
+  }
+
+  @Override
+  public synchronized int getSegments(){
+    return segments.size();
+  }
+
+  @Override
+  public synchronized long getSizeBytes(){
+    long size = 0;
+    for(Path segment : segments.values()){
+      try{
+        size += Files.size(segment);
+      } catch(IOException e){
+        // Deleted meanwhile
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public long getAppendedEntries(){
+    return appendedEntries.get();
+  }
+
+  @Override
+  public long getFailedEntries(){
+    return failedEntries.get();
+  }
+
+  /**
+   * Starts a new active segment and deletes the segments out of retention.
+   */
+  private void rollOver() throws IOException{
+    active.close();
+    startSegment(writtenSequence);
+    if(retentionMillis <= 0){
+      return;
+    }
+    long oldest = System.currentTimeMillis() - retentionMillis;
+    for(Long first : new ArrayList<Long>(segments.headMap(activeStart, false).keySet())){
+      Path segment = segments.get(first);
+      if(Files.getLastModifiedTime(segment).toMillis() >= oldest){
+        // Later segments have been written even later
+        break;
+      }
+      segments.remove(first);
+      seekPoints.remove(first);
+      Files.deleteIfExists(segment);
+      log.info("Deleted mutation journal segment {} out of retention", segment.getFileName());
+    }
+  }
+
+  private void startSegment(long firstSequence) throws IOException{
+    Path file = folder.resolve(String.format("%020d%s", firstSequence, SEGMENT_EXTENSION));
+    active = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    active.write(header(), 0);
+    active.force(true);
+    segments.put(firstSequence, file);
+    seekPoints.put(firstSequence, new ConcurrentSkipListMap<Long, Long>());
+    activeStart = firstSequence;
+    activeSize = HEADER_BYTES;
+    writtenSize = HEADER_BYTES;
+    nextSequence = firstSequence;
+    writtenSequence = firstSequence;
+  }
+
+  private static ByteBuffer header(){
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putInt(VERSION).flip();
+    return header;
+  }
+
+  /**
+   * Remembers the position of a record as seek point of its segment, unless the
+   * closest seek point before it is less than {@value #SEEK_POINT_BYTES} bytes
+   * away.
+   *
+   * @param points The seek points of the segment
+   * @param sequence The sequence number of the record
+   * @param position The position of the record
+   */
+  private static void addSeekPoint(NavigableMap<Long, Long> points, long sequence, long position){
+    Map.Entry<Long, Long> before = points.floorEntry(sequence);
+    if(position - (before == null ? HEADER_BYTES : before.getValue()) >= SEEK_POINT_BYTES){
+      points.putIfAbsent(sequence, position);
+    }
+  }
+
+  private static void addSeekPoint(NavigableMap<Long, Long> points, Entry entry){
+    addSeekPoint(points, entry.getSequence(), entry.position);
+  }
+
+  /**
+   * Reads the valid records of a segment.
+   *
+   * @param file The segment
+   * @param from The position of the record to start with, right after the
+   *          header for the first one
+   * @param limit The number of bytes to read at most
+   * @param consumer Gets every entry, returns false to stop reading
+   * @return The size of the valid part read, 0 if the header is invalid
+   */
+  private static long scan(Path file, long from, long limit, Predicate<Entry> consumer) throws IOException{
+    try(InputStream stream = Files.newInputStream(file);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024))){
+      if(limit < HEADER_BYTES){
+        return 0;
+      }
+      try{
+        if(in.readInt() != MAGIC || in.readInt() != VERSION){
+          log.warn("Invalid header of mutation journal segment " + file);
+          return 0;
+        }
+      } catch(EOFException e){
+        return 0;
+      }
+      long position = HEADER_BYTES;
+      while(position < from){
+        long skipped = in.skip(from - position);
+        if(skipped <= 0){
+          return position;
+        }
+        position += skipped;
+      }
+      CRC32 crc = new CRC32();
+      while(position + 8 <= limit){
+        byte[] record;
+        try{
+          int length = in.readInt();
+          if(length <= 0 || length > MAX_RECORD_BYTES || position + length + 8 > limit){
+            break;
+          }
+          record = new byte[length];
+          in.readFully(record);
+          crc.reset();
+          crc.update(record);
+          if(in.readInt() != (int) crc.getValue()){
+            break;
+          }
+        } catch(EOFException e){
+          break;
+        }
+        DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+        long sequence = recordIn.readLong();
+        long timestamp = recordIn.readLong();
+        int type = recordIn.readByte() & 0xff;
+        String iri = recordIn.readUTF();
+        String etag = recordIn.readUTF();
+        Entry entry = new Entry(sequence, timestamp, Type.values()[type & ~VOIDED], iri, etag.isEmpty() ? null : etag);
+        entry.position = position;
+        entry.end = position + record.length + 8;
+        entry.voided = (type & VOIDED) != 0;
+        if(!consumer.test(entry)){
+          break;
+        }
+        position = entry.end;
+      }
+      return position;
+    }
+  }
+
+  private void register(){
+    try{
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if(!server.isRegistered(name)){
+        server.registerMBean(this, name);
+        registered = true;
+      }
+    } catch(JMException e){
+      log.warn("Could not register the statistics of the mutation journal : " + e.getMessage());
+    }
+  }
+
+  private void unregister(){
+    if(!registered){
+      return;
+    }
+    try{
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    } catch(JMException e){
+      log.warn("Could not unregister the statistics of the mutation journal : " + e.getMessage());
+    }
+    registered = false;
+  }
+}
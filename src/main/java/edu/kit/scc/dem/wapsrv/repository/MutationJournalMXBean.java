@@ -0,0 +1,48 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+/**
+ * The statistics of the {@link MutationJournal}, exposed via JMX.
+ */
+public interface MutationJournalMXBean{
+  /**
+   * Gets the sequence number of the oldest entry still available.
+   *
+   * @return The first sequence number
+   */
+  long getFirstSequence();
+
+  /**
+   * Gets the sequence number the next entry will get.
+   *
+   * @return The next sequence number
+   */
+  long getNextSequence();
+
+  /**
+   * Gets the number of segment files.
+   *
+   * @return The number of segments
+   */
+  int getSegments();
+
+  /**
+   * Gets the size of all segment files.
+   *
+   * @return The size in bytes
+   */
+  long getSizeBytes();
+
+  /**
+   * Gets the number of entries appended since the journal has been opened.
+   *
+   * @return The number of appended entries
+   */
+  long getAppendedEntries();
+
+  /**
+   * Gets the number of entries that could not be appended.
+   *
+   * @return The number of lost entries
+   */
+  long getFailedEntries();
+}
@@ -0,0 +1,517 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * In-memory index of the status of all WapObjects, so existence and deletion
+ * checks do not have to read the database.<br>
+ * The active WapObjects are kept per parent container. Names that are UUIDs, as
+ * created for posted annotations, are stored as two longs in an open addressing
+ * hash set, all other names as strings. Deleted WapObjects are only added to a
+ * Bloom filter. A WapObject neither active nor in the filter is absent for sure,
+ * one that might be in the filter has to be checked in the database. The index
+ * is built from the ETags and the wap:deleted tombstones in the database.<br>
+ * The status changes of a write transaction are collected in its
+ * {@link TransactionContext} and applied after the commit. Writes not done by
+ * the repository, like SPARQL updates, have to {@link #invalidate()} the index,
+ * it is rebuilt in the background and the database is read meanwhile.<br>
+ * The statistics of the index are registered as MXBean {@value #OBJECT_NAME}.
+ */
+public class ResourceStatusIndex extends DerivedIndex<ResourceStatusIndex.State, Map<String, ResourceStatusIndex.Status>>
+        implements ResourceStatusIndexMXBean{
+  /**
+   * The name the statistics are registered with
+   */
+  public static final String OBJECT_NAME = "edu.kit.scc.dem.wapsrv:type=ResourceStatusIndex";
+  /**
+   * The minimal number of tombstones the Bloom filter is sized for
+   */
+  private static final int MIN_TOMBSTONE_CAPACITY = 100000;
+  private final Logger log = LoggerFactory.getLogger(ResourceStatusIndex.class);
+  /**
+   * The repository the index is built from
+   */
+  private final TransactionRepository repository;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  /**
+   * Whether the statistics could be registered
+   */
+  private boolean registered = false;
+
+  /**
+   * The status of a WapObject
+   */
+  public enum Status{
+    /**
+     * The WapObject exists
+     */
+    ACTIVE,
+    /**
+     * The WapObject has existed and has been deleted
+     */
+    DELETED,
+    /**
+     * The WapObject has never existed
+     */
+    ABSENT
+  }
+
+  /**
+   * Creates a new index, which is not available until it has been built.
+   *
+   * @param repository The repository to build the index from
+   */
+  public ResourceStatusIndex(TransactionRepository repository){
+    super("resource status index", "status-index-rebuild");
+    this.repository = repository;
+    register();
+  }
+
+  /**
+   * Builds the index from the database and makes it available.
+   */
+  @Override
+  public void build(){
+    long start = System.currentTimeMillis();
+    super.build();
+    log.info("Built resource status index of {} active objects and {} tombstones in {} ms, {} KB.",
+            getActiveEntries(), getTombstones(), System.currentTimeMillis() - start, getFootprintBytes() / 1024);
+  }
+
+  /**
+   * Gets the status of the WapObject.
+   *
+   * @param iri The IRI of the WapObject
+   * @return The status, null if it has to be read from the database
+   */
+  public Status get(String iri){
+    Status status = null;
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      if(state != null){
+        status = state.get(iri);
+      }
+    } finally{
+      lock.readLock().unlock();
+    }
+    if(status == null){
+      misses.incrementAndGet();
+    } else{
+      hits.incrementAndGet();
+    }
+    return status;
+  }
+
+  @Override
+  protected void apply(State state, Map<String, Status> changes){
+    state.apply(changes);
+  }
+
+  /**
+   * Stops the background rebuilds and unregisters the statistics.
+   */
+  @Override
+  public void close(){
+    super.close();
+    unregister();
+  }
+
+  @Override
+  protected State read(){
+    State[] newState = new State[1];
+    repository.readRdfTransaction(ds -> {
+      long tombstones;
+      try(Stream<? extends Quad> quads = ds.stream(null, null, WapVocab.deleted, null)){
+        tombstones = quads.count();
+      }
+      State readState = new State(Math.max(MIN_TOMBSTONE_CAPACITY, 2 * tombstones));
+      // Every WapObject has its ETag in its own graph, the tombstones are read last and override.
+      // The state is not thread safe, datasets may stream in parallel.
+      try(Stream<? extends Quad> quads = ds.stream(null, null, WapVocab.etag, null)){
+        quads.sequential().forEach(quad -> {
+          String iri = ownIri(quad);
+          if(iri != null){
+            readState.set(iri, Status.ACTIVE);
+          }
+        });
+      }
+      try(Stream<? extends Quad> quads = ds.stream(null, null, WapVocab.deleted, null)){
+        quads.sequential().forEach(quad -> {
+          String iri = ownIri(quad);
+          if(iri != null){
+            readState.set(iri, Status.DELETED);
+          }
+        });
+      }
+      newState[0] = readState;
+    });
+    return newState[0];
+  }
+
+  /**
+   * Gets the IRI of the WapObject the quad belongs to.
+   *
+   * @return The IRI, null if the quad is not about the graph it is in
+   */
+  private static String ownIri(Quad quad){
+    BlankNodeOrIRI graphName = quad.getGraphName().orElse(null);
+    if(!(graphName instanceof IRI) || !graphName.equals(quad.getSubject())){
+      return null;
+    }
+    return ((IRI) graphName).getIRIString();
+  }
+
+  @Override
+  public long getActiveEntries(){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? 0 : state.activeEntries;
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getTombstones(){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? 0 : state.tombstones.count;
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getFootprintBytes(){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? 0 : state.footprint();
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long getHits(){
+    return hits.get();
+  }
+
+  @Override
+  public long getMisses(){
+    return misses.get();
+  }
+
+  private void register(){
+    try{
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if(!server.isRegistered(name)){
+        server.registerMBean(this, name);
+        registered = true;
+      }
+    } catch(JMException e){
+      log.warn("Could not register the statistics of the resource status index : " + e.getMessage());
+    }
+  }
+
+  private void unregister(){
+    if(!registered){
+      return;
+    }
+    try{
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    } catch(JMException e){
+      log.warn("Could not unregister the statistics of the resource status index : " + e.getMessage());
+    }
+    registered = false;
+  }
+
+  /**
+   * The active WapObjects by parent container and the tombstone filter
+   */
+  static class State{
+    private final Map<String, Members> containers = new HashMap<String, Members>();
+    private final BloomFilter tombstones;
+    private long activeEntries = 0;
+
+    State(long tombstoneCapacity){
+      tombstones = new BloomFilter(tombstoneCapacity);
+    }
+
+    Status get(String iri){
+      int split = splitIndex(iri);
+      Members members = containers.get(iri.substring(0, split));
+      if(members != null && members.contains(iri, split)){
+        return Status.ACTIVE;
+      }
+      return tombstones.mightContain(iri) ? null : Status.ABSENT;
+    }
+
+    void apply(Map<String, Status> changes){
+      changes.forEach(this::set);
+    }
+
+    void set(String iri, Status status){
+      int split = splitIndex(iri);
+      String container = iri.substring(0, split);
+      if(status == Status.ACTIVE){
+        if(containers.computeIfAbsent(container, key -> new Members()).add(iri, split)){
+          activeEntries++;
+        }
+        return;
+      }
+      Members members = containers.get(container);
+      if(members != null && members.remove(iri, split)){
+        activeEntries--;
+      }
+      if(status == Status.DELETED){
+        tombstones.add(iri);
+      }
+    }
+
+    long footprint(){
+      long bytes = tombstones.footprint();
+      for(Map.Entry<String, Members> entry : containers.entrySet()){
+        bytes += 64 + 2L * entry.getKey().length() + entry.getValue().footprint();
+      }
+      return bytes;
+    }
+
+    /**
+     * Gets the index the name of the WapObject starts at. The name of a container
+     * includes its trailing slash.
+     */
+    private static int splitIndex(String iri){
+      int end = iri.endsWith("/") ? iri.length() - 2 : iri.length() - 1;
+      return iri.lastIndexOf('/', end) + 1;
+    }
+  }
+
+  /**
+   * The active WapObjects of one container
+   */
+  private static class Members{
+    private final UuidSet uuids = new UuidSet();
+    private Set<String> names;
+
+    boolean contains(String iri, int split){
+      UUID uuid = toUuid(iri, split);
+      if(uuid != null){
+        return uuids.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+      }
+      return names != null && names.contains(iri.substring(split));
+    }
+
+    boolean add(String iri, int split){
+      UUID uuid = toUuid(iri, split);
+      if(uuid != null){
+        return uuids.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+      }
+      if(names == null){
+        names = new HashSet<String>();
+      }
+      return names.add(iri.substring(split));
+    }
+
+    boolean remove(String iri, int split){
+      UUID uuid = toUuid(iri, split);
+      if(uuid != null){
+        return uuids.remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+      }
+      return names != null && names.remove(iri.substring(split));
+    }
+
+    long footprint(){
+      long bytes = uuids.footprint();
+      if(names != null){
+        for(String name : names){
+          // String, its bytes and the hash set entry
+          bytes += 80 + 2L * name.length();
+        }
+      }
+      return bytes;
+    }
+
+    /**
+     * Gets the name as UUID, if it is one in its canonical form.
+     */
+    private static UUID toUuid(String iri, int split){
+      if(iri.length() - split != 36 || iri.charAt(split + 8) != '-'){
+        return null;
+      }
+      String name = iri.substring(split);
+      try{
+        UUID uuid = UUID.fromString(name);
+        return uuid.toString().equals(name) ? uuid : null;
+      } catch(IllegalArgumentException e){
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Set of 128 bit UUIDs stored in two primitive arrays with linear probing
+   */
+  static class UuidSet{
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final byte REMOVED = 2;
+    private long[] high = new long[16];
+    private long[] low = new long[16];
+    private byte[] slots = new byte[16];
+    private int size = 0;
+    /**
+     * The slots used or removed
+     */
+    private int occupied = 0;
+
+    boolean contains(long mostSignificant, long leastSignificant){
+      return find(mostSignificant, leastSignificant) >= 0;
+    }
+
+    boolean add(long mostSignificant, long leastSignificant){
+      if(find(mostSignificant, leastSignificant) >= 0){
+        return false;
+      }
+      if(2 * (occupied + 1) > slots.length){
+        resize(2 * size + 2 > slots.length ? slots.length * 2 : slots.length);
+      }
+      int mask = slots.length - 1;
+      int slot = hash(mostSignificant, leastSignificant) & mask;
+      while(slots[slot] == USED){
+        slot = (slot + 1) & mask;
+      }
+      if(slots[slot] == FREE){
+        occupied++;
+      }
+      slots[slot] = USED;
+      high[slot] = mostSignificant;
+      low[slot] = leastSignificant;
+      size++;
+      return true;
+    }
+
+    boolean remove(long mostSignificant, long leastSignificant){
+      int slot = find(mostSignificant, leastSignificant);
+      if(slot < 0){
+        return false;
+      }
+      slots[slot] = REMOVED;
+      size--;
+      return true;
+    }
+
+    int size(){
+      return size;
+    }
+
+    long footprint(){
+      return 17L * slots.length + 64;
+    }
+
+    private int find(long mostSignificant, long leastSignificant){
+      int mask = slots.length - 1;
+      int slot = hash(mostSignificant, leastSignificant) & mask;
+      while(slots[slot] != FREE){
+        if(slots[slot] == USED && high[slot] == mostSignificant && low[slot] == leastSignificant){
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return -1;
+    }
+
+    private void resize(int capacity){
+      long[] oldHigh = high;
+      long[] oldLow = low;
+      byte[] oldSlots = slots;
+      high = new long[capacity];
+      low = new long[capacity];
+      slots = new byte[capacity];
+      size = 0;
+      occupied = 0;
+      for(int i = 0; i < oldSlots.length; i++){
+        if(oldSlots[i] == USED){
+          add(oldHigh[i], oldLow[i]);
+        }
+      }
+    }
+
+    private static int hash(long mostSignificant, long leastSignificant){
+      long hash = (mostSignificant ^ leastSignificant) * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32));
+    }
+  }
+
+  /**
+   * Bloom filter with a false positive rate of about 1% at its capacity
+   */
+  static class BloomFilter{
+    private static final int HASHES = 7;
+    private final long[] bits;
+    private final long bitCount;
+    private long count = 0;
+
+    BloomFilter(long capacity){
+      // About 9.6 bits per entry for 1% false positives
+      long wanted = Math.max(64, (long) (capacity * 9.6));
+      bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (wanted + 63) / 64)];
+      bitCount = 64L * bits.length;
+    }
+
+    void add(String value){
+      long hash1 = value.hashCode();
+      long hash2 = secondHash(value);
+      for(int i = 0; i < HASHES; i++){
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+      }
+      count++;
+    }
+
+    boolean mightContain(String value){
+      long hash1 = value.hashCode();
+      long hash2 = secondHash(value);
+      for(int i = 0; i < HASHES; i++){
+        long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+        if((bits[(int) (bit >>> 6)] & (1L << bit)) == 0){
+          return false;
+        }
+      }
+      return true;
+    }
+
+    long footprint(){
+      return 8L * bits.length + 32;
+    }
+
+    private static long secondHash(String value){
+      long hash = 0xcbf29ce484222325L;
+      for(int i = 0; i < value.length(); i++){
+        hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+      }
+      return hash | 1;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+/**
+ * The statistics of the {@link ResourceStatusIndex}, exposed via JMX.
+ */
+public interface ResourceStatusIndexMXBean{
+  /**
+   * Checks whether the index is built and answers lookups.
+   *
+   * @return True, if available
+   */
+  boolean isAvailable();
+
+  /**
+   * Gets the number of active WapObjects in the index.
+   *
+   * @return The number of active WapObjects
+   */
+  long getActiveEntries();
+
+  /**
+   * Gets the number of deleted WapObjects added to the tombstone filter.
+   *
+   * @return The number of tombstones
+   */
+  long getTombstones();
+
+  /**
+   * Gets the estimated memory footprint of the index.
+   *
+   * @return The footprint in bytes
+   */
+  long getFootprintBytes();
+
+  /**
+   * Gets the number of lookups answered from memory.
+   *
+   * @return The number of hits
+   */
+  long getHits();
+
+  /**
+   * Gets the number of lookups that had to read the database.
+   *
+   * @return The number of misses
+   */
+  long getMisses();
+
+  /**
+   * Gets the number of times the index has been rebuilt.
+   *
+   * @return The number of rebuilds
+   */
+  long getRebuilds();
+}
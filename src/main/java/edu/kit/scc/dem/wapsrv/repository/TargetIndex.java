@@ -0,0 +1,302 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * In-memory index from the targets of the annotations to the annotations, so
+ * the annotations on a resource, e.g. an image or a canvas, can be found
+ * without querying every named graph.<br>
+ * The targets of an annotation are the IRIs it has as oa:hasTarget and the
+ * IRIs of the oa:hasSource of its specific resources. They are kept sorted, so
+ * all targets starting with a prefix are found too. The index is built from the
+ * active annotations in the database.<br>
+ * The targets of the annotations written by a transaction are read within the
+ * transaction and applied after the commit, deleted annotations are removed.
+ * Writes not done by the repository have to {@link #invalidate()} the index,
+ * the database is queried while it is rebuilt.
+ */
+public class TargetIndex extends AnnotationIndex<TargetIndex.State, Map<String, Set<String>>>{
+  private static final SimpleRDF RDF = new SimpleRDF();
+  private final Logger log = LoggerFactory.getLogger(TargetIndex.class);
+  /**
+   * The repository the index is built from
+   */
+  private final TransactionRepository repository;
+
+  /**
+   * Creates a new index, which is not available until it has been built.
+   *
+   * @param repository The repository to build the index from
+   */
+  public TargetIndex(TransactionRepository repository){
+    super("target index", "target-index-rebuild");
+    this.repository = repository;
+  }
+
+  @Override
+  public void build(){
+    long start = System.currentTimeMillis();
+    super.build();
+    log.info("Built target index of {} annotations in {} ms.", getAnnotations(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * The annotations on a target, or on all targets starting with a prefix
+   */
+  public static final class Matches{
+    private final int total;
+    private final List<String> annotationIris;
+
+    /**
+     * Creates new matches
+     *
+     * @param total The number of all matching annotations
+     * @param annotationIris The IRIs of the requested part of them
+     */
+    public Matches(int total, List<String> annotationIris){
+      this.total = total;
+      this.annotationIris = annotationIris;
+    }
+
+    /**
+     * Gets the number of all matching annotations.
+     *
+     * @return The total count
+     */
+    public int getTotal(){
+      return total;
+    }
+
+    /**
+     * Gets the IRIs of the requested part of the matching annotations, ordered
+     * by IRI.
+     *
+     * @return The annotation IRIs
+     */
+    public List<String> getAnnotationIris(){
+      return annotationIris;
+    }
+  }
+
+  /**
+   * Finds the annotations on the target. They are ordered by their IRIs, so
+   * the next part starts after the last IRI of the previous one. Exact lookups
+   * cost the size of the part read, prefix lookups the number of matching
+   * annotations.
+   *
+   * @param targetIri The IRI of the target
+   * @param prefix True to find the annotations on all targets starting with the
+   *          IRI
+   * @param after The IRI of the annotation to continue after, null to start at
+   *          the first one
+   * @param skip The number of annotations to skip
+   * @param limit The maximal number of annotations to return
+   * @return The matches, null if the index is not available
+   */
+  public Matches find(String targetIri, boolean prefix, String after, int skip, int limit){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? null : select(state.find(targetIri, prefix), after, skip, limit);
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the annotations on the target in the database, used while the index
+   * is not available. Exact lookups use the indexes of the database, prefix
+   * lookups read all targets.
+   *
+   * @param ds The dataset of the running transaction
+   * @param targetIri The IRI of the target
+   * @param prefix True to find the annotations on all targets starting with the
+   *          IRI
+   * @param after The IRI of the annotation to continue after, null to start at
+   *          the first one
+   * @param skip The number of annotations to skip
+   * @param limit The maximal number of annotations to return
+   * @return The matches
+   */
+  public static Matches find(Dataset ds, String targetIri, boolean prefix, String after, int skip, int limit){
+    NavigableSet<String> annotations = new TreeSet<String>();
+    for(IRI predicate : new IRI[] {AnnoVocab.target, AnnoVocab.source}){
+      try(Stream<? extends Quad> quads = ds.stream(null, null, predicate, prefix ? null : RDF.createIRI(targetIri))){
+        quads.sequential().forEach(quad -> {
+          String annotation = graphIri(quad);
+          if(annotation != null && quad.getObject() instanceof IRI
+                  && ((IRI) quad.getObject()).getIRIString().startsWith(targetIri)){
+            annotations.add(annotation);
+          }
+        });
+      }
+    }
+    annotations.removeIf(annotation -> {
+      IRI node = RDF.createIRI(annotation);
+      return ds.contains(Optional.of(node), node, WapVocab.deleted, null);
+    });
+    return select(annotations, after, skip, limit);
+  }
+
+  /**
+   * Reads the targets of the annotations written in a transaction, within the
+   * transaction. Deleted annotations and other WapObjects have none.
+   *
+   * @param ds The dataset of the transaction
+   * @param mutations The mutations of the transaction
+   * @return The targets by annotation IRI
+   */
+  @Override
+  protected Map<String, Set<String>> readChanges(Dataset ds, Collection<MutationJournal.Entry> mutations){
+    Map<String, Set<String>> changes = new HashMap<String, Set<String>>();
+    for(MutationJournal.Entry mutation : mutations){
+      Set<String> targets = new HashSet<String>();
+      if(mutation.getType() != MutationJournal.Type.Delete){
+        Optional<BlankNodeOrIRI> graph = Optional.of(RDF.createIRI(mutation.getIri()));
+        for(IRI predicate : new IRI[] {AnnoVocab.target, AnnoVocab.source}){
+          try(Stream<? extends Quad> quads = ds.stream(graph, null, predicate, null)){
+            quads.sequential().forEach(quad -> addTarget(targets, quad));
+          }
+        }
+      }
+      changes.put(mutation.getIri(), targets);
+    }
+    return changes;
+  }
+
+  @Override
+  protected void apply(State state, Map<String, Set<String>> changes){
+    changes.forEach(state::set);
+  }
+
+  @Override
+  protected State read(){
+    State[] newState = new State[1];
+    repository.readRdfTransaction(ds -> {
+      Map<String, Set<String>> targets = new HashMap<String, Set<String>>();
+      // The maps are not thread safe, datasets may stream in parallel
+      for(IRI predicate : new IRI[] {AnnoVocab.target, AnnoVocab.source}){
+        try(Stream<? extends Quad> quads = ds.stream(null, null, predicate, null)){
+          quads.sequential().forEach(quad -> {
+            String annotation = graphIri(quad);
+            if(annotation != null){
+              addTarget(targets.computeIfAbsent(annotation, key -> new HashSet<String>()), quad);
+            }
+          });
+        }
+      }
+      // Deleted annotations keep their content besides the tombstone
+      try(Stream<? extends Quad> quads = ds.stream(null, null, WapVocab.deleted, null)){
+        quads.sequential().forEach(quad -> targets.remove(graphIri(quad)));
+      }
+      State readState = new State();
+      targets.forEach(readState::set);
+      newState[0] = readState;
+    });
+    return newState[0];
+  }
+
+  /**
+   * Gets the number of annotations with targets in the index.
+   *
+   * @return The number of annotations, 0 if not available
+   */
+  public long getAnnotations(){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? 0 : state.targetsByAnnotation.size();
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  private static Matches select(NavigableSet<String> annotations, String after, int skip, int limit){
+    List<String> selected = new ArrayList<String>(Math.min(limit, annotations.size()));
+    Iterator<String> iterator = (after == null ? annotations : annotations.tailSet(after, false)).iterator();
+    for(int n = 0; n < skip && iterator.hasNext(); n++){
+      iterator.next();
+    }
+    while(selected.size() < limit && iterator.hasNext()){
+      selected.add(iterator.next());
+    }
+    return new Matches(annotations.size(), selected);
+  }
+
+  private static void addTarget(Set<String> targets, Quad quad){
+    if(quad.getObject() instanceof IRI){
+      targets.add(((IRI) quad.getObject()).getIRIString());
+    }
+  }
+
+  private static String graphIri(Quad quad){
+    BlankNodeOrIRI graphName = quad.getGraphName().orElse(null);
+    return graphName instanceof IRI ? ((IRI) graphName).getIRIString() : null;
+  }
+
+  /**
+   * The annotations by target and the targets by annotation
+   */
+  static class State{
+    private final TreeMap<String, NavigableSet<String>> annotationsByTarget
+            = new TreeMap<String, NavigableSet<String>>();
+    private final Map<String, Set<String>> targetsByAnnotation = new HashMap<String, Set<String>>();
+
+    NavigableSet<String> find(String targetIri, boolean prefix){
+      if(!prefix){
+        NavigableSet<String> annotations = annotationsByTarget.get(targetIri);
+        return annotations == null ? Collections.emptyNavigableSet() : annotations;
+      }
+      NavigableSet<String> annotations = new TreeSet<String>();
+      for(Map.Entry<String, NavigableSet<String>> entry : annotationsByTarget.tailMap(targetIri, true).entrySet()){
+        if(!entry.getKey().startsWith(targetIri)){
+          break;
+        }
+        annotations.addAll(entry.getValue());
+      }
+      return annotations;
+    }
+
+    void set(String annotation, Set<String> targets){
+      Set<String> previous = targetsByAnnotation.remove(annotation);
+      if(previous != null){
+        for(String target : previous){
+          NavigableSet<String> annotations = annotationsByTarget.get(target);
+          annotations.remove(annotation);
+          if(annotations.isEmpty()){
+            annotationsByTarget.remove(target);
+          }
+        }
+      }
+      if(targets.isEmpty()){
+        return;
+      }
+      targetsByAnnotation.put(annotation, targets);
+      for(String target : targets){
+        annotationsByTarget.computeIfAbsent(target, key -> new TreeSet<String>()).add(annotation);
+      }
+    }
+  }
+}
@@ -0,0 +1,581 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.FoafVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfSchemaVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * In-memory full-text index of the annotations, so they can be searched
+ * without scanning the literals of every named graph.<br>
+ * The texts of an annotation are its body values, the values of its tags (the
+ * bodies with the purpose oa:tagging), the names of its creators and its
+ * labels. They are split into words, which are compared without case and
+ * diacritics. The texts are kept to highlight the words found.<br>
+ * The texts of the annotations written by a transaction are read within the
+ * transaction and applied after the commit, deleted annotations are removed.
+ * Writes not done by the repository have to {@link #invalidate()} the index,
+ * the database is scanned while it is rebuilt.<br>
+ * Nothing is persisted, the index is built again from the database at every
+ * start. Besides the texts themselves it needs about 100 bytes of heap for
+ * every distinct word of every annotation, which adds up to gigabytes for
+ * millions of annotations. It is therefore disabled by default.
+ */
+public class TextIndex extends AnnotationIndex<TextIndex.State, Map<String, TextIndex.Document>>{
+  /**
+   * The field of the body values
+   */
+  public static final String BODY = "body";
+  /**
+   * The field of the values of the tags
+   */
+  public static final String TAG = "tag";
+  /**
+   * The field of the names of the creators
+   */
+  public static final String CREATOR = "creator";
+  /**
+   * The field of the labels
+   */
+  public static final String LABEL = "label";
+  /**
+   * The maximal length of a highlighted fragment
+   */
+  public static final int FRAGMENT_LENGTH = 160;
+  /**
+   * The length of the text shown before the first word found
+   */
+  private static final int FRAGMENT_LEAD = 40;
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+  private static final Pattern QUERY_WORD = Pattern.compile("[\\p{L}\\p{N}]+\\*?");
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+  private static final SimpleRDF RDF = new SimpleRDF();
+  private final Logger log = LoggerFactory.getLogger(TextIndex.class);
+  /**
+   * The repository the index is built from
+   */
+  private final TransactionRepository repository;
+
+  /**
+   * Creates a new index, which is not available until it has been built.
+   *
+   * @param repository The repository to build the index from
+   */
+  public TextIndex(TransactionRepository repository){
+    super("text index", "text-index-rebuild");
+    this.repository = repository;
+  }
+
+  /**
+   * An annotation found
+   */
+  public static final class Hit{
+    private final String annotationIri;
+    private final double score;
+    private final Map<String, List<String>> highlights;
+
+    /**
+     * Creates a new hit
+     *
+     * @param annotationIri The IRI of the annotation
+     * @param score The relevance of the annotation
+     * @param highlights The highlighted fragments by field
+     */
+    public Hit(String annotationIri, double score, Map<String, List<String>> highlights){
+      this.annotationIri = annotationIri;
+      this.score = score;
+      this.highlights = highlights;
+    }
+
+    /**
+     * Gets the IRI of the annotation found.
+     *
+     * @return The annotation IRI
+     */
+    public String getAnnotationIri(){
+      return annotationIri;
+    }
+
+    /**
+     * Gets the relevance of the annotation, the sum of the weights of the words
+     * found. Words found more often in the annotation and less often in others
+     * weigh more.
+     *
+     * @return The score
+     */
+    public double getScore(){
+      return score;
+    }
+
+    /**
+     * Gets the fragments of the texts with the words found, marked with
+     * &lt;em&gt;. The rest of the text is HTML escaped.
+     *
+     * @return The fragments by field, e.g. {@value TextIndex#BODY}
+     */
+    public Map<String, List<String>> getHighlights(){
+      return highlights;
+    }
+  }
+
+  /**
+   * The annotations found by a search
+   */
+  public static final class Hits{
+    private final int total;
+    private final List<Hit> hits;
+
+    /**
+     * Creates new hits
+     *
+     * @param total The number of all annotations found
+     * @param hits The requested part of them
+     */
+    public Hits(int total, List<Hit> hits){
+      this.total = total;
+      this.hits = hits;
+    }
+
+    /**
+     * Gets the number of all annotations found.
+     *
+     * @return The total count
+     */
+    public int getTotal(){
+      return total;
+    }
+
+    /**
+     * Gets the requested part of the annotations found, the most relevant
+     * first.
+     *
+     * @return The hits
+     */
+    public List<Hit> getHits(){
+      return hits;
+    }
+  }
+
+  /**
+   * Searches the annotations containing all words of the query. Words ending
+   * with * match all words starting with them.
+   *
+   * @param query The query
+   * @param skip The number of hits to skip
+   * @param limit The maximal number of hits to return
+   * @return The hits, null if the index is not available
+   */
+  public Hits search(String query, int skip, int limit){
+    List<Term> terms = parse(query);
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? null : state.search(terms, skip, limit);
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Searches the annotations in the database, used while the index is not
+   * available. All annotations are read.
+   *
+   * @param ds The dataset of the running transaction
+   * @param query The query
+   * @param skip The number of hits to skip
+   * @param limit The maximal number of hits to return
+   * @return The hits
+   */
+  public static Hits search(Dataset ds, String query, int skip, int limit){
+    return readState(ds).search(parse(query), skip, limit);
+  }
+
+  /**
+   * Checks whether a query contains words to search for.
+   *
+   * @param query The query
+   * @return True, if the query has at least one word
+   */
+  public static boolean isSearchable(String query){
+    return query != null && !parse(query).isEmpty();
+  }
+
+  @Override
+  protected Map<String, Document> readChanges(Dataset ds, Collection<MutationJournal.Entry> mutations){
+    Map<String, Document> changes = new HashMap<String, Document>();
+    for(MutationJournal.Entry mutation : mutations){
+      changes.put(mutation.getIri(), mutation.getType() == MutationJournal.Type.Delete ? new Document()
+              : readDocument(ds, mutation.getIri()));
+    }
+    return changes;
+  }
+
+  @Override
+  protected void apply(State state, Map<String, Document> changes){
+    changes.forEach(state::set);
+  }
+
+  @Override
+  protected State read(){
+    long start = System.currentTimeMillis();
+    State[] newState = new State[1];
+    repository.readRdfTransaction(ds -> newState[0] = readState(ds));
+    log.info("Read text index of {} annotations in {} ms.", newState[0].documents.size(),
+            System.currentTimeMillis() - start);
+    return newState[0];
+  }
+
+  /**
+   * Gets the number of annotations with texts in the index.
+   *
+   * @return The number of annotations, 0 if not available
+   */
+  public long getAnnotations(){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? 0 : state.documents.size();
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  private static State readState(Dataset ds){
+    Set<String> annotations = new HashSet<String>();
+    // The sets are not thread safe, datasets may stream in parallel
+    try(Stream<? extends Quad> quads = ds.stream(null, null, RdfVocab.type, AnnoVocab.annotation)){
+      quads.sequential().forEach(quad -> {
+        String annotation = graphIri(quad);
+        if(annotation != null && quad.getSubject().equals(quad.getGraphName().get())){
+          annotations.add(annotation);
+        }
+      });
+    }
+    // Deleted annotations keep their content besides the tombstone
+    try(Stream<? extends Quad> quads = ds.stream(null, null, WapVocab.deleted, null)){
+      quads.sequential().forEach(quad -> annotations.remove(graphIri(quad)));
+    }
+    State state = new State();
+    for(String annotation : annotations){
+      state.set(annotation, readDocument(ds, annotation));
+    }
+    return state;
+  }
+
+  /**
+   * Reads the texts of an annotation.
+   *
+   * @param ds The dataset to read from
+   * @param iri The IRI of the annotation
+   * @return The texts, empty if there is no active annotation with the IRI
+   */
+  private static Document readDocument(Dataset ds, String iri){
+    Document document = new Document();
+    IRI node = RDF.createIRI(iri);
+    Optional<BlankNodeOrIRI> graph = Optional.of(node);
+    if(!ds.contains(graph, node, RdfVocab.type, AnnoVocab.annotation)
+            || ds.contains(graph, node, WapVocab.deleted, null)){
+      return document;
+    }
+    addLiterals(document, BODY, ds, graph, node, AnnoVocab.bodyValue);
+    boolean tagging = ds.contains(graph, node, AnnoVocab.motivatedBy, AnnoVocab.tagging);
+    for(RDFTerm body : objects(ds, graph, node, AnnoVocab.body)){
+      if(body instanceof Literal){
+        document.add(BODY, ((Literal) body).getLexicalForm());
+      } else{
+        boolean tag = ds.contains(graph, (BlankNodeOrIRI) body, AnnoVocab.purpose, AnnoVocab.tagging)
+                || (tagging && !ds.contains(graph, (BlankNodeOrIRI) body, AnnoVocab.purpose, null));
+        addLiterals(document, tag ? TAG : BODY, ds, graph, (BlankNodeOrIRI) body, RdfVocab.value);
+      }
+    }
+    for(RDFTerm creator : objects(ds, graph, null, DcTermsVocab.creator)){
+      if(creator instanceof Literal){
+        document.add(CREATOR, ((Literal) creator).getLexicalForm());
+      } else{
+        addLiterals(document, CREATOR, ds, graph, (BlankNodeOrIRI) creator, FoafVocab.name);
+        addLiterals(document, CREATOR, ds, graph, (BlankNodeOrIRI) creator, FoafVocab.nick);
+      }
+    }
+    addLiterals(document, LABEL, ds, graph, null, RdfSchemaVocab.label);
+    return document;
+  }
+
+  private static void addLiterals(Document document, String field, Dataset ds, Optional<BlankNodeOrIRI> graph,
+          BlankNodeOrIRI subject, IRI predicate){
+    for(RDFTerm object : objects(ds, graph, subject, predicate)){
+      if(object instanceof Literal){
+        document.add(field, ((Literal) object).getLexicalForm());
+      }
+    }
+  }
+
+  private static List<RDFTerm> objects(Dataset ds, Optional<BlankNodeOrIRI> graph, BlankNodeOrIRI subject,
+          IRI predicate){
+    List<RDFTerm> objects = new ArrayList<RDFTerm>();
+    try(Stream<? extends Quad> quads = ds.stream(graph, subject, predicate, null)){
+      quads.sequential().forEach(quad -> objects.add(quad.getObject()));
+    }
+    return objects;
+  }
+
+  private static String graphIri(Quad quad){
+    BlankNodeOrIRI graphName = quad.getGraphName().orElse(null);
+    return graphName instanceof IRI ? ((IRI) graphName).getIRIString() : null;
+  }
+
+  /**
+   * Brings a word into the form it is indexed with, lower case without
+   * diacritics.
+   *
+   * @param word The word
+   * @return The normalized word
+   */
+  static String normalize(String word){
+    return MARKS.matcher(Normalizer.normalize(word, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Splits the query into the words to search for.
+   *
+   * @param query The query
+   * @return The words, without duplicates
+   */
+  static List<Term> parse(String query){
+    Map<String, Term> terms = new LinkedHashMap<String, Term>();
+    Matcher matcher = QUERY_WORD.matcher(query);
+    while(matcher.find()){
+      String word = matcher.group();
+      boolean prefix = word.endsWith("*");
+      Term term = new Term(normalize(prefix ? word.substring(0, word.length() - 1) : word), prefix);
+      terms.putIfAbsent(term.toString(), term);
+    }
+    return new ArrayList<Term>(terms.values());
+  }
+
+  /**
+   * Highlights the words found in a text. The fragment starts shortly before
+   * the first word found and is at most {@value #FRAGMENT_LENGTH} characters
+   * long.
+   *
+   * @param text The text
+   * @param terms The words searched for
+   * @return The fragment, null if none of the words is in the text
+   */
+  static String highlight(String text, List<Term> terms){
+    List<int[]> matches = new ArrayList<int[]>();
+    Matcher matcher = WORD.matcher(text);
+    while(matcher.find()){
+      String word = normalize(matcher.group());
+      if(terms.stream().anyMatch(term -> term.matches(word))){
+        matches.add(new int[] {matcher.start(), matcher.end()});
+      }
+    }
+    if(matches.isEmpty()){
+      return null;
+    }
+    int first = matches.get(0)[0];
+    int start = Math.max(0, first - FRAGMENT_LEAD);
+    if(start > 0){
+      // Not within a word
+      int space = text.indexOf(' ', start);
+      start = space >= 0 && space < first ? space + 1 : first;
+    }
+    int end = Math.min(text.length(), Math.max(start + FRAGMENT_LENGTH, matches.get(0)[1]));
+    if(end < text.length()){
+      int space = text.lastIndexOf(' ', end);
+      end = space >= matches.get(0)[1] ? space : end;
+    }
+    StringBuilder fragment = new StringBuilder(start > 0 ? "…" : "");
+    int position = start;
+    for(int[] match : matches){
+      if(match[1] > end){
+        break;
+      }
+      fragment.append(escape(text.substring(position, match[0]))).append("<em>")
+              .append(escape(text.substring(match[0], match[1]))).append("</em>");
+      position = match[1];
+    }
+    fragment.append(escape(text.substring(position, end))).append(end < text.length() ? "…" : "");
+    return fragment.toString().replaceAll("\\s+", " ");
+  }
+
+  private static String escape(String text){
+    return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+  }
+
+  /**
+   * A word of a query
+   */
+  static final class Term{
+    private final String word;
+    private final boolean prefix;
+
+    Term(String word, boolean prefix){
+      this.word = word;
+      this.prefix = prefix;
+    }
+
+    boolean matches(String normalized){
+      return prefix ? normalized.startsWith(word) : normalized.equals(word);
+    }
+
+    @Override
+    public String toString(){
+      return prefix ? word + "*" : word;
+    }
+  }
+
+  /**
+   * The texts of an annotation by field
+   */
+  static final class Document{
+    private final Map<String, List<String>> texts = new LinkedHashMap<String, List<String>>();
+
+    void add(String field, String text){
+      texts.computeIfAbsent(field, key -> new ArrayList<String>()).add(text);
+    }
+
+    boolean isEmpty(){
+      return texts.isEmpty();
+    }
+
+    /**
+     * Counts the words of all texts, they are not kept to save memory.
+     *
+     * @return The number of occurrences by normalized word
+     */
+    Map<String, Integer> countWords(){
+      Map<String, Integer> counts = new HashMap<String, Integer>();
+      for(List<String> values : texts.values()){
+        for(String value : values){
+          Matcher matcher = WORD.matcher(value);
+          while(matcher.find()){
+            counts.merge(normalize(matcher.group()), 1, Integer::sum);
+          }
+        }
+      }
+      return counts;
+    }
+
+    Map<String, List<String>> highlight(List<Term> terms){
+      Map<String, List<String>> highlights = new LinkedHashMap<String, List<String>>();
+      texts.forEach((field, values) -> {
+        for(String value : values){
+          String fragment = TextIndex.highlight(value, terms);
+          if(fragment != null){
+            highlights.computeIfAbsent(field, key -> new ArrayList<String>()).add(fragment);
+          }
+        }
+      });
+      return highlights;
+    }
+  }
+
+  /**
+   * The texts by annotation and the annotations by word
+   */
+  static class State{
+    private final Map<String, Document> documents = new HashMap<String, Document>();
+    /**
+     * The number of occurrences in the annotations by word, sorted to find the
+     * words starting with a prefix
+     */
+    private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<String, Map<String, Integer>>();
+
+    void set(String annotation, Document document){
+      Document previous = documents.remove(annotation);
+      if(previous != null){
+        for(String word : previous.countWords().keySet()){
+          Map<String, Integer> annotations = postings.get(word);
+          annotations.remove(annotation);
+          if(annotations.isEmpty()){
+            postings.remove(word);
+          }
+        }
+      }
+      if(document.isEmpty()){
+        return;
+      }
+      documents.put(annotation, document);
+      document.countWords().forEach((word, count) -> {
+        postings.computeIfAbsent(word, key -> new HashMap<String, Integer>()).put(annotation, count);
+      });
+    }
+
+    Hits search(List<Term> terms, int skip, int limit){
+      Map<String, Double> scores = null;
+      for(Term term : terms){
+        Map<String, Integer> counts = find(term);
+        if(counts.isEmpty()){
+          return new Hits(0, Collections.emptyList());
+        }
+        // Rare words weigh more than common ones
+        double weight = Math.log(1 + (double) documents.size() / counts.size());
+        if(scores == null){
+          scores = new HashMap<String, Double>();
+          for(Map.Entry<String, Integer> entry : counts.entrySet()){
+            scores.put(entry.getKey(), Math.sqrt(entry.getValue()) * weight);
+          }
+        } else{
+          scores.keySet().retainAll(counts.keySet());
+          scores.replaceAll((annotation, score) -> score + Math.sqrt(counts.get(annotation)) * weight);
+        }
+      }
+      if(scores == null){
+        return new Hits(0, Collections.emptyList());
+      }
+      List<Map.Entry<String, Double>> ranked = new ArrayList<Map.Entry<String, Double>>(scores.entrySet());
+      ranked.sort(Map.Entry.<String, Double> comparingByValue(Comparator.reverseOrder())
+              .thenComparing(Map.Entry.comparingByKey()));
+      List<Hit> hits = new ArrayList<Hit>();
+      for(int n = skip; n < ranked.size() && hits.size() < limit; n++){
+        String annotation = ranked.get(n).getKey();
+        hits.add(new Hit(annotation, ranked.get(n).getValue(), documents.get(annotation).highlight(terms)));
+      }
+      return new Hits(ranked.size(), hits);
+    }
+
+    private Map<String, Integer> find(Term term){
+      if(!term.prefix){
+        Map<String, Integer> counts = postings.get(term.word);
+        return counts == null ? Collections.emptyMap() : counts;
+      }
+      Map<String, Integer> counts = new HashMap<String, Integer>();
+      for(Map.Entry<String, Map<String, Integer>> entry : postings.tailMap(term.word, true).entrySet()){
+        if(!entry.getKey().startsWith(term.word)){
+          break;
+        }
+        entry.getValue().forEach((annotation, count) -> counts.merge(annotation, count, Integer::sum));
+      }
+      return counts;
+    }
+  }
+}
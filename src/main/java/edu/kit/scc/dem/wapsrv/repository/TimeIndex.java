@@ -0,0 +1,531 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDFTerm;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.model.WapObject;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * In-memory index of the dcterms:created and dcterms:modified times of the
+ * annotations, so the annotations of a container created or modified within a
+ * time range can be found without reading every annotation of it.<br>
+ * The annotations of every container are kept sorted by time and IRI, once by
+ * their created and once by their modified time. Annotations without a time or
+ * with one that cannot be parsed are left out of the respective order. The
+ * index is built from the active annotations in the database.<br>
+ * The times of the annotations written by a transaction are read within the
+ * transaction and applied after the commit, deleted annotations are removed.
+ * Writes not done by the repository have to {@link #invalidate()} the index,
+ * the database is scanned while it is rebuilt.
+ */
+public class TimeIndex extends AnnotationIndex<TimeIndex.State, Map<String, TimeIndex.Times>>{
+  private static final SimpleRDF RDF = new SimpleRDF();
+  /**
+   * Orders by time, annotations with the same time by IRI
+   */
+  private static final Comparator<Stamp> ORDER
+          = Comparator.comparingLong(Stamp::getTime).thenComparing(Stamp::getAnnotationIri);
+  private final Logger log = LoggerFactory.getLogger(TimeIndex.class);
+  /**
+   * The repository the index is built from
+   */
+  private final TransactionRepository repository;
+
+  /**
+   * Creates a new index, which is not available until it has been built.
+   *
+   * @param repository The repository to build the index from
+   */
+  public TimeIndex(TransactionRepository repository){
+    super("time index", "time-index-rebuild");
+    this.repository = repository;
+  }
+
+  @Override
+  public void build(){
+    long start = System.currentTimeMillis();
+    super.build();
+    log.info("Built time index of {} annotations in {} ms.", getAnnotations(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * A range of created or modified times, both bounds are exclusive
+   */
+  public static final class Range{
+    /**
+     * The query parameter of the lower bound of the created time
+     */
+    public static final String CREATED_AFTER = "createdAfter";
+    /**
+     * The query parameter of the upper bound of the created time
+     */
+    public static final String CREATED_BEFORE = "createdBefore";
+    /**
+     * The query parameter of the lower bound of the modified time
+     */
+    public static final String MODIFIED_AFTER = "modifiedAfter";
+    /**
+     * The query parameter of the upper bound of the modified time
+     */
+    public static final String MODIFIED_BEFORE = "modifiedBefore";
+    private final boolean modified;
+    private final Long after;
+    private final Long before;
+
+    /**
+     * Creates a new range
+     *
+     * @param modified True for modified times, false for created times
+     * @param after The time in milliseconds the times have to be after, null
+     *          for no lower bound
+     * @param before The time in milliseconds the times have to be before, null
+     *          for no upper bound
+     */
+    public Range(boolean modified, Long after, Long before){
+      this.modified = modified;
+      this.after = after;
+      this.before = before;
+    }
+
+    /**
+     * Checks whether the range is about the modified times.
+     *
+     * @return true for modified times, false for created times
+     */
+    public boolean isModified(){
+      return modified;
+    }
+
+    /**
+     * Gets the lower bound.
+     *
+     * @return The time in milliseconds, null if there is none
+     */
+    public Long getAfter(){
+      return after;
+    }
+
+    /**
+     * Gets the upper bound.
+     *
+     * @return The time in milliseconds, null if there is none
+     */
+    public Long getBefore(){
+      return before;
+    }
+
+    /**
+     * Checks whether a time is within the range.
+     *
+     * @param time The time in milliseconds
+     * @return true if within
+     */
+    public boolean contains(long time){
+      return (after == null || time > after) && (before == null || time < before);
+    }
+
+    /**
+     * Gets the query parameters describing the range, with the bounds in UTC.
+     *
+     * @return The query parameters without leading ? or &amp;
+     */
+    public String toQuery(){
+      StringBuilder query = new StringBuilder();
+      if(after != null){
+        query.append(modified ? MODIFIED_AFTER : CREATED_AFTER).append('=').append(Instant.ofEpochMilli(after));
+      }
+      if(before != null){
+        query.append(query.length() == 0 ? "" : "&").append(modified ? MODIFIED_BEFORE : CREATED_BEFORE)
+                .append('=').append(Instant.ofEpochMilli(before));
+      }
+      return query.toString();
+    }
+  }
+
+  /**
+   * The time of an annotation, which is the position of a page cursor
+   */
+  public static final class Stamp{
+    private final long time;
+    private final String annotationIri;
+
+    /**
+     * Creates a new stamp
+     *
+     * @param time The time in milliseconds
+     * @param annotationIri The IRI of the annotation
+     */
+    public Stamp(long time, String annotationIri){
+      this.time = time;
+      this.annotationIri = annotationIri;
+    }
+
+    /**
+     * Gets the time.
+     *
+     * @return The time in milliseconds
+     */
+    public long getTime(){
+      return time;
+    }
+
+    /**
+     * Gets the IRI of the annotation.
+     *
+     * @return The annotation IRI
+     */
+    public String getAnnotationIri(){
+      return annotationIri;
+    }
+  }
+
+  /**
+   * The annotations of a container within a time range
+   */
+  public static final class Matches{
+    private final int total;
+    private final List<Stamp> stamps;
+
+    /**
+     * Creates new matches
+     *
+     * @param total The number of all matching annotations
+     * @param stamps The times of the requested part of them
+     */
+    public Matches(int total, List<Stamp> stamps){
+      this.total = total;
+      this.stamps = stamps;
+    }
+
+    /**
+     * Gets the number of all matching annotations.
+     *
+     * @return The total count
+     */
+    public int getTotal(){
+      return total;
+    }
+
+    /**
+     * Gets the times of the requested part of the matching annotations, ordered
+     * by time and IRI.
+     *
+     * @return The stamps
+     */
+    public List<Stamp> getStamps(){
+      return stamps;
+    }
+  }
+
+  /**
+   * The created and modified times of an annotation
+   */
+  static final class Times{
+    private final Long created;
+    private final Long modified;
+
+    Times(Long created, Long modified){
+      this.created = created;
+      this.modified = modified;
+    }
+
+    boolean isEmpty(){
+      return created == null && modified == null;
+    }
+  }
+
+  /**
+   * Parses an xsd:dateTime. Times without a time zone are taken as UTC.
+   *
+   * @param dateTime The lexical form of the time
+   * @return The time in milliseconds, null if it cannot be parsed
+   */
+  public static Long parseTime(String dateTime){
+    try{
+      return OffsetDateTime.parse(dateTime).toInstant().toEpochMilli();
+    } catch(DateTimeParseException e){
+      try{
+        return LocalDateTime.parse(dateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+      } catch(DateTimeParseException e2){
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Finds the annotations of the container within the time range. They are
+   * ordered by time and IRI, so the next part starts after the stamp of the
+   * last annotation of the previous one. Counting costs the number of matching
+   * annotations, reading a part only its size.
+   *
+   * @param containerIri The IRI of the container
+   * @param range The time range
+   * @param after The stamp to continue after, null to start at the first one
+   * @param skip The number of annotations to skip
+   * @param limit The maximal number of annotations to return
+   * @return The matches, null if the index is not available
+   */
+  public Matches find(String containerIri, Range range, Stamp after, int skip, int limit){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? null : select(state.find(containerIri, range), after, skip, limit);
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the annotations of the container within the time range in the
+   * database, used while the index is not available. All times of the database
+   * are read.
+   *
+   * @param ds The dataset of the running transaction
+   * @param containerIri The IRI of the container
+   * @param range The time range
+   * @param after The stamp to continue after, null to start at the first one
+   * @param skip The number of annotations to skip
+   * @param limit The maximal number of annotations to return
+   * @return The matches
+   */
+  public static Matches find(Dataset ds, String containerIri, Range range, Stamp after, int skip, int limit){
+    NavigableSet<Stamp> stamps = new TreeSet<Stamp>(ORDER);
+    IRI predicate = range.isModified() ? DcTermsVocab.modified : DcTermsVocab.created;
+    try(Stream<? extends Quad> quads = ds.stream(null, null, predicate, null)){
+      quads.sequential().forEach(quad -> {
+        String annotation = graphIri(quad);
+        if(annotation == null || !quad.getSubject().equals(quad.getGraphName().get())
+                || !containerIri.equals(WapObject.getParentContainerIriString(annotation))){
+          return;
+        }
+        Long time = readTime(quad.getObject());
+        if(time != null && range.contains(time)){
+          stamps.add(new Stamp(time, annotation));
+        }
+      });
+    }
+    stamps.removeIf(stamp -> {
+      IRI node = RDF.createIRI(stamp.getAnnotationIri());
+      Optional<BlankNodeOrIRI> graph = Optional.of(node);
+      return !ds.contains(graph, node, RdfVocab.type, AnnoVocab.annotation)
+              || ds.contains(graph, node, WapVocab.deleted, null);
+    });
+    return select(stamps, after, skip, limit);
+  }
+
+  /**
+   * Reads the times of the annotations written in a transaction, within the
+   * transaction. Deleted annotations and other WapObjects have none.
+   *
+   * @param ds The dataset of the transaction
+   * @param mutations The mutations of the transaction
+   * @return The times by annotation IRI
+   */
+  @Override
+  protected Map<String, Times> readChanges(Dataset ds, Collection<MutationJournal.Entry> mutations){
+    Map<String, Times> changes = new HashMap<String, Times>();
+    for(MutationJournal.Entry mutation : mutations){
+      changes.put(mutation.getIri(), mutation.getType() == MutationJournal.Type.Delete ? new Times(null, null)
+              : readTimes(ds, mutation.getIri()));
+    }
+    return changes;
+  }
+
+  @Override
+  protected void apply(State state, Map<String, Times> changes){
+    changes.forEach(state::set);
+  }
+
+  @Override
+  protected State read(){
+    State[] newState = new State[1];
+    repository.readRdfTransaction(ds -> {
+      Set<String> annotations = new HashSet<String>();
+      // The sets are not thread safe, datasets may stream in parallel
+      try(Stream<? extends Quad> quads = ds.stream(null, null, RdfVocab.type, AnnoVocab.annotation)){
+        quads.sequential().forEach(quad -> {
+          String annotation = graphIri(quad);
+          if(annotation != null && quad.getSubject().equals(quad.getGraphName().get())){
+            annotations.add(annotation);
+          }
+        });
+      }
+      // Deleted annotations keep their content besides the tombstone
+      try(Stream<? extends Quad> quads = ds.stream(null, null, WapVocab.deleted, null)){
+        quads.sequential().forEach(quad -> annotations.remove(graphIri(quad)));
+      }
+      Map<String, Long> created = readTimes(ds, DcTermsVocab.created, annotations);
+      Map<String, Long> modified = readTimes(ds, DcTermsVocab.modified, annotations);
+      State readState = new State();
+      for(String annotation : annotations){
+        readState.set(annotation, new Times(created.get(annotation), modified.get(annotation)));
+      }
+      newState[0] = readState;
+    });
+    return newState[0];
+  }
+
+  /**
+   * Gets the number of annotations with times in the index.
+   *
+   * @return The number of annotations, 0 if not available
+   */
+  public long getAnnotations(){
+    lock.readLock().lock();
+    try{
+      State state = getState();
+      return state == null ? 0 : state.timesByAnnotation.size();
+    } finally{
+      lock.readLock().unlock();
+    }
+  }
+
+  private static Matches select(NavigableSet<Stamp> stamps, Stamp after, int skip, int limit){
+    List<Stamp> selected = new ArrayList<Stamp>(Math.min(limit, stamps.size()));
+    Iterator<Stamp> iterator = (after == null ? stamps : stamps.tailSet(after, false)).iterator();
+    for(int n = 0; n < skip && iterator.hasNext(); n++){
+      iterator.next();
+    }
+    while(selected.size() < limit && iterator.hasNext()){
+      selected.add(iterator.next());
+    }
+    return new Matches(stamps.size(), selected);
+  }
+
+  /**
+   * Reads the times of an annotation.
+   *
+   * @param ds The dataset to read from
+   * @param iri The IRI of the annotation
+   * @return The times, empty if there is no active annotation with the IRI
+   */
+  private static Times readTimes(Dataset ds, String iri){
+    IRI node = RDF.createIRI(iri);
+    Optional<BlankNodeOrIRI> graph = Optional.of(node);
+    if(!ds.contains(graph, node, RdfVocab.type, AnnoVocab.annotation)
+            || ds.contains(graph, node, WapVocab.deleted, null)){
+      return new Times(null, null);
+    }
+    return new Times(readTime(ds, graph, node, DcTermsVocab.created), readTime(ds, graph, node, DcTermsVocab.modified));
+  }
+
+  private static Long readTime(Dataset ds, Optional<BlankNodeOrIRI> graph, IRI node, IRI predicate){
+    try(Stream<? extends Quad> quads = ds.stream(graph, node, predicate, null)){
+      return quads.map(quad -> readTime(quad.getObject())).filter(time -> time != null).findFirst().orElse(null);
+    }
+  }
+
+  private static Map<String, Long> readTimes(Dataset ds, IRI predicate, Set<String> annotations){
+    Map<String, Long> times = new HashMap<String, Long>();
+    try(Stream<? extends Quad> quads = ds.stream(null, null, predicate, null)){
+      quads.sequential().forEach(quad -> {
+        String annotation = graphIri(quad);
+        if(annotations.contains(annotation) && quad.getSubject().equals(quad.getGraphName().get())){
+          Long time = readTime(quad.getObject());
+          if(time != null){
+            times.put(annotation, time);
+          }
+        }
+      });
+    }
+    return times;
+  }
+
+  private static Long readTime(RDFTerm object){
+    return object instanceof Literal ? parseTime(((Literal) object).getLexicalForm()) : null;
+  }
+
+  private static String graphIri(Quad quad){
+    BlankNodeOrIRI graphName = quad.getGraphName().orElse(null);
+    return graphName instanceof IRI ? ((IRI) graphName).getIRIString() : null;
+  }
+
+  /**
+   * The annotations by container in the order of their created and of their
+   * modified times, and the times by annotation
+   */
+  static class State{
+    private final Map<String, NavigableSet<Stamp>> createdByContainer = new HashMap<String, NavigableSet<Stamp>>();
+    private final Map<String, NavigableSet<Stamp>> modifiedByContainer = new HashMap<String, NavigableSet<Stamp>>();
+    private final Map<String, Times> timesByAnnotation = new HashMap<String, Times>();
+
+    NavigableSet<Stamp> find(String containerIri, Range range){
+      NavigableSet<Stamp> stamps = (range.isModified() ? modifiedByContainer : createdByContainer).get(containerIri);
+      if(stamps == null){
+        return Collections.emptyNavigableSet();
+      }
+      // The smallest IRI is the empty one, so the bounds exclude all annotations of their time
+      if(range.getAfter() != null){
+        stamps = range.getAfter() == Long.MAX_VALUE ? Collections.emptyNavigableSet()
+                : stamps.tailSet(new Stamp(range.getAfter() + 1, ""), true);
+      }
+      if(range.getBefore() != null){
+        stamps = stamps.isEmpty() || stamps.first().getTime() >= range.getBefore() ? Collections.emptyNavigableSet()
+                : stamps.headSet(new Stamp(range.getBefore(), ""), false);
+      }
+      return stamps;
+    }
+
+    void set(String annotation, Times times){
+      String container = WapObject.getParentContainerIriString(annotation);
+      Times previous = timesByAnnotation.remove(annotation);
+      if(previous != null){
+        remove(createdByContainer, container, previous.created, annotation);
+        remove(modifiedByContainer, container, previous.modified, annotation);
+      }
+      if(times.isEmpty()){
+        return;
+      }
+      timesByAnnotation.put(annotation, times);
+      add(createdByContainer, container, times.created, annotation);
+      add(modifiedByContainer, container, times.modified, annotation);
+    }
+
+    private static void add(Map<String, NavigableSet<Stamp>> byContainer, String container, Long time,
+            String annotation){
+      if(time != null){
+        byContainer.computeIfAbsent(container, key -> new TreeSet<Stamp>(ORDER)).add(new Stamp(time, annotation));
+      }
+    }
+
+    private static void remove(Map<String, NavigableSet<Stamp>> byContainer, String container, Long time,
+            String annotation){
+      NavigableSet<Stamp> stamps = time == null ? null : byContainer.get(container);
+      if(stamps != null){
+        stamps.remove(new Stamp(time, annotation));
+        if(stamps.isEmpty()){
+          byContainer.remove(container);
+        }
+      }
+    }
+  }
+}
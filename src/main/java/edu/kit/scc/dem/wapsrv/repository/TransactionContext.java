@@ -0,0 +1,347 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+
+/**
+ * The context of the transaction the current thread is working in. It is opened
+ * once by the outermost RDF transaction of a service call and closed when this
+ * transaction ends. Nested transactions of the same or a weaker type simply
+ * reuse it, they neither begin a new transaction nor check the transaction state
+ * of the database again.<br>
+ * The context caches the IRIs and graphs resolved within the transaction, so the
+ * helpers called while serving one request do not have to look them up again.
+ * Writing transactions collect the status changes of WapObjects in it, which
+ * are applied to the {@link ResourceStatusIndex} after the commit, and their
+ * mutations, which are appended to the {@link MutationJournal}. Writing
+ * transactions nested in one of another type hand the updates of the indexes on
+ * to it, they are committed with it.
+ */
+public final class TransactionContext{
+  /**
+   * The context of the current thread, null if not in a transaction
+   */
+  private static final ThreadLocal<TransactionContext> CURRENT = new ThreadLocal<TransactionContext>();
+  /**
+   * The type of the transaction, changes to writing on promotion
+   */
+  private TransactionRepository.Type type;
+  /**
+   * The repository the transaction belongs to, null if not known
+   */
+  private final TransactionRepository repository;
+  /**
+   * The dataset of the transaction
+   */
+  private final Dataset dataset;
+  /**
+   * The context that was active when this one has been opened
+   */
+  private final TransactionContext previous;
+  /**
+   * The IRIs created within this transaction
+   */
+  private final Map<String, IRI> iris = new HashMap<String, IRI>();
+  /**
+   * The graphs looked up within this transaction
+   */
+  private final Map<BlankNodeOrIRI, Graph> graphs = new HashMap<BlankNodeOrIRI, Graph>();
+  /**
+   * The new status of the WapObjects changed within this transaction, null if
+   * none has changed
+   */
+  private Map<String, ResourceStatusIndex.Status> statusChanges;
+  /**
+   * The mutations of the WapObjects changed within this transaction by IRI, in
+   * the order of their first change, null if none has changed
+   */
+  private Map<String, MutationJournal.Entry> mutations;
+  /**
+   * The updates of the indexes handed on by the transactions nested in this one,
+   * applied after its commit, null if none
+   */
+  private List<Runnable> indexUpdates;
+
+  private TransactionContext(TransactionRepository.Type type, TransactionRepository repository, Dataset dataset,
+          TransactionContext previous){
+    this.type = type;
+    this.repository = repository;
+    this.dataset = dataset;
+    this.previous = previous;
+  }
+
+  /**
+   * Opens a new context for the current thread.
+   *
+   * @param type The type of the transaction
+   * @param repository The repository the transaction belongs to
+   * @param dataset The dataset of the transaction
+   * @return The opened context
+   */
+  static TransactionContext open(TransactionRepository.Type type, TransactionRepository repository, Dataset dataset){
+    TransactionContext context = new TransactionContext(type, repository, dataset, CURRENT.get());
+    CURRENT.set(context);
+    return context;
+  }
+
+  /**
+   * Closes this context and restores the one that was active before.
+   */
+  void close(){
+    if(previous == null){
+      CURRENT.remove();
+    } else{
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * Gets the context of the transaction the current thread is working in.
+   *
+   * @return The current context, null if not in a transaction
+   */
+  public static TransactionContext current(){
+    return CURRENT.get();
+  }
+
+  /**
+   * Gets the context belonging to the given dataset. This is the current context
+   * if it works on this dataset, a new context not attached to the thread
+   * otherwise.
+   *
+   * @param dataset The dataset of the transaction
+   * @return The context to use for the dataset
+   */
+  public static TransactionContext of(Dataset dataset){
+    TransactionContext context = CURRENT.get();
+    if(context != null && context.dataset == dataset){
+      return context;
+    }
+    return new TransactionContext(TransactionRepository.Type.Read, null, dataset, null);
+  }
+
+  /**
+   * Marks the transaction of this context as promoted to a writing one.
+   */
+  void promote(){
+    type = TransactionRepository.Type.Write;
+  }
+
+  /**
+   * Checks whether a transaction of the given type can be executed within this
+   * context. This is the case for transactions of the same type and for reading
+   * transactions within writing ones.
+   *
+   * @param requestedType The type of the requested transaction
+   * @return True, if the transaction can reuse this context
+   */
+  boolean supports(TransactionRepository.Type requestedType){
+    return type == requestedType || requestedType == TransactionRepository.Type.Read;
+  }
+
+  /**
+   * Checks whether this is the context of a writing transaction of the given
+   * repository.
+   *
+   * @param writingRepository The repository
+   * @return True, if the repository writes in this context
+   */
+  public boolean isWriting(TransactionRepository writingRepository){
+    return type == TransactionRepository.Type.Write && repository == writingRepository;
+  }
+
+  /**
+   * Checks whether the commit of this transaction is followed by updates of the
+   * indexes of the given repository, either its own or those of nested writing
+   * transactions.
+   *
+   * @param indexedRepository The repository
+   * @return True, if the repository updates its indexes after the commit
+   */
+  public boolean updatesIndexesOf(TransactionRepository indexedRepository){
+    return isWriting(indexedRepository) || repository == indexedRepository && indexUpdates != null;
+  }
+
+  /**
+   * Gets the context that was active when this one has been opened.
+   *
+   * @return The previous context, null if none
+   */
+  TransactionContext getPrevious(){
+    return previous;
+  }
+
+  /**
+   * Checks whether the transaction belongs to the given repository.
+   *
+   * @param owningRepository The repository
+   * @return True, if the transaction belongs to the repository
+   */
+  boolean belongsTo(TransactionRepository owningRepository){
+    return repository == owningRepository;
+  }
+
+  /**
+   * Records the updates of the indexes handed on by a nested transaction.
+   *
+   * @param updates The updates to apply after the commit of this transaction
+   */
+  void addIndexUpdates(Runnable updates){
+    if(indexUpdates == null){
+      indexUpdates = new ArrayList<Runnable>();
+    }
+    indexUpdates.add(updates);
+  }
+
+  /**
+   * Gets the updates of the indexes handed on by nested transactions.
+   *
+   * @return The updates, null if none
+   */
+  List<Runnable> getIndexUpdates(){
+    return indexUpdates;
+  }
+
+  /**
+   * Checks whether this transaction may see commits that have not been applied
+   * to the in-memory indexes of the repository yet. The indexes are updated
+   * after the commit, which serialized writers only do before releasing the
+   * writer lock. Promotable transactions check without holding it and writers
+   * of repositories coordinating them on their own do not share one, so both
+   * have to read the database for checks that must not race with other writes.
+   *
+   * @return True, if the indexes must not be used for checks
+   */
+  public boolean isAheadOfIndexes(){
+    if(type == TransactionRepository.Type.ReadPromote){
+      return true;
+    }
+    return type == TransactionRepository.Type.Write && repository != null && repository.coordinatesWrites();
+  }
+
+  /**
+   * Records the new status of a WapObject written in this transaction.
+   *
+   * @param iri The IRI of the WapObject
+   * @param status The new status
+   */
+  public void setStatus(String iri, ResourceStatusIndex.Status status){
+    if(statusChanges == null){
+      statusChanges = new LinkedHashMap<String, ResourceStatusIndex.Status>();
+    }
+    statusChanges.put(iri, status);
+  }
+
+  /**
+   * Gets the status of a WapObject written in this transaction.
+   *
+   * @param iri The IRI of the WapObject
+   * @return The new status, null if not changed in this transaction
+   */
+  public ResourceStatusIndex.Status getStatus(String iri){
+    return statusChanges == null ? null : statusChanges.get(iri);
+  }
+
+  /**
+   * Gets the status changes of this transaction.
+   *
+   * @return The new status by IRI, null if none has changed
+   */
+  Map<String, ResourceStatusIndex.Status> getStatusChanges(){
+    return statusChanges;
+  }
+
+  /**
+   * Records the mutation of a WapObject written in this transaction. Only the
+   * last mutation of every WapObject is kept, an update following its creation
+   * is still recorded as creation.
+   *
+   * @param type The type of the mutation
+   * @param iri The IRI of the WapObject
+   * @param etag The new ETag, null if deleted
+   */
+  public void recordMutation(MutationJournal.Type type, String iri, String etag){
+    if(mutations == null){
+      mutations = new LinkedHashMap<String, MutationJournal.Entry>();
+    }
+    MutationJournal.Entry previous = mutations.get(iri);
+    if(type == MutationJournal.Type.Update && previous != null && previous.getType() == MutationJournal.Type.Create){
+      type = MutationJournal.Type.Create;
+    }
+    mutations.put(iri, new MutationJournal.Entry(type, iri, etag));
+  }
+
+  /**
+   * Gets the mutations recorded in this transaction so far.
+   *
+   * @return The mutations by IRI, null if none has been recorded
+   */
+  Map<String, MutationJournal.Entry> getMutations(){
+    return mutations;
+  }
+
+  /**
+   * Removes the mutations of this transaction, so they are appended to the
+   * journal only once.
+   *
+   * @return The mutations by IRI, null if none has been recorded
+   */
+  Map<String, MutationJournal.Entry> takeMutations(){
+    Map<String, MutationJournal.Entry> taken = mutations;
+    mutations = null;
+    return taken;
+  }
+
+  /**
+   * Gets the dataset of the transaction.
+   *
+   * @return The dataset
+   */
+  public Dataset getDataset(){
+    return dataset;
+  }
+
+  /**
+   * Gets the IRI for the given string, created only once per transaction.
+   *
+   * @param iri The IRI string
+   * @param rdf The RDF implementation used to create the IRI
+   * @return The IRI
+   */
+  public IRI getIri(String iri, RDF rdf){
+    IRI node = iris.get(iri);
+    if(node == null){
+      node = rdf.createIRI(iri);
+      iris.put(iri, node);
+    }
+    return node;
+  }
+
+  /**
+   * Gets the named graph of the dataset, looked up only once per transaction.
+   *
+   * @param graphName The name of the graph
+   * @return The graph, an empty optional if the dataset does not provide it
+   */
+  public Optional<Graph> getGraph(BlankNodeOrIRI graphName){
+    Graph graph = graphs.get(graphName);
+    if(graph == null){
+      Optional<Graph> found = dataset.getGraph(graphName);
+      if(!found.isPresent()){
+        return found;
+      }
+      graph = found.get();
+      graphs.put(graphName, graph);
+    }
+    return Optional.of(graph);
+  }
+}
@@ -1,7 +1,8 @@
 package edu.kit.scc.dem.wapsrv.repository;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.commons.rdf.api.Dataset;
-import edu.kit.scc.dem.wapsrv.exceptions.WapException;
 import edu.kit.scc.dem.wapsrv.model.rdf.RdfTransactionExecuter;
 
 /**
@@ -15,6 +16,11 @@ import edu.kit.scc.dem.wapsrv.model.rdf.RdfTransactionExecuter;
  * @version 1.1
  */
 public interface TransactionRepository{
+  /**
+   * The number of times a promotable transaction is tried before it takes the
+   * writer lock from the start
+   */
+  int MAX_PROMOTION_ATTEMPTS = 3;
 
   public enum Type{
     /**
@@ -24,7 +30,26 @@ public interface TransactionRepository{
     /**
      * Writing
      */
-    Write
+    Write,
+    /**
+     * Reading, promotable to writing if nobody has written meanwhile
+     */
+    ReadPromote
+  }
+
+  /**
+   * The way transactions of different threads are coordinated
+   */
+  public enum ConcurrencyMode{
+    /**
+     * All transactions, reading and writing, are executed one after another
+     */
+    Serialized,
+    /**
+     * Read transactions run in parallel on their own snapshot of the database,
+     * only writing transactions are executed one after another
+     */
+    ConcurrentReads
   }
 
   /**
@@ -55,27 +80,379 @@ public interface TransactionRepository{
   }
 
   /**
-   * Do RDF transaction.
+   * Perform a transaction that checks the Dataset of the database before writing
+   * to it. The check runs in a promotable transaction in parallel with other
+   * readers, the transaction is promoted to a writing one only for the write.
+   * Failing checks therefore never wait for the writer lock. If another
+   * transaction has written in the meantime, the promotion fails and both are
+   * executed again, which is why the check must not have side effects other
+   * than its result. After {@link #MAX_PROMOTION_ATTEMPTS} conflicts, or if
+   * readers have to wait for writers anyway, both are executed in a single
+   * writing transaction.
+   *
+   * @param check the check function, throwing to abort the transaction
+   * @param write the write function
+   */
+  default void promotableRdfTransaction(RdfTransactionExecuter check, RdfTransactionExecuter write){
+    RdfTransactionExecuter checkAndWrite = ds -> {
+      check.execute(ds);
+      write.execute(ds);
+    };
+    // Nested transactions run within the outer one
+    if(TransactionContext.current() != null || getConcurrencyMode() != ConcurrencyMode.ConcurrentReads){
+      doRdfTransaction(TransactionRepository.Type.Write, checkAndWrite);
+      return;
+    }
+    for(int attempt = 0; attempt < MAX_PROMOTION_ATTEMPTS; attempt++){
+      if(executePromotableRdfTransaction(check, write)){
+        return;
+      }
+    }
+    doRdfTransaction(TransactionRepository.Type.Write, checkAndWrite);
+  }
+
+  /**
+   * Executes the check in a new promotable transaction and the write after
+   * promoting it. The promotion and the write are serialized with the other
+   * writing transactions, unless the repository coordinates them on its own.
+   *
+   * @param check The check
+   * @param write The write
+   * @return True, if executed. False, if the promotion failed and the
+   *         transaction has been aborted
+   */
+  private boolean executePromotableRdfTransaction(RdfTransactionExecuter check, RdfTransactionExecuter write){
+    boolean wasOpend = beginTransaction(TransactionRepository.Type.ReadPromote);
+    TransactionContext context = TransactionContext.open(TransactionRepository.Type.ReadPromote, this,
+            getTransactionDataset());
+    try{
+      try{
+        check.execute(context.getDataset());
+        if(coordinatesWrites()){
+          return promoteAndWrite(context, write, wasOpend);
+        }
+        synchronized(this){
+          return promoteAndWrite(context, write, wasOpend);
+        }
+      } catch(RuntimeException e){
+        discardMutations();
+        abortTransaction();
+        throw e;
+      }
+    } finally{
+      context.close();
+    }
+  }
+
+  /**
+   * Promotes the transaction of the context and executes the write within it.
+   *
+   * @param context The context of the promotable transaction
+   * @param write The write
+   * @param wasOpend True, if the transaction has been opened with the context
+   * @return True, if executed. False, if the promotion failed and the
+   *         transaction has been aborted
+   */
+  private boolean promoteAndWrite(TransactionContext context, RdfTransactionExecuter write, boolean wasOpend){
+    if(!wasOpend || !promoteTransaction()){
+      if(wasOpend){
+        abortTransaction();
+      }
+      return false;
+    }
+    context.promote();
+    write.execute(context.getDataset());
+    Map<AnnotationIndex<?, ?>, Runnable> indexChanges = readIndexChanges(context);
+    prepareMutations(context, wasOpend);
+    commitMutations(wasOpend);
+    applyIndexUpdates(context, indexChanges, wasOpend);
+    return true;
+  }
+
+  /**
+   * Do RDF transaction. Depending on the {@link #getConcurrencyMode()} of the
+   * repository, read transactions either wait for all other transactions or run
+   * in parallel with them. Writing transactions are always serialized.<br>
+   * Transactions nested in one that supports their type are executed directly
+   * within the {@link TransactionContext} of the outer one. Repositories that
+   * {@link #coordinatesWrites() coordinate their writers} on their own execute
+   * all transactions in parallel.
    *
    * @param type The type
    * @param transaction The transaction
    */
   default void doRdfTransaction(TransactionRepository.Type type, RdfTransactionExecuter transaction){
-    //starting transaction synchronized in order to avoid duplicate transactions to be opened
-    synchronized(this){
-      boolean wasOpend = beginTransaction(type);
+    TransactionContext context = TransactionContext.current();
+    if(context != null && context.supports(type)){
+      transaction.execute(context.getDataset());
+    } else if(type == TransactionRepository.Type.Read && getConcurrencyMode() == ConcurrencyMode.ConcurrentReads){
+      // The transaction state of the database is bound to the calling thread, every reader works on its own
+      // snapshot and does not have to wait for others
+      executeRdfTransaction(type, transaction);
+    } else if(coordinatesWrites()){
+      executeRdfTransaction(type, transaction);
+    } else{
+      //starting transaction synchronized in order to avoid duplicate transactions to be opened
+      synchronized(this){
+        executeRdfTransaction(type, transaction);
+      }
+    }
+  }
+
+  /**
+   * Executes the RDF transaction in the transaction of the calling thread. A
+   * new transaction is only begun if the thread is not already within one. The
+   * transaction gets its own {@link TransactionContext}, which stays open until
+   * the transaction has ended. The status changes collected in it are applied to
+   * the {@link ResourceStatusIndex} afterwards. Its mutations are written ahead
+   * to the {@link MutationJournal} before the commit.
+   *
+   * @param type The type
+   * @param transaction The transaction
+   */
+  private void executeRdfTransaction(TransactionRepository.Type type, RdfTransactionExecuter transaction){
+    boolean wasOpend = beginTransaction(type);
+    TransactionContext context = TransactionContext.open(type, this, getTransactionDataset());
+    Map<AnnotationIndex<?, ?>, Runnable> indexChanges;
+    try{
       try{
-        transaction.execute(getTransactionDataset());
-      } catch(WapException e){
+        transaction.execute(context.getDataset());
+        indexChanges = readIndexChanges(context);
+        prepareMutations(context, wasOpend);
+      } catch(RuntimeException e){
+        // Not only WapExceptions, every exception has to abort. Otherwise the transaction would stay open and
+        // stick to the thread, which is reused for later requests
+        discardMutations();
         abortTransaction();
         throw e;
       }
-
       //end transaction only if not aborted before as abort should take care of closing the dataset
+      commitMutations(wasOpend);
+    } finally{
+      context.close();
+    }
+    applyIndexUpdates(context, indexChanges, wasOpend);
+  }
+
+  /**
+   * Applies the changes of a transaction that has ended to the in-memory
+   * indexes, together with those handed on by the transactions nested in it. A
+   * transaction not committed with its context hands them on to the enclosing
+   * transaction of the repository, which applies them after its commit. If
+   * there is none, the commit is not known and the changed indexes are
+   * rebuilt once with their next lookup.
+   *
+   * @param context The context of the transaction
+   * @param indexChanges The changes of the annotation indexes, null if none
+   * @param wasOpend True, if the transaction has been opened and committed with
+   *          the context
+   */
+  private void applyIndexUpdates(TransactionContext context, Map<AnnotationIndex<?, ?>, Runnable> indexChanges,
+          boolean wasOpend){
+    Runnable updates = () -> {
+      applyStatusChanges(context);
+      applyIndexChanges(indexChanges);
+      if(context.getIndexUpdates() != null){
+        context.getIndexUpdates().forEach(Runnable::run);
+      }
+    };
+    if(wasOpend){
+      updates.run();
+      return;
+    }
+    TransactionContext enclosing = context.getPrevious();
+    if(enclosing != null && enclosing.belongsTo(this)){
+      enclosing.addIndexUpdates(updates);
+      return;
+    }
+    boolean nestedUpdates = context.getIndexUpdates() != null;
+    ResourceStatusIndex statusIndex = getResourceStatusIndex();
+    if(statusIndex != null && (context.getStatusChanges() != null || nestedUpdates)){
+      statusIndex.invalidateOnDemand();
+    }
+    if(indexChanges != null || nestedUpdates){
+      for(AnnotationIndex<?, ?> index : new AnnotationIndex<?, ?>[] {getTargetIndex(), getTextIndex(),
+              getTimeIndex()}){
+        if(index != null){
+          index.invalidateOnDemand();
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the status changes collected in the context of a transaction that
+   * has been committed to the {@link ResourceStatusIndex}.
+   *
+   * @param context The context of the transaction
+   */
+  private void applyStatusChanges(TransactionContext context){
+    ResourceStatusIndex index = getResourceStatusIndex();
+    if(index != null && context.getStatusChanges() != null){
+      index.apply(context.getStatusChanges());
+    }
+  }
+
+  /**
+   * Reads the changes of the annotations written in a transaction before it
+   * ends, to apply them to the {@link AnnotationIndex annotation indexes} after
+   * the commit.
+   *
+   * @param context The context of the transaction
+   * @return The changes by index, null if there is nothing to apply
+   */
+  private Map<AnnotationIndex<?, ?>, Runnable> readIndexChanges(TransactionContext context){
+    if(context.getMutations() == null || !context.isWriting(this)){
+      return null;
+    }
+    Map<AnnotationIndex<?, ?>, Runnable> indexChanges = new LinkedHashMap<AnnotationIndex<?, ?>, Runnable>();
+    for(AnnotationIndex<?, ?> index : new AnnotationIndex<?, ?>[] {getTargetIndex(), getTextIndex(),
+            getTimeIndex()}){
+      if(index != null){
+        indexChanges.put(index, index.read(context.getDataset(), context.getMutations().values()));
+      }
+    }
+    return indexChanges;
+  }
+
+  /**
+   * Applies the changes read in a transaction that has been committed to the
+   * {@link AnnotationIndex annotation indexes}.
+   *
+   * @param indexChanges The changes by index, null if none
+   */
+  private void applyIndexChanges(Map<AnnotationIndex<?, ?>, Runnable> indexChanges){
+    if(indexChanges != null){
+      indexChanges.values().forEach(Runnable::run);
+    }
+  }
+
+  /**
+   * Writes the mutations collected in the context of a transaction ahead to the
+   * {@link MutationJournal} before it is committed, and stores the sequence
+   * number of the last one with the transaction. Those of a transaction not
+   * committed with the context are not known to be committed at all and are
+   * dropped.
+   *
+   * @param context The context of the transaction
+   * @param wasOpend True, if the transaction has been opened with the context
+   */
+  private void prepareMutations(TransactionContext context, boolean wasOpend){
+    MutationJournal journal = getMutationJournal();
+    if(journal == null || !wasOpend || !context.isWriting(this)){
+      return;
+    }
+    long lastSequence = journal.prepare(context);
+    if(lastSequence > 0){
+      writeJournalSequence(lastSequence);
+    }
+  }
+
+  /**
+   * Ends the transaction and publishes the mutations written ahead to the
+   * {@link MutationJournal}, or cuts them off again if the commit fails.
+   *
+   * @param wasOpend True, if the transaction has been opened with the context
+   */
+  private void commitMutations(boolean wasOpend){
+    try{
       endTransaction(wasOpend);
+    } catch(RuntimeException e){
+      discardMutations();
+      throw e;
+    }
+    MutationJournal journal = getMutationJournal();
+    if(journal != null){
+      journal.publish();
     }
   }
 
+  /**
+   * Cuts off the mutations written ahead to the {@link MutationJournal} by a
+   * transaction that is aborted.
+   */
+  private void discardMutations(){
+    MutationJournal journal = getMutationJournal();
+    if(journal != null){
+      journal.discard();
+    }
+  }
+
+  /**
+   * Gets the concurrency mode used for transactions of this repository.
+   *
+   * @return The concurrency mode
+   */
+  default ConcurrencyMode getConcurrencyMode(){
+    return ConcurrencyMode.Serialized;
+  }
+
+  /**
+   * Checks whether the repository coordinates the writing transactions of
+   * different threads on its own, so they do not have to be serialized.
+   *
+   * @return True, if writing transactions may run in parallel
+   */
+  default boolean coordinatesWrites(){
+    return false;
+  }
+
+  /**
+   * Gets the in-memory index of the status of the WapObjects.
+   *
+   * @return The index, null if the database has to be read
+   */
+  default ResourceStatusIndex getResourceStatusIndex(){
+    return null;
+  }
+
+  /**
+   * Gets the in-memory index of the targets of the annotations.
+   *
+   * @return The index, null if the database has to be queried
+   */
+  default TargetIndex getTargetIndex(){
+    return null;
+  }
+
+  /**
+   * Gets the in-memory full-text index of the annotations.
+   *
+   * @return The index, null if the database has to be scanned
+   */
+  default TextIndex getTextIndex(){
+    return null;
+  }
+
+  /**
+   * Gets the in-memory index of the created and modified times of the
+   * annotations.
+   *
+   * @return The index, null if the database has to be scanned
+   */
+  default TimeIndex getTimeIndex(){
+    return null;
+  }
+
+  /**
+   * Gets the journal the mutations of the WapObjects are appended to.
+   *
+   * @return The journal, null if mutations are not journaled
+   */
+  default MutationJournal getMutationJournal(){
+    return null;
+  }
+
+  /**
+   * Stores the sequence number of the last {@link MutationJournal} entry written
+   * ahead by the transaction of the current thread with this transaction, so
+   * the journal can be reconciled with the database after a crash.
+   *
+   * @param sequence The sequence number
+   */
+  default void writeJournalSequence(long sequence){
+  }
+
   /**
    * Begin transaction.
    *
@@ -86,6 +463,17 @@ public interface TransactionRepository{
     return false;
   }
 
+  /**
+   * Promotes the transaction of the current thread, begun as
+   * {@link Type#ReadPromote}, to a writing one. This waits for the writer lock.
+   *
+   * @return True, if promoted. False, if another transaction has written since
+   *         this one began, the data read may be outdated then.
+   */
+  default boolean promoteTransaction(){
+    return false;
+  }
+
   /**
    * Abort transaction and close dataset.
    */
@@ -1,8 +1,13 @@
 package edu.kit.scc.dem.wapsrv.repository;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.RDF;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
 import edu.kit.scc.dem.wapsrv.model.WapObject;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 
 /**
  * Provides the functions for all the necessary operations in the database that could not have been handled in RDF. The
@@ -29,6 +34,23 @@ public interface WapObjectRepository extends TransactionRepository {
     */
    void addElementToRdfSeq(String modelIri, String seqIri, String objIri);
 
+   /**
+    * Adds the elements to rdf:seq in the given order. Repositories which can add
+    * many elements at once more efficiently override this.
+    *
+    * @param modelIri
+    *                 the graph/model IRI
+    * @param seqIri
+    *                 the sequence IRI
+    * @param objIris
+    *                 the IRIs of the objects to be put into the rdf:seq
+    */
+   default void addElementsToRdfSeq(String modelIri, String seqIri, List<String> objIris) {
+      for (String objIri : objIris) {
+         addElementToRdfSeq(modelIri, seqIri, objIri);
+      }
+   }
+
    /**
     * Removes the element from rdf:seq.
     *
@@ -75,4 +97,40 @@ public interface WapObjectRepository extends TransactionRepository {
     * @return     the WapObject
     */
    Dataset getWapObject(String iri);
+
+   /**
+    * Gets a read view of the WapObject in the database. Contrary to {@link #getWapObject(String)} nothing is copied,
+    * so the view must only be used within the transaction it has been created in. It is copied on the first
+    * modification.
+    *
+    * @see    edu.kit.scc.dem.wapsrv.model.rdf.WapObjectView
+    * @param  iri
+    *             the IRI of the WapObject to read
+    * @return     the view of the WapObject
+    */
+   Dataset getWapObjectView(String iri);
+
+   /**
+    * Gets several WapObjects from the database at once, e.g. the annotations of a page. Contrary to
+    * {@link #getWapObject(String)} the WapObjects are read without any checks in advance, the repository may read them
+    * all in one pass. Must be called within a transaction. WapObjects not stored or marked as deleted are left out.
+    *
+    * @param  iris
+    *              the IRIs of the WapObjects to read
+    * @return      the copies of the WapObjects by IRI, in the order of the given IRIs
+    */
+   default Map<String, Dataset> getWapObjects(List<String> iris) {
+      Map<String, Dataset> wapObjects = new LinkedHashMap<String, Dataset>();
+      for (String iri : iris) {
+         try {
+            Dataset wapObject = getWapObject(iri);
+            if (!wapObject.getGraph().contains(null, WapVocab.deleted, null)) {
+               wapObjects.put(iri, wapObject);
+            }
+         } catch (NotExistentException e) {
+            // Left out
+         }
+      }
+      return wapObjects;
+   }
 }
@@ -0,0 +1,70 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.util.Iterator;
+import org.apache.jena.commonsrdf.JenaCommonsRDF;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
+import edu.kit.scc.dem.wapsrv.model.WapObject;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Writes WapObjects with the parallel bulk loader of TDB2. Each WapObject is
+ * written into its own named graph together with its ETag, exactly as writing
+ * it in a transaction would do. The loader bypasses the transactions of the
+ * repository and needs exclusive access to the database while loading.
+ */
+final class JenaBulkLoader {
+
+    /**
+     * The ETag property
+     */
+    private static final Node ETAG = NodeFactory.createURI(WapVocab.etag.getIRIString());
+
+    private JenaBulkLoader() {
+    }
+
+    /**
+     * Writes the WapObjects to the database.
+     *
+     * @param dataBase The database, must be a TDB2 database
+     * @param wapObjects The WapObjects to write, all with an ETag set
+     * @return The number of WapObjects written
+     */
+    static long load(Dataset dataBase, Iterator<? extends WapObject> wapObjects) {
+        DatasetGraph datasetGraph = dataBase.asDatasetGraph();
+        if (!DatabaseMgr.isTDB2(datasetGraph)) {
+            throw new InternalServerException("Bulk loading is only supported for TDB2 databases");
+        }
+        DataLoader loader = LoaderFactory.parallelLoader(datasetGraph, LoaderOps.outputToLog());
+        long count = 0;
+        loader.startBulk();
+        try {
+            StreamRDF stream = loader.stream();
+            stream.start();
+            while (wapObjects.hasNext()) {
+                WapObject wapObject = wapObjects.next();
+                Node graphName = NodeFactory.createURI(wapObject.getIriString());
+                Graph graph = JenaCommonsRDF.toJena(wapObject.getDataset().getGraph());
+                graph.find().forEachRemaining(triple -> stream.quad(Quad.create(graphName, triple)));
+                stream.quad(Quad.create(graphName, graphName, ETAG, NodeFactory.createLiteral(wapObject.getEtag())));
+                count++;
+            }
+            stream.finish();
+        } catch (RuntimeException e) {
+            loader.finishException(e);
+            throw e;
+        }
+        loader.finishBulk();
+        return count;
+    }
+}
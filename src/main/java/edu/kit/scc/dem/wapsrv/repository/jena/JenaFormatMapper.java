@@ -39,6 +39,7 @@ public final class JenaFormatMapper {
       format2lang.put(Format.NQUADS, Lang.NQUADS);
       format2lang.put(Format.NTRIPLES, Lang.NTRIPLES);
       format2lang.put(Format.RDF_JSON, Lang.RDFJSON);
+      format2lang.put(Format.RDF_THRIFT, Lang.RDFTHRIFT);
    }
 
    /**
@@ -0,0 +1,249 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.simple.Types;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+import edu.kit.scc.dem.wapsrv.repository.CollectedRepository;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+
+/**
+ * The background maintenance of the TDB2 database. Each run first purges the
+ * named graphs of the WapObjects marked deleted. Only the tombstone, the
+ * wap:deleted triple, is kept, so the objects are still known to be deleted and
+ * cannot be recreated. Its value changes from true to wap:purged, so each run
+ * only reads the tombstones of the objects deleted since the last one.
+ * Afterwards the database is compacted if the schedule or
+ * one of the thresholds of the configuration is reached. TDB2 never reuses the
+ * space of removed or overwritten data, only compaction reclaims it. It copies
+ * the current data into a new generation while reads go on, writes wait until
+ * the switch to the new generation. With the sharded repository all shards are
+ * compacted together, the thresholds apply to their total size.
+ */
+@Component
+public class JenaMaintenance {
+
+    /**
+     * The number of deleted WapObjects purged per transaction
+     */
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final long BYTES_PER_MB = 1024L * 1024L;
+    private final Logger log = LoggerFactory.getLogger(JenaMaintenance.class);
+    /**
+     * The application configuration
+     */
+    @Autowired
+    private WapServerConfig wapServerConfig;
+    /**
+     * The repository the deleted objects are purged in
+     */
+    @Autowired
+    private CollectedRepository repository;
+    /**
+     * Database
+     */
+    @Autowired
+    private JenaDataBase dataBaseSource;
+    /**
+     * Runs the maintenance, null if disabled
+     */
+    private ScheduledExecutorService scheduler;
+    /**
+     * The size of the database in bytes after the last compaction or at startup
+     */
+    private long sizeAfterCompaction;
+    /**
+     * The time in ms of the last compaction or of the startup
+     */
+    private long lastCompaction;
+
+    @PostConstruct
+    private void init() {
+        sizeAfterCompaction = getDataBaseSize();
+        lastCompaction = System.currentTimeMillis();
+        int interval = wapServerConfig.getMaintenanceIntervalMinutes();
+        if (interval <= 0) {
+            log.info("Database maintenance disabled.");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runMaintenance, interval, interval, TimeUnit.MINUTES);
+        log.info("Database maintenance runs every {} minutes.", interval);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Purges the deleted WapObjects and compacts the database if due. Failures
+     * are logged, the next run tries again.
+     */
+    void runMaintenance() {
+        try {
+            purgeDeletedObjects();
+            if (isCompactionDue()) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            log.error("Database maintenance failed : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Removes everything but the tombstone from the named graphs of the WapObjects
+     * marked deleted and marks the tombstone purged. Only the tombstones not yet
+     * marked are read, by the index over predicate and object.
+     *
+     * @return The number of WapObjects purged
+     */
+    int purgeDeletedObjects() {
+        Literal trueLiteral = repository.getRdf().createLiteral("true", Types.XSD_BOOLEAN);
+        List<BlankNodeOrIRI> deleted = new ArrayList<BlankNodeOrIRI>();
+        repository.readRdfTransaction(ds -> {
+            try (Stream<? extends Quad> tombstones = ds.stream(null, null, WapVocab.deleted, trueLiteral)) {
+                tombstones.map(tombstone -> tombstone.getGraphName().orElse(null)).filter(Objects::nonNull)
+                        .distinct().forEach(deleted::add);
+            }
+        });
+        for (int first = 0; first < deleted.size(); first += PURGE_BATCH_SIZE) {
+            List<BlankNodeOrIRI> batch = deleted.subList(first, Math.min(first + PURGE_BATCH_SIZE, deleted.size()));
+            repository.writeRdfTransaction(ds -> {
+                for (BlankNodeOrIRI graphName : batch) {
+                    Optional<BlankNodeOrIRI> graph = Optional.of(graphName);
+                    List<BlankNodeOrIRI> subjects;
+                    try (Stream<? extends Quad> quads = ds.stream(graph, null, WapVocab.deleted, null)) {
+                        subjects = quads.map(Quad::getSubject).distinct().collect(Collectors.toList());
+                    }
+                    // Recreated in the meantime otherwise
+                    if (!subjects.isEmpty()) {
+                        ds.remove(graph, null, null, null);
+                        subjects.forEach(subject -> ds.add(graphName, subject, WapVocab.deleted, WapVocab.purged));
+                    }
+                }
+            });
+        }
+        if (!deleted.isEmpty()) {
+            log.info("Purged {} deleted objects.", deleted.size());
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Checks whether the schedule or one of the thresholds for compaction is
+     * reached.
+     *
+     * @return True, if the database should be compacted
+     */
+    boolean isCompactionDue() {
+        if (getDataBaseLocation() == null) {
+            return false;
+        }
+        long size = getDataBaseSize();
+        int intervalHours = wapServerConfig.getCompactionIntervalHours();
+        if (intervalHours > 0
+                && System.currentTimeMillis() - lastCompaction >= TimeUnit.HOURS.toMillis(intervalHours)) {
+            return true;
+        }
+        long sizeThresholdMb = wapServerConfig.getCompactionSizeThresholdMb();
+        if (sizeThresholdMb > 0 && size > sizeAfterCompaction && size >= sizeThresholdMb * BYTES_PER_MB) {
+            return true;
+        }
+        int garbagePercent = wapServerConfig.getCompactionGarbagePercent();
+        return garbagePercent > 0 && sizeAfterCompaction > 0
+                && size - sizeAfterCompaction >= sizeAfterCompaction * garbagePercent / 100;
+    }
+
+    /**
+     * Compacts the database into a new generation and deletes the old one.
+     */
+    void compact() {
+        long sizeBefore = getDataBaseSize();
+        long start = System.currentTimeMillis();
+        log.info("Compacting database of {} MB.", sizeBefore / BYTES_PER_MB);
+        if (repository instanceof ShardedJenaRepository) {
+            ShardedJenaRepository shardedRepository = (ShardedJenaRepository) repository;
+            shardedRepository.getShardDataBases().forEach(shard -> DatabaseMgr.compact(shard.asDatasetGraph(), true));
+            shardedRepository.compacted();
+        } else {
+            DatabaseMgr.compact(dataBaseSource.getDataBase().asDatasetGraph(), true);
+        }
+        if (repository instanceof JenaRepository) {
+            ((JenaRepository) repository).compacted();
+        }
+        sizeAfterCompaction = getDataBaseSize();
+        lastCompaction = System.currentTimeMillis();
+        log.info("Compacted database from {} MB to {} MB in {} ms.", sizeBefore / BYTES_PER_MB,
+                sizeAfterCompaction / BYTES_PER_MB, lastCompaction - start);
+    }
+
+    /**
+     * Gets the folder of the database.
+     *
+     * @return The folder, null if the database cannot be compacted
+     */
+    private Path getDataBaseLocation() {
+        DatasetGraph dataSetGraph = dataBaseSource.getDataBase().asDatasetGraph();
+        if (!DatabaseMgr.isTDB2(dataSetGraph)) {
+            return null;
+        }
+        Location location = DatabaseMgr.location(dataSetGraph);
+        if (location == null || location.isMem()) {
+            return null;
+        }
+        return Paths.get(location.getDirectoryPath());
+    }
+
+    /**
+     * Gets the size of all files of the database, without the mutation journal,
+     * which is not affected by a compaction.
+     *
+     * @return The size in bytes, 0 for an in-memory database
+     */
+    long getDataBaseSize() {
+        Path folder = getDataBaseLocation();
+        if (folder == null) {
+            return 0;
+        }
+        Path journal = folder.resolve(MutationJournal.FOLDER);
+        try (Stream<Path> files = Files.walk(folder)) {
+            return files.filter(file -> !file.startsWith(journal)).filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException | UncheckedIOException e) {
+            // Files may vanish while a compaction deletes the old generation
+            log.warn("Could not determine the database size : " + e.getMessage());
+            return 0;
+        }
+    }
+}
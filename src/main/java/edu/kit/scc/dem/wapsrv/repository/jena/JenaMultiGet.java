@@ -0,0 +1,70 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.commonsrdf.JenaCommonsRDF;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.GraphFactory;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Reads the named graphs of several WapObjects at once. The quads of each graph
+ * are read with one range scan of the graph index of the dataset, directly
+ * within the current transaction. Contrary to reading them one by one no model
+ * is created per graph and the existence of a graph is not checked in advance,
+ * a graph without quads simply does not exist.
+ */
+final class JenaMultiGet {
+
+    /**
+     * The property marking deleted WapObjects
+     */
+    private static final Node DELETED = NodeFactory.createURI(WapVocab.deleted.getIRIString());
+
+    private JenaMultiGet() {
+    }
+
+    /**
+     * Reads the WapObjects from the database, see
+     * {@link edu.kit.scc.dem.wapsrv.repository.WapObjectRepository#getWapObjects(List)}.
+     *
+     * @param dataBase The database, a transaction must be active
+     * @param iris The IRIs of the WapObjects
+     * @return The WapObjects by IRI in the order of the IRIs, without the ones
+     * not stored or deleted
+     */
+    static Map<String, org.apache.commons.rdf.api.Dataset> read(Dataset dataBase, List<String> iris) {
+        DatasetGraph datasetGraph = dataBase.asDatasetGraph();
+        Map<String, org.apache.commons.rdf.api.Dataset> wapObjects = new LinkedHashMap<>(iris.size() * 2);
+        for (String iri : iris) {
+            Graph target = GraphFactory.createGraphMem();
+            boolean deleted = false;
+            Iterator<Quad> quads = datasetGraph.find(NodeFactory.createURI(iri), Node.ANY, Node.ANY, Node.ANY);
+            try {
+                while (quads.hasNext()) {
+                    Quad quad = quads.next();
+                    if (DELETED.equals(quad.getPredicate())) {
+                        deleted = true;
+                        break;
+                    }
+                    target.add(quad.asTriple());
+                }
+            } finally {
+                Iter.close(quads);
+            }
+            if (!deleted && !target.isEmpty()) {
+                wapObjects.put(iri, JenaCommonsRDF.fromJena(DatasetGraphFactory.wrap(target)));
+            }
+        }
+        return wapObjects;
+    }
+}
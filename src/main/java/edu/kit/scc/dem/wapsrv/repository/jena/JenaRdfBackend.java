@@ -1,17 +1,31 @@
 package edu.kit.scc.dem.wapsrv.repository.jena;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.util.function.Consumer;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.RDF;
 import org.apache.jena.commonsrdf.JenaCommonsRDF;
 import org.apache.jena.commonsrdf.JenaRDF;
 import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
 import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sys.JenaSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,6 +114,75 @@ public class JenaRdfBackend implements RdfBackend {
       return JenaCommonsRDF.fromJena(datasetGraph);
    }
 
+   @Override
+   public void readGraphs(InputStream in, Format format, Consumer<Dataset> consumer) throws WapException {
+      Lang lang = JenaFormatMapper.map(format);
+      if (lang == null) {
+         throw new FormatException("Format " + format + " not supported in jena RDF backend");
+      }
+      StreamRDF graphCollector = new StreamRDFBase() {
+         private Node graphName = null;
+         private DatasetGraph graphData = null;
+
+         @Override
+         public void triple(Triple triple) {
+            quad(Quad.create(Quad.defaultGraphNodeGenerated, triple));
+         }
+
+         @Override
+         public void quad(Quad quad) {
+            if (graphData != null && !quad.getGraph().equals(graphName)) {
+               passGraph();
+            }
+            if (graphData == null) {
+               graphName = quad.getGraph();
+               graphData = DatasetGraphFactory.create();
+            }
+            graphData.getDefaultGraph().add(quad.asTriple());
+         }
+
+         @Override
+         public void finish() {
+            if (graphData != null) {
+               passGraph();
+            }
+         }
+
+         private void passGraph() {
+            consumer.accept(JenaCommonsRDF.fromJena(graphData));
+            graphData = null;
+         }
+      };
+      try {
+         RDFParser.source(in).lang(lang).parse(graphCollector);
+      } catch (RiotException rex) {
+         throw new FormatException(rex.getMessage(), rex);
+      }
+   }
+
+   @Override
+   public GraphWriter writeGraphs(OutputStream out, Format format) throws WapException {
+      Lang lang = JenaFormatMapper.map(format);
+      if (lang == null || !RDFLanguages.isQuads(lang) || !StreamRDFWriter.registered(lang)) {
+         throw new FormatException("Format " + format + " cannot be streamed in jena RDF backend");
+      }
+      final StreamRDF stream = StreamRDFWriter.getWriterStream(out, lang);
+      stream.start();
+      return new GraphWriter() {
+         @Override
+         public void write(BlankNodeOrIRI graphName, Dataset dataset) {
+            Node graphNode = JenaCommonsRDF.toJena(graphName);
+            dataset.getGraph().iterate()
+                  .forEach(triple -> stream.quad(Quad.create(graphNode, JenaCommonsRDF.toJena(triple))));
+         }
+
+         @Override
+         public void finish() {
+            stream.finish();
+         }
+      };
+   }
+
    @Override
    public boolean isValidInputFormat(Format format) {
       // we allow only JSON-LD for now
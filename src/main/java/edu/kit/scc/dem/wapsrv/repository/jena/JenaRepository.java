@@ -2,31 +2,50 @@ package edu.kit.scc.dem.wapsrv.repository.jena;
 
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.rdf.api.RDF;
 import org.apache.jena.commonsrdf.JenaCommonsRDF;
 import org.apache.jena.commonsrdf.impl.JenaDataset;
 import org.apache.jena.commonsrdf.JenaRDF;
+import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Seq;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.tdb2.DatabaseMgr;
 import org.springframework.beans.factory.annotation.Autowired;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
 import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
 import edu.kit.scc.dem.wapsrv.model.WapObject;
 import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.model.rdf.WapObjectView;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 import edu.kit.scc.dem.wapsrv.repository.CollectedRepository;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.ResourceStatusIndex;
+import edu.kit.scc.dem.wapsrv.repository.TargetIndex;
+import edu.kit.scc.dem.wapsrv.repository.TextIndex;
+import edu.kit.scc.dem.wapsrv.repository.TimeIndex;
 import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
-import org.apache.jena.query.ReadWrite;
 import org.apache.jena.query.TxnType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -43,7 +62,6 @@ import org.springframework.stereotype.Repository;
  * @version 1.1
  */
 @Repository("jena")
-@Primary
 public class JenaRepository extends CollectedRepository {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
@@ -64,6 +82,86 @@ public class JenaRepository extends CollectedRepository {
      */
     @Autowired
     private RdfBackend rdfBackend;
+    /**
+     * The index over the members of the container seqs
+     */
+    private final SeqMembershipIndex membershipIndex = new SeqMembershipIndex();
+    /**
+     * Taken to begin the transaction together with the snapshot of the
+     * membership index and to commit both, so no transaction sees a database
+     * and an index of different commits
+     */
+    private final Object snapshotLock = new Object();
+    /**
+     * The seqs currently waiting for or in compaction
+     */
+    private final Map<String, Boolean> compacting = new ConcurrentHashMap<>();
+    /**
+     * Renumbers seqs with too many gaps in the background
+     */
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "seq-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * The status of the WapObjects, null if not used
+     */
+    private ResourceStatusIndex statusIndex;
+    /**
+     * Keeps the status index in line with writes of others
+     */
+    private StatusIndexListener statusIndexListener;
+    /**
+     * The targets of the annotations, null if not used
+     */
+    private TargetIndex targetIndex;
+    /**
+     * Keeps the target index in line with writes of others
+     */
+    private StatusIndexListener targetIndexListener;
+    /**
+     * The full-text index of the annotations, null if not used
+     */
+    private TextIndex textIndex;
+    /**
+     * Keeps the text index in line with writes of others
+     */
+    private StatusIndexListener textIndexListener;
+    /**
+     * The created and modified times of the annotations, null if not used
+     */
+    private TimeIndex timeIndex;
+    /**
+     * Keeps the time index in line with writes of others
+     */
+    private StatusIndexListener timeIndexListener;
+    /**
+     * The journal of the mutations, null if not used
+     */
+    private MutationJournal mutationJournal;
+
+    /**
+     * Creates a new Jena repository, the database and the configuration are
+     * autowired.
+     */
+    public JenaRepository() {
+    }
+
+    /**
+     * Creates a new Jena repository on the given database, used as shard of the
+     * {@link ShardedJenaRepository}. Neither the status index nor the mutation
+     * journal are set up, the sharded repository takes care of that.
+     *
+     * @param wapServerConfig The application configuration
+     * @param rdfBackend The RDF backend
+     * @param dataBase The database of the shard
+     */
+    JenaRepository(WapServerConfig wapServerConfig, RdfBackend rdfBackend, Dataset dataBase) {
+        this.wapServerConfig = wapServerConfig;
+        this.rdfBackend = rdfBackend;
+        this.dataBase = dataBase;
+    }
 
     /**
      * Sets the configuration to use
@@ -83,6 +181,113 @@ public class JenaRepository extends CollectedRepository {
         if (dataBaseSource != null) {
             setDataBase(dataBaseSource.getDataBase());
         }
+        log.info("Using transaction concurrency mode {}.", getConcurrencyMode());
+        if (wapServerConfig.isResourceStatusIndexEnabled() && dataBase != null
+                && DatabaseMgr.isTDB2(dataBase.asDatasetGraph())) {
+            statusIndex = new ResourceStatusIndex(this);
+            statusIndexListener = StatusIndexListener.attach(this, statusIndex, dataBase.asDatasetGraph());
+            statusIndex.build();
+        }
+        if (wapServerConfig.isTargetIndexEnabled() && dataBase != null
+                && DatabaseMgr.isTDB2(dataBase.asDatasetGraph())) {
+            targetIndex = new TargetIndex(this);
+            targetIndexListener = StatusIndexListener.attach(this, targetIndex, dataBase.asDatasetGraph());
+            targetIndex.build();
+        }
+        if (wapServerConfig.isTextIndexEnabled() && dataBase != null
+                && DatabaseMgr.isTDB2(dataBase.asDatasetGraph())) {
+            textIndex = new TextIndex(this);
+            textIndexListener = StatusIndexListener.attach(this, textIndex, dataBase.asDatasetGraph());
+            // Reading all texts takes a while, searches scan the database meanwhile
+            textIndex.invalidate();
+        }
+        if (wapServerConfig.isTimeIndexEnabled() && dataBase != null
+                && DatabaseMgr.isTDB2(dataBase.asDatasetGraph())) {
+            timeIndex = new TimeIndex(this);
+            timeIndexListener = StatusIndexListener.attach(this, timeIndex, dataBase.asDatasetGraph());
+            timeIndex.build();
+        }
+        if (wapServerConfig.isMutationJournalEnabled() && dataBase != null
+                && DatabaseMgr.isTDB2(dataBase.asDatasetGraph())) {
+            Location location = DatabaseMgr.location(dataBase.asDatasetGraph());
+            if (location != null && !location.isMem()) {
+                mutationJournal = MutationJournal.open(
+                        Paths.get(location.getDirectoryPath(), MutationJournal.FOLDER),
+                        wapServerConfig.getMutationJournalSegmentSizeMb() * 1024L * 1024L,
+                        TimeUnit.HOURS.toMillis(wapServerConfig.getMutationJournalRetentionHours()));
+                if (!ShardedJenaRepository.NAME.equals(wapServerConfig.getRdfBackendImplementation())) {
+                    // As the first shard it only knows its own commits, the sharded repository recovers the journal
+                    mutationJournal.recover(readJournalSequence());
+                }
+                log.info("Journaling mutations from sequence number {}.", mutationJournal.getNextSequence());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        closeMutationJournal();
+        closeIndexes();
+        compactor.shutdownNow();
+    }
+
+    /**
+     * Listens to the commits of the new generation of the database after a
+     * compaction and rebuilds the indexes, as commits may have been missed
+     * during the switch.
+     */
+    void compacted() {
+        if (statusIndex != null) {
+            statusIndexListener = StatusIndexListener.attach(this, statusIndex, dataBase.asDatasetGraph());
+            statusIndex.invalidate();
+        }
+        if (targetIndex != null) {
+            targetIndexListener = StatusIndexListener.attach(this, targetIndex, dataBase.asDatasetGraph());
+            targetIndex.invalidate();
+        }
+        if (textIndex != null) {
+            textIndexListener = StatusIndexListener.attach(this, textIndex, dataBase.asDatasetGraph());
+            textIndex.invalidate();
+        }
+        if (timeIndex != null) {
+            timeIndexListener = StatusIndexListener.attach(this, timeIndex, dataBase.asDatasetGraph());
+            timeIndex.invalidate();
+        }
+    }
+
+    /**
+     * Stops maintaining the status, the target, the text and the time index, e.g. because
+     * the database became a shard of the {@link ShardedJenaRepository}, which
+     * keeps its own status index.
+     */
+    void closeIndexes() {
+        if (statusIndex != null) {
+            statusIndexListener.detach();
+            statusIndex.close();
+            statusIndex = null;
+        }
+        if (targetIndex != null) {
+            targetIndexListener.detach();
+            targetIndex.close();
+            targetIndex = null;
+        }
+        if (textIndex != null) {
+            textIndexListener.detach();
+            textIndex.close();
+            textIndex = null;
+        }
+        if (timeIndex != null) {
+            timeIndexListener.detach();
+            timeIndex.close();
+            timeIndex = null;
+        }
+    }
+
+    private void closeMutationJournal() {
+        if (mutationJournal != null) {
+            mutationJournal.close();
+            mutationJournal = null;
+        }
     }
 
     @Override
@@ -99,6 +304,19 @@ public class JenaRepository extends CollectedRepository {
         return retDs;
     }
 
+    @Override
+    public Map<String, org.apache.commons.rdf.api.Dataset> getWapObjects(List<String> iris) {
+        return JenaMultiGet.read(dataBase, iris);
+    }
+
+    @Override
+    public org.apache.commons.rdf.api.Dataset getWapObjectView(String iri) {
+        if (!dataBase.containsNamedModel(iri)) {
+            throw new NotExistentException("the requested container does not exist");
+        }
+        return new WapObjectView(JenaCommonsRDF.fromJena(dataBase.getNamedModel(iri).getGraph()), rdfBackend.getRdf());
+    }
+
     @Override
     public String backupDatabase() {
         DatabaseMgr.backup(dataBase.asDatasetGraph());
@@ -122,25 +340,52 @@ public class JenaRepository extends CollectedRepository {
      * @param dataBase the dataBase dataset to set
      */
     public void setDataBase(Dataset dataBase) {
+        // The indexes and the journal only cover the database set at startup
+        closeIndexes();
+        closeMutationJournal();
         this.dataBase = dataBase;
+        membershipIndex.clear();
     }
 
     @Override
     public boolean beginTransaction(TransactionRepository.Type type) {
         if (!dataBase.isInTransaction()) {
             log.trace("Beginning {} transaction.", type);
-            dataBase.begin(translateType(type));
+            if (type == TransactionRepository.Type.Write) {
+                // Waits for the writer lock, which must not block the commit of the writer holding it
+                dataBase.begin(translateType(type));
+                synchronized (snapshotLock) {
+                    membershipIndex.begin();
+                }
+            } else {
+                synchronized (snapshotLock) {
+                    dataBase.begin(translateType(type));
+                    membershipIndex.begin();
+                }
+            }
             log.trace("{} transaction now active.", type);
             return true;
         }
         return false;
     }
 
+    @Override
+    public boolean promoteTransaction() {
+        if (!dataBase.isInTransaction()) {
+            return false;
+        }
+        log.trace("Promoting transaction.");
+        boolean promoted = dataBase.promote();
+        log.trace("Transaction promoted : {}", promoted);
+        return promoted;
+    }
+
     @Override
     public void abortTransaction() {
         if (dataBase.isInTransaction()) {
             log.trace("Aborting {} transaction.");
             dataBase.abort();
+            membershipIndex.end();
             log.trace("Transaction aborted.");
             log.trace("Ending dataset.");
             dataBase.end();
@@ -154,10 +399,16 @@ public class JenaRepository extends CollectedRepository {
             try {
                 if (dataBase.isInTransaction()) {
                     log.trace("Committing dataset.");
-                    dataBase.commit();
+                    List<String> toCompact;
+                    synchronized (snapshotLock) {
+                        dataBase.commit();
+                        toCompact = membershipIndex.commit();
+                    }
                     log.trace("Dataset committed.");
+                    toCompact.forEach(this::scheduleCompaction);
                 }
             } finally {
+                membershipIndex.end();
                 log.trace("Ending dataset.");
                 dataBase.end();
                 log.trace("Dataset ended.");
@@ -165,14 +416,73 @@ public class JenaRepository extends CollectedRepository {
         }
     }
 
-    private ReadWrite translateType(TransactionRepository.Type type) {
+    @Override
+    public TransactionRepository.ConcurrencyMode getConcurrencyMode() {
+        return wapServerConfig.getTransactionConcurrencyMode();
+    }
+
+    @Override
+    public ResourceStatusIndex getResourceStatusIndex() {
+        return statusIndex;
+    }
+
+    @Override
+    public TargetIndex getTargetIndex() {
+        return targetIndex;
+    }
+
+    @Override
+    public TextIndex getTextIndex() {
+        return textIndex;
+    }
+
+    @Override
+    public TimeIndex getTimeIndex() {
+        return timeIndex;
+    }
+
+    @Override
+    public MutationJournal getMutationJournal() {
+        return mutationJournal;
+    }
+
+    @Override
+    public void writeJournalSequence(long sequence) {
+        Model model = dataBase.getNamedModel(WapVocab.journal.getIRIString());
+        Resource journal = model.createResource(WapVocab.journal.getIRIString());
+        Property property = model.createProperty(WapVocab.journalSequence.getIRIString());
+        model.removeAll(journal, property, null);
+        model.addLiteral(journal, property, sequence);
+    }
+
+    /**
+     * Reads the sequence number of the last mutation journal entry committed with
+     * the database.
+     *
+     * @return The sequence number, -1 if none has been committed yet
+     */
+    long readJournalSequence() {
+        dataBase.begin(TxnType.READ);
+        try {
+            Model model = dataBase.getNamedModel(WapVocab.journal.getIRIString());
+            Statement statement = model.getProperty(model.createResource(WapVocab.journal.getIRIString()),
+                    model.createProperty(WapVocab.journalSequence.getIRIString()));
+            return statement == null ? -1 : statement.getLong();
+        } finally {
+            dataBase.end();
+        }
+    }
+
+    private TxnType translateType(TransactionRepository.Type type) {
         if (type.equals(TransactionRepository.Type.Read)) {
-            return ReadWrite.READ;
-            //return TxnType.READ;
+            return TxnType.READ;
         }
         if (type.equals(TransactionRepository.Type.Write)) {
-            return ReadWrite.WRITE;
-            //return TxnType.WRITE;
+            return TxnType.WRITE;
+        }
+        if (type.equals(TransactionRepository.Type.ReadPromote)) {
+            // Promotion fails if another transaction has committed since this one began
+            return TxnType.READ_PROMOTE;
         }
         return null;
     }
@@ -185,26 +495,43 @@ public class JenaRepository extends CollectedRepository {
     @Override
     public void addElementToRdfSeq(String modelIri, String seqIri, String objIri) {
         Model model = dataBase.getNamedModel(modelIri);
-        Seq seq = model.getSeq(seqIri);
-        Resource objectResource = model.getResource(objIri);
-        seq.add(objectResource);
+        Resource seq = model.getResource(seqIri);
+        String key = SeqMembershipIndex.toKey(modelIri, seqIri);
+        // Never use Seq.add, it calculates the next slot from the size, which is wrong if there are gaps
+        int slot = membershipIndex.changes(key, () -> getMaxSlot(key, seq)).append();
+        model.add(seq, slotProperty(slot), model.getResource(objIri));
+        SeqCounter.update(model, seq, 1, () -> readMembers(seq).size());
     }
 
     @Override
     public void removeElementFromRdfSeq(String modelIri, String seqIri, String objIri) {
         Model model = dataBase.getNamedModel(modelIri);
-        Seq seq = model.getSeq(seqIri);
-        Resource objectResource = model.getResource(objIri);
-        int indexOfContainer = seq.indexOf(objectResource);
-        if (indexOfContainer > 0) {
-            seq.remove(indexOfContainer);
+        Resource seq = model.getResource(seqIri);
+        String key = SeqMembershipIndex.toKey(modelIri, seqIri);
+        // Only the triple of the member is removed, the following ones keep their slots
+        List<Statement> memberStatements = model.listStatements(seq, null, model.getResource(objIri)).toList();
+        for (Statement statement : memberStatements) {
+            int slot = statement.getPredicate().getOrdinal();
+            if (slot > 0) {
+                membershipIndex.changes(key, () -> getMaxSlot(key, seq)).remove(slot);
+                model.remove(statement);
+                SeqCounter.update(model, seq, -1, () -> readMembers(seq).size());
+            }
         }
     }
 
     @Override
     public int countElementsInSeq(String modelIri, String seqIri) {
-        Seq seq = dataBase.getNamedModel(modelIri).getSeq(seqIri);
-        return seq.size();
+        Model model = dataBase.getNamedModel(modelIri);
+        Resource seq = model.getResource(seqIri);
+        Integer count = SeqCounter.read(model, seq);
+        if (count != null) {
+            return count;
+        }
+        // Seq not changed since the counter was introduced
+        String key = SeqMembershipIndex.toKey(modelIri, seqIri);
+        SeqMembershipIndex.SlotView index = membershipIndex.get(key, () -> loadSlotIndex(seq));
+        return index == null ? readMembers(seq).size() : index.size();
     }
 
     @Override
@@ -218,23 +545,209 @@ public class JenaRepository extends CollectedRepository {
         // Model returnValue = dataBase.getNamedModel(iriString);
     }
 
+    @Override
+    public long bulkWriteObjectsToDatabase(Iterator<? extends WapObject> wapObjects) {
+        return JenaBulkLoader.load(dataBase, wapObjects);
+    }
+
     @Override
     public List<String> getRangeOfObjectIrisFromSeq(String containerIri, String seqIri, int firstIndex, int lastIndex) {
-        List<String> retValue = new ArrayList<>();
-        Model containerModel = dataBase.getNamedModel(containerIri);
-        Seq annoSeq = containerModel.getSeq(seqIri);
-        for (int i = firstIndex; i <= lastIndex; i++) {
-            String annotationIri = annoSeq.getObject(i).asResource().toString();
-            retValue.add(annotationIri);
+        Resource seq = dataBase.getNamedModel(containerIri).getResource(seqIri);
+        String key = SeqMembershipIndex.toKey(containerIri, seqIri);
+        SeqMembershipIndex.SlotView index = membershipIndex.get(key, () -> loadSlotIndex(seq));
+        if (index != null) {
+            List<String> retValue = new ArrayList<>();
+            for (int slot : index.slots(firstIndex, lastIndex)) {
+                Statement statement = seq.getProperty(slotProperty(slot));
+                if (statement == null) {
+                    invalidate(key, seqIri);
+                    return getRangeOfMembers(seq, firstIndex, lastIndex);
+                }
+                retValue.add(statement.getResource().toString());
+            }
+            return retValue;
         }
-        return retValue;
+        return getRangeOfMembers(seq, firstIndex, lastIndex);
+    }
+
+    @Override
+    public Map<Long, String> getObjectIrisFromSeqAfter(String modelIri, String seqIri, long afterPosition,
+            String afterIri, int count) {
+        Model model = dataBase.getNamedModel(modelIri);
+        Resource seq = model.getResource(seqIri);
+        String key = SeqMembershipIndex.toKey(modelIri, seqIri);
+        // The position is the slot together with the epoch of the seq, slots change only when renumbered
+        long epoch = SeqCounter.readEpoch(model, seq);
+        int afterSlot = afterIri == null ? 0
+                : findSlotAfter(seq, (int) afterPosition, afterIri, afterPosition >>> 32 == epoch);
+        Map<Long, String> members = new LinkedHashMap<>();
+        SeqMembershipIndex.SlotView index = membershipIndex.get(key, () -> loadSlotIndex(seq));
+        if (index != null) {
+            boolean inSync = true;
+            for (int slot : index.slotsAfter(afterSlot, count)) {
+                Statement statement = seq.getProperty(slotProperty(slot));
+                if (statement == null) {
+                    invalidate(key, seqIri);
+                    inSync = false;
+                    break;
+                }
+                members.put(epoch << 32 | slot, statement.getResource().toString());
+            }
+            if (inSync) {
+                return members;
+            }
+            members.clear();
+        }
+        for (Map.Entry<Integer, String> member : readMembers(seq).tailMap(afterSlot, false).entrySet()) {
+            if (members.size() == count) {
+                break;
+            }
+            members.put(epoch << 32 | member.getKey(), member.getValue());
+        }
+        return members;
+    }
+
+    /**
+     * Finds the slot to continue after. If the seq has been renumbered since,
+     * the new slot of the member is used. If the member has been removed, its
+     * old slot is still right as long as the seq has not been renumbered.
+     *
+     * @param seq The seq
+     * @param slot The slot of the member read last
+     * @param memberIri The IRI of the member read last
+     * @param sameEpoch true if the seq has not been renumbered since
+     * @return The slot to continue after
+     */
+    private int findSlotAfter(Resource seq, int slot, String memberIri, boolean sameEpoch) {
+        if (sameEpoch) {
+            return slot;
+        }
+        StmtIterator iter = seq.getModel().listStatements(seq, null, seq.getModel().getResource(memberIri));
+        try {
+            while (iter.hasNext()) {
+                int memberSlot = iter.next().getPredicate().getOrdinal();
+                if (memberSlot > 0) {
+                    return memberSlot;
+                }
+            }
+        } finally {
+            iter.close();
+        }
+        throw new NotExistentException(ErrorMessageRegistry.PAGE_CURSOR_EXPIRED);
+    }
+
+    /**
+     * Drops the index of a seq that does not match the database, e.g. after
+     * changes from outside. The index is read as of the snapshot of the
+     * transaction, so a missing member is never caused by a later commit.
+     *
+     * @param key The seq key
+     * @param seqIri The IRI of the seq
+     */
+    private void invalidate(String key, String seqIri) {
+        log.warn("Membership index of {} out of sync, rebuilding it.", seqIri);
+        membershipIndex.invalidate(key);
     }
 
     @Override
     public List<String> getAllObjectIrisOfSeq(String modelIri, String seqIri) {
-        Model containerModel = dataBase.getNamedModel(modelIri);
-        Seq annoSeq = containerModel.getSeq(seqIri);
-        return getRangeOfObjectIrisFromSeq(modelIri, seqIri, 1, annoSeq.size());
+        Resource seq = dataBase.getNamedModel(modelIri).getResource(seqIri);
+        return new ArrayList<>(readMembers(seq).values());
+    }
+
+    private List<String> getRangeOfMembers(Resource seq, int firstIndex, int lastIndex) {
+        List<String> members = new ArrayList<>(readMembers(seq).values());
+        int from = Math.max(1, firstIndex);
+        int to = Math.min(members.size(), lastIndex);
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(members.subList(from - 1, to));
+    }
+
+    /**
+     * Reads all members of the seq from the database.
+     *
+     * @param seq The seq
+     * @return The member IRIs by slot, in the order of the seq
+     */
+    private TreeMap<Integer, String> readMembers(Resource seq) {
+        TreeMap<Integer, String> members = new TreeMap<>();
+        StmtIterator iter = seq.listProperties();
+        try {
+            while (iter.hasNext()) {
+                Statement statement = iter.next();
+                int slot = statement.getPredicate().getOrdinal();
+                if (slot > 0) {
+                    members.put(slot, statement.getResource().toString());
+                }
+            }
+        } finally {
+            iter.close();
+        }
+        return members;
+    }
+
+    private static Property slotProperty(int slot) {
+        return org.apache.jena.vocabulary.RDF.li(slot);
+    }
+
+    private SeqMembershipIndex.SlotIndex loadSlotIndex(Resource seq) {
+        return new SeqMembershipIndex.SlotIndex(readMembers(seq).keySet().stream().mapToInt(Integer::intValue)
+                .toArray());
+    }
+
+    private int getMaxSlot(String key, Resource seq) {
+        SeqMembershipIndex.SlotView index = membershipIndex.get(key, () -> loadSlotIndex(seq));
+        if (index != null) {
+            return index.getMaxSlot();
+        }
+        TreeMap<Integer, String> members = readMembers(seq);
+        return members.isEmpty() ? 0 : members.lastKey();
+    }
+
+    /**
+     * Renumbers the members of the seq without gaps. The order of the members
+     * stays the same.
+     *
+     * @param modelIri The IRI of the model holding the seq
+     * @param seqIri The IRI of the seq
+     */
+    public void compactSeq(String modelIri, String seqIri) {
+        Model model = dataBase.getNamedModel(modelIri);
+        Resource seq = model.getResource(seqIri);
+        TreeMap<Integer, String> members = readMembers(seq);
+        if (members.isEmpty() || members.lastKey() == members.size()) {
+            return;
+        }
+        log.info("Compacting {} with {} members and {} gaps.", seqIri, members.size(),
+                members.lastKey() - members.size());
+        for (Map.Entry<Integer, String> member : members.entrySet()) {
+            model.remove(seq, slotProperty(member.getKey()), model.getResource(member.getValue()));
+        }
+        int slot = 1;
+        for (String member : members.values()) {
+            model.add(seq, slotProperty(slot++), model.getResource(member));
+        }
+        SeqCounter.writeEpoch(model, seq, SeqCounter.readEpoch(model, seq) + 1);
+        String key = SeqMembershipIndex.toKey(modelIri, seqIri);
+        membershipIndex.changes(key, () -> members.lastKey()).reset(members.size());
+    }
+
+    private void scheduleCompaction(String key) {
+        if (compacting.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        String[] seq = SeqMembershipIndex.fromKey(key);
+        compactor.execute(() -> {
+            try {
+                writeRdfTransaction(ds -> compactSeq(seq[0], seq[1]));
+            } catch (RuntimeException e) {
+                log.error("Compaction of " + seq[1] + " failed", e);
+            } finally {
+                compacting.remove(key);
+            }
+        });
     }
 
     @Override
@@ -248,8 +761,13 @@ public class JenaRepository extends CollectedRepository {
     public void emptySeq(String modelIri, String seqIri) {
         Model model = dataBase.getNamedModel(modelIri);
         Resource subject = model.createResource(seqIri);
+        int epoch = SeqCounter.readEpoch(model, subject);
         model.removeAll(subject, null, null);
         // regenerate the seq.
         model.createSeq(seqIri);
+        SeqCounter.write(model, subject, 0);
+        // Slots start again with 1
+        SeqCounter.writeEpoch(model, subject, epoch + 1);
+        membershipIndex.changes(SeqMembershipIndex.toKey(modelIri, seqIri), () -> 0).reset(0);
     }
 }
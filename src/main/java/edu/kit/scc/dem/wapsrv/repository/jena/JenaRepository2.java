@@ -4,7 +4,10 @@ import edu.kit.scc.dem.wapsrv.dao.ISequenceDao;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.PostConstruct;
 import org.apache.commons.rdf.api.RDF;
 import org.apache.jena.commonsrdf.JenaCommonsRDF;
@@ -12,7 +15,7 @@ import org.apache.jena.commonsrdf.JenaRDF;
 import org.apache.jena.commonsrdf.impl.JenaDataset;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.query.Dataset;
-import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.TxnType;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.tdb2.DatabaseMgr;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,13 +25,12 @@ import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
 import edu.kit.scc.dem.wapsrv.model.WapObject;
 import edu.kit.scc.dem.wapsrv.model.ext.SequenceResource;
 import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.model.rdf.WapObjectView;
 import edu.kit.scc.dem.wapsrv.repository.CollectedRepository;
 import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
-import java.util.Optional;
 import org.apache.jena.sparql.core.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 
 /**
@@ -44,6 +46,13 @@ import org.springframework.data.domain.PageRequest;
  * container. Typically, this is relevant only if containers with a size of more
  * than 10.000 elements are expected.
  *
+ * The members of a sequence are ordered by the ids of their rows. Ranges are
+ * read by keyset pagination, continuing after the id of the member preceding
+ * the range. Only reading after a known id, as done for the page cursors, costs
+ * no more than the page itself. Reading a range by position first has to look
+ * up the id preceding it, which skips the ids of all members before the range
+ * in the index of the table and therefore still grows with the position.
+ *
  * @author Matthias Dressel
  * @author Michael Hitzker
  * @author Markus Hoefler
@@ -95,6 +104,7 @@ public class JenaRepository2 extends CollectedRepository{
     if(dataBaseSource != null){
       setDataBase(dataBaseSource.getDataBase());
     }
+    log.info("Using transaction concurrency mode {}.", getConcurrencyMode());
   }
 
   @Override
@@ -111,6 +121,19 @@ public class JenaRepository2 extends CollectedRepository{
     return retDs;
   }
 
+  @Override
+  public Map<String, org.apache.commons.rdf.api.Dataset> getWapObjects(List<String> iris){
+    return JenaMultiGet.read(dataBase, iris);
+  }
+
+  @Override
+  public org.apache.commons.rdf.api.Dataset getWapObjectView(String iri){
+    if(!dataBase.containsNamedModel(iri)){
+      throw new NotExistentException("the requested container does not exist");
+    }
+    return new WapObjectView(JenaCommonsRDF.fromJena(dataBase.getNamedModel(iri).getGraph()), rdfBackend.getRdf());
+  }
+
   @Override
   public String backupDatabase(){
     DatabaseMgr.backup(dataBase.asDatasetGraph());
@@ -146,6 +169,11 @@ public class JenaRepository2 extends CollectedRepository{
     return false;
   }
 
+  @Override
+  public boolean promoteTransaction(){
+    return dataBase.isInTransaction() && dataBase.promote();
+  }
+
   @Override
   public void abortTransaction(){
     if(dataBase.isInTransaction()){
@@ -165,12 +193,21 @@ public class JenaRepository2 extends CollectedRepository{
     }
   }
 
-  private ReadWrite translateType(TransactionRepository.Type type){
+  @Override
+  public TransactionRepository.ConcurrencyMode getConcurrencyMode(){
+    return wapServerConfig.getTransactionConcurrencyMode();
+  }
+
+  private TxnType translateType(TransactionRepository.Type type){
     if(type.equals(TransactionRepository.Type.Read)){
-      return ReadWrite.READ;
+      return TxnType.READ;
     }
     if(type.equals(TransactionRepository.Type.Write)){
-      return ReadWrite.WRITE;
+      return TxnType.WRITE;
+    }
+    if(type.equals(TransactionRepository.Type.ReadPromote)){
+      // Promotion fails if another transaction has committed since this one began
+      return TxnType.READ_PROMOTE;
     }
     return null;
   }
@@ -187,24 +224,38 @@ public class JenaRepository2 extends CollectedRepository{
     log.trace("Persisting sequence resource {}.", res);
     res = iSequenceDao.save(res);
     log.trace("Successfully persisted sequence resource. Received id {}.", res.getId());
+    Model model = dataBase.getNamedModel(modelIri);
+    SeqCounter.update(model, model.getResource(seqIri), 1, () -> (int) iSequenceDao.countBySequenceIriEquals(seqIri));
+  }
+
+  @Override
+  public void addElementsToRdfSeq(String modelIri, String seqIri, List<String> objIris){
+    log.trace("Entering addElementsToRdfSeq({}, {}, {} IRI(s))).", modelIri, seqIri, objIris.size());
+    int added = iSequenceDao.appendAll(seqIri, objIris);
+    log.trace("Successfully persisted {} sequence resource(s).", added);
+    Model model = dataBase.getNamedModel(modelIri);
+    SeqCounter.update(model, model.getResource(seqIri), added,
+            () -> (int) iSequenceDao.countBySequenceIriEquals(seqIri));
   }
 
   @Override
   public void removeElementFromRdfSeq(String modelIri, String seqIri, String objIri){
     log.trace("Entering removeElementFromRdfSeq({}, {}, {}).", modelIri, seqIri, objIri);
-    Optional<SequenceResource> optRes = iSequenceDao.findByAnnotationIriEquals(objIri);
-    if(optRes.isPresent()){
-      SequenceResource res = optRes.get();
-      log.trace("Deleting resource {}.", res);
-      iSequenceDao.delete(res);
-      log.trace("Resource successfully deleted.");
+    int deleted = iSequenceDao.deleteBySequenceIriAndAnnotationIri(seqIri, objIri);
+    if(deleted > 0){
+      log.trace("Successfully deleted {} resource(s).", deleted);
+      Model model = dataBase.getNamedModel(modelIri);
+      SeqCounter.update(model, model.getResource(seqIri), -deleted,
+              () -> (int) iSequenceDao.countBySequenceIriEquals(seqIri));
     }
   }
 
   @Override
   public int countElementsInSeq(String modelIri, String seqIri){
     log.trace("Entering countElementsInSeq({}, {}).", modelIri, seqIri);
-    int cnt = iSequenceDao.findBySequenceIriEquals(seqIri).size();
+    Model model = dataBase.getNamedModel(modelIri);
+    Integer counter = SeqCounter.read(model, model.getResource(seqIri));
+    int cnt = counter != null ? counter : (int) iSequenceDao.countBySequenceIriEquals(seqIri);
     log.trace("Returning sequence size {}", cnt);
     return cnt;
   }
@@ -219,19 +270,47 @@ public class JenaRepository2 extends CollectedRepository{
     dataBase.addNamedModel(iriString, jenaModel);
   }
 
+  @Override
+  public long bulkWriteObjectsToDatabase(Iterator<? extends WapObject> wapObjects){
+    return JenaBulkLoader.load(dataBase, wapObjects);
+  }
+
   @Override
   public List<String> getRangeOfObjectIrisFromSeq(String containerIri, String seqIri, int firstIndex, int lastIndex){
     log.trace("Entering getRangeOfObjectIrisFromSeq({}, {}, {}, {}).", containerIri, seqIri, firstIndex, lastIndex);
 
-    int pageSize = wapServerConfig.getPageSize();
-    int pageNr = firstIndex / pageSize;
-    log.debug("Converted firstIndex {} and lastIndex {} to page {} using pageSize {}.", firstIndex, lastIndex, pageNr, pageSize);
-    Page<SequenceResource> page = iSequenceDao.findBySequenceIriEquals(seqIri, PageRequest.of(pageNr, pageSize));
-    log.trace("Obtaining resource IRIs from page.");
+    // Positions start with 1, as in rdf:Seq
+    int first = Math.max(1, firstIndex);
     List<String> retValue = new ArrayList<>();
-    page.getContent().forEach((r) -> {
-      retValue.add(r.getAnnotationIri());
-    });
+    if(lastIndex < first){
+      return retValue;
+    }
+    long previousId = 0;
+    if(first > 1){
+      // Positions are not stored, skipping the ids before the range is answered by the index only
+      List<Long> ids = iSequenceDao.findIdsBySequenceIri(seqIri, PageRequest.of(first - 2, 1));
+      if(ids.isEmpty()){
+        return retValue;
+      }
+      previousId = ids.get(0);
+    }
+    iSequenceDao.findNextBySequenceIri(seqIri, previousId, PageRequest.of(0, lastIndex - first + 1))
+            .forEach((r) -> retValue.add(r.getAnnotationIri()));
+    log.trace("Returning {} resource IRI(s).", retValue.size());
+    return retValue;
+  }
+
+  @Override
+  public Map<Long, String> getObjectIrisFromSeqAfter(String modelIri, String seqIri, long afterPosition,
+          String afterIri, int count){
+    log.trace("Entering getObjectIrisFromSeqAfter({}, {}, {}, {}).", modelIri, seqIri, afterPosition, count);
+    // The position is the id of the row, which never changes
+    Map<Long, String> retValue = new LinkedHashMap<>();
+    if(count <= 0){
+      return retValue;
+    }
+    iSequenceDao.findNextBySequenceIri(seqIri, afterIri == null ? 0L : afterPosition, PageRequest.of(0, count))
+            .forEach((r) -> retValue.put(r.getId(), r.getAnnotationIri()));
     log.trace("Returning {} resource IRI(s).", retValue.size());
     return retValue;
   }
@@ -239,7 +318,7 @@ public class JenaRepository2 extends CollectedRepository{
   @Override
   public List<String> getAllObjectIrisOfSeq(String modelIri, String seqIri){
     log.trace("Entering getAllObjectIrisOfSeq({}, {},).", modelIri, seqIri);
-    return getRangeOfObjectIrisFromSeq(modelIri, seqIri, 0, Integer.MAX_VALUE);
+    return iSequenceDao.findAnnotationIrisBySequenceIri(seqIri);
   }
 
   @Override
@@ -251,8 +330,9 @@ public class JenaRepository2 extends CollectedRepository{
   @Override
   public void emptySeq(String modelIri, String seqIri){
     log.trace("Entering emptySeq({}, {},).", modelIri, seqIri);
-    List<SequenceResource> res = iSequenceDao.findBySequenceIriEquals(seqIri);
-    log.trace("Removing {} resource IRI(s).", res.size());
-    iSequenceDao.deleteAll(res);
+    int deleted = iSequenceDao.deleteAllBySequenceIri(seqIri);
+    log.trace("Removed {} resource IRI(s).", deleted);
+    Model model = dataBase.getNamedModel(modelIri);
+    SeqCounter.write(model, model.getResource(seqIri), 0);
   }
 }
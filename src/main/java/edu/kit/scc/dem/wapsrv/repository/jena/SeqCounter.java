@@ -0,0 +1,96 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.util.function.IntSupplier;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Maintains the number of members of a container seq as a wap:memberCount
+ * triple of the seq. The counter is updated in the same transaction as the
+ * members, so reading the count of a seq never has to look at its members.<br>
+ * Seqs written before the counter existed get it the first time they are
+ * changed. Until then the count has to be determined by the caller.<br>
+ * The number of times the members of a seq have been renumbered is kept as a
+ * wap:seqEpoch triple the same way.
+ */
+final class SeqCounter {
+
+    private SeqCounter() {
+    }
+
+    private static Property counterProperty(Model model) {
+        return model.createProperty(WapVocab.memberCount.getIRIString());
+    }
+
+    /**
+     * Reads the member count of the seq.
+     *
+     * @param model The model holding the seq
+     * @param seq The seq
+     * @return The count, null if the seq has no counter yet
+     */
+    static Integer read(Model model, Resource seq) {
+        Statement statement = model.getProperty(seq, counterProperty(model));
+        if (statement == null) {
+            return null;
+        }
+        return statement.getInt();
+    }
+
+    /**
+     * Sets the member count of the seq.
+     *
+     * @param model The model holding the seq
+     * @param seq The seq
+     * @param count The new count
+     */
+    static void write(Model model, Resource seq, int count) {
+        Property property = counterProperty(model);
+        model.removeAll(seq, property, null);
+        model.add(seq, property, model.createTypedLiteral(String.valueOf(count), XSDDatatype.XSDnonNegativeInteger));
+    }
+
+    /**
+     * Reads the number of times the members of the seq have been renumbered.
+     *
+     * @param model The model holding the seq
+     * @param seq The seq
+     * @return The epoch, 0 if never renumbered
+     */
+    static int readEpoch(Model model, Resource seq) {
+        Statement statement = model.getProperty(seq, model.createProperty(WapVocab.seqEpoch.getIRIString()));
+        return statement == null ? 0 : statement.getInt();
+    }
+
+    /**
+     * Sets the number of times the members of the seq have been renumbered.
+     *
+     * @param model The model holding the seq
+     * @param seq The seq
+     * @param epoch The new epoch
+     */
+    static void writeEpoch(Model model, Resource seq, int epoch) {
+        Property property = model.createProperty(WapVocab.seqEpoch.getIRIString());
+        model.removeAll(seq, property, null);
+        model.add(seq, property, model.createTypedLiteral(String.valueOf(epoch), XSDDatatype.XSDnonNegativeInteger));
+    }
+
+    /**
+     * Changes the member count of the seq after members have been added or
+     * removed. If the seq has no counter yet, it is created with the current
+     * number of members.
+     *
+     * @param model The model holding the seq
+     * @param seq The seq
+     * @param delta The number of added members, negative if removed
+     * @param recount Counts the members of the seq, including the change
+     */
+    static void update(Model model, Resource seq, int delta, IntSupplier recount) {
+        Integer count = read(model, seq);
+        write(model, seq, count == null ? recount.getAsInt() : Math.max(0, count + delta));
+    }
+}
@@ -0,0 +1,689 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Index over the members of the rdf:Seq of containers. The members stay stored
+ * as rdf:_n triples in the database, but removing a member only deletes its own
+ * triple and leaves a gap (a tombstone) instead of renumbering all following
+ * members. The index knows which slot numbers are in use and translates the
+ * position of a member within the seq into its slot in O(log n), so appending,
+ * removing, counting and reading ranges no longer have to walk the seq.<br>
+ * <br>
+ * The index of a seq is built on first use from the slots stored in the
+ * database. Seqs written before the index existed are therefore used as they
+ * are, they are simply seqs without gaps. Once the gaps of a seq exceed a
+ * threshold, it is reported for compaction, which renumbers the stored slots
+ * without gaps in the background.<br>
+ * <br>
+ * Changes made within a write transaction are collected per thread and only
+ * applied to the index when the transaction is committed. The repository
+ * begins and commits its transactions together with the snapshots and the
+ * changes of the index, so every version of the index matches a snapshot of
+ * the database. The index of a seq is changed in place, but keeps the changes
+ * of the recent commits, so a transaction that began before them reads the
+ * slots of its own snapshot by undoing them, see {@link SlotView}. Changes
+ * older than the oldest running transaction are dropped, as are the oldest
+ * ones beyond {@value #MAX_HISTORY} changes. Only transactions that began
+ * before the index has been loaded or before dropped changes, and transactions
+ * that changed the seq themselves, read the seq from the database.
+ */
+final class SeqMembershipIndex {
+
+    /**
+     * The minimum number of gaps before a seq is compacted
+     */
+    static final int COMPACTION_MIN_GAPS = 1000;
+    /**
+     * The seq is compacted if the gaps exceed live members divided by this
+     */
+    static final int COMPACTION_GAP_DIVISOR = 4;
+    /**
+     * The maximum number of changes kept per seq for older snapshots
+     */
+    static final int MAX_HISTORY = 1024;
+
+    /**
+     * The indexes of the seqs, by seq key
+     */
+    private final Map<String, SlotIndex> indexes = new HashMap<>();
+    /**
+     * The version of the last committed change of a seq, by seq key
+     */
+    private final Map<String, Long> lastModified = new HashMap<>();
+    /**
+     * The version of the last committed transaction that changed a seq
+     */
+    private long version = 0;
+    /**
+     * The version committed when the transaction of the thread began
+     */
+    private final ThreadLocal<Long> snapshot = new ThreadLocal<>();
+    /**
+     * The number of running transactions by the version of their snapshot
+     */
+    private final TreeMap<Long, Integer> snapshots = new TreeMap<>();
+    /**
+     * The changes of the write transaction of the thread, by seq key
+     */
+    private final ThreadLocal<Map<String, PendingChanges>> pending = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Creates the key of a seq.
+     *
+     * @param modelIri The IRI of the model holding the seq
+     * @param seqIri The IRI of the seq
+     * @return The key
+     */
+    static String toKey(String modelIri, String seqIri) {
+        return modelIri + " " + seqIri;
+    }
+
+    /**
+     * Splits a key into the model IRI and the seq IRI.
+     *
+     * @param key The key
+     * @return The model IRI and the seq IRI
+     */
+    static String[] fromKey(String key) {
+        int split = key.indexOf(' ');
+        return new String[] {key.substring(0, split), key.substring(split + 1)};
+    }
+
+    /**
+     * Called when the current thread begins a transaction.
+     */
+    synchronized void begin() {
+        release();
+        snapshot.set(version);
+        snapshots.merge(version, 1, Integer::sum);
+        pending.get().clear();
+    }
+
+    /**
+     * Called after the transaction of the current thread has been committed.
+     * Applies its changes to the index.
+     *
+     * @return The keys of the seqs that should be compacted now
+     */
+    List<String> commit() {
+        Map<String, PendingChanges> changes = pending.get();
+        if (changes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> toCompact = new ArrayList<>();
+        synchronized (this) {
+            version++;
+            long oldest = snapshots.isEmpty() ? version : snapshots.firstKey();
+            for (Map.Entry<String, PendingChanges> entry : changes.entrySet()) {
+                String key = entry.getKey();
+                PendingChanges change = entry.getValue();
+                lastModified.put(key, version);
+                SlotIndex index = indexes.get(key);
+                if (change.reset) {
+                    // Renumbered or emptied, built again on next use
+                    indexes.remove(key);
+                } else if (index != null) {
+                    index.apply(version, change.removed, change.appended, oldest);
+                    if (index.needsCompaction()) {
+                        toCompact.add(key);
+                    }
+                }
+            }
+        }
+        changes.clear();
+        return toCompact;
+    }
+
+    /**
+     * Called when the transaction of the current thread ends, after it has been
+     * committed or aborted. Drops its changes not applied and releases its
+     * snapshot.
+     */
+    void end() {
+        pending.get().clear();
+        synchronized (this) {
+            release();
+        }
+    }
+
+    private void release() {
+        Long snapshotVersion = snapshot.get();
+        if (snapshotVersion != null) {
+            snapshot.remove();
+            snapshots.computeIfPresent(snapshotVersion, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * Drops all indexes, they are built again on next use.
+     */
+    synchronized void clear() {
+        indexes.clear();
+        lastModified.clear();
+        version++;
+    }
+
+    /**
+     * Drops the index of a seq because it does not match the database.
+     *
+     * @param key The seq key
+     */
+    synchronized void invalidate(String key) {
+        indexes.remove(key);
+    }
+
+    /**
+     * Gets the index of the seq as of the snapshot of the current transaction.
+     * If not built yet and the snapshot of the transaction is recent, the loaded
+     * index is kept for later transactions.
+     *
+     * @param key The seq key
+     * @param loader Loads the index from the database
+     * @return The index, null if the transaction has to read the database
+     */
+    SlotView get(String key, Supplier<SlotIndex> loader) {
+        if (pending.get().containsKey(key)) {
+            return null;
+        }
+        Long snapshotVersion = snapshot.get();
+        if (snapshotVersion == null) {
+            return null;
+        }
+        synchronized (this) {
+            SlotIndex index = indexes.get(key);
+            if (index != null) {
+                return index.covers(snapshotVersion) ? new SlotView(index, snapshotVersion) : null;
+            }
+            if (lastModified.getOrDefault(key, 0L) > snapshotVersion) {
+                return null;
+            }
+        }
+        // Loading may take some time, do not block the others meanwhile
+        SlotIndex index = loader.get();
+        synchronized (this) {
+            long modified = lastModified.getOrDefault(key, 0L);
+            if (modified <= snapshotVersion && !indexes.containsKey(key)) {
+                index.firstVersion = modified;
+                indexes.put(key, index);
+            }
+        }
+        return new SlotView(index, snapshotVersion);
+    }
+
+    /**
+     * Gets the changes of the current transaction for a seq, creating them if
+     * needed.
+     *
+     * @param key The seq key
+     * @param maxSlot Supplies the highest slot used in the seq
+     * @return The changes
+     */
+    PendingChanges changes(String key, Supplier<Integer> maxSlot) {
+        Map<String, PendingChanges> changes = pending.get();
+        PendingChanges change = changes.get(key);
+        if (change == null) {
+            change = new PendingChanges(maxSlot.get());
+            changes.put(key, change);
+        }
+        return change;
+    }
+
+    /**
+     * The changes of a write transaction to one seq
+     */
+    static final class PendingChanges {
+        private int maxSlot;
+        private boolean reset = false;
+        private final List<Integer> appended = new ArrayList<>();
+        private final List<Integer> removed = new ArrayList<>();
+
+        PendingChanges(int maxSlot) {
+            this.maxSlot = maxSlot;
+        }
+
+        /**
+         * Reserves the slot after the highest one used.
+         *
+         * @return The slot for a new member
+         */
+        int append() {
+            maxSlot++;
+            appended.add(maxSlot);
+            return maxSlot;
+        }
+
+        /**
+         * Records the removal of a member.
+         *
+         * @param slot The slot of the member
+         */
+        void remove(int slot) {
+            if (!appended.remove(Integer.valueOf(slot))) {
+                removed.add(slot);
+            }
+        }
+
+        /**
+         * Records that the seq has been emptied or renumbered.
+         *
+         * @param newMaxSlot The highest slot used afterwards
+         */
+        void reset(int newMaxSlot) {
+            reset = true;
+            maxSlot = newMaxSlot;
+            appended.clear();
+            removed.clear();
+        }
+    }
+
+    /**
+     * The index of a seq as of the snapshot of a transaction
+     */
+    static final class SlotView {
+        private final SlotIndex index;
+        private final long snapshot;
+
+        private SlotView(SlotIndex index, long snapshot) {
+            this.index = index;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Gets the number of members.
+         *
+         * @return The number of members
+         */
+        int size() {
+            return index.size(snapshot);
+        }
+
+        /**
+         * Gets the highest slot used so far.
+         *
+         * @return The highest slot, 0 if never used
+         */
+        int getMaxSlot() {
+            return index.getMaxSlot(snapshot);
+        }
+
+        /**
+         * Gets the slots of the members within the range of positions.
+         *
+         * @param first The position of the first member, starting with 1
+         * @param last The position of the last member (inclusive)
+         * @return The slots of the members, in order
+         */
+        int[] slots(int first, int last) {
+            return index.slots(first, last, snapshot);
+        }
+
+        /**
+         * Gets the slots of the members following a slot, which need not be in
+         * use anymore.
+         *
+         * @param after The slot to continue after, 0 to start with the first
+         * @param count The max. number of slots
+         * @return The slots of the members, in order
+         */
+        int[] slotsAfter(int after, int count) {
+            return index.slotsAfter(after, count, snapshot);
+        }
+    }
+
+    /**
+     * A change committed to the index of a seq
+     */
+    private static final class Change {
+        private final long version;
+        /**
+         * The highest slot used before the change
+         */
+        private final int maxSlot;
+        /**
+         * The slots changed, and whether each was in use before
+         */
+        private final int[] slots;
+        private final boolean[] wasLive;
+
+        private Change(long version, int maxSlot, int[] slots, boolean[] wasLive) {
+            this.version = version;
+            this.maxSlot = maxSlot;
+            this.slots = slots;
+            this.wasLive = wasLive;
+        }
+    }
+
+    /**
+     * The slots used by the members of one seq. A binary indexed tree over the
+     * slots counts the members up to a slot, which allows finding the slot of the
+     * n-th member in O(log n). The recent changes are kept, so the slots can be
+     * read as of an older snapshot as well.
+     */
+    static final class SlotIndex {
+        private static final int[][] NO_DIFFERENCE = {new int[0], new int[0]};
+        private final BitSet live = new BitSet();
+        private int[] tree;
+        private int capacity;
+        private int size = 0;
+        private int maxSlot = 0;
+        /**
+         * The changes applied since the index has been loaded, oldest first
+         */
+        private final ArrayDeque<Change> history = new ArrayDeque<>();
+        /**
+         * The oldest snapshot the index can be read as of
+         */
+        private long firstVersion = 0;
+
+        /**
+         * Creates the index for the given slots.
+         *
+         * @param slots The used slots, in any order
+         */
+        SlotIndex(int[] slots) {
+            int max = 0;
+            for (int slot : slots) {
+                if (slot > 0 && !live.get(slot)) {
+                    live.set(slot);
+                    size++;
+                    max = Math.max(max, slot);
+                }
+            }
+            maxSlot = max;
+            rebuild(Math.max(16, Integer.highestOneBit(Math.max(1, max)) << 1));
+        }
+
+        private void rebuild(int newCapacity) {
+            capacity = newCapacity;
+            tree = new int[capacity + 1];
+            for (int slot = live.nextSetBit(1); slot > 0 && slot <= capacity; slot = live.nextSetBit(slot + 1)) {
+                tree[slot]++;
+            }
+            for (int i = 1; i <= capacity; i++) {
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        private void update(int slot, int delta) {
+            for (int i = slot; i <= capacity; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        /**
+         * Adds a member at the given slot.
+         *
+         * @param slot The slot
+         */
+        synchronized void add(int slot) {
+            if (slot <= 0 || live.get(slot)) {
+                return;
+            }
+            live.set(slot);
+            size++;
+            maxSlot = Math.max(maxSlot, slot);
+            if (slot > capacity) {
+                rebuild(Integer.highestOneBit(slot) << 1);
+            } else {
+                update(slot, 1);
+            }
+        }
+
+        /**
+         * Removes the member at the given slot.
+         *
+         * @param slot The slot
+         */
+        synchronized void remove(int slot) {
+            if (slot <= 0 || !live.get(slot)) {
+                return;
+            }
+            live.clear(slot);
+            size--;
+            update(slot, -1);
+        }
+
+        /**
+         * Applies the changes of a commit and keeps them for older snapshots.
+         *
+         * @param version The version committed
+         * @param removed The slots removed
+         * @param appended The slots appended
+         * @param oldest The snapshot of the oldest running transaction
+         */
+        synchronized void apply(long version, List<Integer> removed, List<Integer> appended, long oldest) {
+            int[] slots = new int[removed.size() + appended.size()];
+            boolean[] wasLive = new boolean[slots.length];
+            int i = 0;
+            for (List<Integer> changed : Arrays.asList(removed, appended)) {
+                for (int slot : changed) {
+                    slots[i] = slot;
+                    wasLive[i++] = slot > 0 && live.get(slot);
+                }
+            }
+            history.addLast(new Change(version, maxSlot, slots, wasLive));
+            removed.forEach(this::remove);
+            appended.forEach(this::add);
+            // Dropping the changes up to a version leaves the state as of that version
+            while (!history.isEmpty() && (history.peekFirst().version <= oldest || history.size() > MAX_HISTORY)) {
+                firstVersion = Math.max(firstVersion, history.pollFirst().version);
+            }
+        }
+
+        /**
+         * Checks whether the slots can be read as of the given snapshot.
+         *
+         * @param snapshot The version of the snapshot
+         * @return True, if the changes since the snapshot are known
+         */
+        synchronized boolean covers(long snapshot) {
+            return snapshot >= firstVersion;
+        }
+
+        /**
+         * Gets the slots whose use differs between the snapshot and now.
+         *
+         * @param snapshot The version of the snapshot
+         * @return The sorted slots used now but not in the snapshot, and those
+         *         used in the snapshot but not now
+         */
+        private int[][] difference(long snapshot) {
+            if (history.isEmpty() || history.peekLast().version <= snapshot) {
+                return NO_DIFFERENCE;
+            }
+            // The first change after the snapshot touching a slot tells its use as of the snapshot
+            Map<Integer, Boolean> before = new HashMap<>();
+            for (Change change : history) {
+                if (change.version > snapshot) {
+                    for (int i = 0; i < change.slots.length; i++) {
+                        before.putIfAbsent(change.slots[i], change.wasLive[i]);
+                    }
+                }
+            }
+            int[] added = before.entrySet().stream()
+                    .filter(entry -> !entry.getValue() && live.get(entry.getKey()))
+                    .mapToInt(Map.Entry::getKey).sorted().toArray();
+            int[] dropped = before.entrySet().stream()
+                    .filter(entry -> entry.getValue() && !live.get(entry.getKey()))
+                    .mapToInt(Map.Entry::getKey).sorted().toArray();
+            return new int[][] {added, dropped};
+        }
+
+        /**
+         * Gets the number of members.
+         *
+         * @return The number of members
+         */
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int size(long snapshot) {
+            int[][] difference = difference(snapshot);
+            return size - difference[0].length + difference[1].length;
+        }
+
+        /**
+         * Gets the highest slot used so far.
+         *
+         * @return The highest slot, 0 if never used
+         */
+        synchronized int getMaxSlot() {
+            return maxSlot;
+        }
+
+        synchronized int getMaxSlot(long snapshot) {
+            for (Change change : history) {
+                if (change.version > snapshot) {
+                    return change.maxSlot;
+                }
+            }
+            return maxSlot;
+        }
+
+        /**
+         * Gets the slots of the members within the range of positions.
+         *
+         * @param first The position of the first member, starting with 1
+         * @param last The position of the last member (inclusive)
+         * @return The slots of the members, in order
+         */
+        synchronized int[] slots(int first, int last) {
+            return slots(first, last, Long.MAX_VALUE);
+        }
+
+        synchronized int[] slots(int first, int last, long snapshot) {
+            int[][] difference = difference(snapshot);
+            int from = Math.max(1, first);
+            int to = Math.min(size - difference[0].length + difference[1].length, last);
+            if (from > to) {
+                return new int[0];
+            }
+            int[] slots = new int[to - from + 1];
+            int slot = difference == NO_DIFFERENCE ? slotOf(from) : slotOf(from, difference);
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = slot;
+                slot = nextSlot(slot + 1, difference);
+            }
+            return slots;
+        }
+
+        /**
+         * Gets the slots of the members following a slot, which need not be in
+         * use anymore.
+         *
+         * @param after The slot to continue after, 0 to start with the first
+         * @param count The max. number of slots
+         * @return The slots of the members, in order
+         */
+        synchronized int[] slotsAfter(int after, int count) {
+            return slotsAfter(after, count, Long.MAX_VALUE);
+        }
+
+        synchronized int[] slotsAfter(int after, int count, long snapshot) {
+            int[][] difference = difference(snapshot);
+            int[] slots = new int[Math.max(0, Math.min(count, size - difference[0].length + difference[1].length))];
+            int found = 0;
+            for (int slot = nextSlot(Math.max(1, after + 1), difference); slot > 0 && found < slots.length;
+                    slot = nextSlot(slot + 1, difference)) {
+                slots[found++] = slot;
+            }
+            return Arrays.copyOf(slots, found);
+        }
+
+        /**
+         * Gets the first slot used as of the snapshot, starting at the given one.
+         *
+         * @param from The first slot to check
+         * @param difference The difference between the snapshot and now
+         * @return The slot, -1 if none
+         */
+        private int nextSlot(int from, int[][] difference) {
+            int slot = live.nextSetBit(from);
+            while (slot > 0 && Arrays.binarySearch(difference[0], slot) >= 0) {
+                slot = live.nextSetBit(slot + 1);
+            }
+            int dropped = countUpTo(difference[1], from - 1);
+            if (dropped < difference[1].length && (slot < 0 || difference[1][dropped] < slot)) {
+                return difference[1][dropped];
+            }
+            return slot;
+        }
+
+        /**
+         * Finds the slot of the member at the position as of the snapshot, by a
+         * binary search over the number of members up to a slot.
+         */
+        private int slotOf(int position, int[][] difference) {
+            int low = 1;
+            int high = maxSlot;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int members = count(middle) - countUpTo(difference[0], middle) + countUpTo(difference[1], middle);
+                if (members < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Counts the members up to the slot.
+         */
+        private int count(int slot) {
+            int members = 0;
+            for (int i = Math.min(slot, capacity); i > 0; i -= i & -i) {
+                members += tree[i];
+            }
+            return members;
+        }
+
+        private static int countUpTo(int[] sortedSlots, int slot) {
+            int index = Arrays.binarySearch(sortedSlots, slot);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        private int slotOf(int position) {
+            int pos = 0;
+            int remaining = position;
+            for (int step = Integer.highestOneBit(capacity); step > 0; step >>= 1) {
+                int next = pos + step;
+                if (next <= capacity && tree[next] < remaining) {
+                    pos = next;
+                    remaining -= tree[next];
+                }
+            }
+            return pos + 1;
+        }
+
+        /**
+         * Checks whether the seq has that many gaps that it should be renumbered.
+         *
+         * @return True, if the seq should be compacted
+         */
+        synchronized boolean needsCompaction() {
+            int gaps = maxSlot - size;
+            return gaps >= COMPACTION_MIN_GAPS && gaps > size / COMPACTION_GAP_DIVISOR;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "SlotIndex[size=" + size + ", maxSlot=" + maxSlot + ", slots="
+                    + Arrays.toString(slots(1, Math.min(size, 10))) + "]";
+        }
+    }
+}
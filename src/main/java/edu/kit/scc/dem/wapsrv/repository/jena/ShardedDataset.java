@@ -0,0 +1,137 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.api.RDFTerm;
+
+/**
+ * The dataset of a transaction of the {@link ShardedJenaRepository}. Every named
+ * graph is read from and written to the shard it is routed to, the default
+ * graph belongs to the first shard. Access without a graph name covers all
+ * shards. A shard joins the transaction when it is accessed for the first time.
+ */
+final class ShardedDataset implements Dataset {
+
+    private final ShardedJenaRepository repository;
+    /**
+     * The datasets of the shards accessed so far
+     */
+    private final Dataset[] shards;
+
+    /**
+     * Creates the dataset of a transaction of the repository.
+     *
+     * @param repository The sharded repository
+     */
+    ShardedDataset(ShardedJenaRepository repository) {
+        this.repository = repository;
+        this.shards = new Dataset[repository.getShardCount()];
+    }
+
+    private Dataset shard(int shard) {
+        if (shards[shard] == null) {
+            shards[shard] = repository.getShardDataset(shard);
+        }
+        return shards[shard];
+    }
+
+    private Dataset shardOf(Optional<BlankNodeOrIRI> graphName) {
+        return shard(graphName.isPresent() ? repository.getShardOf(graphName.get()) : 0);
+    }
+
+    /**
+     * Joins all shards, so the streams over them do not begin transactions while
+     * they are consumed.
+     */
+    private List<Dataset> allShards() {
+        List<Dataset> all = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            all.add(shard(shard));
+        }
+        return all;
+    }
+
+    @Override
+    public void add(Quad quad) {
+        shardOf(quad.getGraphName()).add(quad);
+    }
+
+    @Override
+    public void add(BlankNodeOrIRI graphName, BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+        shard(graphName == null ? 0 : repository.getShardOf(graphName)).add(graphName, subject, predicate, object);
+    }
+
+    @Override
+    public boolean contains(Quad quad) {
+        return shardOf(quad.getGraphName()).contains(quad);
+    }
+
+    @Override
+    public boolean contains(Optional<BlankNodeOrIRI> graphName, BlankNodeOrIRI subject, IRI predicate,
+            RDFTerm object) {
+        if (graphName == null) {
+            return allShards().stream().anyMatch(shard -> shard.contains(null, subject, predicate, object));
+        }
+        return shardOf(graphName).contains(graphName, subject, predicate, object);
+    }
+
+    @Override
+    public Graph getGraph() {
+        return shard(0).getGraph();
+    }
+
+    @Override
+    public Optional<Graph> getGraph(BlankNodeOrIRI graphName) {
+        return shard(repository.getShardOf(graphName)).getGraph(graphName);
+    }
+
+    @Override
+    public Stream<BlankNodeOrIRI> getGraphNames() {
+        return allShards().stream().flatMap(Dataset::getGraphNames);
+    }
+
+    @Override
+    public void remove(Quad quad) {
+        shardOf(quad.getGraphName()).remove(quad);
+    }
+
+    @Override
+    public void remove(Optional<BlankNodeOrIRI> graphName, BlankNodeOrIRI subject, IRI predicate, RDFTerm object) {
+        if (graphName == null) {
+            allShards().forEach(shard -> shard.remove(null, subject, predicate, object));
+        } else {
+            shardOf(graphName).remove(graphName, subject, predicate, object);
+        }
+    }
+
+    @Override
+    public void clear() {
+        allShards().forEach(Dataset::clear);
+    }
+
+    @Override
+    public long size() {
+        return allShards().stream().mapToLong(Dataset::size).sum();
+    }
+
+    @Override
+    public Stream<? extends Quad> stream() {
+        return allShards().stream().flatMap(Dataset::stream);
+    }
+
+    @Override
+    public Stream<? extends Quad> stream(Optional<BlankNodeOrIRI> graphName, BlankNodeOrIRI subject, IRI predicate,
+            RDFTerm object) {
+        if (graphName == null) {
+            return allShards().stream().flatMap(shard -> shard.stream(null, subject, predicate, object));
+        }
+        return shardOf(graphName).stream(graphName, subject, predicate, object);
+    }
+}
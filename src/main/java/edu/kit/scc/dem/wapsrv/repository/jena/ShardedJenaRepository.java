@@ -0,0 +1,889 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Repository;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.WapObject;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfTransactionExecuter;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+import edu.kit.scc.dem.wapsrv.repository.CollectedRepository;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.ResourceStatusIndex;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+
+/**
+ * A repository distributing the containers to several TDB2 datasets, the
+ * shards. Each top level container is stored with everything below it in one
+ * shard, chosen by the prefix map of the configuration or else by a consistent
+ * hash of its name. The root container and its annotations stay in the first
+ * shard, which is the regular database. Every other shard holds a copy of the
+ * root container with the seq of the top level containers it stores, the
+ * listing of the root container is merged from all of them.<br>
+ * Each shard has its own writer lock, so writing transactions working on
+ * different shards run in parallel. A shard joins a transaction when it is
+ * accessed for the first time. The writer locks are taken in ascending order of
+ * the shards, a transaction needing a lower shard than one it already holds
+ * only tries to get it. If that fails, the transaction is aborted and executed
+ * again, taking the locks of all shards it needed at once. The commit of a
+ * transaction spanning several shards is not atomic, a crash between the
+ * commits of the shards keeps the ones already committed. Reading transactions
+ * over several shards do not see a common snapshot. If mutations are
+ * journaled, an entry counts as committed after a crash if the shard of its
+ * WapObject has committed it.
+ */
+@Repository(ShardedJenaRepository.NAME)
+@Lazy
+public class ShardedJenaRepository extends CollectedRepository {
+
+    /**
+     * The name of the repository bean
+     */
+    static final String NAME = "jena+sharded";
+    /**
+     * The folder within the database folder holding the databases of the
+     * further shards
+     */
+    static final String SHARDS_FOLDER = "shards";
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    /**
+     * The application configuration to use
+     */
+    @Autowired
+    private WapServerConfig wapServerConfig;
+    /**
+     * The RDF backend
+     */
+    @Autowired
+    private RdfBackend rdfBackend;
+    /**
+     * The repository of the regular database, becomes the first shard
+     */
+    @Autowired
+    @Qualifier("jena")
+    private JenaRepository mainRepository;
+    /**
+     * The repositories of the shards
+     */
+    private List<JenaRepository> shards;
+    /**
+     * The writer lock of each shard
+     */
+    private ReentrantLock[] writeLocks;
+    /**
+     * The shards assigned by prefix of the top level container name, longest
+     * prefix first
+     */
+    private Map<String, Integer> prefixes;
+    /**
+     * The IRI of the root container
+     */
+    private String rootIri;
+    /**
+     * The transaction of the current thread, null if not in a transaction
+     */
+    private final ThreadLocal<ShardTransaction> transactions = new ThreadLocal<>();
+    /**
+     * The shards the attempts of the current transaction have conflicted on,
+     * null if not retrying
+     */
+    private final ThreadLocal<BitSet> retryShards = new ThreadLocal<>();
+    /**
+     * The status of the WapObjects of all shards, null if not used
+     */
+    private ResourceStatusIndex statusIndex;
+    /**
+     * Keep the status index in line with writes of others, one per shard
+     */
+    private final List<StatusIndexListener> statusIndexListeners = new ArrayList<>();
+
+    /**
+     * Creates a new sharded repository, the configuration and the regular
+     * database are autowired.
+     */
+    public ShardedJenaRepository() {
+    }
+
+    /**
+     * Creates a new sharded repository on the given shards.
+     *
+     * @param wapServerConfig The application configuration
+     * @param rdfBackend The RDF backend
+     * @param shards The repositories of the shards, each with its own database
+     */
+    ShardedJenaRepository(WapServerConfig wapServerConfig, RdfBackend rdfBackend, List<JenaRepository> shards) {
+        this.wapServerConfig = wapServerConfig;
+        this.rdfBackend = rdfBackend;
+        setShards(shards);
+    }
+
+    @PostConstruct
+    private void init() {
+        int shardCount = Math.max(1, wapServerConfig.getShardCount());
+        checkShardLayout(mainRepository, shardCount);
+        // The sharded repository keeps the status index over all shards, targets and texts are queried in the shards
+        mainRepository.closeIndexes();
+        List<JenaRepository> repositories = new ArrayList<>();
+        repositories.add(mainRepository);
+        for (int shard = 1; shard < shardCount; shard++) {
+            JenaDataBase dataBase = new JenaDataBase();
+            dataBase.init(getShardPath(shard), wapServerConfig.getRootContainerIri());
+            repositories.add(new JenaRepository(wapServerConfig, rdfBackend, dataBase.getDataBase()));
+        }
+        setShards(repositories);
+        MutationJournal journal = getMutationJournal();
+        if (journal != null) {
+            // A shard keeps its writer lock until its commit, so its sequence numbers ascend
+            long[] committed = repositories.stream().mapToLong(JenaRepository::readJournalSequence).toArray();
+            journal.recover(Arrays.stream(committed).max().orElse(-1),
+                    entry -> committed[getShardOf(entry.getIri())] >= entry.getSequence());
+        }
+        log.info("Using {} shards with transaction concurrency mode {}.", shardCount, getConcurrencyMode());
+        if (!coordinatesWrites()) {
+            log.warn("Writes to different shards only run in parallel with concurrency mode {}.",
+                    TransactionRepository.ConcurrencyMode.ConcurrentReads);
+        }
+        if (wapServerConfig.isResourceStatusIndexEnabled()
+                && getShardDataBases().stream().allMatch(dataBase -> DatabaseMgr.isTDB2(dataBase.asDatasetGraph()))) {
+            statusIndex = new ResourceStatusIndex(this);
+            attachStatusIndex();
+            statusIndex.build();
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (statusIndex != null) {
+            statusIndexListeners.forEach(StatusIndexListener::detach);
+            statusIndex.close();
+            statusIndex = null;
+        }
+        // The first shard is the regular repository, shut down on its own
+        for (JenaRepository shard : shards.subList(1, shards.size())) {
+            shard.shutdown();
+            shard.getDataBase().close();
+        }
+    }
+
+    private void setShards(List<JenaRepository> shards) {
+        this.shards = new ArrayList<>(shards);
+        writeLocks = new ReentrantLock[shards.size()];
+        for (int shard = 0; shard < writeLocks.length; shard++) {
+            writeLocks[shard] = new ReentrantLock();
+        }
+        prefixes = parsePrefixes(wapServerConfig.getShardPrefixes(), shards.size());
+        rootIri = wapServerConfig.getRootContainerIri();
+    }
+
+    /**
+     * Makes sure the shards are used with the layout their data has been written
+     * with. The layout is the number of shards and the prefix map, both decide
+     * which shard a container is stored in. It is stored in the first shard when
+     * the sharded repository starts on it for the first time. A database that
+     * already holds containers but no layout has been written without shards,
+     * its layout is a single shard without prefixes. There is no migration, a
+     * different layout would route existing containers to shards not holding
+     * their data.
+     *
+     * @param first The repository of the first shard
+     * @param shardCount The configured number of shards
+     * @throws IllegalStateException if the configured layout differs from the stored one
+     */
+    void checkShardLayout(JenaRepository first, int shardCount) {
+        String prefixList = parsePrefixes(wapServerConfig.getShardPrefixes(), shardCount).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey()).map(prefix -> prefix.getKey() + "=" + prefix.getValue())
+                .collect(Collectors.joining(","));
+        String rootIri = wapServerConfig.getRootContainerIri();
+        int[] containers = new int[1];
+        first.readRdfTransaction(
+                ds -> containers[0] = first.countElementsInSeq(rootIri, Container.toContainerSeqIriString(rootIri)));
+        Dataset dataBase = first.getDataBase();
+        Resource layout = ResourceFactory.createResource(WapVocab.shardLayout.getIRIString());
+        Property countProperty = ResourceFactory.createProperty(WapVocab.shardCount.getIRIString());
+        Property prefixesProperty = ResourceFactory.createProperty(WapVocab.shardPrefixes.getIRIString());
+        boolean stored = false;
+        dataBase.begin(TxnType.WRITE);
+        try {
+            Model model = dataBase.getNamedModel(WapVocab.shardLayout.getIRIString());
+            Statement storedCount = model.getProperty(layout, countProperty);
+            Statement storedPrefixes = model.getProperty(layout, prefixesProperty);
+            if (storedCount == null) {
+                if (containers[0] > 0 && (shardCount > 1 || !prefixList.isEmpty())) {
+                    throw new IllegalStateException("The database holds containers written without shards, "
+                            + "they can only be used with ShardCount 1 and no ShardPrefixes.");
+                }
+                model.addLiteral(layout, countProperty, (long) shardCount);
+                model.add(layout, prefixesProperty, prefixList);
+                dataBase.commit();
+                stored = true;
+                log.info("Stored the shard layout of {} shards with prefixes '{}'.", shardCount, prefixList);
+                return;
+            }
+            String storedPrefixList = storedPrefixes == null ? "" : storedPrefixes.getString();
+            if (storedCount.getLong() != shardCount || !storedPrefixList.equals(prefixList)) {
+                throw new IllegalStateException("The database has been written with " + storedCount.getLong()
+                        + " shards and the prefixes '" + storedPrefixList + "', but " + shardCount
+                        + " shards and the prefixes '" + prefixList + "' are configured. Existing containers "
+                        + "would be looked up in shards not holding them.");
+            }
+        } finally {
+            if (!stored) {
+                dataBase.abort();
+            }
+            dataBase.end();
+        }
+    }
+
+    private String getShardPath(int shard) {
+        String dataBasePath = wapServerConfig.getDataBasePath();
+        if (dataBasePath == null) {
+            return null;
+        }
+        return Paths.get(dataBasePath, SHARDS_FOLDER, String.valueOf(shard)).toString();
+    }
+
+    /**
+     * Parses the prefix map of the configuration.
+     *
+     * @param value The comma separated list of prefix=shard
+     * @param shardCount The number of shards
+     * @return The shards by prefix, longest prefix first
+     */
+    private Map<String, Integer> parsePrefixes(String value, int shardCount) {
+        Map<String, Integer> parsed = new LinkedHashMap<>();
+        if (value == null || value.trim().isEmpty()) {
+            return parsed;
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split("=");
+            try {
+                int shard = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : -1;
+                if (parts[0].trim().isEmpty() || shard < 0 || shard >= shardCount) {
+                    log.warn("Ignoring invalid shard prefix '{}'.", entry.trim());
+                    continue;
+                }
+                parsed.put(parts[0].trim(), shard);
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid shard prefix '{}'.", entry.trim());
+            }
+        }
+        return parsed.entrySet().stream()
+                .sorted((first, second) -> second.getKey().length() - first.getKey().length())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first,
+                        LinkedHashMap::new));
+    }
+
+    /**
+     * Gets the number of shards.
+     *
+     * @return The number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Gets the databases of the shards, the regular one first.
+     *
+     * @return The databases
+     */
+    public List<Dataset> getShardDataBases() {
+        return shards.stream().map(JenaRepository::getDataBase).collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the shard a WapObject is stored in. Everything below a top level
+     * container belongs to its shard, everything else to the first one.
+     *
+     * @param iri The IRI of the WapObject
+     * @return The shard
+     */
+    public int getShardOf(String iri) {
+        if (shards.size() == 1 || !iri.startsWith(rootIri)) {
+            return 0;
+        }
+        int end = iri.indexOf('/', rootIri.length());
+        if (end <= rootIri.length()) {
+            // The root container itself and its annotations
+            return 0;
+        }
+        return getShardOfContainer(iri.substring(rootIri.length(), end));
+    }
+
+    /**
+     * Gets the shard of the named graph of a WapObject.
+     *
+     * @param graphName The graph name
+     * @return The shard
+     */
+    int getShardOf(BlankNodeOrIRI graphName) {
+        return graphName instanceof IRI ? getShardOf(((IRI) graphName).getIRIString()) : 0;
+    }
+
+    /**
+     * Gets the shard of a top level container, by the longest matching prefix
+     * or else by a jump consistent hash of the FNV-1a hash of its name. The
+     * result depends on the number of shards and the prefixes, which are
+     * therefore fixed once the shards hold data, see
+     * {@link #checkShardLayout(JenaRepository, int)}.
+     */
+    private int getShardOfContainer(String name) {
+        for (Map.Entry<String, Integer> prefix : prefixes.entrySet()) {
+            if (name.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return jumpConsistentHash(hash, shards.size());
+    }
+
+    /**
+     * The jump consistent hash of Lamping and Veach.
+     *
+     * @param key The key
+     * @param buckets The number of buckets
+     * @return The bucket of the key
+     */
+    static int jumpConsistentHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    /**
+     * Gets the dataset of a shard within the transaction of the current thread.
+     *
+     * @param shard The shard
+     * @return The dataset of the shard
+     */
+    org.apache.commons.rdf.api.Dataset getShardDataset(int shard) {
+        return joinShard(shard).getTransactionDataset();
+    }
+
+    /**
+     * Gets the repository of a shard. If the current thread is within a
+     * transaction, the shard joins it.
+     *
+     * @param shard The shard
+     * @return The repository of the shard
+     */
+    private JenaRepository joinShard(int shard) {
+        ShardTransaction transaction = transactions.get();
+        if (transaction != null && !transaction.joined.get(shard)) {
+            if (transaction.type == TransactionRepository.Type.Write) {
+                lockShard(transaction, shard);
+            }
+            if (shards.get(shard).beginTransaction(transaction.type)) {
+                transaction.begun.set(shard);
+            }
+            transaction.joined.set(shard);
+        }
+        return shards.get(shard);
+    }
+
+    private void lockShard(ShardTransaction transaction, int shard) {
+        if (transaction.locked.get(shard)) {
+            return;
+        }
+        ReentrantLock lock = writeLocks[shard];
+        if (transaction.locked.nextSetBit(shard + 1) < 0) {
+            // All locks held belong to lower shards, waiting cannot deadlock
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            BitSet needed = (BitSet) transaction.joined.clone();
+            needed.set(shard);
+            throw new ShardConflictException(needed);
+        }
+        transaction.locked.set(shard);
+    }
+
+    private boolean isRootContainerSeq(String modelIri, String seqIri) {
+        return rootIri.equals(modelIri) && Container.toContainerSeqIriString(rootIri).equals(seqIri);
+    }
+
+    @Override
+    public void doRdfTransaction(TransactionRepository.Type type, RdfTransactionExecuter transaction) {
+        retryOnConflict(() -> super.doRdfTransaction(type, transaction));
+    }
+
+    @Override
+    public void promotableRdfTransaction(RdfTransactionExecuter check, RdfTransactionExecuter write) {
+        retryOnConflict(() -> super.promotableRdfTransaction(check, write));
+    }
+
+    /**
+     * Executes the transaction again as long as it conflicts with others on the
+     * writer locks. Each attempt takes the locks of the shards the previous ones
+     * needed at once, so it only conflicts on shards not needed before.
+     */
+    private void retryOnConflict(Runnable attempt) {
+        if (transactions.get() != null || retryShards.get() != null) {
+            // Nested, conflicts are handled by the outermost transaction
+            attempt.run();
+            return;
+        }
+        BitSet retry = new BitSet();
+        retryShards.set(retry);
+        try {
+            while (true) {
+                try {
+                    attempt.run();
+                    return;
+                } catch (ShardConflictException e) {
+                    log.debug("Writer lock conflict on shards {}, executing the transaction again.", e.shards);
+                    retry.or(e.shards);
+                }
+            }
+        } finally {
+            retryShards.remove();
+        }
+    }
+
+    @Override
+    public boolean beginTransaction(TransactionRepository.Type type) {
+        if (transactions.get() != null) {
+            return false;
+        }
+        ShardTransaction transaction = new ShardTransaction(type);
+        transactions.set(transaction);
+        BitSet retry = retryShards.get();
+        if (retry != null) {
+            try {
+                // In ascending order, which never conflicts
+                retry.stream().forEach(this::joinShard);
+            } catch (RuntimeException e) {
+                abortTransaction();
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean promoteTransaction() {
+        ShardTransaction transaction = transactions.get();
+        if (transaction == null || transaction.type != TransactionRepository.Type.ReadPromote) {
+            return false;
+        }
+        transaction.joined.stream().forEach(shard -> lockShard(transaction, shard));
+        for (int shard = transaction.begun.nextSetBit(0); shard >= 0; shard = transaction.begun.nextSetBit(shard + 1)) {
+            if (!shards.get(shard).promoteTransaction()) {
+                return false;
+            }
+        }
+        transaction.type = TransactionRepository.Type.Write;
+        return true;
+    }
+
+    @Override
+    public void abortTransaction() {
+        ShardTransaction transaction = transactions.get();
+        if (transaction == null) {
+            return;
+        }
+        try {
+            transaction.begun.stream().forEach(shard -> abortShard(shard));
+        } finally {
+            close(transaction);
+        }
+    }
+
+    private void abortShard(int shard) {
+        try {
+            shards.get(shard).abortTransaction();
+        } catch (RuntimeException e) {
+            log.error("Aborting the transaction of shard " + shard + " failed : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void endTransaction(boolean wasOpend) {
+        ShardTransaction transaction = transactions.get();
+        if (!wasOpend || transaction == null) {
+            return;
+        }
+        RuntimeException failure = null;
+        try {
+            for (int shard = transaction.begun.nextSetBit(0); shard >= 0;
+                    shard = transaction.begun.nextSetBit(shard + 1)) {
+                if (failure != null) {
+                    abortShard(shard);
+                    continue;
+                }
+                try {
+                    shards.get(shard).endTransaction(true);
+                } catch (RuntimeException e) {
+                    // The shards committed before keep their changes
+                    log.error("Commit of shard " + shard + " failed, aborting the following ones : " + e.getMessage());
+                    failure = e;
+                }
+            }
+        } finally {
+            close(transaction);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void close(ShardTransaction transaction) {
+        transaction.locked.stream().forEach(shard -> writeLocks[shard].unlock());
+        transactions.remove();
+    }
+
+    @Override
+    public TransactionRepository.ConcurrencyMode getConcurrencyMode() {
+        return wapServerConfig.getTransactionConcurrencyMode();
+    }
+
+    @Override
+    public boolean coordinatesWrites() {
+        // Serialized has to keep reads and writes apart, which needs the lock of the whole repository
+        return getConcurrencyMode() == TransactionRepository.ConcurrencyMode.ConcurrentReads;
+    }
+
+    /**
+     * Gets the journal of the first shard, which is shared by all of them.
+     *
+     * @return The journal, null if mutations are not journaled
+     */
+    @Override
+    public MutationJournal getMutationJournal() {
+        return shards.get(0).getMutationJournal();
+    }
+
+    /**
+     * Stores the sequence number in every shard written by the transaction. The
+     * journal is reconciled with the sequence numbers found in the shards.
+     *
+     * @param sequence The sequence number
+     */
+    @Override
+    public void writeJournalSequence(long sequence) {
+        ShardTransaction transaction = transactions.get();
+        if (transaction == null) {
+            return;
+        }
+        transaction.begun.stream().forEach(shard -> shards.get(shard).writeJournalSequence(sequence));
+    }
+
+    @Override
+    public ResourceStatusIndex getResourceStatusIndex() {
+        return statusIndex;
+    }
+
+    private void attachStatusIndex() {
+        statusIndexListeners.forEach(StatusIndexListener::detach);
+        statusIndexListeners.clear();
+        for (Dataset dataBase : getShardDataBases()) {
+            statusIndexListeners.add(StatusIndexListener.attach(this, statusIndex, dataBase.asDatasetGraph()));
+        }
+    }
+
+    /**
+     * Listens to the commits of the new generations of the shards after a
+     * compaction and rebuilds the status index, as commits may have been missed
+     * during the switch.
+     */
+    void compacted() {
+        if (statusIndex != null) {
+            attachStatusIndex();
+            statusIndex.invalidate();
+        }
+    }
+
+    @Override
+    public org.apache.commons.rdf.api.Dataset getTransactionDataset() {
+        return new ShardedDataset(this);
+    }
+
+    @Override
+    public RDF getRdf() {
+        return rdfBackend.getRdf();
+    }
+
+    @Override
+    public org.apache.commons.rdf.api.Dataset getWapObject(String iri) {
+        if (!rootIri.equals(iri) || shards.size() == 1) {
+            return joinShard(getShardOf(iri)).getWapObject(iri);
+        }
+        org.apache.commons.rdf.api.Dataset root = joinShard(0).getWapObject(iri);
+        IRI containerSeq = getRdf().createIRI(Container.toContainerSeqIriString(iri));
+        for (int shard = 1; shard < shards.size(); shard++) {
+            List<Triple> members;
+            try (Stream<? extends Triple> triples = joinShard(shard).getWapObject(iri).getGraph().stream(containerSeq,
+                    null, null)) {
+                members = triples.filter(triple -> !RdfVocab.type.equals(triple.getPredicate())
+                        && !WapVocab.memberCount.equals(triple.getPredicate())
+                        && !WapVocab.seqEpoch.equals(triple.getPredicate())).collect(Collectors.toList());
+            }
+            members.forEach(root.getGraph()::add);
+        }
+        // Only counts the top level containers of the first shard
+        root.getGraph().remove(containerSeq, WapVocab.memberCount, null);
+        return root;
+    }
+
+    @Override
+    public Map<String, org.apache.commons.rdf.api.Dataset> getWapObjects(List<String> iris) {
+        // The annotations of a page belong to the same container and therefore to the same shard
+        Map<Integer, List<String>> irisByShard = new TreeMap<>();
+        Map<String, org.apache.commons.rdf.api.Dataset> read = new HashMap<>();
+        for (String iri : iris) {
+            if (rootIri.equals(iri) && shards.size() > 1) {
+                // Spans all shards
+                read.put(iri, getWapObject(iri));
+            } else {
+                irisByShard.computeIfAbsent(getShardOf(iri), shard -> new ArrayList<>()).add(iri);
+            }
+        }
+        if (read.isEmpty() && irisByShard.size() == 1) {
+            Map.Entry<Integer, List<String>> entry = irisByShard.entrySet().iterator().next();
+            return joinShard(entry.getKey()).getWapObjects(entry.getValue());
+        }
+        irisByShard.forEach((shard, shardIris) -> read.putAll(joinShard(shard).getWapObjects(shardIris)));
+        Map<String, org.apache.commons.rdf.api.Dataset> wapObjects = new LinkedHashMap<>();
+        for (String iri : iris) {
+            if (read.containsKey(iri)) {
+                wapObjects.put(iri, read.get(iri));
+            }
+        }
+        return wapObjects;
+    }
+
+    @Override
+    public org.apache.commons.rdf.api.Dataset getWapObjectView(String iri) {
+        if (rootIri.equals(iri) && shards.size() > 1) {
+            return getWapObject(iri);
+        }
+        return joinShard(getShardOf(iri)).getWapObjectView(iri);
+    }
+
+    @Override
+    public void writeObjectToDatabase(WapObject wapObject) {
+        joinShard(getShardOf(wapObject.getIriString())).writeObjectToDatabase(wapObject);
+    }
+
+    /**
+     * {@inheritDoc} All objects of a bulk load belong to the same container, they
+     * are loaded into the shard of the first one.
+     */
+    @Override
+    public long bulkWriteObjectsToDatabase(Iterator<? extends WapObject> wapObjects) {
+        if (!wapObjects.hasNext()) {
+            return 0;
+        }
+        WapObject first = wapObjects.next();
+        Stream<? extends WapObject> others = StreamSupport.stream(Spliterators.spliteratorUnknownSize(wapObjects, 0),
+                false);
+        return shards.get(getShardOf(first.getIriString()))
+                .bulkWriteObjectsToDatabase(Stream.concat(Stream.of(first), others).iterator());
+    }
+
+    @Override
+    public Dataset getDataBase() {
+        return shards.get(0).getDataBase();
+    }
+
+    /**
+     * {@inheritDoc} The backups of the further shards are moved to the backup
+     * folder of the regular database, their names marked with the shard.
+     */
+    @Override
+    public String backupDatabase() {
+        Path folder = Paths.get(wapServerConfig.getDataBasePath(), "Backups");
+        for (int shard = 0; shard < shards.size(); shard++) {
+            String backup = DatabaseMgr.backup(joinShard(shard).getDataBase().asDatasetGraph());
+            if (shard == 0) {
+                continue;
+            }
+            Path source = Paths.get(backup);
+            String name = source.getFileName().toString();
+            int extension = name.indexOf('.');
+            String target = extension < 0 ? name + "-shard-" + shard
+                    : name.substring(0, extension) + "-shard-" + shard + name.substring(extension);
+            try {
+                Files.move(source, folder.resolve(target));
+            } catch (IOException e) {
+                throw new InternalServerException("Moving the backup of shard " + shard + " failed : " + e.getMessage());
+            }
+        }
+        return folder.toUri().toString();
+    }
+
+    @Override
+    public void addElementToRdfSeq(String modelIri, String seqIri, String objIri) {
+        // Every shard lists its own top level containers
+        int shard = isRootContainerSeq(modelIri, seqIri) ? getShardOf(objIri) : getShardOf(modelIri);
+        joinShard(shard).addElementToRdfSeq(modelIri, seqIri, objIri);
+    }
+
+    @Override
+    public void removeElementFromRdfSeq(String modelIri, String seqIri, String objIri) {
+        int shard = isRootContainerSeq(modelIri, seqIri) ? getShardOf(objIri) : getShardOf(modelIri);
+        joinShard(shard).removeElementFromRdfSeq(modelIri, seqIri, objIri);
+    }
+
+    @Override
+    public int countElementsInSeq(String modelIri, String seqIri) {
+        if (!isRootContainerSeq(modelIri, seqIri)) {
+            return joinShard(getShardOf(modelIri)).countElementsInSeq(modelIri, seqIri);
+        }
+        int count = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            count += joinShard(shard).countElementsInSeq(modelIri, seqIri);
+        }
+        return count;
+    }
+
+    @Override
+    public List<String> getRangeOfObjectIrisFromSeq(String modelIri, String seqIri, int firstIndex, int lastIndex) {
+        if (!isRootContainerSeq(modelIri, seqIri)) {
+            return joinShard(getShardOf(modelIri)).getRangeOfObjectIrisFromSeq(modelIri, seqIri, firstIndex,
+                    lastIndex);
+        }
+        // The members of the shards one after another
+        List<String> range = new ArrayList<>();
+        int offset = 0;
+        for (int shard = 0; shard < shards.size() && offset < lastIndex; shard++) {
+            JenaRepository repository = joinShard(shard);
+            int count = repository.countElementsInSeq(modelIri, seqIri);
+            int from = Math.max(firstIndex, offset + 1);
+            int to = Math.min(lastIndex, offset + count);
+            if (from <= to) {
+                range.addAll(repository.getRangeOfObjectIrisFromSeq(modelIri, seqIri, from - offset, to - offset));
+            }
+            offset += count;
+        }
+        return range;
+    }
+
+    @Override
+    public Map<Long, String> getObjectIrisFromSeqAfter(String modelIri, String seqIri, long afterPosition,
+            String afterIri, int count) {
+        if (!isRootContainerSeq(modelIri, seqIri)) {
+            return joinShard(getShardOf(modelIri)).getObjectIrisFromSeqAfter(modelIri, seqIri, afterPosition,
+                    afterIri, count);
+        }
+        // The positions of the shards are not comparable, the root seq is read by index
+        return super.getObjectIrisFromSeqAfter(modelIri, seqIri, afterPosition, afterIri, count);
+    }
+
+    @Override
+    public List<String> getAllObjectIrisOfSeq(String modelIri, String seqIri) {
+        if (!isRootContainerSeq(modelIri, seqIri)) {
+            return joinShard(getShardOf(modelIri)).getAllObjectIrisOfSeq(modelIri, seqIri);
+        }
+        List<String> all = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            all.addAll(joinShard(shard).getAllObjectIrisOfSeq(modelIri, seqIri));
+        }
+        return all;
+    }
+
+    @Override
+    public void emptySeq(String modelIri, String seqIri) {
+        if (!isRootContainerSeq(modelIri, seqIri)) {
+            joinShard(getShardOf(modelIri)).emptySeq(modelIri, seqIri);
+            return;
+        }
+        for (int shard = 0; shard < shards.size(); shard++) {
+            joinShard(shard).emptySeq(modelIri, seqIri);
+        }
+    }
+
+    /**
+     * The transaction of a thread over the shards it has accessed so far
+     */
+    private static final class ShardTransaction {
+        /**
+         * The type, changes to writing on promotion
+         */
+        private TransactionRepository.Type type;
+        /**
+         * The shards accessed within the transaction
+         */
+        private final BitSet joined = new BitSet();
+        /**
+         * The shards whose transaction has been begun by this one
+         */
+        private final BitSet begun = new BitSet();
+        /**
+         * The shards whose writer lock is held
+         */
+        private final BitSet locked = new BitSet();
+
+        ShardTransaction(TransactionRepository.Type type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Aborts a transaction that would have to wait for the writer lock of a
+     * lower shard than one it holds
+     */
+    private static final class ShardConflictException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * The shards needed by the transaction so far
+         */
+        private final transient BitSet shards;
+
+        ShardConflictException(BitSet shards) {
+            super("Writer lock conflict on shards " + shards, null, false, false);
+            this.shards = shards;
+        }
+    }
+}
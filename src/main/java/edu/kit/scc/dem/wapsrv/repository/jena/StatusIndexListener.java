@@ -0,0 +1,84 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import org.apache.jena.dboe.transaction.txn.Transaction;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.dboe.transaction.txn.TransactionListener;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import edu.kit.scc.dem.wapsrv.repository.DerivedIndex;
+import edu.kit.scc.dem.wapsrv.repository.TransactionContext;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+
+/**
+ * Keeps an index derived from the database, like the resource status index or
+ * the target index of a repository, in line with writes done by others, like
+ * the SPARQL endpoint, the bulk loader or another repository on the same
+ * database. Their commits are seen by the transaction coordinator of TDB2.
+ * The index is suspended when such a commit starts and rebuilt with its next
+ * lookup after it has finished, so a series of such commits causes a single
+ * rebuild. Writes of the repository itself update the index on their own,
+ * including those nested in another transaction of the repository.
+ */
+final class StatusIndexListener implements TransactionListener {
+
+    private final TransactionRepository repository;
+    private final DerivedIndex<?, ?> index;
+    /**
+     * Set once the listener has been detached
+     */
+    private volatile boolean detached = false;
+
+    private StatusIndexListener(TransactionRepository repository, DerivedIndex<?, ?> index) {
+        this.repository = repository;
+        this.index = index;
+    }
+
+    /**
+     * Starts listening to the commits on the database. Has to be called again
+     * after each compaction, which replaces the transaction coordinator.
+     *
+     * @param repository The repository owning the index
+     * @param index The index to keep in line
+     * @param dataSetGraph The TDB2 database
+     * @return The listener
+     */
+    static StatusIndexListener attach(TransactionRepository repository, DerivedIndex<?, ?> index,
+            DatasetGraph dataSetGraph) {
+        TransactionCoordinator coordinator = TDBInternal.getTransactionCoordinator(dataSetGraph);
+        StatusIndexListener listener = new StatusIndexListener(repository, index);
+        // The configuration of a running coordinator may only change while no transaction is active
+        coordinator.modifyConfig(() -> coordinator.addListener(listener));
+        return listener;
+    }
+
+    /**
+     * Stops listening. The listener stays registered, removing it would have to
+     * wait until no transaction is active, including one of the calling thread.
+     */
+    void detach() {
+        detached = true;
+    }
+
+    @Override
+    public void notifyCommitStart(Transaction transaction) {
+        if (isOthersWrite(transaction)) {
+            index.suspend();
+        }
+    }
+
+    @Override
+    public void notifyCommitFinish(Transaction transaction) {
+        if (isOthersWrite(transaction)) {
+            index.invalidateOnDemand();
+        }
+    }
+
+    private boolean isOthersWrite(Transaction transaction) {
+        if (detached || !transaction.isWriteTxn()) {
+            return false;
+        }
+        // Commits run in the thread of the transaction
+        TransactionContext context = TransactionContext.current();
+        return context == null || !context.updatesIndexesOf(repository);
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Map;
 import org.apache.commons.rdf.api.BlankNodeOrIRI;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Literal;
 import org.apache.commons.rdf.simple.Types;
 import org.slf4j.Logger;
@@ -36,6 +37,9 @@ import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 import edu.kit.scc.dem.wapsrv.model.validators.Validator;
 import edu.kit.scc.dem.wapsrv.model.validators.ValidatorRegistry;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.ResourceStatusIndex;
+import edu.kit.scc.dem.wapsrv.repository.TransactionContext;
 import edu.kit.scc.dem.wapsrv.repository.WapObjectRepository;
 
 /**
@@ -112,6 +116,22 @@ public abstract class AbstractWapService implements WapService {
       return etagFactory.generateEtag();
    }
 
+   /**
+    * Gets the page size to use for the page size requested by a client. Larger sizes than the configured max. are
+    * reduced to it, if the max. is not above the configured page size, clients cannot choose.
+    * 
+    * @param  pageSize
+    *                  The requested page size, 0 for the configured one
+    * @return          The page size to use
+    */
+   protected int getEffectivePageSize(int pageSize) {
+      int defaultPageSize = wapServerConfig.getPageSize();
+      if (pageSize <= 0) {
+         return defaultPageSize;
+      }
+      return Math.min(pageSize, Math.max(defaultPageSize, wapServerConfig.getMaxPageSize()));
+   }
+
    @Override
    public boolean isValidInputFormat(Format format) {
       // This checks if the modelFactory can work with the format.
@@ -281,10 +301,10 @@ public abstract class AbstractWapService implements WapService {
     */
    public void checkEtag(String iri, String etag) {
       log.info("checking etag match for: '" + iri + "' with given etag: '" + etag + "'");
-      BlankNodeOrIRI node = repository.getRdf().createIRI(iri);
+      BlankNodeOrIRI node = createIri(iri);
       Literal etagLiteral = repository.getRdf().createLiteral(etag);
       repository.readRdfTransaction(ds -> {
-         Graph graph = ds.getGraph(node).get();
+         Graph graph = getGraph(ds, node);
          if (!graph.stream(node, WapVocab.etag, etagLiteral).findFirst().isPresent()) {
             log.warn("checking etag match for: '" + iri + "' failed.");
             throw new EtagDoesntMatchException("The etag given does not match the etag in the database");
@@ -304,13 +324,15 @@ public abstract class AbstractWapService implements WapService {
     */
    public void deleteObject(String iri, String parentSeqIri) {
       log.info("deleting object '" + iri + "'");
-      BlankNodeOrIRI node = repository.getRdf().createIRI(iri);
+      BlankNodeOrIRI node = createIri(iri);
       Literal trueLiteral = repository.getRdf().createLiteral("true", Types.XSD_BOOLEAN);
       String parentContainerIriString = WapObject.getParentContainerIriString(iri);
-      BlankNodeOrIRI parentNode = repository.getRdf().createIRI(parentContainerIriString);
+      BlankNodeOrIRI parentNode = createIri(parentContainerIriString);
       repository.writeRdfTransaction(ds -> {
-         Graph graph = ds.getGraph(node).get();
+         Graph graph = getGraph(ds, node);
          graph.add(node, WapVocab.deleted, trueLiteral);
+         setStatus(iri, ResourceStatusIndex.Status.DELETED);
+         recordMutation(MutationJournal.Type.Delete, iri, null);
          repository.removeElementFromRdfSeq(parentContainerIriString, parentSeqIri, iri);
          updateEtag(parentNode, etagFactory.generateEtag());
       });
@@ -332,6 +354,8 @@ public abstract class AbstractWapService implements WapService {
          repository.writeRdfTransaction(ds -> {
             log.info("bulk deleting annotation: '" + iri + "'");
             ds.add(node, node, WapVocab.deleted, trueLiteral);
+            setStatus(iri, ResourceStatusIndex.Status.DELETED);
+            recordMutation(MutationJournal.Type.Delete, iri, null);
          });
       }
       log.info("bulk deleting of objects done.");
@@ -351,12 +375,15 @@ public abstract class AbstractWapService implements WapService {
       Literal etagLiteral = repository.getRdf().createLiteral(generateEtag);
       Literal modifiedLiteral = RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), repository.getRdf());
       repository.writeRdfTransaction(ds -> {
-         Graph graph = ds.getGraph(node).get();
+         Graph graph = getGraph(ds, node);
          graph.remove(node, WapVocab.etag, null);
          graph.add(node, WapVocab.etag, etagLiteral);
          // Update the Modified
          graph.remove(node, DcTermsVocab.modified, null);
          graph.add(node, DcTermsVocab.modified, modifiedLiteral);
+         if (node instanceof IRI) {
+            recordMutation(MutationJournal.Type.Update, ((IRI) node).getIRIString(), generateEtag);
+         }
       });
       log.info("updated etag for: '" + node.ntriplesString() + "'");
    }
@@ -371,7 +398,7 @@ public abstract class AbstractWapService implements WapService {
     *                     the new etag for the WapObject
     */
    public void updateEtag(String iri, String generateEtag) {
-      BlankNodeOrIRI node = repository.getRdf().createIRI(iri);
+      BlankNodeOrIRI node = createIri(iri);
       updateEtag(node, generateEtag);
    }
 
@@ -382,17 +409,31 @@ public abstract class AbstractWapService implements WapService {
     *                  the WapObject to be put in the database.
     */
    protected void writeWapObjectToDb(WapObject wapObject) {
+      writeWapObjectToDb(wapObject, MutationJournal.Type.Create);
+   }
+
+   /**
+    * Write WapObject to database and record the given mutation for the mutation journal.
+    *
+    * @param wapObject
+    *                  the WapObject to be put in the database.
+    * @param mutation
+    *                  the type of the mutation, Create for new WapObjects and Update for replaced ones
+    */
+   protected void writeWapObjectToDb(WapObject wapObject, MutationJournal.Type mutation) {
       log.info("writeing WapObject to DB: '" + wapObject.getIriString() + "'");
       String etag = wapObject.getEtag();
       String iriString = wapObject.getIriString();
       repository.writeRdfTransaction(ds -> {
          repository.writeObjectToDatabase(wapObject);
+         setStatus(iriString, ResourceStatusIndex.Status.ACTIVE);
          // Add ETag
          String newEtag = etag;
          if (etag == null) {
             newEtag = etagFactory.generateEtag();
             wapObject.setEtag(newEtag);
          }
+         recordMutation(mutation, iriString, newEtag);
          // Update ETag of this object
          updateEtag(iriString, newEtag);
       });
@@ -409,6 +450,16 @@ public abstract class AbstractWapService implements WapService {
     */
    public void checkExistsAndNotDeleted(String objectIri) {
       String typeString = objectIri.endsWith("/") ? "container" : "annotation";
+      ResourceStatusIndex.Status status = getKnownStatus(objectIri);
+      if (status == ResourceStatusIndex.Status.ABSENT) {
+         throw new NotExistentException("The requested " + typeString + " does not exist.");
+      }
+      if (status == ResourceStatusIndex.Status.DELETED) {
+         throw new ResourceDeletedException("The requested " + typeString + " has already been deleted.");
+      }
+      if (status == ResourceStatusIndex.Status.ACTIVE) {
+         return;
+      }
       repository.readRdfTransaction(ds -> {
          if (!containsIri(objectIri)) {
             throw new NotExistentException("The requested " + typeString + " does not exist.");
@@ -427,11 +478,15 @@ public abstract class AbstractWapService implements WapService {
     * @return     true, if IRI in database
     */
    public boolean containsIri(String iri) {
+      ResourceStatusIndex.Status status = getKnownStatus(iri);
+      if (status != null) {
+         return status != ResourceStatusIndex.Status.ABSENT;
+      }
       log.info("checking if exists: '" + iri + "'");
       Boolean[] result = new Boolean[1];
-      BlankNodeOrIRI node = repository.getRdf().createIRI(iri);
+      BlankNodeOrIRI node = createIri(iri);
       repository.readRdfTransaction(ds -> {
-         Graph graph = ds.getGraph(node).get();
+         Graph graph = getGraph(ds, node);
          result[0] = graph.contains(node, null, null);
       });
       log.info("check exists result for: '" + iri + "' is: '" + result[0] + "'");
@@ -446,17 +501,109 @@ public abstract class AbstractWapService implements WapService {
     * @return     true, if IRI is marked as "deleted"
     */
    public boolean isIriDeleted(String iri) {
+      ResourceStatusIndex.Status status = getKnownStatus(iri);
+      if (status != null) {
+         return status == ResourceStatusIndex.Status.DELETED;
+      }
       log.info("checking if deleted: '" + iri + "'");
       Boolean[] result = new Boolean[1];
-      BlankNodeOrIRI node = repository.getRdf().createIRI(iri);
+      BlankNodeOrIRI node = createIri(iri);
       repository.readRdfTransaction(ds -> {
-         Graph graph = ds.getGraph(node).get();
+         Graph graph = getGraph(ds, node);
          result[0] = graph.contains(node, WapVocab.deleted, null);
       });
       log.info("check deleted result for: '" + iri + "' is: '" + result[0] + "'");
       return result[0];
    }
 
+   /**
+    * Gets the status of the WapObject without reading the database. Changes of the running transaction come first,
+    * then the resource status index of the repository is asked. Transactions that may already see commits not yet
+    * applied to the index, like the checks before a promotion, always read the database.
+    *
+    * @param  iri
+    *             the IRI of the WapObject
+    * @return     the status, null if the database has to be read
+    */
+   private ResourceStatusIndex.Status getKnownStatus(String iri) {
+      TransactionContext context = TransactionContext.current();
+      if (context != null) {
+         ResourceStatusIndex.Status status = context.getStatus(iri);
+         if (status != null) {
+            return status;
+         }
+         if (context.isAheadOfIndexes()) {
+            return null;
+         }
+      }
+      ResourceStatusIndex index = repository.getResourceStatusIndex();
+      return index == null ? null : index.get(iri);
+   }
+
+   /**
+    * Records the new status of a WapObject written in the running transaction. It is applied to the resource status
+    * index after the commit.
+    *
+    * @param iri
+    *               the IRI of the WapObject
+    * @param status
+    *               the new status
+    */
+   protected void setStatus(String iri, ResourceStatusIndex.Status status) {
+      TransactionContext context = TransactionContext.current();
+      if (context != null) {
+         context.setStatus(iri, status);
+      }
+   }
+
+   /**
+    * Records the mutation of a WapObject written in the running transaction. It is appended to the mutation journal
+    * after the commit.
+    *
+    * @param type
+    *             the type of the mutation
+    * @param iri
+    *             the IRI of the WapObject
+    * @param etag
+    *             the new ETag, null if deleted
+    */
+   protected void recordMutation(MutationJournal.Type type, String iri, String etag) {
+      TransactionContext context = TransactionContext.current();
+      if (context != null) {
+         context.recordMutation(type, iri, etag);
+      }
+   }
+
+   /**
+    * Creates the node for the given IRI. Within a transaction the node is taken from the {@link TransactionContext},
+    * so it is only created once per service call.
+    * 
+    * @param  iri
+    *             the IRI
+    * @return     the node
+    */
+   protected BlankNodeOrIRI createIri(String iri) {
+      TransactionContext context = TransactionContext.current();
+      if (context == null) {
+         return repository.getRdf().createIRI(iri);
+      }
+      return context.getIri(iri, repository.getRdf());
+   }
+
+   /**
+    * Gets the named graph from the dataset of the running transaction, reusing the graphs already looked up in its
+    * {@link TransactionContext}.
+    * 
+    * @param  ds
+    *                   the dataset of the transaction
+    * @param  graphName
+    *                   the name of the graph
+    * @return           the graph
+    */
+   protected Graph getGraph(Dataset ds, BlankNodeOrIRI graphName) {
+      return TransactionContext.of(ds).getGraph(graphName).get();
+   }
+
    /**
     * Gets the Annotation. First it will be checked if the IRI exists and is not deleted.
     *
@@ -477,4 +624,19 @@ public abstract class AbstractWapService implements WapService {
       log.info("Get Annotation finished: '" + iri + "'");
       return modelFactory.createAnnotation(retDs[0]);
    }
+
+   /**
+    * Gets the Annotation as a read view of the database, without copying it. Must be called within a transaction and
+    * the Annotation must not be used after it. First it will be checked if the IRI exists and is not deleted.
+    *
+    * @param  iri
+    *                      the IRI for the Annotation
+    * @return              the requested annotation
+    * @throws WapException
+    *                      the Exceptions from @see #checkExistsAndNotDeleted(String)
+    */
+   protected Annotation getAnnotationView(String iri) throws WapException {
+      checkExistsAndNotDeleted(iri);
+      return modelFactory.createAnnotation(repository.getWapObjectView(iri));
+   }
 }
@@ -64,6 +64,23 @@ public interface AnnotationService extends WapService {
     */
    AnnotationList postAnnotation(String containerIri, String rawAnnotation, Format format) throws WapException;
 
+   /**
+    * Parses and validates the annotation(s) as in a post to the given container, without storing them. The
+    * annotations get their new IRIs within the container and the created property. The existence of the container is
+    * not checked. This method does not access the database and may be called concurrently.
+    * 
+    * @param  containerIri
+    *                       The IRI of the container the annotations are meant for
+    * @param  rawAnnotation
+    *                       A String representation of the Annotation(s)
+    * @param  format
+    *                       The data format used
+    * @return               The prepared Annotation(s)
+    * @throws WapException
+    *                       In case the annotation(s) are not valid
+    */
+   AnnotationList prepareAnnotations(String containerIri, String rawAnnotation, Format format) throws WapException;
+
    /**
     * Deletes the {@link Annotation} denoted by the given IRI if ETags match
     * 
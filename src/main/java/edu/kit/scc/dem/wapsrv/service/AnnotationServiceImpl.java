@@ -1,8 +1,16 @@
 package edu.kit.scc.dem.wapsrv.service;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
 import java.util.UUID;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.Literal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import edu.kit.scc.dem.wapsrv.app.EtagFactory;
@@ -21,8 +29,16 @@ import edu.kit.scc.dem.wapsrv.model.FormattableObject;
 import edu.kit.scc.dem.wapsrv.model.WapObject;
 import edu.kit.scc.dem.wapsrv.model.formats.Format;
 import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.model.rdf.GraphDiff;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfTransactionExecuter;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 import edu.kit.scc.dem.wapsrv.repository.AnnotationRepository;
+import edu.kit.scc.dem.wapsrv.repository.GroupCommitWriter;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.ResourceStatusIndex;
 
 /**
  * This class provides the annotation service to use in controller methods. It
@@ -41,6 +57,7 @@ import edu.kit.scc.dem.wapsrv.repository.AnnotationRepository;
 @Service
 public class AnnotationServiceImpl extends AbstractWapService implements AnnotationService{
 
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
   /**
    * The annotation repository, autowired
    */
@@ -56,6 +73,33 @@ public class AnnotationServiceImpl extends AbstractWapService implements Annotat
    */
   @Autowired
   private EtagFactory etagFactory;
+  /**
+   * The writer used to commit annotation POSTs in groups, null if group commit
+   * is disabled
+   */
+  private GroupCommitWriter groupCommitWriter;
+
+  /**
+   * Starts the group commit writer if enabled in the configuration
+   */
+  @PostConstruct
+  private void init(){
+    int maxBatchSize = getWapServerConfig().getGroupCommitMaxBatchSize();
+    if(maxBatchSize > 1){
+      groupCommitWriter = new GroupCommitWriter(repository, maxBatchSize,
+              getWapServerConfig().getGroupCommitMaxLingerMillis());
+    }
+  }
+
+  /**
+   * Writes the remaining queued annotations and stops the group commit writer
+   */
+  @PreDestroy
+  private void shutdown(){
+    if(groupCommitWriter != null){
+      groupCommitWriter.close();
+    }
+  }
 
   @Override
   public Annotation putAnnotation(final String iri, final String etag, String rawAnnotation, Format format)
@@ -73,37 +117,48 @@ public class AnnotationServiceImpl extends AbstractWapService implements Annotat
     // are not copied to via anymore
     checkSchemaValidity(annotationString, format, FormattableObject.Type.ANNOTATION);
     // if code is reached, everything was fine
-    Annotation existingAnnotation = getAnnotation(iri);
-    if(!existingAnnotation.getEtag().equals(etag)){
-      throw new EtagDoesntMatchException(
-              "ETag mismatch : provided ETag : " + etag + " , DB ETag : " + existingAnnotation.getEtagQuoted());
-    }
-    Annotation newAnnotation = getModelFactory().createAnnotation(annotationString, format);
-    if(!iri.equals(newAnnotation.getIriString())){
-      throw new UnallowedPropertyChangeException("The IRI cannot change with a PUT requests");
-    }
-    // Check if no forbidden field has been changed canonical (there is only one)
-    if(!existingAnnotation.isPropertyEqual(newAnnotation, AnnoVocab.canonical)){
-      throw new UnallowedPropertyChangeException("canonical property cannot change");
-    }
-    // Check via (there may be more)
-    if(!existingAnnotation.isPropertyWithMultipleValuesEqual(newAnnotation, AnnoVocab.via)){
-      throw new UnallowedPropertyChangeException("via properties cannot change");
-    }
-    String oldEtag = etag;
+    final String newAnnotationString = annotationString;
+    Annotation[] newAnnotation = new Annotation[1];
     // Just to clarify this. The annotation has already a new one set.
-    BlankNodeOrIRI node = repository.getRdf().createIRI(iri);
-    repository.writeRdfTransaction(ds -> {
+    BlankNodeOrIRI node = createIri(iri);
+    // The checks run in parallel with other readers, the writer lock is only taken if they pass
+    repository.promotableRdfTransaction(ds -> {
       checkExistsAndNotDeleted(iri);
-      checkEtag(iri, oldEtag);
-      ds.remove(Optional.of(node), null, null, null);
-      writeWapObjectToDb(newAnnotation);
+      // Only read within the checks, no need for a copy of its own
+      Annotation existingAnnotation = getAnnotationView(iri);
+      if(!existingAnnotation.getEtag().equals(etag)){
+        throw new EtagDoesntMatchException(
+                "ETag mismatch : provided ETag : " + etag + " , DB ETag : " + existingAnnotation.getEtagQuoted());
+      }
+      newAnnotation[0] = getModelFactory().createAnnotation(newAnnotationString, format);
+      if(!iri.equals(newAnnotation[0].getIriString())){
+        throw new UnallowedPropertyChangeException("The IRI cannot change with a PUT requests");
+      }
+      // Check if no forbidden field has been changed canonical (there is only one)
+      if(!existingAnnotation.isPropertyEqual(newAnnotation[0], AnnoVocab.canonical)){
+        throw new UnallowedPropertyChangeException("canonical property cannot change");
+      }
+      // Check via (there may be more)
+      if(!existingAnnotation.isPropertyWithMultipleValuesEqual(newAnnotation[0], AnnoVocab.via)){
+        throw new UnallowedPropertyChangeException("via properties cannot change");
+      }
+    }, ds -> {
+      String newEtag = etagFactory.generateEtag();
+      setEtagAndModified(newAnnotation[0], newEtag,
+              RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), repository.getRdf()));
+      // Only the changed triples are written, small edits of large annotations stay cheap
+      Graph graph = getGraph(ds, node);
+      GraphDiff diff = GraphDiff.between(graph, newAnnotation[0].getDataset().getGraph());
+      log.debug("PUT of '" + iri + "' removes " + diff.getRemoved().size() + " and adds " + diff.getAdded().size()
+              + " triples");
+      diff.applyTo(graph);
+      hideEtag(newAnnotation[0]);
+      recordMutation(MutationJournal.Type.Update, iri, newEtag);
       // New ETag for parent container
       updateEtag(WapObject.getParentContainerIriString(iri), etagFactory.generateEtag());
     });
-    Annotation returnAnnotation = getAnnotation(iri);
-    // If no exception has been thrown ETag matched and annotation was updated
-    return returnAnnotation;
+    // If no exception has been thrown ETag matched and annotation was updated, it now equals the stored one
+    return newAnnotation[0];
   }
 
   @Override
@@ -127,6 +182,27 @@ public class AnnotationServiceImpl extends AbstractWapService implements Annotat
     }
     // Check if the container exists and is not deleted.
     checkExistsAndNotDeleted(containerIri);
+    AnnotationList list = prepareAnnotations(containerIri, rawAnnotation, format);
+    String newContainerEtag = etagFactory.generateEtag();
+    // Store container IRI for later use
+    list.setContainerIri(list.iterator().next().getContainerIri());
+    RdfTransactionExecuter transaction = (ds) -> {
+      addPreparedAnnotations(containerIri, list.getAnnotations());
+      updateEtag(list.getContainerIri(), newContainerEtag);
+      list.setContainerEtag(newContainerEtag);
+    };
+    if(groupCommitWriter != null){
+      // Returns after the batch containing the annotations has been committed
+      groupCommitWriter.write(transaction);
+    } else{
+      repository.writeRdfTransaction(transaction);
+    }
+    return list;
+  }
+
+  @Override
+  public AnnotationList prepareAnnotations(final String containerIri, String rawAnnotation, Format format)
+          throws WapException{
     // If format is JSON_LD, expand it.
     String annotationString = null;
     if(format == Format.JSON_LD){
@@ -165,19 +241,65 @@ public class AnnotationServiceImpl extends AbstractWapService implements Annotat
       // Update last modified - automatically done with ETag update annotation.updateModified();
       // ETag will be generated on changes in the repository. annotation.setEtag(generateEtag());
     }
-    String newContainerEtag = etagFactory.generateEtag();
-    // Store container IRI for later use
-    list.setContainerIri(list.iterator().next().getContainerIri());
-    repository.writeRdfTransaction((ds) -> {
-      for(Annotation a : list){
-        addAnnotation(a);
-      }
-      updateEtag(list.getContainerIri(), newContainerEtag);
-      list.setContainerEtag(newContainerEtag);
-    });
     return list;
   }
 
+  /**
+   * Adds annotations prepared by {@link #prepareAnnotations} to the container in
+   * one pass. As their IRIs are freshly generated UUIDs, they are neither
+   * checked for existence nor for deletion. Every annotation is written with its
+   * ETag and modified date at once and all of them are appended to the
+   * annotation seq of the container together. Updating the ETag of the
+   * container is left to the caller, so it is done once for all of them. Has to
+   * be called within a writing transaction.
+   *
+   * @param containerIri The IRI of the container
+   * @param annotations The prepared annotations
+   */
+  private void addPreparedAnnotations(String containerIri, List<Annotation> annotations){
+    Literal modified = RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), repository.getRdf());
+    List<String> iris = new ArrayList<String>(annotations.size());
+    for(Annotation annotation : annotations){
+      String iriString = annotation.getIriString();
+      String etag = etagFactory.generateEtag();
+      setEtagAndModified(annotation, etag, modified);
+      repository.writeObjectToDatabase(annotation);
+      hideEtag(annotation);
+      setStatus(iriString, ResourceStatusIndex.Status.ACTIVE);
+      recordMutation(MutationJournal.Type.Create, iriString, etag);
+      iris.add(iriString);
+    }
+    repository.addElementsToRdfSeq(containerIri, Container.toAnnotationSeqIriString(containerIri), iris);
+  }
+
+  /**
+   * Sets the ETag and the modified date of an annotation not yet written, like
+   * updateEtag after writing it, but without another write. The ETag triple has
+   * to be removed with {@link #hideEtag(Annotation)} once it is written.
+   *
+   * @param annotation The annotation
+   * @param etag The new ETag
+   * @param modified The modified date
+   */
+  private void setEtagAndModified(Annotation annotation, String etag, Literal modified){
+    annotation.setEtag(etag);
+    Graph graph = annotation.getDataset().getGraph();
+    graph.remove(annotation.getIri(), WapVocab.etag, null);
+    graph.add(annotation.getIri(), WapVocab.etag, repository.getRdf().createLiteral(etag));
+    graph.remove(annotation.getIri(), DcTermsVocab.modified, null);
+    graph.add(annotation.getIri(), DcTermsVocab.modified, modified);
+  }
+
+  /**
+   * Removes the ETag triple from a written annotation, like in annotations read
+   * from the database the ETag is only kept as a property
+   *
+   * @param annotation The annotation
+   */
+  private void hideEtag(Annotation annotation){
+    annotation.getDataset().getGraph().remove(annotation.getIri(), WapVocab.etag, null);
+  }
+
   @Override
   public Annotation addAnnotation(Annotation a){
     //repository.writeRdfTransaction((ds) -> {
@@ -0,0 +1,31 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.io.File;
+import java.util.List;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+
+/**
+ * The service used to import large amounts of annotations, e.g. when migrating from other annotation servers. The
+ * annotations are written with the bulk loader of the database, so the service must only be used while the server
+ * does not serve requests.
+ */
+public interface BulkLoadService {
+   /**
+    * Loads the annotations from the given files into the container. Files ending with .nq contain N-Quads, where the
+    * quads of each annotation are written together. All other files are read as NDJSON, with one JSON-LD annotation
+    * per line. The annotations are expanded, validated and get their new IRIs like in a POST, in parallel worker
+    * threads. Invalid annotations are skipped and logged. The loaded annotations are appended to the container in the
+    * order they have been read.
+    * 
+    * @param  containerIri
+    *                      The IRI of the container to load the annotations into
+    * @param  files
+    *                      The files to load
+    * @param  threads
+    *                      The number of worker threads used for validation
+    * @return              The number of annotations loaded
+    * @throws WapException
+    *                      If the container does not exist or the files cannot be read
+    */
+   long loadAnnotations(String containerIri, List<File> files, int threads) throws WapException;
+}
@@ -0,0 +1,273 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.Literal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import edu.kit.scc.dem.wapsrv.exceptions.InternalServerException;
+import edu.kit.scc.dem.wapsrv.exceptions.MethodNotAllowedException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.model.Annotation;
+import edu.kit.scc.dem.wapsrv.model.AnnotationList;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.repository.AnnotationRepository;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+
+/**
+ * This class provides the bulk load service. A reader thread reads the files
+ * and hands each annotation over to a pool of worker threads, which expand,
+ * validate and prepare it like the annotation service does for POSTs. The
+ * calling thread collects the prepared annotations in the order they have been
+ * read and streams them into the bulk loader of the repository. Afterwards the
+ * annotations are appended to the container in regular transactions.
+ */
+@Service
+public class BulkLoadServiceImpl extends AbstractWapService implements BulkLoadService{
+  /**
+   * The number of annotations read ahead per worker thread
+   */
+  private static final int READ_AHEAD_PER_THREAD = 64;
+  /**
+   * The number of annotations appended to the container per transaction
+   */
+  private static final int SEQ_BATCH_SIZE = 10000;
+  /**
+   * Marks the end of the read annotations
+   */
+  private static final Future<List<Annotation>> END_OF_FILES = CompletableFuture.completedFuture(null);
+  private final Logger log = LoggerFactory.getLogger(BulkLoadServiceImpl.class);
+  /**
+   * The annotation repository, autowired
+   */
+  @Autowired
+  private AnnotationRepository repository;
+  /**
+   * The annotation service, autowired
+   */
+  @Autowired
+  private AnnotationService annotationService;
+  /**
+   * The RDF backend, autowired
+   */
+  @Autowired
+  private RdfBackend rdfBackend;
+
+  @Override
+  public long loadAnnotations(String containerIri, List<File> files, int threads) throws WapException{
+    if(getWapServerConfig().isRootWapUrl(containerIri)){
+      throw new MethodNotAllowedException("Post annotation to the root container not allowed");
+    }
+    checkExistsAndNotDeleted(containerIri);
+    int workerCount = Math.max(1, threads);
+    log.info("Bulk loading " + files.size() + " files into container '" + containerIri + "' using " + workerCount
+            + " worker threads");
+    ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+    BlockingQueue<Future<List<Annotation>>> results
+            = new ArrayBlockingQueue<Future<List<Annotation>>>(workerCount * READ_AHEAD_PER_THREAD);
+    AtomicLong rejected = new AtomicLong();
+    Thread reader = new Thread("bulk-load-reader"){
+      public void run(){
+        readFiles(containerIri, files, workers, results, rejected);
+      }
+    };
+    reader.setDaemon(true);
+    reader.start();
+    PreparedAnnotations annotations = new PreparedAnnotations(results);
+    long loaded;
+    try{
+      loaded = repository.bulkWriteObjectsToDatabase(annotations);
+    } finally{
+      reader.interrupt();
+      workers.shutdownNow();
+    }
+    appendToContainer(containerIri, annotations.iris, annotations.etags);
+    log.info("Bulk load into container '" + containerIri + "' finished, " + loaded + " annotations loaded, "
+            + rejected.get() + " rejected");
+    return loaded;
+  }
+
+  /**
+   * Reads the files and submits their annotations to the workers. Runs in the
+   * reader thread.
+   */
+  private void readFiles(String containerIri, List<File> files, ExecutorService workers,
+          BlockingQueue<Future<List<Annotation>>> results, AtomicLong rejected){
+    try{
+      for(File file : files){
+        if(file.getName().endsWith(".nq")){
+          try(InputStream in = new FileInputStream(file)){
+            int[] graphNr = new int[1];
+            rdfBackend.readGraphs(in, Format.NQUADS, dataset -> {
+              String source = file.getName() + " graph " + (++graphNr[0]);
+              submit(results, workers.submit(() -> prepare(containerIri,
+                      () -> rdfBackend.getOutput(dataset, Format.NQUADS), Format.NQUADS, source, rejected)));
+            });
+          }
+        } else{
+          try(BufferedReader lines = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)){
+            int lineNr = 0;
+            for(String line = lines.readLine(); line != null; line = lines.readLine()){
+              lineNr++;
+              if(line.trim().isEmpty()){
+                continue;
+              }
+              String rawAnnotation = line;
+              String source = file.getName() + " line " + lineNr;
+              submit(results, workers.submit(
+                      () -> prepare(containerIri, () -> rawAnnotation, Format.JSON_LD, source, rejected)));
+            }
+          }
+        }
+      }
+      submit(results, END_OF_FILES);
+    } catch(IOException | WapException e){
+      log.error("Bulk load aborted, reading failed : " + e.getMessage());
+      CompletableFuture<List<Annotation>> failed = new CompletableFuture<List<Annotation>>();
+      failed.completeExceptionally(new InternalServerException("Reading failed : " + e.getMessage()));
+      submit(results, failed);
+    }
+  }
+
+  private void submit(BlockingQueue<Future<List<Annotation>>> results, Future<List<Annotation>> result){
+    try{
+      results.put(result);
+    } catch(InterruptedException e){
+      // The loading has been aborted
+      Thread.currentThread().interrupt();
+      throw new InternalServerException("Reading interrupted");
+    }
+  }
+
+  /**
+   * Prepares the annotations of one item read. Runs in a worker thread.
+   *
+   * @return The prepared annotations, empty if not valid
+   */
+  private List<Annotation> prepare(String containerIri, Callable<String> rawAnnotation, Format format, String source,
+          AtomicLong rejected) throws Exception{
+    AnnotationList list;
+    try{
+      list = annotationService.prepareAnnotations(containerIri, rawAnnotation.call(), format);
+    } catch(WapException e){
+      log.warn("Skipping invalid annotation in " + source + " : " + e.getMessage());
+      rejected.incrementAndGet();
+      return Collections.emptyList();
+    }
+    List<Annotation> annotations = list.getAnnotations();
+    Literal modified = RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), rdfBackend.getRdf());
+    for(Annotation annotation : annotations){
+      // Like updateEtag after writing the annotation
+      annotation.setEtag(generateEtag());
+      Graph graph = annotation.getDataset().getGraph();
+      graph.remove(annotation.getIri(), DcTermsVocab.modified, null);
+      graph.add(annotation.getIri(), DcTermsVocab.modified, modified);
+    }
+    return annotations;
+  }
+
+  /**
+   * Appends the loaded annotations to the container and updates its ETag. The
+   * creation of the annotations is journaled with the batch they are appended
+   * to the container in.
+   */
+  private void appendToContainer(String containerIri, List<String> iris, List<String> etags){
+    String seqIri = Container.toAnnotationSeqIriString(containerIri);
+    for(int first = 0; first < iris.size(); first += SEQ_BATCH_SIZE){
+      int end = Math.min(first + SEQ_BATCH_SIZE, iris.size());
+      List<String> batch = iris.subList(first, end);
+      List<String> batchEtags = etags.subList(first, end);
+      repository.writeRdfTransaction(ds -> {
+        repository.addElementsToRdfSeq(containerIri, seqIri, batch);
+        for(int i = 0; i < batch.size(); i++){
+          recordMutation(MutationJournal.Type.Create, batch.get(i), batchEtags.get(i));
+        }
+      });
+    }
+    if(!iris.isEmpty()){
+      updateEtag(containerIri, generateEtag());
+    }
+  }
+
+  /**
+   * The prepared annotations in the order they have been read. Remembers the
+   * IRIs and ETags of all annotations handed out.
+   */
+  private static class PreparedAnnotations implements Iterator<Annotation>{
+    private final BlockingQueue<Future<List<Annotation>>> results;
+    private final List<String> iris = new ArrayList<String>();
+    private final List<String> etags = new ArrayList<String>();
+    private Iterator<Annotation> current = Collections.emptyIterator();
+    private boolean finished = false;
+
+    PreparedAnnotations(BlockingQueue<Future<List<Annotation>>> results){
+      this.results = results;
+    }
+
+    @Override
+    public boolean hasNext(){
+      while(!current.hasNext() && !finished){
+        List<Annotation> next = takeNext();
+        if(next == null){
+          finished = true;
+        } else{
+          current = next.iterator();
+        }
+      }
+      return current.hasNext();
+    }
+
+    @Override
+    public Annotation next(){
+      if(!hasNext()){
+        throw new NoSuchElementException();
+      }
+      Annotation annotation = current.next();
+      iris.add(annotation.getIriString());
+      etags.add(annotation.getEtag());
+      return annotation;
+    }
+
+    private List<Annotation> takeNext(){
+      try{
+        return results.take().get();
+      } catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        throw new InternalServerException("Interrupted while waiting for the annotations");
+      } catch(ExecutionException e){
+        Throwable cause = e.getCause();
+        if(cause instanceof RuntimeException){
+          throw (RuntimeException) cause;
+        }
+        throw new InternalServerException("Preparing the annotations failed : " + cause.getMessage());
+      }
+    }
+  }
+}
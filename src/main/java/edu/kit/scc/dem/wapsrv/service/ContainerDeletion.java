@@ -0,0 +1,142 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The status of a container deleted in the background. The container itself is
+ * marked as deleted right away, its annotations are deleted afterwards in
+ * batches. A deletion interrupted by a shutdown or failed is resumed at the
+ * next start under the same id, the counters then start anew. The status is
+ * only kept in memory, the one of a deletion finished before the last start is
+ * gone.
+ */
+public final class ContainerDeletion{
+
+  /**
+   * The states of a background deletion
+   */
+  public enum State{
+    /**
+     * The annotations are being deleted
+     */
+    Running,
+    /**
+     * All annotations have been deleted
+     */
+    Finished,
+    /**
+     * The deletion stopped because of an error, it is resumed at the next start
+     */
+    Failed
+  }
+
+  private final String id;
+  private final String containerIri;
+  private final long total;
+  private final long started = System.currentTimeMillis();
+  private final AtomicLong deleted = new AtomicLong();
+  private volatile State state = State.Running;
+  private volatile long finished;
+  private volatile String error;
+
+  /**
+   * Creates the status of a new or resumed deletion
+   *
+   * @param id The id of the deletion
+   * @param containerIri The IRI of the deleted container
+   * @param total The number of annotations to delete
+   */
+  public ContainerDeletion(String id, String containerIri, long total){
+    this.id = id;
+    this.containerIri = containerIri;
+    this.total = total;
+  }
+
+  /**
+   * Gets the id of the deletion
+   *
+   * @return The id
+   */
+  public String getId(){
+    return id;
+  }
+
+  /**
+   * Gets the IRI of the deleted container
+   *
+   * @return The container IRI
+   */
+  public String getContainerIri(){
+    return containerIri;
+  }
+
+  /**
+   * Gets the number of annotations the container had when the deletion was
+   * started or resumed
+   *
+   * @return The number of annotations to delete
+   */
+  public long getTotal(){
+    return total;
+  }
+
+  /**
+   * Gets the number of annotations deleted so far
+   *
+   * @return The number of deleted annotations
+   */
+  public long getDeleted(){
+    return deleted.get();
+  }
+
+  /**
+   * Gets the state of the deletion
+   *
+   * @return The state
+   */
+  public State getState(){
+    return state;
+  }
+
+  /**
+   * Gets the time the deletion was started or resumed
+   *
+   * @return The start time in milliseconds since the epoch
+   */
+  public long getStarted(){
+    return started;
+  }
+
+  /**
+   * Gets the time the deletion finished or failed
+   *
+   * @return The end time in milliseconds since the epoch, 0 while running
+   */
+  public long getFinished(){
+    return finished;
+  }
+
+  /**
+   * Gets the error the deletion failed with
+   *
+   * @return The error message, null if not failed
+   */
+  public String getError(){
+    return error;
+  }
+
+  void addDeleted(int count){
+    deleted.addAndGet(count);
+  }
+
+  void finish(){
+    finished = System.currentTimeMillis();
+    state = State.Finished;
+  }
+
+  void fail(String message){
+    error = message;
+    finished = System.currentTimeMillis();
+    state = State.Failed;
+  }
+}
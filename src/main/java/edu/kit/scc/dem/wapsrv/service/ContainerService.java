@@ -5,6 +5,7 @@ import edu.kit.scc.dem.wapsrv.exceptions.WapException;
 import edu.kit.scc.dem.wapsrv.model.Container;
 import edu.kit.scc.dem.wapsrv.model.Page;
 import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.repository.TimeIndex;
 
 /**
  * The container interface to act as the bridge between the storage layer in the repositories and the REST request layer
@@ -25,11 +26,13 @@ public interface ContainerService extends WapService {
     *                      The IRI of the container
     * @param  preferences
     *                      List of container preferences
+    * @param  pageSize
+    *                      The number of annotations per page requested by the client, 0 for the configured page size
     * @return              The requested Container
     * @throws WapException
     *                      in case any errors occurred
     */
-   Container getContainer(String iri, Set<Integer> preferences) throws WapException;
+   Container getContainer(String iri, Set<Integer> preferences, int pageSize) throws WapException;
 
    /**
     * Creates a new Container with the given name as a child to the Container denoted by the baseContainerIri. The
@@ -52,16 +55,32 @@ public interface ContainerService extends WapService {
 
    /**
     * Deletes the {@link Container} denoted by the given IRI if ETags match A Container can only be deleted if it
-    * contains no sub-containers. Contained Annotations do not prevent deletion, they will get deleted too.
+    * contains no sub-containers. Contained Annotations do not prevent deletion, they will get deleted too. If the
+    * container holds more annotations than configured, only the container is deleted right away and its annotations
+    * are deleted in the background.
     * 
     * @param  iri
     *                      The IRI of the container to delete
     * @param  etag
     *                      The ETag associated with the container state known to the client
+    * @return              The IRI of the status resource of the background deletion, null if the annotations have
+    *                      already been deleted
     * @throws WapException
     *                      In case any errors occurred
     */
-   void deleteContainer(String iri, String etag) throws WapException;
+   String deleteContainer(String iri, String etag) throws WapException;
+
+   /**
+    * Gets the status of a container deletion running in the background
+    * 
+    * @param  id
+    *                      The id of the deletion
+    * @return              The status of the deletion
+    * @throws WapException
+    *                      NotExistentException if no deletion with that id has been started or resumed since the
+    *                      start, which includes deletions finished before it
+    */
+   ContainerDeletion getContainerDeletion(String id) throws WapException;
 
    /**
     * Gets the Page with the given number of the Container denoted by the given IRI. Preference of Annotation
@@ -73,9 +92,78 @@ public interface ContainerService extends WapService {
     *                             The preference regarding Annotation representation
     * @param  pageNr
     *                             The number of the page
+    * @param  pageSize
+    *                             The number of annotations per page requested by the client, 0 for the configured
+    *                             page size. Sizes above the configured max. page size are reduced to it.
     * @return                     The requested Page
     * @throws WapException
     *                             In case any errors occurred
     */
-   Page getPage(String containerIri, int containerPreference, int pageNr) throws WapException;
+   Page getPage(String containerIri, int containerPreference, int pageNr, int pageSize) throws WapException;
+
+   /**
+    * Gets the Page of the Container denoted by the given IRI that continues after the annotation recorded in the
+    * cursor. Contrary to numbered pages, annotations removed or added before it meanwhile do not shift the page.
+    * Preference of Annotation representation is applied.
+    * 
+    * @param  containerIri
+    *                             The IRI of the container
+    * @param  containerPreference
+    *                             The preference regarding Annotation representation
+    * @param  cursor
+    *                             The cursor from the as:next link of the previous page
+    * @param  pageSize
+    *                             The number of annotations per page requested by the client, 0 for the configured
+    *                             page size. Sizes above the configured max. page size are reduced to it.
+    * @return                     The requested Page, empty if there are no more annotations
+    * @throws WapException
+    *                             In case any errors occurred, IllegalPageIriException for malformed cursors
+    */
+   Page getPage(String containerIri, int containerPreference, String cursor, int pageSize) throws WapException;
+
+   /**
+    * Gets the Page with the given number of the annotations of the Container denoted by the given IRI that were
+    * created or modified within the time range. They are ordered by that time, the page is part of a collection
+    * with the range as query parameters of the container IRI. Preference of Annotation representation is applied.
+    * 
+    * @param  containerIri
+    *                             The IRI of the container
+    * @param  range
+    *                             The range of created or modified times
+    * @param  containerPreference
+    *                             The preference regarding Annotation representation
+    * @param  pageNr
+    *                             The number of the page
+    * @param  pageSize
+    *                             The number of annotations per page requested by the client, 0 for the configured
+    *                             page size. Sizes above the configured max. page size are reduced to it.
+    * @return                     The requested Page
+    * @throws WapException
+    *                             In case any errors occurred
+    */
+   Page getPage(String containerIri, TimeIndex.Range range, int containerPreference, int pageNr, int pageSize)
+         throws WapException;
+
+   /**
+    * Gets the Page of the annotations of the Container denoted by the given IRI that were created or modified within
+    * the time range and continues after the annotation recorded in the cursor. Preference of Annotation
+    * representation is applied.
+    * 
+    * @param  containerIri
+    *                             The IRI of the container
+    * @param  range
+    *                             The range of created or modified times
+    * @param  containerPreference
+    *                             The preference regarding Annotation representation
+    * @param  cursor
+    *                             The cursor from the as:next link of the previous page
+    * @param  pageSize
+    *                             The number of annotations per page requested by the client, 0 for the configured
+    *                             page size. Sizes above the configured max. page size are reduced to it.
+    * @return                     The requested Page, empty if there are no more annotations
+    * @throws WapException
+    *                             In case any errors occurred, IllegalPageIriException for malformed cursors
+    */
+   Page getPage(String containerIri, TimeIndex.Range range, int containerPreference, String cursor, int pageSize)
+         throws WapException;
 }
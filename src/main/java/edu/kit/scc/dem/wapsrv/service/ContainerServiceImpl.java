@@ -1,18 +1,34 @@
 package edu.kit.scc.dem.wapsrv.service;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.rdf.api.BlankNodeOrIRI;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.Quad;
+import org.apache.commons.rdf.simple.Types;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.exceptions.ContainerNotEmptyException;
 import edu.kit.scc.dem.wapsrv.exceptions.FormatException;
 import edu.kit.scc.dem.wapsrv.exceptions.InvalidContainerException;
@@ -22,7 +38,6 @@ import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
 import edu.kit.scc.dem.wapsrv.exceptions.ResourceDeletedException;
 import edu.kit.scc.dem.wapsrv.exceptions.ResourceExistsException;
 import edu.kit.scc.dem.wapsrv.exceptions.WapException;
-import edu.kit.scc.dem.wapsrv.model.Annotation;
 import edu.kit.scc.dem.wapsrv.model.Container;
 import edu.kit.scc.dem.wapsrv.model.ContainerPreference;
 import edu.kit.scc.dem.wapsrv.model.FormattableObject;
@@ -31,9 +46,14 @@ import edu.kit.scc.dem.wapsrv.model.WapObject;
 import edu.kit.scc.dem.wapsrv.model.formats.Format;
 import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
 import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
+import edu.kit.scc.dem.wapsrv.model.rdf.WapObjectView;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
 import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfSchemaVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 import edu.kit.scc.dem.wapsrv.repository.ContainerRepository;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.ResourceStatusIndex;
+import edu.kit.scc.dem.wapsrv.repository.TimeIndex;
 
 /**
  * A general implementation of the container service interface. It is used by
@@ -64,11 +84,70 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
    */
   @Autowired
   private JsonLdProfileRegistry jsonLdProfileRegistry;
+  /**
+   * The thread deleting the annotations of large containers in the background,
+   * null if disabled
+   */
+  private ExecutorService deletionExecutor;
+  /**
+   * The background deletions started or resumed since the start, by id
+   */
+  private final Map<String, ContainerDeletion> deletions = new ConcurrentHashMap<String, ContainerDeletion>();
+
+  /**
+   * Resumes the background deletions interrupted by the last shutdown if they
+   * are enabled in the configuration
+   */
+  @PostConstruct
+  private void init(){
+    if(getWapServerConfig().getAsyncContainerDeletionThreshold() <= 0){
+      return;
+    }
+    deletionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "container-deletion");
+      thread.setDaemon(true);
+      return thread;
+    });
+    List<ContainerDeletion> pending = new ArrayList<ContainerDeletion>();
+    repository.readRdfTransaction(ds -> {
+      // Only deleted containers carry the marker, the index on the predicate finds them without a scan
+      List<Quad> markers = new ArrayList<Quad>();
+      ds.stream(null, null, WapVocab.deletionPending, null).forEach(markers::add);
+      for(Quad marker : markers){
+        String iri = ((IRI) marker.getSubject()).getIRIString();
+        String id = ((Literal) marker.getObject()).getLexicalForm();
+        pending.add(new ContainerDeletion(id, iri,
+                repository.countElementsInSeq(iri, Container.toAnnotationSeqIriString(iri))));
+      }
+    });
+    for(ContainerDeletion deletion : pending){
+      log.info("resuming deletion of the annotations of Container: '" + deletion.getContainerIri() + "'");
+      startDeletion(deletion);
+    }
+  }
+
+  /**
+   * Stops the background deletions, they are resumed at the next start
+   */
+  @PreDestroy
+  private void shutdown(){
+    if(deletionExecutor != null){
+      deletionExecutor.shutdownNow();
+      try{
+        deletionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+      } catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 
   @Override
-  public void deleteContainer(String iri, String etag) throws WapException{
+  public String deleteContainer(String iri, String etag) throws WapException{
     log.info("deleting Container: '" + iri + "' with given etag: '" + etag + "'");
-    repository.writeRdfTransaction(ds -> {
+    List<String> annoIris = new ArrayList<String>();
+    ContainerDeletion[] deletion = new ContainerDeletion[1];
+    // The checks and collecting the annotations run in parallel with other readers
+    repository.promotableRdfTransaction(ds -> {
       checkExistsAndNotDeleted(iri);
       checkEtag(iri, etag);
       // Check if the container has subcontainer.
@@ -76,28 +155,114 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
         log.warn("Container: '" + iri + "' has subcontainers, deleting aborted.");
         throw new ContainerNotEmptyException("The container has subcontainers and cannot be deleted");
       }
+      annoIris.clear();
+      deletion[0] = null;
+      if(deletionExecutor != null){
+        int count = repository.countElementsInSeq(iri, Container.toAnnotationSeqIriString(iri));
+        if(count > getWapServerConfig().getAsyncContainerDeletionThreshold()){
+          deletion[0] = new ContainerDeletion(UUID.randomUUID().toString(), iri, count);
+          return;
+        }
+      }
+      annoIris.addAll(repository.getAllObjectIrisOfSeq(iri, Container.toAnnotationSeqIriString(iri)));
+    }, ds -> {
       deleteObject(iri, Container.toContainerSeqIriString(WapObject.getParentContainerIriString(iri)));
-      List<String> annoIris = repository.getAllObjectIrisOfSeq(iri, Container.toAnnotationSeqIriString(iri));
+      if(deletion[0] != null){
+        // The marker lets the deletion of the annotations be resumed after a restart
+        BlankNodeOrIRI node = createIri(iri);
+        ds.add(node, node, WapVocab.deletionPending, repository.getRdf().createLiteral(deletion[0].getId()));
+        return;
+      }
       log.info("deleting " + annoIris.size() + " annotations form Container: '" + iri + "'");
       deleteObjectBulk(annoIris);
       repository.emptySeq(iri, Container.toAnnotationSeqIriString(iri));
     });
+    if(deletion[0] != null){
+      log.info("deleting " + deletion[0].getTotal() + " annotations of Container: '" + iri + "' in the background");
+      startDeletion(deletion[0]);
+      return getWapServerConfig().getBaseUrl() + WapServerConfig.DELETION_ENDPOINT + "/" + deletion[0].getId();
+    }
     log.info("deleting of Container: '" + iri + "' was finished with success");
+    return null;
   }
 
   @Override
-  public Container getContainer(String containerIri, Set<Integer> preferences) throws WapException{
+  public ContainerDeletion getContainerDeletion(String id) throws WapException{
+    ContainerDeletion deletion = deletions.get(id);
+    if(deletion == null){
+      throw new NotExistentException("No container deletion with id " + id);
+    }
+    return deletion;
+  }
+
+  private void startDeletion(ContainerDeletion deletion){
+    deletions.put(deletion.getId(), deletion);
+    deletionExecutor.execute(() -> drainContainer(deletion));
+  }
+
+  /**
+   * Deletes the annotations of a deleted container in batches, each in a
+   * transaction of its own with a pause in between so other writers are not
+   * starved. The annotations are removed from the sequence as they are deleted,
+   * so an interrupted deletion continues with the remaining ones.
+   *
+   * @param deletion The deletion to run
+   */
+  private void drainContainer(ContainerDeletion deletion){
+    final String iri = deletion.getContainerIri();
+    final String seqIri = Container.toAnnotationSeqIriString(iri);
+    final int batchSize = Math.max(1, getWapServerConfig().getContainerDeletionBatchSize());
+    final long pauseMillis = getWapServerConfig().getContainerDeletionPauseMillis();
+    final Literal trueLiteral = repository.getRdf().createLiteral("true", Types.XSD_BOOLEAN);
+    boolean[] done = new boolean[1];
+    try{
+      while(!done[0]){
+        repository.writeRdfTransaction(ds -> {
+          List<String> annoIris = repository.getRangeOfObjectIrisFromSeq(iri, seqIri, 1, batchSize);
+          for(String annoIri : annoIris){
+            BlankNodeOrIRI node = createIri(annoIri);
+            ds.add(node, node, WapVocab.deleted, trueLiteral);
+            setStatus(annoIri, ResourceStatusIndex.Status.DELETED);
+            recordMutation(MutationJournal.Type.Delete, annoIri, null);
+            repository.removeElementFromRdfSeq(iri, seqIri, annoIri);
+          }
+          if(annoIris.isEmpty()){
+            BlankNodeOrIRI node = createIri(iri);
+            ds.remove(Optional.of(node), node, WapVocab.deletionPending, null);
+            repository.emptySeq(iri, seqIri);
+            done[0] = true;
+          }
+          deletion.addDeleted(annoIris.size());
+        });
+        if(!done[0] && pauseMillis > 0){
+          Thread.sleep(pauseMillis);
+        }
+      }
+      deletion.finish();
+      log.info("deleting of the annotations of Container: '" + iri + "' was finished with success");
+    } catch(InterruptedException e){
+      log.info("deletion of the annotations of Container: '" + iri + "' interrupted, resumed at the next start");
+      Thread.currentThread().interrupt();
+    } catch(RuntimeException e){
+      log.error("deletion of the annotations of Container: '" + iri + "' failed", e);
+      deletion.fail(e.getMessage());
+    }
+  }
+
+  @Override
+  public Container getContainer(String containerIri, Set<Integer> preferences, int pageSize) throws WapException{
     log.info("Get Container from DB: '" + containerIri + "'");
     final boolean preferMinimalContainer = ContainerPreference.isPreferMinimalContainer(preferences);
     final boolean preferIrisOnly = ContainerPreference.isPreferContainedIRIs(preferences);
+    final int effectivePageSize = getEffectivePageSize(pageSize);
     checkExistsAndNotDeleted(containerIri);
     Dataset[] retDs = new Dataset[1];
     repository.readRdfTransaction(ds -> {
-      Dataset containerDataset = repository.getWapObject(containerIri);
+      Dataset containerDataset = readContainerDescription(containerIri, !preferMinimalContainer);
       if(!preferMinimalContainer){
         // Need a page from database depending on preferIrisOnly
         try{
-          Page page = getPage(containerIri, 0, preferIrisOnly, true);
+          Page page = getPage(containerIri, 0, null, effectivePageSize, preferIrisOnly, true);
           // Add the page to the container data set
           page.getDataset().getGraph().iterate().forEach(t -> {
             containerDataset.getGraph().add(t);
@@ -109,13 +274,54 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
       retDs[0] = containerDataset;
     });
     log.info("Get Container '" + containerIri + "' finished.");
-    return modelFactory.createContainer(retDs[0], preferMinimalContainer, preferIrisOnly);
+    return modelFactory.createContainer(retDs[0], preferMinimalContainer, preferIrisOnly, effectivePageSize);
     // No exception ==> container exists
     // The container now contains only the basic information.
     // No page is embedded.
     // If empty no first/last properties are set
   }
 
+  /**
+   * Reads the description of a container without the members of its annotation sequence, which may be many. The
+   * triples of the container and of the nodes reachable from it are read, the annotation sequence only contributes its
+   * member count and the container sequence is only read if the subcontainers are needed.
+   *
+   * @param containerIri
+   *          the IRI of the container
+   * @param withSubcontainers
+   *          true, if the members of the container sequence are needed
+   * @return the description of the container
+   */
+  private Dataset readContainerDescription(String containerIri, boolean withSubcontainers){
+    Dataset view = repository.getWapObjectView(containerIri);
+    Dataset containerDataset = repository.getRdf().createDataset();
+    Graph graph = containerDataset.getGraph();
+    BlankNodeOrIRI iri = createIri(containerIri);
+    BlankNodeOrIRI annotationSeq = createIri(Container.toAnnotationSeqIriString(containerIri));
+    BlankNodeOrIRI containerSeq = createIri(Container.toContainerSeqIriString(containerIri));
+    Set<BlankNodeOrIRI> visited = new HashSet<BlankNodeOrIRI>(Arrays.asList(iri, annotationSeq, containerSeq));
+    Deque<BlankNodeOrIRI> toVisit = new ArrayDeque<BlankNodeOrIRI>();
+    toVisit.add(iri);
+    if(withSubcontainers){
+      toVisit.add(containerSeq);
+    }
+    while(!toVisit.isEmpty()){
+      view.getGraph().stream(toVisit.poll(), null, null).forEach(triple -> {
+        graph.add(triple);
+        if(triple.getObject() instanceof BlankNodeOrIRI && visited.add((BlankNodeOrIRI) triple.getObject())){
+          toVisit.add((BlankNodeOrIRI) triple.getObject());
+        }
+      });
+    }
+    if(view instanceof WapObjectView && ((WapObjectView) view).getEtag() != null){
+      graph.add(iri, WapVocab.etag, repository.getRdf().createLiteral(((WapObjectView) view).getEtag()));
+    }
+    int annoCount = repository.countElementsInSeq(containerIri, Container.toAnnotationSeqIriString(containerIri));
+    graph.add(annotationSeq, WapVocab.memberCount,
+            repository.getRdf().createLiteral(String.valueOf(annoCount), Types.XSD_NONNEGATIVEINTEGER));
+    return containerDataset;
+  }
+
   @Override
   public Container postContainer(String baseContainerIri, String name, String rawContainer, Format format)
           throws WapException{
@@ -155,82 +361,104 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
       containerString = rawContainer;
     }
     final String containerIri = baseContainerIri + newName + "/";
-    if(containsIri(containerIri)){
-      if(isIriDeleted(containerIri)){
-        if(overwriteIfDeleted){
-          // Slug was given, we may overwrite deleted containers, go on
-          log.info("Slug used to recreate deleted container: '" + containerIri + "'. Deleting old data.");
-          repository.writeRdfTransaction(ds -> {
-            Optional<BlankNodeOrIRI> node = Optional.of(repository.getRdf().createIRI(containerIri));
-            ds.remove(node, null, null, null);
-          });
+    final String newContainerString = containerString;
+    boolean[] recreate = new boolean[1];
+    Container[] container = new Container[1];
+    // The checks run in parallel with other readers, the writer lock is only taken if they pass
+    repository.promotableRdfTransaction(ds -> {
+      checkExistsAndNotDeleted(baseContainerIri);
+      recreate[0] = false;
+      if(containsIri(containerIri)){
+        if(isIriDeleted(containerIri)){
+          if(isDeletionPending(containerIri)){
+            throw new ResourceDeletedException("The annotations of the deleted container with that IRI are still "
+                    + "being deleted. Recreation is possible afterwards.");
+          }
+          if(overwriteIfDeleted){
+            // Slug was given, we may overwrite deleted containers, go on
+            recreate[0] = true;
+          } else{
+            throw new ResourceDeletedException(
+                    "A container with that IRI once existed " + "and is now deleted. Recreation is forbidden.");
+          }
         } else{
-          throw new ResourceDeletedException(
-                  "A container with that IRI once existed " + "and is now deleted. Recreation is forbidden.");
+          throw new ResourceExistsException("A container with that IRI already exists");
         }
-      } else{
-        throw new ResourceExistsException("A container with that IRI already exists");
       }
-    }
-    Container container = getModelFactory().createContainer(containerString, format, containerIri);
-    // No exception ==> everything fine
-    // To backup the container IRI provided is not needed because it is not documented in the
-    // specification.
-    // The container will almost never have an IRI already that fits to his final destination.
-    // the renaming should now be done in the containers constructor
-    container.setIri(containerIri, false);
-    if(container.getLabel() == null){
-      if(getWapServerConfig().isLabelMandatoryInContainers()){
-        log.warn("Settings request a label in the container.");
-        throw new InvalidContainerException("label property is mandatory for containers");
-      } else{
-        container.createDefaultLabel();
+      container[0] = getModelFactory().createContainer(newContainerString, format, containerIri);
+      // No exception ==> everything fine
+      // To backup the container IRI provided is not needed because it is not documented in the
+      // specification.
+      // The container will almost never have an IRI already that fits to his final destination.
+      // the renaming should now be done in the containers constructor
+      container[0].setIri(containerIri, false);
+      if(container[0].getLabel() == null){
+        if(getWapServerConfig().isLabelMandatoryInContainers()){
+          log.warn("Settings request a label in the container.");
+          throw new InvalidContainerException("label property is mandatory for containers");
+        } else{
+          container[0].createDefaultLabel();
+        }
       }
-    }
-    repository.writeRdfTransaction(ds -> {
-      if(containsIri(container.getIriString())){
-        throw new ResourceExistsException(
-                "A container with the IRI: '" + container.getIriString() + "' already exists in the Database.");
+    }, ds -> {
+      if(recreate[0]){
+        log.info("Slug used to recreate deleted container: '" + containerIri + "'. Deleting old data.");
+        Optional<BlankNodeOrIRI> node = Optional.of(repository.getRdf().createIRI(containerIri));
+        ds.remove(node, null, null, null);
+        setStatus(containerIri, ResourceStatusIndex.Status.ABSENT);
       }
-      writeWapObjectToDb(container);
+      writeWapObjectToDb(container[0]);
       repository.addElementToRdfSeq(baseContainerIri, Container.toContainerSeqIriString(baseContainerIri),
-              container.getIriString());
+              container[0].getIriString());
       // Update ETag of parent
       updateEtag(baseContainerIri, etagFactory.generateEtag());
     });
     log.info("Post Container for: '" + containerIri + "' successful.");
     // If no exception, everything is fine.
-    return container;
+    return container[0];
   }
 
   @Override
-  public Page getPage(String containerIri, int containerPreference, int pageNr) throws WapException{
+  public Page getPage(String containerIri, int containerPreference, int pageNr, int pageSize) throws WapException{
     final boolean preferIrisOnly = ContainerPreference.PREFER_CONTAINED_IRIS == containerPreference;
     // default is not embedded
-    return getPage(containerIri, pageNr, preferIrisOnly, false);
+    return getPage(containerIri, pageNr, null, getEffectivePageSize(pageSize), preferIrisOnly, false);
   }
 
-  private Page getPage(String containerIri, int pageNr, boolean preferIrisOnly, boolean isEmbedded)
-          throws WapException{
-    log.info("Get Page of Container: '" + containerIri + "' page Nr: '" + pageNr + "'");
-    int pageSize = wapServerConfig.getPageSize();
+  @Override
+  public Page getPage(String containerIri, int containerPreference, String cursor, int pageSize) throws WapException{
+    final boolean preferIrisOnly = ContainerPreference.PREFER_CONTAINED_IRIS == containerPreference;
+    return getPage(containerIri, -1, cursor, getEffectivePageSize(pageSize), preferIrisOnly, false);
+  }
+
+  /**
+   * Gets a page by number or by cursor. The first page and pages addressed by a
+   * cursor are read as a seek after the last annotation before them, the
+   * following page is then linked by cursor too. Other pages are read by index.
+   */
+  private Page getPage(String containerIri, int pageNr, String cursor, int pageSize, boolean preferIrisOnly,
+          boolean isEmbedded) throws WapException{
+    log.info("Get Page of Container: '" + containerIri + "' " + (cursor == null ? "page Nr: '" + pageNr
+            : "cursor: '" + cursor) + "'");
+    final PageCursor after = cursor == null ? null : PageCursor.parse(cursor, containerIri);
     Dataset retDs = repository.getRdf().createDataset();
-    BlankNodeOrIRI containerNode = repository.getRdf().createIRI(containerIri);
     Page[] page = new Page[1];
     // No exception ==> page exists
     repository.readRdfTransaction(ds -> {
       // Check if container exists and has not been deleted
       checkExistsAndNotDeleted(containerIri);
       // Get total count of annotations
-      Graph graph = ds.getGraph(containerNode).get();
-      int annoTotalCount = repository.countElementsInSeq(containerIri, Container.toAnnotationSeqIriString(containerIri));
+      BlankNodeOrIRI containerNode = createIri(containerIri);
+      Graph graph = getGraph(ds, containerNode);
+      String seqIri = Container.toAnnotationSeqIriString(containerIri);
+      int annoTotalCount = repository.countElementsInSeq(containerIri, seqIri);
 
       //just moved up
       int firstAnnotationIndex = (pageNr * pageSize) + 1;
       int lastAnnotationIndex = Math.min(firstAnnotationIndex + pageSize - 1, annoTotalCount);
       // If the annotation starts at an index behind the size of the annotation sequence
       // an exception must be thrown.
-      if(firstAnnotationIndex > annoTotalCount){
+      if(after == null && firstAnnotationIndex > annoTotalCount){
         throw new NotExistentException(ErrorMessageRegistry.PAGE_NOT_EXISTENT + " : " + pageNr + " in container " + containerIri);
       }
       //end of modification
@@ -238,7 +466,11 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
       Literal objectOfModified = (Literal) graph.stream(containerNode, DcTermsVocab.modified, null).findFirst().get().getObject();
       String modifiedString = objectOfModified.getLexicalForm();
       String labelString = RdfUtilities.nStringToString(graph.stream(containerNode, RdfSchemaVocab.label, null).findFirst().get().getObject().ntriplesString());
-      page[0] = modelFactory.createPage(retDs, containerIri, pageNr, preferIrisOnly, isEmbedded, annoTotalCount, modifiedString, labelString);
+      if(after == null){
+        page[0] = modelFactory.createPage(retDs, containerIri, pageNr, pageSize, preferIrisOnly, isEmbedded, annoTotalCount, modifiedString, labelString);
+      } else{
+        page[0] = modelFactory.createPage(retDs, containerIri, cursor, pageSize, preferIrisOnly, annoTotalCount, modifiedString, labelString);
+      }
       // Read the annotation list with the correct size
       // ATTENTION: the index of the sequence does not start with 0 as usual
       // Keep that in mind in the rest of this method
@@ -252,23 +484,138 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
 //        throw new NotExistentException(ErrorMessageRegistry.PAGE_NOT_EXISTENT + " : " + pageNr + " in container " + containerIri);
 //      }
       // repository.addAnnotationsToPage(page[0], firstAnnotationIndex, lastAnnotationIndex, preferIrisOnly);
-      String containerIriPage = page[0].getContainerIri();
-      List<String> annoIris = repository.getRangeOfObjectIrisFromSeq(containerIriPage,
-              Container.toAnnotationSeqIriString(containerIriPage), firstAnnotationIndex, lastAnnotationIndex);
-      annoIris.forEach(iri -> {
-        if(preferIrisOnly){
-          page[0].addAnnotationIri(iri);
-        } else{
-          Annotation annotation = getAnnotation(iri);
-          page[0].addAnnotation(annotation);
+      List<String> annoIris;
+      PageCursor next = null;
+      if(after == null && pageNr > 0){
+        annoIris = repository.getRangeOfObjectIrisFromSeq(containerIri, seqIri, firstAnnotationIndex, lastAnnotationIndex);
+      } else{
+        // One more than fits tells whether there is a next page
+        annoIris = new ArrayList<>(pageSize);
+        Map<Long, String> members = repository.getObjectIrisFromSeqAfter(containerIri, seqIri,
+                after == null ? 0 : after.getPosition(), after == null ? null : after.getAnnotationIri(), pageSize + 1);
+        long lastPosition = 0;
+        for(Map.Entry<Long, String> member : members.entrySet()){
+          if(annoIris.size() == pageSize){
+            next = new PageCursor(lastPosition, annoIris.get(pageSize - 1));
+            break;
+          }
+          annoIris.add(member.getValue());
+          lastPosition = member.getKey();
         }
-      });
+      }
+      if(preferIrisOnly){
+        annoIris.forEach(page[0]::addAnnotationIri);
+      } else{
+        // All annotations of the page are read at once, as members of the container they need no checks
+        Map<String, Dataset> annotations = repository.getWapObjects(annoIris);
+        for(String iri : annoIris){
+          Dataset annotation = annotations.get(iri);
+          if(annotation == null){
+            log.warn("Annotation '" + iri + "' of Container '" + containerIri + "' not found, left out of the page");
+            continue;
+          }
+          page[0].addAnnotation(modelFactory.createAnnotation(annotation));
+        }
+      }
+      if(next != null){
+        page[0].setNextCursor(next.toString(containerIri));
+      }
       page[0].closeAdding();
     });
     log.info("Get Page for Container: '" + containerIri + "' successful.");
     return page[0];
   }
 
+  @Override
+  public Page getPage(String containerIri, TimeIndex.Range range, int containerPreference, int pageNr, int pageSize)
+          throws WapException{
+    return getPage(containerIri, range, ContainerPreference.PREFER_CONTAINED_IRIS == containerPreference, pageNr,
+            null, getEffectivePageSize(pageSize));
+  }
+
+  @Override
+  public Page getPage(String containerIri, TimeIndex.Range range, int containerPreference, String cursor,
+          int pageSize) throws WapException{
+    return getPage(containerIri, range, ContainerPreference.PREFER_CONTAINED_IRIS == containerPreference, -1, cursor,
+            getEffectivePageSize(pageSize));
+  }
+
+  /**
+   * Gets a page of the annotations created or modified within a time range. They
+   * are looked up in the time index of the repository, while it is not available
+   * the database is scanned instead. Like container pages, the first page links
+   * the next one by a cursor, which holds the time and the IRI of the last
+   * annotation before it.
+   */
+  private Page getPage(String containerIri, TimeIndex.Range range, boolean preferIrisOnly, int pageNr,
+          String cursor, int pageSize) throws WapException{
+    log.info("Get Page of Container: '" + containerIri + "' " + range.toQuery() + " "
+            + (cursor == null ? "page Nr: '" + pageNr : "cursor: '" + cursor) + "'");
+    final String collectionIri = containerIri + "?" + range.toQuery();
+    final PageCursor cursorAfter = cursor == null ? null : PageCursor.parse(cursor, containerIri);
+    final TimeIndex.Stamp after = cursorAfter == null ? null
+            : new TimeIndex.Stamp(cursorAfter.getPosition(), cursorAfter.getAnnotationIri());
+    final int skip = cursor == null ? pageNr * pageSize : 0;
+    Dataset retDs = repository.getRdf().createDataset();
+    Page[] page = new Page[1];
+    repository.readRdfTransaction(ds -> {
+      checkExistsAndNotDeleted(containerIri);
+      // One more than fits tells whether there is a next page
+      TimeIndex index = repository.getTimeIndex();
+      TimeIndex.Matches matches = index == null ? null : index.find(containerIri, range, after, skip, pageSize + 1);
+      if(matches == null){
+        matches = TimeIndex.find(ds, containerIri, range, after, skip, pageSize + 1);
+      }
+      if(cursor == null && pageNr > 0 && skip >= matches.getTotal()){
+        throw new NotExistentException(ErrorMessageRegistry.PAGE_NOT_EXISTENT + " : " + pageNr + " in container "
+                + containerIri + " " + range.toQuery());
+      }
+      BlankNodeOrIRI containerNode = createIri(containerIri);
+      Graph graph = getGraph(ds, containerNode);
+      String modifiedString = ((Literal) graph.stream(containerNode, DcTermsVocab.modified, null).findFirst().get()
+              .getObject()).getLexicalForm();
+      String labelString = RdfUtilities.nStringToString(
+              graph.stream(containerNode, RdfSchemaVocab.label, null).findFirst().get().getObject().ntriplesString());
+      if(cursor == null){
+        page[0] = modelFactory.createPage(retDs, collectionIri, pageNr, pageSize, preferIrisOnly, false,
+                matches.getTotal(), modifiedString, labelString);
+      } else{
+        page[0] = modelFactory.createPage(retDs, collectionIri, cursor, pageSize, preferIrisOnly, matches.getTotal(),
+                modifiedString, labelString);
+      }
+      List<TimeIndex.Stamp> stamps = matches.getStamps();
+      String next = null;
+      if(stamps.size() > pageSize){
+        stamps = stamps.subList(0, pageSize);
+        // Numbered pages after the first one link their successor by number, like container pages
+        if(cursor != null || pageNr == 0){
+          TimeIndex.Stamp last = stamps.get(pageSize - 1);
+          next = new PageCursor(last.getTime(), last.getAnnotationIri()).toString(containerIri);
+        }
+      }
+      List<String> annoIris = new ArrayList<>(stamps.size());
+      stamps.forEach(stamp -> annoIris.add(stamp.getAnnotationIri()));
+      if(preferIrisOnly){
+        annoIris.forEach(page[0]::addAnnotationIri);
+      } else{
+        Map<String, Dataset> annotations = repository.getWapObjects(annoIris);
+        for(String iri : annoIris){
+          Dataset annotation = annotations.get(iri);
+          if(annotation == null){
+            log.warn("Annotation '" + iri + "' of Container '" + containerIri + "' not found, left out of the page");
+            continue;
+          }
+          page[0].addAnnotation(modelFactory.createAnnotation(annotation));
+        }
+      }
+      if(next != null){
+        page[0].setNextCursor(next);
+      }
+      page[0].closeAdding();
+    });
+    return page[0];
+  }
+
   /**
    * Checks if a given name is valid for containers. Allowed are small letters,
    * large letters, _ , - and numbers
@@ -299,6 +646,15 @@ public class ContainerServiceImpl extends AbstractWapService implements Containe
     return true;
   }
 
+  private boolean isDeletionPending(String iri){
+    BlankNodeOrIRI node = createIri(iri);
+    boolean[] result = new boolean[1];
+    repository.readRdfTransaction(ds -> {
+      result[0] = ds.contains(Optional.of(node), node, WapVocab.deletionPending, null);
+    });
+    return result[0];
+  }
+
   private boolean hasSubcontainers(String iri){
     log.info("checking for subcontainer: '" + iri + "'");
     Boolean[] result = new Boolean[1];
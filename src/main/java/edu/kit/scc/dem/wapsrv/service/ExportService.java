@@ -0,0 +1,106 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+
+/**
+ * The service used to export all annotations of a container at once, e.g. to dump a container or to migrate it to
+ * another server. The annotations are written to the stream while they are read, so containers of any size can be
+ * exported. The NDJSON and N-Quads exports can be loaded again with the {@link BulkLoadService}.
+ */
+public interface ExportService {
+   /**
+    * The formats annotations can be exported in
+    */
+   enum ExportFormat {
+      /**
+       * One compacted JSON-LD annotation per line
+       */
+      NDJSON("application/x-ndjson", "ndjson"),
+      /**
+       * N-Quads with one named graph per annotation, as in the database
+       */
+      NQUADS("application/n-quads", "nq"),
+      /**
+       * RDF Thrift with one named graph per annotation, as in the database
+       */
+      RDF_THRIFT("application/rdf+thrift", "trdf");
+
+      private final String contentType;
+      private final String fileExtension;
+
+      ExportFormat(String contentType, String fileExtension) {
+         this.contentType = contentType;
+         this.fileExtension = fileExtension;
+      }
+
+      /**
+       * Gets the content type of the export
+       *
+       * @return The content type
+       */
+      public String getContentType() {
+         return contentType;
+      }
+
+      /**
+       * Gets the usual file extension of the format
+       *
+       * @return The file extension without dot
+       */
+      public String getFileExtension() {
+         return fileExtension;
+      }
+
+      /**
+       * Gets the format with the given name, ignoring case
+       *
+       * @param  name
+       *              The name of the format, e.g. nquads
+       * @return      The format, null if unknown
+       */
+      public static ExportFormat fromName(String name) {
+         for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+               return format;
+            }
+         }
+         return null;
+      }
+   }
+
+   /**
+    * Checks that the container exists and can be exported. This should be called before the response is started, so
+    * the client still gets a proper error.
+    *
+    * @param  containerIri
+    *                      The IRI of the container
+    * @throws WapException
+    *                      If the container does not exist or has been deleted
+    */
+   void checkExportable(String containerIri) throws WapException;
+
+   /**
+    * Writes all annotations of the container to the stream, in the order of the container. With concurrent reads all
+    * annotations are read within one read transaction, so the export is a consistent snapshot even while annotations
+    * are changed. Serialized repositories read each batch in a transaction of its own instead, so writers are not
+    * blocked while the stream is written. Only a small batch of annotations is held in memory at a time.
+    *
+    * @param  containerIri
+    *                      The IRI of the container
+    * @param  recursive
+    *                      true to export the annotations of all containers below the container too
+    * @param  format
+    *                      The format to write
+    * @param  out
+    *                      The stream to write to, it is not closed
+    * @return              The number of exported annotations
+    * @throws WapException
+    *                      If the container does not exist or has been deleted
+    * @throws IOException
+    *                      If writing to the stream fails, e.g. because the client has gone
+    */
+   long exportContainer(String containerIri, boolean recursive, ExportFormat format, OutputStream out)
+         throws WapException, IOException;
+}
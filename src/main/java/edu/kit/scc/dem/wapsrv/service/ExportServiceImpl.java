@@ -0,0 +1,268 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+import org.apache.commons.rdf.api.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.model.Annotation;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.FormattableObject.Type;
+import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.model.formats.FormatRegistry;
+import edu.kit.scc.dem.wapsrv.model.formats.Formatter;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdFormatter;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.repository.ContainerRepository;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+
+/**
+ * This class provides the export service. The annotations of a container are
+ * read in batches along the sequence of the container, like consecutive pages
+ * linked by cursor, and written to the stream before the next batch is read.
+ * In the ConcurrentReads concurrency mode everything runs in one read
+ * transaction, which exports a consistent snapshot without blocking writers.
+ * In the Serialized mode readers hold the lock of the repository, so every
+ * batch is read in a short transaction of its own and written to the stream
+ * outside of it. Writes committed in between are then seen by the following
+ * batches, like by a client paging through the container. Containers below are
+ * exported depth first after the annotations of their parent.
+ */
+@Service
+public class ExportServiceImpl extends AbstractWapService implements ExportService{
+  /**
+   * The number of annotations read at once
+   */
+  static final int BATCH_SIZE = 100;
+  /**
+   * The line breaks and indentation of pretty printed JSON. JSON strings
+   * cannot contain raw line breaks, so removing them keeps the content.
+   */
+  private static final Pattern JSON_LINE_BREAK = Pattern.compile("\\r?\\n\\s*");
+  private final Logger log = LoggerFactory.getLogger(ExportServiceImpl.class);
+  /**
+   * The container repository, autowired
+   */
+  @Autowired
+  private ContainerRepository repository;
+  /**
+   * The RDF backend, autowired
+   */
+  @Autowired
+  private RdfBackend rdfBackend;
+  /**
+   * The format registry, autowired
+   */
+  @Autowired
+  private FormatRegistry formatRegistry;
+
+  @Override
+  public void checkExportable(String containerIri) throws WapException{
+    repository.readRdfTransaction(ds -> {
+      checkExistsAndNotDeleted(containerIri);
+    });
+  }
+
+  @Override
+  public long exportContainer(String containerIri, boolean recursive, ExportFormat format, OutputStream out)
+          throws WapException, IOException{
+    log.info("Export of container '" + containerIri + "' as " + format + (recursive ? " recursively" : ""));
+    AnnotationWriter writer = format == ExportFormat.NDJSON ? new NdjsonWriter(out)
+            : new GraphAnnotationWriter(rdfBackend.writeGraphs(out,
+                    format == ExportFormat.NQUADS ? Format.NQUADS : Format.RDF_THRIFT));
+    long[] exported = new long[1];
+    try{
+      if(repository.getConcurrencyMode() == TransactionRepository.ConcurrencyMode.ConcurrentReads){
+        repository.readRdfTransaction(ds -> {
+          checkExistsAndNotDeleted(containerIri);
+          exported[0] = exportContainer(containerIri, recursive, writer);
+          writer.finish();
+        });
+      } else{
+        // A slow client must not keep the writers waiting, the batches read their own transactions
+        checkExportable(containerIri);
+        exported[0] = exportContainer(containerIri, recursive, writer);
+        writer.finish();
+      }
+    } catch(UncheckedIOException e){
+      throw e.getCause();
+    }
+    log.info("Export of container '" + containerIri + "' finished, " + exported[0] + " annotations exported");
+    return exported[0];
+  }
+
+  /**
+   * Exports the annotations of the container and, if recursive, of the
+   * containers below. The reads run within the read transaction of the export
+   * if there is one, in a transaction of their own otherwise.
+   */
+  private long exportContainer(String containerIri, boolean recursive, AnnotationWriter writer){
+    long exported = 0;
+    String seqIri = Container.toAnnotationSeqIriString(containerIri);
+    for(List<String> batch : new SeqBatches(containerIri, seqIri)){
+      for(Annotation annotation : readAnnotations(batch)){
+        writer.write(annotation);
+        exported++;
+      }
+    }
+    if(recursive){
+      for(List<String> batch : new SeqBatches(containerIri, Container.toContainerSeqIriString(containerIri))){
+        for(String childIri : batch){
+          if(!isIriDeleted(childIri)){
+            exported += exportContainer(childIri, true, writer);
+          }
+        }
+      }
+    }
+    return exported;
+  }
+
+  /**
+   * Reads the annotations of a batch.
+   *
+   * @param batch The IRIs of the annotations
+   * @return The annotations not deleted, in the order of the batch
+   */
+  private List<Annotation> readAnnotations(List<String> batch){
+    List<Annotation> annotations = new ArrayList<Annotation>(batch.size());
+    repository.readRdfTransaction(ds -> {
+      // Members of the container need no checks, deleted ones are left out by the repository
+      Map<String, Dataset> objects = repository.getWapObjects(batch);
+      for(String iri : batch){
+        Dataset annotation = objects.get(iri);
+        if(annotation != null){
+          annotations.add(modelFactory.createAnnotation(annotation));
+        }
+      }
+    });
+    return annotations;
+  }
+
+  /**
+   * The members of a sequence read batch by batch, each continuing after the
+   * last member of the previous one
+   */
+  private final class SeqBatches implements Iterable<List<String>>{
+    private final String modelIri;
+    private final String seqIri;
+
+    private SeqBatches(String modelIri, String seqIri){
+      this.modelIri = modelIri;
+      this.seqIri = seqIri;
+    }
+
+    @Override
+    public Iterator<List<String>> iterator(){
+      return new Iterator<List<String>>(){
+        private long position = 0;
+        private String iri = null;
+        private List<String> next = read();
+
+        @Override
+        public boolean hasNext(){
+          return !next.isEmpty();
+        }
+
+        @Override
+        public List<String> next(){
+          if(next.isEmpty()){
+            throw new NoSuchElementException();
+          }
+          List<String> batch = next;
+          next = batch.size() < BATCH_SIZE ? new ArrayList<String>() : read();
+          return batch;
+        }
+
+        private List<String> read(){
+          Map<Long, String> members = new LinkedHashMap<Long, String>();
+          repository.readRdfTransaction(ds -> {
+            members.putAll(repository.getObjectIrisFromSeqAfter(modelIri, seqIri, position, iri, BATCH_SIZE));
+          });
+          for(Map.Entry<Long, String> member : members.entrySet()){
+            position = member.getKey();
+            iri = member.getValue();
+          }
+          return new ArrayList<String>(members.values());
+        }
+      };
+    }
+  }
+
+  /**
+   * Writes exported annotations in one of the export formats
+   */
+  private interface AnnotationWriter{
+    void write(Annotation annotation);
+
+    void finish();
+  }
+
+  /**
+   * Writes each annotation as compacted JSON-LD in a line of its own, framed
+   * with the default profile like single annotations are returned
+   */
+  private final class NdjsonWriter implements AnnotationWriter{
+    private final Writer writer;
+    private final Formatter formatter;
+
+    private NdjsonWriter(OutputStream out){
+      writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      formatter = formatRegistry.getFormatter(JsonLdFormatter.JSON_LD_STRING);
+      formatter.setAcceptPart(null, Type.ANNOTATION);
+    }
+
+    @Override
+    public void write(Annotation annotation){
+      try{
+        writer.write(JSON_LINE_BREAK.matcher(formatter.format(annotation)).replaceAll(""));
+        writer.write('\n');
+      } catch(IOException e){
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void finish(){
+      try{
+        writer.flush();
+      } catch(IOException e){
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Writes each annotation as the named graph of its IRI, as it is stored
+   */
+  private static final class GraphAnnotationWriter implements AnnotationWriter{
+    private final RdfBackend.GraphWriter writer;
+
+    private GraphAnnotationWriter(RdfBackend.GraphWriter writer){
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(Annotation annotation){
+      writer.write(annotation.getIri(), annotation.getDataset());
+    }
+
+    @Override
+    public void finish(){
+      writer.finish();
+    }
+  }
+}
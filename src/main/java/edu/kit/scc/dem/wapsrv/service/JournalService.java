@@ -0,0 +1,81 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.WapObjectRepository;
+
+/**
+ * The service used to read the journal of the mutations of the WapObjects
+ */
+@Service
+public class JournalService {
+   /**
+    * The repository the journal belongs to
+    */
+   @Autowired
+   WapObjectRepository repository;
+
+   /**
+    * Reads the entries of the journal starting at the given sequence number.
+    * 
+    * @param  fromSequence
+    *                      The sequence number of the first entry to read
+    * @param  maxEntries
+    *                      The maximal number of entries to read
+    * @return              The entries in the order of their sequence numbers
+    */
+   public List<MutationJournal.Entry> readJournal(long fromSequence, int maxEntries) {
+      return getJournal().read(fromSequence, maxEntries);
+   }
+
+   /**
+    * Reads the entries of the journal within a range of sequence numbers, restricted to a container and everything
+    * below it. Container IRIs are hierarchical, so the annotations and containers below a container are those with
+    * IRIs starting with its IRI. All entries of the range are read and filtered by that prefix, the cost does not
+    * depend on the number of entries of the container.
+    * 
+    * @param  fromSequence
+    *                      The sequence number of the first entry to read
+    * @param  toSequence
+    *                      The sequence number after the last entry to read
+    * @param  containerIri
+    *                      The IRI of the container, null for the entries of all containers
+    * @return              The entries in the order of their sequence numbers
+    */
+   public List<MutationJournal.Entry> readChanges(long fromSequence, long toSequence, String containerIri) {
+      if (containerIri == null) {
+         return getJournal().read(fromSequence, toSequence, entry -> true);
+      }
+      final String prefix = containerIri.endsWith("/") ? containerIri : containerIri + "/";
+      return getJournal().read(fromSequence, toSequence, entry -> entry.getIri().startsWith(prefix));
+   }
+
+   /**
+    * Gets the sequence number of the oldest entry still available.
+    * 
+    * @return The first sequence number
+    */
+   public long getFirstSequence() {
+      return getJournal().getFirstSequence();
+   }
+
+   /**
+    * Gets the sequence number the next entry will get.
+    * 
+    * @return The next sequence number
+    */
+   public long getNextSequence() {
+      return getJournal().getNextSequence();
+   }
+
+   private MutationJournal getJournal() {
+      MutationJournal journal = repository.getMutationJournal();
+      if (journal == null) {
+         throw new NotExistentException("The mutation journal is not enabled");
+      }
+      return journal;
+   }
+}
@@ -0,0 +1,85 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
+
+/**
+ * The cursor of a page addressed by the last annotation before it instead of a
+ * page number (keyset pagination). It holds the position of that annotation
+ * within the sequence of the container as given by the repository, and its IRI
+ * to continue correctly after the sequence has been reorganized. Clients see
+ * it as an opaque string, the IRI is stored relative to the container.
+ */
+public final class PageCursor{
+
+  private final long position;
+  private final String annotationIri;
+
+  /**
+   * Creates a cursor continuing after the given annotation
+   *
+   * @param position The position of the annotation within the sequence
+   * @param annotationIri The IRI of the annotation
+   */
+  public PageCursor(long position, String annotationIri){
+    this.position = position;
+    this.annotationIri = annotationIri;
+  }
+
+  /**
+   * Reads a cursor of a page of the given container
+   *
+   * @param cursor The cursor as given to clients
+   * @param containerIri The IRI of the container
+   * @return The cursor
+   * @throws IllegalPageIriException if the cursor is malformed
+   */
+  public static PageCursor parse(String cursor, String containerIri){
+    try{
+      String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int split = decoded.indexOf(' ');
+      if(split <= 0){
+        throw new IllegalPageIriException();
+      }
+      long position = Long.parseLong(decoded.substring(0, split), Character.MAX_RADIX);
+      String iri = decoded.substring(split + 1);
+      return new PageCursor(position, iri.startsWith("/") ? containerIri + iri.substring(1) : iri);
+    } catch(IllegalArgumentException e){
+      // Also thrown for malformed numbers
+      throw new IllegalPageIriException(e);
+    }
+  }
+
+  /**
+   * Gets the position of the annotation within the sequence
+   *
+   * @return The position
+   */
+  public long getPosition(){
+    return position;
+  }
+
+  /**
+   * Gets the IRI of the annotation
+   *
+   * @return The annotation IRI
+   */
+  public String getAnnotationIri(){
+    return annotationIri;
+  }
+
+  /**
+   * Writes the cursor as given to clients
+   *
+   * @param containerIri The IRI of the container
+   * @return The cursor
+   */
+  public String toString(String containerIri){
+    // Annotations are usually named below their container
+    String iri = annotationIri.startsWith(containerIri) ? "/" + annotationIri.substring(containerIri.length())
+            : annotationIri;
+    String plain = Long.toString(position, Character.MAX_RADIX) + " " + iri;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,45 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.repository.TextIndex;
+
+/**
+ * The service used to search the annotations of all containers by the words of their body values, tags, creator names
+ * and labels. The hits are ordered by relevance and returned in pages, with the fragments of the texts the words have
+ * been found in.
+ */
+public interface SearchService {
+   /**
+    * Gets the number of hits on a page
+    *
+    * @param  pageSize
+    *                  The page size requested by the client, 0 for the configured page size
+    * @return          The page size used
+    */
+   int getPageSize(int pageSize);
+
+   /**
+    * Searches the annotations containing all words of the query. Words ending with * match all words starting with
+    * them.
+    *
+    * @param  query
+    *                      The query
+    * @param  pageNr
+    *                      The number of the page, starting with 0
+    * @param  pageSize
+    *                      The number of hits per page, 0 for the configured page size
+    * @return              The hits on the page and the number of all hits
+    * @throws WapException
+    *                      If the page does not exist
+    */
+   TextIndex.Hits search(String query, int pageNr, int pageSize) throws WapException;
+
+   /**
+    * Starts to rebuild the full-text index in the background, e.g. after the database has been restored. Searches scan
+    * the database until it is finished.
+    *
+    * @throws WapException
+    *                      If the full-text index is not used
+    */
+   void rebuildIndex() throws WapException;
+}
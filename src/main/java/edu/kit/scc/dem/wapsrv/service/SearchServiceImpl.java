@@ -0,0 +1,61 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.repository.TextIndex;
+import edu.kit.scc.dem.wapsrv.repository.WapObjectRepository;
+
+/**
+ * This class provides the search service. The annotations are searched in the
+ * full-text index of the repository. While it is not available, e.g. because it
+ * is rebuilt or disabled, the texts of all annotations are read from the
+ * database instead.
+ */
+@Service
+public class SearchServiceImpl extends AbstractWapService implements SearchService{
+  private final Logger log = LoggerFactory.getLogger(SearchServiceImpl.class);
+  /**
+   * The repository, autowired
+   */
+  @Autowired
+  private WapObjectRepository repository;
+
+  @Override
+  public int getPageSize(int pageSize){
+    return getEffectivePageSize(pageSize);
+  }
+
+  @Override
+  public TextIndex.Hits search(String query, int pageNr, int pageSize) throws WapException{
+    log.info("Search for '" + query + "' page Nr: '" + pageNr + "'");
+    final int size = getEffectivePageSize(pageSize);
+    final int skip = pageNr * size;
+    TextIndex index = repository.getTextIndex();
+    TextIndex.Hits found = index == null ? null : index.search(query, skip, size);
+    if(found == null){
+      TextIndex.Hits[] hits = new TextIndex.Hits[1];
+      repository.readRdfTransaction(ds -> hits[0] = TextIndex.search(ds, query, skip, size));
+      found = hits[0];
+    }
+    if(pageNr > 0 && skip >= found.getTotal()){
+      throw new NotExistentException(ErrorMessageRegistry.PAGE_NOT_EXISTENT + " : " + pageNr + " for search "
+              + query);
+    }
+    return found;
+  }
+
+  @Override
+  public void rebuildIndex() throws WapException{
+    TextIndex index = repository.getTextIndex();
+    if(index == null){
+      throw new NotExistentException(ErrorMessageRegistry.SEARCH_NO_INDEX);
+    }
+    log.info("Rebuild of the text index requested");
+    index.invalidate();
+  }
+}
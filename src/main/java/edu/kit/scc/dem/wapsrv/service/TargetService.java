@@ -0,0 +1,62 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.model.Page;
+
+/**
+ * The service used to find the annotations on a target, e.g. all annotations on an image or a canvas, across all
+ * containers. Targets are the IRIs of oa:hasTarget and of the oa:hasSource of specific resources. The annotations are
+ * returned as pages of a collection ordered by annotation IRI, like the pages of a container.
+ */
+public interface TargetService {
+   /**
+    * Gets the IRI of the collection of the annotations on a target
+    *
+    * @param  targetIri
+    *                   The IRI of the target
+    * @param  prefix
+    *                   true for the annotations on all targets starting with the IRI
+    * @return           The IRI of the collection
+    */
+   String getCollectionIri(String targetIri, boolean prefix);
+
+   /**
+    * Gets a numbered page of the annotations on a target
+    *
+    * @param  targetIri
+    *                             The IRI of the target
+    * @param  prefix
+    *                             true for the annotations on all targets starting with the IRI
+    * @param  containerPreference
+    *                             The preference whether to embed the annotations or only list their IRIs
+    * @param  pageNr
+    *                             The number of the page, starting with 0
+    * @param  pageSize
+    *                             The number of annotations per page, 0 for the configured page size
+    * @return                     The page
+    * @throws WapException
+    *                             If the page does not exist
+    */
+   Page getPage(String targetIri, boolean prefix, int containerPreference, int pageNr, int pageSize)
+         throws WapException;
+
+   /**
+    * Gets a page of the annotations on a target addressed by a cursor
+    *
+    * @param  targetIri
+    *                             The IRI of the target
+    * @param  prefix
+    *                             true for the annotations on all targets starting with the IRI
+    * @param  containerPreference
+    *                             The preference whether to embed the annotations or only list their IRIs
+    * @param  cursor
+    *                             The cursor of the page, as given in the next link of the previous page
+    * @param  pageSize
+    *                             The number of annotations per page, 0 for the configured page size
+    * @return                     The page
+    * @throws WapException
+    *                             If the cursor is malformed
+    */
+   Page getPage(String targetIri, boolean prefix, int containerPreference, String cursor, int pageSize)
+         throws WapException;
+}
@@ -0,0 +1,119 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.rdf.api.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
+import edu.kit.scc.dem.wapsrv.exceptions.WapException;
+import edu.kit.scc.dem.wapsrv.model.ContainerPreference;
+import edu.kit.scc.dem.wapsrv.model.Page;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
+import edu.kit.scc.dem.wapsrv.repository.TargetIndex;
+import edu.kit.scc.dem.wapsrv.repository.WapObjectRepository;
+
+/**
+ * This class provides the target service. The annotations on a target are
+ * looked up in the target index of the repository. While it is not available,
+ * e.g. because it is rebuilt or disabled, the database is queried instead.
+ * Like container pages, the first page links the next one by a cursor, which
+ * holds the IRI of the last annotation before it.
+ */
+@Service
+public class TargetServiceImpl extends AbstractWapService implements TargetService{
+  private final Logger log = LoggerFactory.getLogger(TargetServiceImpl.class);
+  /**
+   * The repository, autowired
+   */
+  @Autowired
+  private WapObjectRepository repository;
+
+  @Override
+  public String getCollectionIri(String targetIri, boolean prefix){
+    return wapServerConfig.getBaseUrl() + WapServerConfig.TARGETS_ENDPOINT + "?target="
+            + URLEncoder.encode(targetIri, StandardCharsets.UTF_8) + (prefix ? "&prefix=true" : "");
+  }
+
+  @Override
+  public Page getPage(String targetIri, boolean prefix, int containerPreference, int pageNr, int pageSize)
+          throws WapException{
+    return getPage(targetIri, prefix, ContainerPreference.PREFER_CONTAINED_IRIS == containerPreference, pageNr, null,
+            getEffectivePageSize(pageSize));
+  }
+
+  @Override
+  public Page getPage(String targetIri, boolean prefix, int containerPreference, String cursor, int pageSize)
+          throws WapException{
+    return getPage(targetIri, prefix, ContainerPreference.PREFER_CONTAINED_IRIS == containerPreference, -1, cursor,
+            getEffectivePageSize(pageSize));
+  }
+
+  private Page getPage(String targetIri, boolean prefix, boolean preferIrisOnly, int pageNr, String cursor,
+          int pageSize) throws WapException{
+    log.info("Get Page of annotations on " + (prefix ? "targets starting with " : "target ") + "'" + targetIri + "' "
+            + (cursor == null ? "page Nr: '" + pageNr : "cursor: '" + cursor) + "'");
+    final String collectionIri = getCollectionIri(targetIri, prefix);
+    final String after = cursor == null ? null : PageCursor.parse(cursor, collectionIri).getAnnotationIri();
+    final int skip = cursor == null ? pageNr * pageSize : 0;
+    Dataset retDs = repository.getRdf().createDataset();
+    Page[] page = new Page[1];
+    repository.readRdfTransaction(ds -> {
+      // One more than fits tells whether there is a next page
+      TargetIndex index = repository.getTargetIndex();
+      TargetIndex.Matches matches = index == null ? null : index.find(targetIri, prefix, after, skip, pageSize + 1);
+      if(matches == null){
+        matches = TargetIndex.find(ds, targetIri, prefix, after, skip, pageSize + 1);
+      }
+      if(cursor == null && pageNr > 0 && skip >= matches.getTotal()){
+        throw new NotExistentException(ErrorMessageRegistry.PAGE_NOT_EXISTENT + " : " + pageNr + " for target "
+                + targetIri);
+      }
+      // The collection is the result of a query, it is as new as the index
+      String modifiedString = RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), repository.getRdf())
+              .getLexicalForm();
+      String labelString = "Annotations on " + targetIri;
+      if(cursor == null){
+        page[0] = modelFactory.createPage(retDs, collectionIri, pageNr, pageSize, preferIrisOnly, false,
+                matches.getTotal(), modifiedString, labelString);
+      } else{
+        page[0] = modelFactory.createPage(retDs, collectionIri, cursor, pageSize, preferIrisOnly, matches.getTotal(),
+                modifiedString, labelString);
+      }
+      List<String> annoIris = matches.getAnnotationIris();
+      String next = null;
+      if(annoIris.size() > pageSize){
+        annoIris = annoIris.subList(0, pageSize);
+        // Numbered pages after the first one link their successor by number, like container pages
+        if(cursor != null || pageNr == 0){
+          next = new PageCursor(0, annoIris.get(pageSize - 1)).toString(collectionIri);
+        }
+      }
+      if(preferIrisOnly){
+        annoIris.forEach(page[0]::addAnnotationIri);
+      } else{
+        Map<String, Dataset> annotations = repository.getWapObjects(annoIris);
+        for(String iri : annoIris){
+          Dataset annotation = annotations.get(iri);
+          if(annotation == null){
+            log.warn("Annotation '" + iri + "' on target '" + targetIri + "' not found, left out of the page");
+            continue;
+          }
+          page[0].addAnnotation(modelFactory.createAnnotation(annotation));
+        }
+      }
+      if(next != null){
+        page[0].setNextCursor(next);
+      }
+      page[0].closeAdding();
+    });
+    return page[0];
+  }
+}
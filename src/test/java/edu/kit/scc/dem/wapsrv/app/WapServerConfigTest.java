@@ -13,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
 
 /**
  * Tests the class WapServerConfig
@@ -603,6 +604,18 @@ class WapServerConfigTest {
         assertTrue(actual, "Multiple annotation post should be allowed by default WapServerConfig.");
     }
 
+    /**
+     * Tests public TransactionRepository.ConcurrencyMode getTransactionConcurrencyMode()
+     */
+    @Test
+    final void testGetTransactionConcurrencyMode() {
+        TransactionRepository.ConcurrencyMode actual;
+        actual = null;
+        actual = objWapServerConfig.getTransactionConcurrencyMode();
+        assertEquals(TransactionRepository.ConcurrencyMode.Serialized, actual,
+                "Transactions should be serialized by default WapServerConfig.");
+    }
+
     /**
      * Tests public boolean shouldAlwaysAddDefaultProfilesToJsonLdRequests()
      */
@@ -0,0 +1,137 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.ResourceDeletedException;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.RepositoryMock;
+import edu.kit.scc.dem.wapsrv.service.JournalService;
+import edu.kit.scc.dem.wapsrv.service.JournalServiceMock;
+
+/**
+ * Tests the class ChangeDiscoveryController
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {ChangeDiscoveryController.class, JournalServiceMock.class, RepositoryMock.class,
+      WapServerConfig.class})
+@ActiveProfiles("test")
+class ChangeDiscoveryControllerTest {
+   private static final String CONTAINER = "http://www.example.org/wap/container/";
+   @Autowired
+   private ChangeDiscoveryController controller;
+   @Autowired
+   private JournalService journalServiceMock;
+   @Autowired
+   private WapServerConfig wapServerConfig;
+
+   /**
+    * Test get the collection linking to its first and last page.
+    */
+   @Test
+   final void testGetCollection() {
+      when(journalServiceMock.getFirstSequence()).thenReturn(1L);
+      when(journalServiceMock.getNextSequence()).thenReturn(2501L);
+      ResponseEntity<?> response = controller.getChanges(null, null, null, null);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+      assertEquals(ChangeDiscoveryController.CONTENT_TYPE, response.getHeaders().getContentType());
+      Map<?, ?> body = (Map<?, ?>) response.getBody();
+      final String feed = wapServerConfig.getBaseUrl() + WapServerConfig.CHANGES_ENDPOINT;
+      assertEquals(feed, body.get("id"));
+      assertEquals("OrderedCollection", body.get("type"));
+      assertEquals(feed + "?from=1", ((Map<?, ?>) body.get("first")).get("id"));
+      assertEquals(feed + "?from=2001", ((Map<?, ?>) body.get("last")).get("id"));
+   }
+
+   /**
+    * Test get a page of the changes of a container.
+    */
+   @Test
+   final void testGetPage() {
+      MutationJournal.Entry created = new MutationJournal.Entry(MutationJournal.Type.Create, CONTAINER + "anno", "etag");
+      MutationJournal.Entry deleted = new MutationJournal.Entry(MutationJournal.Type.Delete, CONTAINER, null);
+      when(journalServiceMock.getFirstSequence()).thenReturn(1L);
+      when(journalServiceMock.getNextSequence()).thenReturn(2501L);
+      when(journalServiceMock.readChanges(1500, 2001, CONTAINER)).thenReturn(List.of(created, deleted));
+      ResponseEntity<?> response = controller.getChanges(null, null, CONTAINER, 1500L);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      Map<?, ?> body = (Map<?, ?>) response.getBody();
+      final String feed = wapServerConfig.getBaseUrl() + WapServerConfig.CHANGES_ENDPOINT
+            + "?container=http%3A%2F%2Fwww.example.org%2Fwap%2Fcontainer%2F";
+      assertEquals(feed + "&from=1500", body.get("id"));
+      assertEquals("OrderedCollectionPage", body.get("type"));
+      assertEquals(feed, ((Map<?, ?>) body.get("partOf")).get("id"));
+      assertEquals(feed + "&from=1001", ((Map<?, ?>) body.get("prev")).get("id"));
+      assertEquals(feed + "&from=2001", ((Map<?, ?>) body.get("next")).get("id"));
+      List<?> items = (List<?>) body.get("orderedItems");
+      assertEquals(2, items.size());
+      Map<?, ?> activity = (Map<?, ?>) items.get(0);
+      assertEquals("Create", activity.get("type"));
+      assertEquals(CONTAINER + "anno", ((Map<?, ?>) activity.get("object")).get("id"));
+      assertEquals("Annotation", ((Map<?, ?>) activity.get("object")).get("type"));
+      assertNotNull(activity.get("endTime"));
+      activity = (Map<?, ?>) items.get(1);
+      assertEquals("Delete", activity.get("type"));
+      assertEquals("AnnotationCollection", ((Map<?, ?>) activity.get("object")).get("type"));
+   }
+
+   /**
+    * Test the last page has no next page.
+    */
+   @Test
+   final void testGetLastPage() {
+      when(journalServiceMock.getFirstSequence()).thenReturn(1L);
+      when(journalServiceMock.getNextSequence()).thenReturn(2501L);
+      when(journalServiceMock.readChanges(2001, 3001, null)).thenReturn(List.of());
+      Map<?, ?> body = (Map<?, ?>) controller.getChanges(null, null, null, 2001L).getBody();
+      assertNull(body.get("next"));
+      assertTrue(((List<?>) body.get("orderedItems")).isEmpty());
+   }
+
+   /**
+    * Test pages removed from the journal are gone.
+    */
+   @Test
+   final void testGetExpiredPage() {
+      when(journalServiceMock.getFirstSequence()).thenReturn(5001L);
+      when(journalServiceMock.getNextSequence()).thenReturn(5501L);
+      assertThrows(ResourceDeletedException.class, () -> controller.getChanges(null, null, null, 4001L));
+      Map<?, ?> body = (Map<?, ?>) controller.getChanges(null, null, null, null).getBody();
+      assertEquals(wapServerConfig.getBaseUrl() + WapServerConfig.CHANGES_ENDPOINT + "?from=5001",
+            ((Map<?, ?>) body.get("first")).get("id"));
+   }
+
+   /**
+    * Test the pages are aligned to the page span.
+    */
+   @Test
+   final void testPageStart() {
+      assertEquals(1, ChangeDiscoveryController.pageStart(1));
+      assertEquals(1, ChangeDiscoveryController.pageStart(ChangeDiscoveryController.PAGE_SPAN));
+      assertEquals(ChangeDiscoveryController.PAGE_SPAN + 1,
+            ChangeDiscoveryController.pageStart(ChangeDiscoveryController.PAGE_SPAN + 1));
+   }
+
+   /**
+    * Test options changes.
+    */
+   @Test
+   final void testOptionsChanges() {
+      ResponseEntity<?> response = controller.optionsChanges(null, null);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+   }
+}
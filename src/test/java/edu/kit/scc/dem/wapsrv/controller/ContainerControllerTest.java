@@ -191,12 +191,12 @@ class ContainerControllerTest extends BasicWapControllerTest {
       // Add a container with preference embed
       Set<Integer> preferDesc = new HashSet<Integer>();
       preferDesc.add(ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS);
-      when(service.getContainer(Mockito.any(), Mockito.eq(preferDesc)))
+      when(service.getContainer(Mockito.any(), Mockito.eq(preferDesc), Mockito.anyInt()))
             .thenReturn(createContainer(iri + "_" + ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS));
       // Add a container with preference iris only
       Set<Integer> preferIris = new HashSet<Integer>();
       preferIris.add(ContainerPreference.PREFER_CONTAINED_IRIS);
-      when(service.getContainer(Mockito.any(), Mockito.eq(preferIris)))
+      when(service.getContainer(Mockito.any(), Mockito.eq(preferIris), Mockito.anyInt()))
             .thenReturn(createContainer(iri + "_" + ContainerPreference.PREFER_CONTAINED_IRIS));
       // Request contained desc via prefer and check correct returned container
       String prefer
@@ -367,7 +367,7 @@ class ContainerControllerTest extends BasicWapControllerTest {
       // accept turtle as input format
       when(service.isValidInputFormat(Format.TURTLE)).thenReturn(true);
       // Add a container
-      when(service.getContainer(Mockito.any(), Mockito.any())).thenReturn(createContainer(iri));
+      when(service.getContainer(Mockito.any(), Mockito.any(), Mockito.anyInt())).thenReturn(createContainer(iri));
       ResponseEntity<?> response = null;
       if (toRootContainer) {
          switch (method) {
@@ -1047,6 +1047,23 @@ class ContainerControllerTest extends BasicWapControllerTest {
       assertNull(response.getBody());
    }
 
+   /**
+    * Test delete container with its annotations deleted in the background.
+    */
+   @Test
+   final void testDeleteContainerAccepted() {
+      final String iri = makeUrl(WapServerConfig.WAP_ENDPOINT + "largecontainer/");
+      final String etag = etagFactory.generateEtag();
+      final String statusIri = wapServerConfig.getBaseUrl() + WapServerConfig.DELETION_ENDPOINT + "/id";
+      when(service.deleteContainer(iri, etag)).thenReturn(statusIri);
+      HttpHeaders httpHeaders = new HttpHeaders();
+      httpHeaders.add(HttpHeaders.IF_MATCH, "\"" + etag + "\"");
+      ResponseEntity<?> response = controller.deleteContainer(new HttpServletRequestAdapter(iri,
+            HttpMethod.DELETE.toString(), createParamsMap(null), TurtleFormatter.TURTLE_STRING), httpHeaders);
+      assertEquals(ContainerConstants.DELETE_CONTAINER_ACCEPTED_CODE, response.getStatusCode().value());
+      assertEquals(statusIri, response.getHeaders().getLocation().toString());
+   }
+
    @Override
    protected WapServerConfig getWapServerConfig() {
       return wapServerConfig;
@@ -0,0 +1,60 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
+import edu.kit.scc.dem.wapsrv.service.ContainerDeletion;
+import edu.kit.scc.dem.wapsrv.service.ContainerService;
+import edu.kit.scc.dem.wapsrv.service.ContainerServiceMock;
+
+/**
+ * Tests the class DeletionController
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {DeletionController.class, ContainerServiceMock.class})
+@ActiveProfiles("test")
+class DeletionControllerTest {
+   private static final String IRI = "http://www.example.org/wap/container/";
+   @Autowired
+   private DeletionController controller;
+   @Autowired
+   private ContainerService containerServiceMock;
+
+   /**
+    * Test get deletion.
+    */
+   @Test
+   final void testGetDeletion() {
+      ContainerDeletion deletion = new ContainerDeletion("id", IRI, 20000);
+      when(containerServiceMock.getContainerDeletion("id")).thenReturn(deletion);
+      ResponseEntity<?> response = controller.getDeletion(null, null, "id");
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+      Map<?, ?> body = (Map<?, ?>) response.getBody();
+      assertEquals(IRI, body.get("container"));
+      assertEquals("Running", body.get("state"));
+      assertEquals(20000L, body.get("total"));
+      assertEquals(0L, body.get("deleted"));
+      assertFalse(body.containsKey("finished"), "Should not be finished while running");
+   }
+
+   /**
+    * Test options deletion.
+    */
+   @Test
+   final void testOptionsDeletion() {
+      ResponseEntity<?> response = controller.optionsDeletion(null, null);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+   }
+}
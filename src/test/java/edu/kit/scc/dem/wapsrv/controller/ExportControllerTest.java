@@ -0,0 +1,128 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalHttpParameterException;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
+import edu.kit.scc.dem.wapsrv.service.ExportService;
+import edu.kit.scc.dem.wapsrv.service.ExportService.ExportFormat;
+import edu.kit.scc.dem.wapsrv.service.ExportServiceMock;
+
+/**
+ * Tests the class ExportController
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {ExportController.class, ExportServiceMock.class})
+@ActiveProfiles("test")
+class ExportControllerTest {
+   private static final String IRI = "http://www.example.org/wap/container/";
+   private static final String EXPORT = "{\"id\":\"anno\"}\n";
+   @Autowired
+   private ExportController controller;
+   @Autowired
+   private ExportService exportServiceMock;
+
+   private void prepareExport(ExportFormat format, boolean recursive) throws IOException {
+      when(exportServiceMock.exportContainer(eq(IRI), eq(recursive), eq(format), any())).thenAnswer(invocation -> {
+         ((OutputStream) invocation.getArgument(3)).write(EXPORT.getBytes(StandardCharsets.UTF_8));
+         return 1L;
+      });
+   }
+
+   /**
+    * Test get export.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testGetExport() throws IOException {
+      prepareExport(ExportFormat.NQUADS, true);
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      controller.getExport(new MockHttpServletRequest(), response, IRI, "NQuads", true);
+      assertEquals(HttpStatus.OK.value(), response.getStatus(), "Unexcepected status code");
+      assertEquals(ExportFormat.NQUADS.getContentType(), response.getContentType());
+      assertNull(response.getHeader("Content-Encoding"));
+      assertEquals(EXPORT, response.getContentAsString(StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Test get export compressed with gzip.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testGetExportGzip() throws IOException {
+      prepareExport(ExportFormat.NDJSON, false);
+      MockHttpServletRequest request = new MockHttpServletRequest();
+      request.addHeader("Accept-Encoding", "deflate, gzip;q=0.8");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      controller.getExport(request, response, IRI, "ndjson", false);
+      assertEquals("gzip", response.getHeader("Content-Encoding"));
+      try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+         assertEquals(EXPORT, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+      }
+   }
+
+   /**
+    * Test get export with errors before it starts.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testGetExportErrors() throws IOException {
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.EXPORT_UNKNOWN_FORMAT, () -> {
+         controller.getExport(new MockHttpServletRequest(), new MockHttpServletResponse(), IRI, "turtle", false);
+      });
+      doThrow(new NotExistentException("not existent")).when(exportServiceMock).checkExportable(IRI + "other/");
+      assertThrows(NotExistentException.class, () -> {
+         controller.getExport(new MockHttpServletRequest(), new MockHttpServletResponse(), IRI + "other/", "ndjson",
+               false);
+      });
+   }
+
+   /**
+    * Test the Accept-Encoding check.
+    */
+   @Test
+   final void testAcceptsGzip() {
+      assertTrue(ExportController.acceptsGzip("gzip"));
+      assertTrue(ExportController.acceptsGzip("br, GZIP ; q=0.5"));
+      assertFalse(ExportController.acceptsGzip(null));
+      assertFalse(ExportController.acceptsGzip("deflate, br"));
+      assertFalse(ExportController.acceptsGzip("gzip;q=0, deflate"));
+   }
+
+   /**
+    * Test options export.
+    */
+   @Test
+   final void testOptionsExport() {
+      ResponseEntity<?> response = controller.optionsExport(null, null);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+   }
+}
@@ -0,0 +1,82 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
+import edu.kit.scc.dem.wapsrv.repository.MutationJournal;
+import edu.kit.scc.dem.wapsrv.repository.RepositoryMock;
+import edu.kit.scc.dem.wapsrv.service.JournalService;
+import edu.kit.scc.dem.wapsrv.service.JournalServiceMock;
+
+/**
+ * Tests the class JournalController
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {JournalController.class, JournalServiceMock.class, RepositoryMock.class})
+@ActiveProfiles("test")
+class JournalControllerTest {
+   private static final String IRI = "http://www.example.org/wap/container/anno";
+   @Autowired
+   private JournalController controller;
+   @Autowired
+   private JournalService journalServiceMock;
+
+   /**
+    * Test get journal.
+    */
+   @Test
+   final void testGetJournal() {
+      MutationJournal.Entry entry = new MutationJournal.Entry(MutationJournal.Type.Create, IRI, "etag");
+      when(journalServiceMock.getFirstSequence()).thenReturn(1L);
+      when(journalServiceMock.getNextSequence()).thenReturn(7L);
+      when(journalServiceMock.readJournal(5, JournalController.MAX_LIMIT)).thenReturn(List.of(entry));
+      ResponseEntity<?> response = controller.getJournal(null, null, 5, Integer.MAX_VALUE);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+      Map<?, ?> body = (Map<?, ?>) response.getBody();
+      assertEquals(1L, body.get("first"));
+      // Never appended, so its sequence number is 0
+      assertEquals(1L, body.get("next"), "Should continue after the last entry returned");
+      List<?> entries = (List<?>) body.get("entries");
+      assertEquals(1, entries.size());
+      Map<?, ?> entryMap = (Map<?, ?>) entries.get(0);
+      assertEquals(IRI, entryMap.get("iri"));
+      assertEquals("Create", entryMap.get("type"));
+      assertEquals("etag", entryMap.get("etag"));
+   }
+
+   /**
+    * Test get journal without new entries.
+    */
+   @Test
+   final void testGetJournalEmpty() {
+      when(journalServiceMock.getFirstSequence()).thenReturn(1L);
+      when(journalServiceMock.getNextSequence()).thenReturn(7L);
+      when(journalServiceMock.readJournal(7, JournalController.DEFAULT_LIMIT)).thenReturn(List.of());
+      ResponseEntity<?> response = controller.getJournal(null, null, 7, JournalController.DEFAULT_LIMIT);
+      Map<?, ?> body = (Map<?, ?>) response.getBody();
+      assertEquals(7L, body.get("next"));
+      assertTrue(((List<?>) body.get("entries")).isEmpty());
+   }
+
+   /**
+    * Test options journal.
+    */
+   @Test
+   final void testOptionsJournal() {
+      ResponseEntity<?> response = controller.optionsJournal(null, null);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+   }
+}
@@ -2,9 +2,12 @@ package edu.kit.scc.dem.wapsrv.controller;
 
 import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.checkException;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import io.specto.hoverfly.junit5.HoverflyExtension;
 import io.specto.hoverfly.junit5.api.HoverflySimulate;
+import java.time.Instant;
 import org.apache.commons.rdf.api.Dataset;
 import org.eclipse.jetty.http.HttpMethod;
 import org.junit.jupiter.api.Test;
@@ -26,6 +29,7 @@ import edu.kit.scc.dem.wapsrv.model.formats.FormatRegistry;
 import edu.kit.scc.dem.wapsrv.model.formats.JsonLdFormatter;
 import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
 import edu.kit.scc.dem.wapsrv.model.formats.TurtleFormatter;
+import edu.kit.scc.dem.wapsrv.repository.TimeIndex;
 import edu.kit.scc.dem.wapsrv.service.ContainerService;
 import edu.kit.scc.dem.wapsrv.service.ContainerServiceMock;
 import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
@@ -86,6 +90,97 @@ class PageControllerTest extends BasicWapControllerTest {
       testGetHeadOptionsPage(HttpMethod.OPTIONS);
    }
 
+   /**
+    * Test get page by cursor.
+    */
+   @Test
+   final void testGetCursorPage() {
+      final String url = makeUrl(WapServerConfig.WAP_ENDPOINT + "container1/");
+      final int iris = ContainerPreference.PREFER_CONTAINED_IRIS;
+      when(containerServiceMock.getPage(url, iris, "abc", 0)).thenReturn(createPage());
+      ResponseEntity<?> response = controller.getCursorPage(new HttpServletRequestAdapter(url,
+            HttpMethod.GET.toString(), createParamsMap(null), TurtleFormatter.TURTLE_STRING), null, iris, "abc");
+      assertEquals(PageConstants.GET_PAGE_SUCCESS_CODE, response.getStatusCode().value());
+      assertEquals("pageBody", response.getBody());
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.headCursorPage(new HttpServletRequestAdapter(url, HttpMethod.HEAD.toString(),
+               createParamsMap(null)), null, iris, "");
+      });
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.PAGE_INVALID_GIVEN_PARAMETERS, () -> {
+         controller.optionsCursorPage(new HttpServletRequestAdapter(url, HttpMethod.OPTIONS.toString(),
+               createParamsMap("iris=1&page=0&cursor=abc")), null, iris, "abc");
+      });
+   }
+
+   /**
+    * Test get page with a page size chosen by the client.
+    */
+   @Test
+   final void testGetPageWithPageSize() {
+      final String url = makeUrl(WapServerConfig.WAP_ENDPOINT + "container1/");
+      final int iris = ContainerPreference.PREFER_CONTAINED_IRIS;
+      when(containerServiceMock.getPage(url, iris, 2, 25)).thenReturn(createPage());
+      ResponseEntity<?> response = controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+            createParamsMap("iris=0&page=2&pageSize=25"), TurtleFormatter.TURTLE_STRING), null, iris, 2);
+      assertEquals(PageConstants.GET_PAGE_SUCCESS_CODE, response.getStatusCode().value());
+      assertEquals("pageBody", response.getBody());
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+               createParamsMap("iris=0&page=2&pageSize=0"), TurtleFormatter.TURTLE_STRING), null, iris, 2);
+      });
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+               createParamsMap("iris=0&page=2&pageSize=many"), TurtleFormatter.TURTLE_STRING), null, iris, 2);
+      });
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.PAGE_INVALID_GIVEN_PARAMETERS, () -> {
+         controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+               createParamsMap("iris=0&page=2&pageSize=25&other=1"), TurtleFormatter.TURTLE_STRING), null, iris, 2);
+      });
+   }
+
+   /**
+    * Test get pages of the annotations created or modified within a time range.
+    */
+   @Test
+   final void testGetTimeRangePage() {
+      final String url = makeUrl(WapServerConfig.WAP_ENDPOINT + "container1/");
+      final int iris = ContainerPreference.PREFER_CONTAINED_IRIS;
+      final long after = Instant.parse("2026-10-18T10:00:00Z").toEpochMilli();
+      final Page page = createPage();
+      when(containerServiceMock.getPage(eq(url),
+            argThat((TimeIndex.Range range) -> range != null && !range.isModified()
+                  && Long.valueOf(after).equals(range.getAfter()) && range.getBefore() == null),
+            eq(iris), eq(0), eq(25))).thenReturn(page);
+      ResponseEntity<?> response = controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+            createParamsMap("iris=0&page=0&pageSize=25&createdAfter=2026-10-18T12:00:00+02:00"),
+            TurtleFormatter.TURTLE_STRING), null, iris, 0);
+      assertEquals(PageConstants.GET_PAGE_SUCCESS_CODE, response.getStatusCode().value());
+      assertEquals("pageBody", response.getBody());
+      final Page cursorPage = createPage();
+      when(containerServiceMock.getPage(eq(url),
+            argThat((TimeIndex.Range range) -> range != null && range.isModified() && range.getAfter() == null
+                  && Long.valueOf(after).equals(range.getBefore())),
+            eq(iris), eq("abc"), eq(0))).thenReturn(cursorPage);
+      response = controller.getCursorPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+            createParamsMap("iris=0&cursor=abc&modifiedBefore=2026-10-18T10:00:00"), TurtleFormatter.TURTLE_STRING),
+            null, iris, "abc");
+      assertEquals("pageBody", response.getBody());
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.PAGE_INVALID_TIME_RANGE, () -> {
+         controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+               createParamsMap("iris=0&page=0&createdAfter=yesterday"), TurtleFormatter.TURTLE_STRING), null, iris, 0);
+      });
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.PAGE_INVALID_TIME_RANGE, () -> {
+         controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+               createParamsMap("iris=0&page=0&createdAfter=2026-10-18T10:00:00Z&modifiedBefore=2026-10-18T10:00:00Z"),
+               TurtleFormatter.TURTLE_STRING), null, iris, 0);
+      });
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.PAGE_INVALID_GIVEN_PARAMETERS, () -> {
+         controller.getPage(new HttpServletRequestAdapter(url, HttpMethod.GET.toString(),
+               createParamsMap("iris=0&page=0&createdAfter=2026-10-18T10:00:00Z&other=1"),
+               TurtleFormatter.TURTLE_STRING), null, iris, 0);
+      });
+   }
+
    private void testGetHeadOptionsPage(final HttpMethod method) {
       // Test too many params
       testTooManyParams(method.toString());
@@ -100,7 +195,7 @@ class PageControllerTest extends BasicWapControllerTest {
       final String url = makeUrl(WapServerConfig.WAP_ENDPOINT + "container1/");
       final int iris = ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS;
       final int pageNr = 0;
-      when(containerServiceMock.getPage(url, iris, pageNr)).thenReturn(createPage());
+      when(containerServiceMock.getPage(url, iris, pageNr, 0)).thenReturn(createPage());
       switch (method) {
       case "GET":
          response = controller.getPage(
@@ -201,6 +296,10 @@ class PageControllerTest extends BasicWapControllerTest {
             return 0;
          }
 
+         @Override
+         public void setNextCursor(String cursor) {
+         }
+
          @Override
          public void addAnnotation(Annotation anno) {
          }
@@ -0,0 +1,130 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalHttpParameterException;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
+import edu.kit.scc.dem.wapsrv.repository.RepositoryMock;
+import edu.kit.scc.dem.wapsrv.repository.TextIndex;
+import edu.kit.scc.dem.wapsrv.service.SearchService;
+import edu.kit.scc.dem.wapsrv.service.SearchServiceMock;
+
+/**
+ * Tests the class SearchController
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {SearchController.class, SearchServiceMock.class, RepositoryMock.class,
+      WapServerConfig.class})
+@ActiveProfiles("test")
+class SearchControllerTest {
+   private static final String ANNOTATION = "http://www.example.org/wap/container/anno";
+   @Autowired
+   private SearchController controller;
+   @Autowired
+   private SearchService searchServiceMock;
+   @Autowired
+   private WapServerConfig wapServerConfig;
+
+   /**
+    * Test get a page of the hits.
+    */
+   @Test
+   final void testGetSearch() {
+      when(searchServiceMock.getPageSize(2)).thenReturn(2);
+      when(searchServiceMock.search("cat dog", 1, 2)).thenReturn(new TextIndex.Hits(5, Arrays.asList(new TextIndex.Hit(
+            ANNOTATION, 1.23456, Collections.singletonMap(TextIndex.BODY, Arrays.asList("a <em>cat</em>"))))));
+      ResponseEntity<?> response = controller.getSearch(null, null, "cat dog", 1, 2);
+      assertEquals(HttpStatus.OK, response.getStatusCode(), "Unexcepected status code");
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.OPTIONS);
+      assertEquals(SearchController.CONTENT_TYPE, response.getHeaders().getContentType());
+      Map<?, ?> body = (Map<?, ?>) response.getBody();
+      final String search = wapServerConfig.getBaseUrl() + WapServerConfig.SEARCH_ENDPOINT + "?q=cat+dog&pageSize=2";
+      assertEquals(search + "&page=1", body.get("id"));
+      assertEquals("AnnotationPage", body.get("type"));
+      assertEquals(2, body.get("startIndex"));
+      assertEquals(search + "&page=0", body.get("prev"));
+      assertEquals(search + "&page=2", body.get("next"));
+      Map<?, ?> partOf = (Map<?, ?>) body.get("partOf");
+      assertEquals(search, partOf.get("id"));
+      assertEquals(5, partOf.get("total"));
+      assertEquals(search + "&page=2", partOf.get("last"));
+      List<?> items = (List<?>) body.get("items");
+      assertEquals(1, items.size());
+      Map<?, ?> item = (Map<?, ?>) items.get(0);
+      assertEquals(ANNOTATION, item.get("id"));
+      assertEquals(1.235, item.get("score"));
+      assertEquals(Arrays.asList("a <em>cat</em>"), ((Map<?, ?>) item.get("highlight")).get(TextIndex.BODY));
+   }
+
+   /**
+    * Test get a search without hits.
+    */
+   @Test
+   final void testGetSearchWithoutHits() {
+      when(searchServiceMock.getPageSize(0)).thenReturn(100);
+      when(searchServiceMock.search("unknown", 0, 100)).thenReturn(new TextIndex.Hits(0, Collections.emptyList()));
+      Map<?, ?> body = (Map<?, ?>) controller.getSearch(null, null, "unknown", 0, null).getBody();
+      assertNull(body.get("prev"));
+      assertNull(body.get("next"));
+      assertEquals(((Map<?, ?>) body.get("partOf")).get("first"), ((Map<?, ?>) body.get("partOf")).get("last"));
+      assertTrue(((List<?>) body.get("items")).isEmpty());
+   }
+
+   /**
+    * Test the parameters are checked.
+    */
+   @Test
+   final void testGetSearchErrors() {
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.SEARCH_NO_WORDS, () -> {
+         controller.getSearch(null, null, " * , ", 0, null);
+      });
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.getSearch(null, null, "cat", -1, null);
+      });
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.getSearch(null, null, "cat", 0, 0);
+      });
+   }
+
+   /**
+    * Test the rebuild of the index.
+    */
+   @Test
+   final void testPostIndex() {
+      ResponseEntity<?> response = controller.postIndex(null, null);
+      assertEquals(HttpStatus.ACCEPTED, response.getStatusCode(), "Unexcepected status code");
+      verify(searchServiceMock).rebuildIndex();
+      doThrow(new NotExistentException(ErrorMessageRegistry.SEARCH_NO_INDEX)).when(searchServiceMock).rebuildIndex();
+      checkException(NotExistentException.class, ErrorMessageRegistry.SEARCH_NO_INDEX, () -> {
+         controller.postIndex(null, null);
+      });
+   }
+
+   /**
+    * Test options search and index.
+    */
+   @Test
+   final void testOptions() {
+      checkAllowHeader(controller.optionsSearch(null, null), HttpMethod.GET, HttpMethod.OPTIONS);
+      checkAllowHeader(controller.optionsIndex(null, null), HttpMethod.POST, HttpMethod.OPTIONS);
+   }
+}
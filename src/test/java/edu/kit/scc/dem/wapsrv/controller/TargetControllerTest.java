@@ -0,0 +1,150 @@
+package edu.kit.scc.dem.wapsrv.controller;
+
+import static edu.kit.scc.dem.wapsrv.controller.ControllerTestHelper.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import io.specto.hoverfly.junit5.HoverflyExtension;
+import io.specto.hoverfly.junit5.api.HoverflySimulate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import edu.kit.scc.dem.wapsrv.app.ErrorMessageRegistry;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalHttpParameterException;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
+import edu.kit.scc.dem.wapsrv.model.ContainerPreference;
+import edu.kit.scc.dem.wapsrv.model.Page;
+import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.model.formats.FormatRegistry;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdFormatter;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.model.formats.TurtleFormatter;
+import edu.kit.scc.dem.wapsrv.service.TargetService;
+import edu.kit.scc.dem.wapsrv.service.TargetServiceMock;
+
+/**
+ * Tests the class TargetController
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {TargetController.class, WapServerConfig.class, JsonLdProfileRegistry.class,
+      FormatRegistry.class, JsonLdFormatter.class, TargetServiceMock.class, TurtleFormatter.class})
+@ExtendWith(HoverflyExtension.class)
+@HoverflySimulate(source = @HoverflySimulate.Source(value = "w3c_simulation.json", type = HoverflySimulate.SourceType.DEFAULT_PATH))
+@ActiveProfiles("test")
+class TargetControllerTest extends BasicWapControllerTest {
+   private static final String TARGET = "http://www.example.org/images/1";
+   private static final int DESCRIPTIONS = ContainerPreference.PREFER_CONTAINED_DESCRIPTIONS;
+   @Autowired
+   private TargetController controller;
+   @Autowired
+   private WapServerConfig wapServerConfig;
+   @Autowired
+   private TargetService targetServiceMock;
+
+   /**
+    * Test is valid service format.
+    */
+   @Test
+   final void testIsValidServiceFormat() {
+      assertFalse(controller.isValidServiceFormat(null));
+   }
+
+   /**
+    * Test get, head and options of the annotations on a target.
+    */
+   @Test
+   final void testGetHeadOptionsTargetPage() {
+      final Page page = createPage();
+      when(targetServiceMock.getPage(TARGET, false, DESCRIPTIONS, 0, 0)).thenReturn(page);
+      ResponseEntity<?> response = controller.getTargetPage(
+            createRequest(HttpMethod.GET, "target=" + TARGET, TurtleFormatter.TURTLE_STRING), null, TARGET, false,
+            DESCRIPTIONS, 0, null);
+      assertEquals(PageConstants.GET_PAGE_SUCCESS_CODE, response.getStatusCode().value());
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+      checkVaryHeader(response, "Accept");
+      assertTrue(response.getHeaders().getContentType().toString().startsWith(TurtleFormatter.TURTLE_STRING));
+      assertEquals("pageBody", response.getBody());
+      response = controller.headTargetPage(
+            createRequest(HttpMethod.HEAD, "target=" + TARGET, TurtleFormatter.TURTLE_STRING), null, TARGET, false,
+            DESCRIPTIONS, 0, null);
+      assertNotNull(response.getBody());
+      response = controller.optionsTargetPage(
+            createRequest(HttpMethod.OPTIONS, "target=" + TARGET, TurtleFormatter.TURTLE_STRING), null, TARGET, false,
+            DESCRIPTIONS, 0, null);
+      checkAllowHeader(response, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+      assertNull(response.getHeaders().getContentType());
+      assertNull(response.getBody());
+   }
+
+   /**
+    * Test get the annotations on targets starting with a prefix by cursor with a page size chosen by the client.
+    */
+   @Test
+   final void testGetTargetCursorPage() {
+      final int iris = ContainerPreference.PREFER_CONTAINED_IRIS;
+      final Page page = createPage();
+      when(targetServiceMock.getPage(TARGET, true, iris, "abc", 25)).thenReturn(page);
+      ResponseEntity<?> response = controller.getTargetPage(
+            createRequest(HttpMethod.GET, "target=" + TARGET + "&prefix=true&iris=1&cursor=abc&pageSize=25",
+                  TurtleFormatter.TURTLE_STRING),
+            null, TARGET, true, iris, 0, "abc");
+      assertEquals("pageBody", response.getBody());
+   }
+
+   /**
+    * Test the parameters are checked.
+    */
+   @Test
+   final void testInvalidParams() {
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.TARGET_INVALID_GIVEN_PARAMETERS, () -> {
+         controller.getTargetPage(createRequest(HttpMethod.GET, "target=" + TARGET + "&other=1", null), null, TARGET,
+               false, DESCRIPTIONS, 0, null);
+      });
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.TARGET_INVALID_GIVEN_PARAMETERS, () -> {
+         controller.getTargetPage(createRequest(HttpMethod.GET, "target=" + TARGET + "&page=1&cursor=abc", null), null,
+               TARGET, false, DESCRIPTIONS, 1, "abc");
+      });
+      checkException(IllegalHttpParameterException.class, ErrorMessageRegistry.TARGET_MISSING, () -> {
+         controller.headTargetPage(createRequest(HttpMethod.HEAD, "prefix=false", null), null, "", false, DESCRIPTIONS, 0,
+               null);
+      });
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.getTargetPage(createRequest(HttpMethod.GET, "target=" + TARGET + "&iris=2", null), null, TARGET,
+               false, 2, 0, null);
+      });
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.optionsTargetPage(createRequest(HttpMethod.OPTIONS, "target=" + TARGET + "&page=-1", null), null,
+               TARGET, false, DESCRIPTIONS, -1, null);
+      });
+      checkException(IllegalPageIriException.class, IllegalPageIriException.ERROR_MESSAGE, () -> {
+         controller.getTargetPage(createRequest(HttpMethod.GET, "target=" + TARGET + "&pageSize=0", null), null,
+               TARGET, false, DESCRIPTIONS, 0, null);
+      });
+   }
+
+   private HttpServletRequestAdapter createRequest(HttpMethod method, String params, String accept) {
+      final String url = makeUrl(WapServerConfig.TARGETS_ENDPOINT);
+      if (accept == null) {
+         return new HttpServletRequestAdapter(url, method.toString(), createParamsMap(params));
+      }
+      return new HttpServletRequestAdapter(url, method.toString(), createParamsMap(params), accept);
+   }
+
+   private Page createPage() {
+      Page page = mock(Page.class);
+      when(page.toString(any(Format.class))).thenReturn("pageBody");
+      return page;
+   }
+
+   @Override
+   protected WapServerConfig getWapServerConfig() {
+      return wapServerConfig;
+   }
+}
@@ -0,0 +1,104 @@
+package edu.kit.scc.dem.wapsrv.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ActiveProfiles;
+import edu.kit.scc.dem.wapsrv.model.ext.SequenceResource;
+
+/**
+ * Tests the queries of ISequenceDao used by the jena+jdbc repository
+ */
+@SpringBootTest(classes = ISequenceDaoTest.SequenceDaoConfiguration.class,
+        properties = {"spring.jpa.hibernate.ddl-auto=create-drop"})
+@ActiveProfiles("test")
+class ISequenceDaoTest{
+
+  private static final String SEQ = "http://www.example.org/wap/container1/#annotations";
+  private static final String OTHER_SEQ = "http://www.example.org/wap/container2/#annotations";
+
+  @Autowired
+  private ISequenceDao iSequenceDao;
+
+  /**
+   * Removes all sequence resources.
+   */
+  @AfterEach
+  final void cleanUp(){
+    iSequenceDao.deleteAll();
+  }
+
+  private static List<String> iris(int count){
+    return IntStream.rangeClosed(1, count).mapToObj(i -> "http://www.example.org/wap/container1/anno" + i)
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Test batch inserts keep the order and are counted per sequence.
+   */
+  @Test
+  final void testAppendAllAndCount(){
+    assertEquals(0, iSequenceDao.appendAll(SEQ, List.of()));
+    assertEquals(50, iSequenceDao.appendAll(SEQ, iris(50)));
+    iSequenceDao.save(SequenceResource.create(OTHER_SEQ, "http://www.example.org/wap/container2/anno1"));
+    assertEquals(50, iSequenceDao.countBySequenceIriEquals(SEQ));
+    assertEquals(1, iSequenceDao.countBySequenceIriEquals(OTHER_SEQ));
+    assertEquals(iris(50), iSequenceDao.findAnnotationIrisBySequenceIri(SEQ));
+  }
+
+  /**
+   * Test keyset pagination continues after the last id read.
+   */
+  @Test
+  final void testKeysetPagination(){
+    iSequenceDao.appendAll(SEQ, iris(25));
+    iSequenceDao.appendAll(OTHER_SEQ, List.of("http://www.example.org/wap/container2/anno1"));
+    List<SequenceResource> page = iSequenceDao.findNextBySequenceIri(SEQ, 0L,
+            PageRequest.of(0, 10));
+    assertEquals(iris(10), page.stream().map(SequenceResource::getAnnotationIri).collect(Collectors.toList()));
+    Long lastId = page.get(9).getId();
+    assertEquals(List.of(lastId), iSequenceDao.findIdsBySequenceIri(SEQ, PageRequest.of(9, 1)));
+    page = iSequenceDao.findNextBySequenceIri(SEQ, lastId, PageRequest.of(0, 10));
+    assertEquals(iris(20).subList(10, 20),
+            page.stream().map(SequenceResource::getAnnotationIri).collect(Collectors.toList()));
+    page = iSequenceDao.findNextBySequenceIri(SEQ, page.get(9).getId(),
+            PageRequest.of(0, 10));
+    assertEquals(5, page.size(), "The last page must not contain members of other sequences");
+  }
+
+  /**
+   * Test the bulk deletes only affect the given sequence.
+   */
+  @Test
+  final void testBulkDeletes(){
+    iSequenceDao.appendAll(SEQ, iris(10));
+    iSequenceDao.appendAll(OTHER_SEQ, iris(3));
+    assertEquals(1, iSequenceDao.deleteBySequenceIriAndAnnotationIri(SEQ, iris(1).get(0)));
+    assertEquals(0, iSequenceDao.deleteBySequenceIriAndAnnotationIri(SEQ, iris(1).get(0)));
+    assertEquals(9, iSequenceDao.countBySequenceIriEquals(SEQ));
+    assertEquals(3, iSequenceDao.countBySequenceIriEquals(OTHER_SEQ));
+    assertEquals(9, iSequenceDao.deleteAllBySequenceIri(SEQ));
+    assertEquals(0, iSequenceDao.countBySequenceIriEquals(SEQ));
+    assertEquals(3, iSequenceDao.countBySequenceIriEquals(OTHER_SEQ));
+  }
+
+  /**
+   * Only the data source and the sequence DAO.
+   */
+  @Configuration
+  @EnableAutoConfiguration
+  @EnableJpaRepositories(basePackageClasses = ISequenceDao.class)
+  @EntityScan(basePackageClasses = SequenceResource.class)
+  static class SequenceDaoConfiguration{
+  }
+}
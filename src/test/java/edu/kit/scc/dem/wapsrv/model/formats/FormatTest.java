@@ -20,7 +20,7 @@ class FormatTest {
    @Test
    final void test() {
       String result = "";
-      String expected = "JSON_LDTURTLERDF_XMLRDF_JSONNTRIPLESNQUADS";
+      String expected = "JSON_LDTURTLERDF_XMLRDF_JSONNTRIPLESNQUADSRDF_THRIFT";
       for (Format type : Format.values()) {
          result += type.name();
       }
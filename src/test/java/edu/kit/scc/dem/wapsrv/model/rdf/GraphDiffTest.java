@@ -0,0 +1,106 @@
+package edu.kit.scc.dem.wapsrv.model.rdf;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.apache.commons.rdf.api.BlankNode;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRdfBackend;
+
+/**
+ * Tests the class GraphDiff
+ */
+class GraphDiffTest {
+   private final RDF rdf = new JenaRdfBackend().getRdf();
+   private final IRI anno = rdf.createIRI("http://www.example.org/anno");
+   private final IRI hasBody = rdf.createIRI("http://www.w3.org/ns/oa#hasBody");
+   private final IRI hasTarget = rdf.createIRI("http://www.w3.org/ns/oa#hasTarget");
+   private final IRI value = rdf.createIRI("http://www.w3.org/1999/02/22-rdf-syntax-ns#value");
+   private final IRI source = rdf.createIRI("http://www.w3.org/ns/oa#hasSource");
+
+   /**
+    * Test equal graphs with blank nodes need no change.
+    */
+   @Test
+   final void testEqualGraphs() {
+      GraphDiff diff = GraphDiff.between(createAnnotation("first", "second"), createAnnotation("first", "second"));
+      assertTrue(diff.isEmpty(), "Blank nodes with the same content should be kept");
+   }
+
+   /**
+    * Test only the changed body is replaced.
+    */
+   @Test
+   final void testChangedBody() {
+      Graph oldGraph = createAnnotation("first", "second");
+      Graph newGraph = createAnnotation("first", "changed");
+      GraphDiff diff = GraphDiff.between(oldGraph, newGraph);
+      // The link to the body and its value
+      assertEquals(2, diff.getRemoved().size());
+      assertEquals(2, diff.getAdded().size());
+      assertTrue(diff.getRemoved().stream().anyMatch(t -> t.getObject().equals(rdf.createLiteral("second"))));
+      assertTrue(diff.getAdded().stream().anyMatch(t -> t.getObject().equals(rdf.createLiteral("changed"))));
+      diff.applyTo(oldGraph);
+      assertEquals(newGraph.size(), oldGraph.size());
+      assertTrue(GraphDiff.between(oldGraph, newGraph).isEmpty(), "Should equal the new graph after the diff");
+   }
+
+   /**
+    * Test a changed triple of an IRI is replaced on its own.
+    */
+   @Test
+   final void testChangedTarget() {
+      Graph oldGraph = createAnnotation("first");
+      Graph newGraph = createAnnotation("first");
+      newGraph.remove(anno, hasTarget, null);
+      newGraph.add(anno, hasTarget, rdf.createIRI("http://www.example.org/other"));
+      GraphDiff diff = GraphDiff.between(oldGraph, newGraph);
+      assertEquals(1, diff.getRemoved().size());
+      assertEquals(1, diff.getAdded().size());
+   }
+
+   /**
+    * Test graphs with shared blank nodes are replaced as a whole.
+    */
+   @Test
+   final void testSharedBlankNode() {
+      Graph oldGraph = createAnnotation("first");
+      BlankNode shared = rdf.createBlankNode();
+      oldGraph.add(anno, source, shared);
+      oldGraph.add(anno, hasTarget, shared);
+      Graph newGraph = createAnnotation("first");
+      GraphDiff diff = GraphDiff.between(oldGraph, newGraph);
+      assertEquals(oldGraph.size(), diff.getRemoved().size());
+      assertEquals(newGraph.size(), diff.getAdded().size());
+      diff.applyTo(oldGraph);
+      assertEquals(newGraph.size(), oldGraph.size());
+   }
+
+   /**
+    * Test blank nodes in a cycle are replaced instead of being lost.
+    */
+   @Test
+   final void testCycle() {
+      Graph oldGraph = createAnnotation("first");
+      BlankNode first = rdf.createBlankNode();
+      BlankNode second = rdf.createBlankNode();
+      oldGraph.add(first, source, second);
+      oldGraph.add(second, source, first);
+      Graph newGraph = createAnnotation("first");
+      GraphDiff diff = GraphDiff.between(oldGraph, newGraph);
+      diff.applyTo(oldGraph);
+      assertEquals(newGraph.size(), oldGraph.size());
+   }
+
+   private Graph createAnnotation(String... bodies) {
+      Graph graph = rdf.createGraph();
+      graph.add(anno, hasTarget, rdf.createIRI("http://www.example.org/target"));
+      for (String body : bodies) {
+         BlankNode node = rdf.createBlankNode();
+         graph.add(anno, hasBody, node);
+         graph.add(node, value, rdf.createLiteral(body));
+      }
+      return graph;
+   }
+}
@@ -0,0 +1,73 @@
+package edu.kit.scc.dem.wapsrv.model.rdf;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Optional;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Tests the class WapObjectView
+ */
+class WapObjectViewTest {
+   private final RDF rdf = new SimpleRDF();
+   private final IRI anno = rdf.createIRI("http://example.org/wap/anno1");
+
+   private Graph createSource() {
+      Graph source = rdf.createGraph();
+      source.add(anno, RdfVocab.type, AnnoVocab.annotation);
+      source.add(anno, AnnoVocab.bodyValue, rdf.createLiteral("body"));
+      source.add(anno, WapVocab.etag, rdf.createLiteral("etag1"));
+      return source;
+   }
+
+   /**
+    * Test the ETag is exposed but hidden from the triples.
+    */
+   @Test
+   final void testEtagHidden() {
+      Graph source = createSource();
+      WapObjectView view = new WapObjectView(source, rdf);
+      assertEquals("etag1", view.getEtag());
+      assertEquals(2, view.size());
+      assertEquals(2, view.getGraph().stream().count());
+      assertFalse(view.getGraph().contains(anno, WapVocab.etag, null));
+      assertFalse(view.contains(Optional.empty(), anno, WapVocab.etag, null));
+      assertTrue(view.getGraph().contains(anno, RdfVocab.type, AnnoVocab.annotation));
+      assertEquals(3, source.size(), "Reading must not change the source");
+      assertFalse(view.isCopied());
+   }
+
+   /**
+    * Test modifications are applied to a copy only.
+    */
+   @Test
+   final void testCopyOnModification() {
+      Graph source = createSource();
+      WapObjectView view = new WapObjectView(source, rdf);
+      Graph graph = view.getGraph();
+      graph.remove(anno, AnnoVocab.bodyValue, null);
+      assertTrue(view.isCopied());
+      assertEquals(1, graph.size());
+      assertEquals(1, view.size());
+      assertFalse(graph.contains(anno, WapVocab.etag, null), "The ETag must not be copied");
+      assertEquals(3, source.size(), "The source must stay untouched");
+   }
+
+   /**
+    * Test annotations created from a view keep the ETag without changing the source.
+    */
+   @Test
+   final void testAnnotationFromView() {
+      Graph source = createSource();
+      RdfAnnotation annotation = new RdfAnnotation(new WapObjectView(source, rdf), null);
+      assertEquals("etag1", annotation.getEtag());
+      assertEquals(anno, annotation.getIri());
+      assertEquals(3, source.size());
+   }
+}
@@ -0,0 +1,130 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
+
+/**
+ * Tests the GroupCommitWriter
+ */
+class GroupCommitWriterTest {
+   private static final int WRITES = 40;
+   private final RDF rdf = new SimpleRDF();
+   private final CountingRepository repository = new CountingRepository(rdf.createDataset());
+   private GroupCommitWriter writer;
+
+   /**
+    * Stop the writer thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      if (writer != null) {
+         writer.close();
+      }
+   }
+
+   /**
+    * Test concurrent writes are committed in fewer transactions and are all written when the callers return.
+    *
+    * @throws Exception
+    *                   if a writing thread fails
+    */
+   @Test
+   final void testConcurrentWritesAreGrouped() throws Exception {
+      writer = new GroupCommitWriter(repository, 10, 200);
+      ExecutorService executor = Executors.newFixedThreadPool(WRITES);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int i = 0; i < WRITES; i++) {
+         IRI iri = rdf.createIRI("http://example.org/anno" + i);
+         futures.add(executor.submit(() -> {
+            start.await();
+            writer.write(ds -> ds.add(iri, iri, iri, iri));
+            return null;
+         }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+         future.get();
+      }
+      executor.shutdown();
+      assertEquals(WRITES, repository.getTransactionDataset().size());
+      assertTrue(repository.commits.get() < WRITES, "Writes should share commits");
+   }
+
+   /**
+    * Test a failing write only fails its own caller.
+    *
+    * @throws Exception
+    *                   if a writing thread fails unexpectedly
+    */
+   @Test
+   final void testFailingWriteIsSortedOut() throws Exception {
+      writer = new GroupCommitWriter(repository, 10, 200);
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      IRI first = rdf.createIRI("http://example.org/first");
+      IRI second = rdf.createIRI("http://example.org/second");
+      Future<?> ok1 = executor.submit(() -> writer.write(ds -> ds.add(first, first, first, first)));
+      Future<?> failing = executor.submit(() -> writer.write(ds -> {
+         throw new NotAnAnnotationException();
+      }));
+      Future<?> ok2 = executor.submit(() -> writer.write(ds -> ds.add(second, second, second, second)));
+      ok1.get();
+      ok2.get();
+      Exception exception = assertThrows(Exception.class, () -> failing.get());
+      assertTrue(exception.getCause() instanceof NotAnAnnotationException);
+      executor.shutdown();
+      assertEquals(2, repository.getTransactionDataset().size());
+   }
+
+   /**
+    * Test writes within a transaction and after closing are executed directly.
+    */
+   @Test
+   final void testDirectWrites() {
+      writer = new GroupCommitWriter(repository, 10, 200);
+      IRI iri = rdf.createIRI("http://example.org/nested");
+      repository.writeRdfTransaction(ds -> writer.write(innerDs -> innerDs.add(iri, iri, iri, iri)));
+      assertEquals(1, repository.getTransactionDataset().size());
+      writer.close();
+      IRI closed = rdf.createIRI("http://example.org/closed");
+      writer.write(ds -> ds.add(closed, closed, closed, closed));
+      assertEquals(2, repository.getTransactionDataset().size());
+   }
+
+   private static class CountingRepository implements TransactionRepository {
+      private final Dataset dataset;
+      private final AtomicInteger commits = new AtomicInteger();
+
+      CountingRepository(Dataset dataset) {
+         this.dataset = dataset;
+      }
+
+      @Override
+      public Dataset getTransactionDataset() {
+         return dataset;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         return true;
+      }
+
+      @Override
+      public void endTransaction(boolean wasOpend) {
+         commits.incrementAndGet();
+      }
+   }
+}
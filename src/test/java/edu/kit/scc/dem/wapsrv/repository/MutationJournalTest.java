@@ -0,0 +1,309 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests the MutationJournal
+ */
+class MutationJournalTest {
+   private static final String CONTAINER = "http://www.example.org/wap/container/";
+   private static final long SEGMENT_BYTES = 1024 * 1024;
+   private Path folder;
+   private MutationJournal journal;
+
+   /**
+    * Create an empty folder for the journal.
+    */
+   @BeforeEach
+   final void setUp() throws IOException {
+      folder = Files.createTempDirectory("journal");
+   }
+
+   /**
+    * Close the journal and delete its folder.
+    */
+   @AfterEach
+   final void tearDown() throws IOException {
+      if (journal != null) {
+         journal.close();
+      }
+      for (Path segment : segments()) {
+         Files.delete(segment);
+      }
+      Files.delete(folder);
+   }
+
+   /**
+    * Test the entries are read from the given sequence number on.
+    */
+   @Test
+   final void testAppendAndRead() {
+      journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+      assertEquals(1, journal.getFirstSequence());
+      assertEquals(1, journal.getNextSequence());
+      assertTrue(journal.read(1, 10).isEmpty());
+      appendAnnotations(0, 5);
+      journal.append(List.of(new MutationJournal.Entry(MutationJournal.Type.Delete, CONTAINER + "anno0", null)));
+      assertEquals(7, journal.getNextSequence());
+      List<MutationJournal.Entry> all = journal.read(0, 100);
+      assertEquals(6, all.size());
+      MutationJournal.Entry first = all.get(0);
+      assertEquals(1, first.getSequence());
+      assertEquals(MutationJournal.Type.Create, first.getType());
+      assertEquals(CONTAINER + "anno0", first.getIri());
+      assertEquals("etag0", first.getEtag());
+      assertTrue(first.getTimestamp() > 0);
+      MutationJournal.Entry last = all.get(5);
+      assertEquals(6, last.getSequence());
+      assertEquals(MutationJournal.Type.Delete, last.getType());
+      assertNull(last.getEtag());
+      assertEquals(List.of(3L, 4L), sequences(journal.read(3, 2)));
+      assertTrue(journal.read(7, 10).isEmpty());
+   }
+
+   /**
+    * Test the mutations of a transaction are merged by WapObject and appended only once.
+    */
+   @Test
+   final void testAppendContext() {
+      journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+      TransactionContext context = TransactionContext.open(TransactionRepository.Type.Write, null, null);
+      try {
+         context.recordMutation(MutationJournal.Type.Create, CONTAINER + "anno", "etag1");
+         context.recordMutation(MutationJournal.Type.Update, CONTAINER, "etag2");
+         context.recordMutation(MutationJournal.Type.Update, CONTAINER + "anno", "etag3");
+         journal.append(context);
+         journal.append(context);
+      } finally {
+         context.close();
+      }
+      List<MutationJournal.Entry> entries = journal.read(1, 10);
+      assertEquals(2, entries.size());
+      assertEquals(CONTAINER + "anno", entries.get(0).getIri());
+      assertEquals(MutationJournal.Type.Create, entries.get(0).getType());
+      assertEquals("etag3", entries.get(0).getEtag());
+      assertEquals(MutationJournal.Type.Update, entries.get(1).getType());
+      assertEquals(entries.get(0).getTimestamp(), entries.get(1).getTimestamp());
+   }
+
+   /**
+    * Test a torn record at the end is cut off when the journal is opened again.
+    */
+   @Test
+   final void testReopenCutsTornRecord() throws IOException {
+      journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+      assertSame(journal, MutationJournal.open(folder, SEGMENT_BYTES, 0));
+      journal.close();
+      appendAnnotations(0, 3);
+      journal.close();
+      Path segment = segments().get(0);
+      long validSize = Files.size(segment);
+      // The length of a record followed by only a part of it
+      Files.write(segment, new byte[] {0, 0, 0, 50, 1, 2, 3}, StandardOpenOption.APPEND);
+      journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+      assertEquals(validSize, Files.size(segment));
+      assertEquals(4, journal.getNextSequence());
+      appendAnnotations(3, 1);
+      assertEquals(List.of(1L, 2L, 3L, 4L), sequences(journal.read(1, 10)));
+   }
+
+   /**
+    * Test entries written ahead are only read once published and are cut off again when discarded.
+    */
+   @Test
+   final void testPrepareAndDiscard() throws IOException {
+      journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+      appendAnnotations(0, 2);
+      long publishedSize = Files.size(segments().get(0));
+      assertEquals(4, journal.prepare(annotations(2, 2)));
+      assertTrue(Files.size(segments().get(0)) > publishedSize);
+      assertEquals(3, journal.getNextSequence());
+      assertEquals(List.of(1L, 2L), sequences(journal.read(1, 10)));
+      journal.discard();
+      assertEquals(publishedSize, Files.size(segments().get(0)));
+      assertEquals(4, journal.prepare(annotations(2, 2)));
+      journal.publish();
+      assertEquals(5, journal.getNextSequence());
+      List<MutationJournal.Entry> entries = journal.read(1, 10);
+      assertEquals(List.of(1L, 2L, 3L, 4L), sequences(entries));
+      assertEquals(CONTAINER + "anno3", entries.get(3).getIri());
+      assertEquals(0, journal.prepare(annotations(4, 0)));
+   }
+
+   /**
+    * Test the entries of transactions not committed before a crash are cut off when the journal is recovered, and the
+    * journal continues after the database if that is ahead.
+    */
+   @Test
+   final void testRecover() throws IOException {
+      journal = MutationJournal.open(folder, 200, 0);
+      appendAnnotations(0, 4);
+      appendAnnotations(4, 4);
+      // Crashed before the commit
+      journal.prepare(annotations(8, 4));
+      journal.close();
+      assertEquals(3, segments().size());
+      journal = MutationJournal.open(folder, 200, 0);
+      assertEquals(13, journal.getNextSequence());
+      journal.recover(-1);
+      assertEquals(13, journal.getNextSequence());
+      journal.recover(6);
+      assertEquals(2, segments().size());
+      assertEquals(7, journal.getNextSequence());
+      assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), sequences(journal.read(1, 100)));
+      appendAnnotations(6, 2);
+      assertEquals(List.of(7L, 8L), sequences(journal.read(7, 100)));
+      journal.recover(20);
+      assertEquals(21, journal.getNextSequence());
+      appendAnnotations(8, 1);
+      assertEquals(21, journal.read(9, 100).get(0).getSequence());
+   }
+
+   /**
+    * Test transactions write ahead without waiting for each other, their entries become visible in the order of their
+    * sequence numbers, and those of a transaction not committed are voided or, after a crash, removed.
+    */
+   @Test
+   final void testPrepareInParallel() throws Exception {
+      journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+      appendAnnotations(0, 2);
+      ExecutorService other = Executors.newSingleThreadExecutor();
+      try {
+         assertEquals(4, journal.prepare(annotations(2, 2)));
+         assertEquals(6, (long) other.submit(() -> journal.prepare(annotations(4, 2))).get());
+         other.submit(journal::publish).get();
+         // Not visible as long as the transaction written ahead of them is pending
+         assertEquals(3, journal.getNextSequence());
+         assertEquals(List.of(1L, 2L), sequences(journal.read(1, 10)));
+         journal.discard();
+         assertEquals(7, journal.getNextSequence());
+         assertEquals(List.of(1L, 2L, 5L, 6L), sequences(journal.read(1, 10)));
+         // Crashed after the commit of the second transaction, but before the one of the first
+         assertEquals(7, journal.prepare(annotations(6, 1)));
+         assertEquals(8, (long) other.submit(() -> journal.prepare(annotations(7, 1))).get());
+         journal.close();
+         journal = MutationJournal.open(folder, SEGMENT_BYTES, 0);
+         journal.recover(8, entry -> entry.getSequence() != 7);
+         assertEquals(9, journal.getNextSequence());
+         List<MutationJournal.Entry> entries = journal.read(1, 10);
+         assertEquals(List.of(1L, 2L, 5L, 6L, 8L), sequences(entries));
+         assertEquals(CONTAINER + "anno7", entries.get(4).getIri());
+         assertEquals(MutationJournal.Type.Create, entries.get(4).getType());
+         appendAnnotations(8, 1);
+         assertEquals(List.of(8L, 9L), sequences(journal.read(7, 10)));
+      } finally {
+         other.shutdown();
+      }
+   }
+
+   /**
+    * Test full segments are rolled over and those out of retention are deleted.
+    */
+   @Test
+   final void testRollOverAndRetention() throws IOException {
+      journal = MutationJournal.open(folder, 200, 60000);
+      appendAnnotations(0, 4);
+      appendAnnotations(4, 4);
+      appendAnnotations(8, 4);
+      assertEquals(3, segments().size());
+      assertEquals(3, journal.getSegments());
+      assertEquals(List.of(3L, 4L, 5L, 6L, 7L), sequences(journal.read(3, 5)));
+      // Only segments last written before the retention period are deleted
+      Files.setLastModifiedTime(segments().get(0), FileTime.fromMillis(System.currentTimeMillis() - 120000));
+      appendAnnotations(12, 4);
+      assertEquals(3, journal.getSegments());
+      assertEquals(5, journal.getFirstSequence());
+      assertEquals(5, journal.read(1, 10).get(0).getSequence());
+      assertEquals(12, journal.read(1, 100).size());
+   }
+
+   /**
+    * Test reads start at the seek points remembered while writing or, for the segments written before the journal has
+    * been opened, while reading them.
+    */
+   @Test
+   final void testSeekPoints() {
+      journal = MutationJournal.open(folder, 64 * 1024, 0);
+      for (int i = 0; i < 2000; i += 100) {
+         appendAnnotations(i, 100);
+      }
+      assertTrue(journal.getSegments() > 2);
+      assertFalse(seekPoints().get(1L).isEmpty());
+      assertReadsFrom(1, 150, 999, 1000, 1998);
+      journal.close();
+      journal = MutationJournal.open(folder, 64 * 1024, 0);
+      long firstSegment = journal.getFirstSequence();
+      assertNull(seekPoints().get(firstSegment));
+      assertReadsFrom(700, 2, 1500);
+      assertFalse(seekPoints().get(firstSegment).isEmpty());
+      assertReadsFrom(1, 150, 700, 701, 999, 1000, 1998);
+      assertEquals(List.of(1500L, 1501L), sequences(journal.read(1500, 1502, entry -> true)));
+   }
+
+   /**
+    * Test only the entries of the range matching the filter are read, also across segments.
+    */
+   @Test
+   final void testReadRange() {
+      journal = MutationJournal.open(folder, 200, 0);
+      appendAnnotations(0, 4);
+      journal.append(List.of(new MutationJournal.Entry(MutationJournal.Type.Create, "http://other.org/anno", null)));
+      appendAnnotations(4, 4);
+      assertEquals(List.of(2L, 3L, 4L, 6L), sequences(journal.read(2, 7, entry -> entry.getIri().startsWith(CONTAINER))));
+      assertEquals(List.of(5L), sequences(journal.read(1, 100, entry -> !entry.getIri().startsWith(CONTAINER))));
+      assertTrue(journal.read(3, 3, entry -> true).isEmpty());
+      assertTrue(journal.read(10, 20, entry -> true).isEmpty());
+   }
+
+   private void assertReadsFrom(long... sequences) {
+      for (long sequence : sequences) {
+         List<MutationJournal.Entry> entries = journal.read(sequence, 3);
+         assertEquals(List.of(sequence, sequence + 1, sequence + 2), sequences(entries));
+         assertEquals(CONTAINER + "anno" + (sequence - 1), entries.get(0).getIri());
+      }
+   }
+
+   @SuppressWarnings("unchecked")
+   private Map<Long, NavigableMap<Long, Long>> seekPoints() {
+      return (Map<Long, NavigableMap<Long, Long>>) ReflectionTestUtils.getField(journal, "seekPoints");
+   }
+
+   private void appendAnnotations(int first, int count) {
+      journal.append(annotations(first, count));
+   }
+
+   private static List<MutationJournal.Entry> annotations(int first, int count) {
+      List<MutationJournal.Entry> entries = new ArrayList<MutationJournal.Entry>();
+      for (int i = first; i < first + count; i++) {
+         entries.add(new MutationJournal.Entry(MutationJournal.Type.Create, CONTAINER + "anno" + i, "etag" + i));
+      }
+      return entries;
+   }
+
+   private List<Path> segments() throws IOException {
+      try (Stream<Path> files = Files.list(folder)) {
+         return files.sorted().collect(Collectors.toList());
+      }
+   }
+
+   private static List<Long> sequences(List<MutationJournal.Entry> entries) {
+      return entries.stream().map(MutationJournal.Entry::getSequence).collect(Collectors.toList());
+   }
+}
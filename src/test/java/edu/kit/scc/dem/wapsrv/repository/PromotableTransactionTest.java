@@ -0,0 +1,260 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.jena.commonsrdf.JenaCommonsRDF;
+import org.apache.jena.commonsrdf.JenaRDF;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.exceptions.EtagDoesntMatchException;
+
+/**
+ * Tests the promotable transactions of the TransactionRepository
+ */
+class PromotableTransactionTest {
+   private final JenaRDF rdf = new JenaRDF();
+   private final IRI iri = rdf.createIRI("http://www.example.org/wap/container/anno");
+   private final PromotingRepository repository = new PromotingRepository(TDB2Factory.createDataset());
+   private final AtomicInteger checks = new AtomicInteger();
+   private final AtomicInteger writes = new AtomicInteger();
+
+   /**
+    * Make sure no transaction is left behind for other tests running in this thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      assertNull(TransactionContext.current(), "Context should be closed after the transaction");
+      assertFalse(repository.dataBase.isInTransaction(), "Transaction should be ended");
+   }
+
+   /**
+    * Test the check runs in a promotable transaction and the write after promoting it.
+    */
+   @Test
+   final void testPromote() {
+      repository.promotableRdfTransaction(ds -> {
+         checks.incrementAndGet();
+         assertEquals(TxnType.READ_PROMOTE, repository.dataBase.transactionType());
+         assertFalse(TransactionContext.current().isWriting(repository));
+      }, ds -> {
+         writes.incrementAndGet();
+         assertTrue(TransactionContext.current().isWriting(repository));
+         ds.add(iri, iri, iri, iri);
+      });
+      assertEquals(1, checks.get());
+      assertEquals(1, writes.get());
+      assertEquals(1, countQuads());
+   }
+
+   /**
+    * Test the check does not rely on the indexes, which may lag behind the commits it sees, while the serialized
+    * write does.
+    */
+   @Test
+   final void testCheckIsAheadOfIndexes() {
+      repository.promotableRdfTransaction(ds -> {
+         assertTrue(TransactionContext.current().isAheadOfIndexes());
+      }, ds -> {
+         assertFalse(TransactionContext.current().isAheadOfIndexes());
+      });
+      repository.writeRdfTransaction(ds -> assertFalse(TransactionContext.current().isAheadOfIndexes()));
+   }
+
+   /**
+    * Test a failing check aborts the transaction without writing.
+    */
+   @Test
+   final void testFailingCheck() {
+      assertThrows(EtagDoesntMatchException.class, () -> repository.promotableRdfTransaction(ds -> {
+         throw new EtagDoesntMatchException("mismatch");
+      }, ds -> {
+         ds.add(iri, iri, iri, iri);
+      }));
+      assertEquals(0, repository.promotions);
+      assertEquals(0, countQuads());
+   }
+
+   /**
+    * Test the transaction is executed again if another one has written after the check began.
+    */
+   @Test
+   final void testRetryOnConflict() {
+      repository.promotableRdfTransaction(ds -> {
+         if (checks.incrementAndGet() == 1) {
+            writeConcurrently();
+         }
+      }, ds -> {
+         writes.incrementAndGet();
+         ds.add(iri, iri, iri, iri);
+      });
+      assertEquals(2, checks.get());
+      assertEquals(1, writes.get());
+      assertEquals(2, repository.promotions);
+      assertEquals(2, countQuads());
+   }
+
+   /**
+    * Test the transaction takes the writer lock from the start after too many conflicts.
+    */
+   @Test
+   final void testWriteAfterConflicts() {
+      repository.promotableRdfTransaction(ds -> {
+         if (checks.incrementAndGet() <= TransactionRepository.MAX_PROMOTION_ATTEMPTS) {
+            writeConcurrently();
+         }
+      }, ds -> {
+         writes.incrementAndGet();
+         assertEquals(TxnType.WRITE, repository.dataBase.transactionType());
+         ds.add(iri, iri, iri, iri);
+      });
+      assertEquals(TransactionRepository.MAX_PROMOTION_ATTEMPTS + 1, checks.get());
+      assertEquals(1, writes.get());
+      assertEquals(TransactionRepository.MAX_PROMOTION_ATTEMPTS, repository.promotions);
+   }
+
+   /**
+    * Test the mutations are written ahead to the journal with their sequence number stored in the transaction, and cut
+    * off again if the transaction is aborted or its commit fails.
+    */
+   @Test
+   final void testJournalWrittenAhead() throws IOException {
+      Path folder = Files.createTempDirectory("journal");
+      repository.journal = MutationJournal.open(folder, 1024 * 1024, 0);
+      try {
+         repository.writeRdfTransaction(ds -> {
+            TransactionContext.current().recordMutation(MutationJournal.Type.Create, iri.getIRIString(), "etag1");
+         });
+         assertEquals(1, repository.journalSequence);
+         assertEquals(1, repository.journal.read(1, 10).size());
+         assertThrows(IllegalStateException.class, () -> repository.writeRdfTransaction(ds -> {
+            TransactionContext.current().recordMutation(MutationJournal.Type.Update, iri.getIRIString(), "etag2");
+            throw new IllegalStateException("aborted");
+         }));
+         repository.failCommit = true;
+         assertThrows(IllegalStateException.class, () -> repository.promotableRdfTransaction(ds -> {
+         }, ds -> {
+            TransactionContext.current().recordMutation(MutationJournal.Type.Update, iri.getIRIString(), "etag3");
+         }));
+         repository.failCommit = false;
+         assertEquals(2, repository.journalSequence, "Written ahead of the failed commit");
+         assertEquals(2, repository.journal.getNextSequence());
+         repository.writeRdfTransaction(ds -> {
+            TransactionContext.current().recordMutation(MutationJournal.Type.Update, iri.getIRIString(), "etag4");
+         });
+         List<MutationJournal.Entry> entries = repository.journal.read(1, 10);
+         assertEquals(2, entries.size());
+         assertEquals(2, entries.get(1).getSequence());
+         assertEquals("etag4", entries.get(1).getEtag());
+      } finally {
+         repository.journal.close();
+         try (Stream<Path> segments = Files.list(folder)) {
+            for (Path segment : segments.collect(Collectors.toList())) {
+               Files.delete(segment);
+            }
+         }
+         Files.delete(folder);
+      }
+   }
+
+   /**
+    * Commits a write of another thread.
+    */
+   private void writeConcurrently() {
+      Thread writer = new Thread(() -> repository.dataBase.executeWrite(() -> {
+         repository.dataBase.asDatasetGraph().add(Quad.defaultGraphIRI, NodeFactory.createBlankNode(),
+               NodeFactory.createURI(iri.getIRIString()), NodeFactory.createBlankNode());
+      }));
+      writer.start();
+      try {
+         writer.join();
+      } catch (InterruptedException e) {
+         fail("Interrupted");
+      }
+   }
+
+   private long countQuads() {
+      return repository.dataBase.calculateRead(() -> repository.dataBase.asDatasetGraph().stream().count());
+   }
+
+   private static class PromotingRepository implements TransactionRepository {
+      private final Dataset dataBase;
+      private int promotions;
+      private MutationJournal journal;
+      private long journalSequence;
+      private boolean failCommit;
+
+      PromotingRepository(Dataset dataBase) {
+         this.dataBase = dataBase;
+      }
+
+      @Override
+      public org.apache.commons.rdf.api.Dataset getTransactionDataset() {
+         return JenaCommonsRDF.fromJena(dataBase.asDatasetGraph());
+      }
+
+      @Override
+      public ConcurrencyMode getConcurrencyMode() {
+         return ConcurrencyMode.ConcurrentReads;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         if (dataBase.isInTransaction()) {
+            return false;
+         }
+         if (type == TransactionRepository.Type.ReadPromote) {
+            dataBase.begin(TxnType.READ_PROMOTE);
+         } else {
+            dataBase.begin(type == TransactionRepository.Type.Read ? TxnType.READ : TxnType.WRITE);
+         }
+         return true;
+      }
+
+      @Override
+      public boolean promoteTransaction() {
+         promotions++;
+         return dataBase.promote();
+      }
+
+      @Override
+      public void abortTransaction() {
+         if (dataBase.isInTransaction()) {
+            dataBase.abort();
+            dataBase.end();
+         }
+      }
+
+      @Override
+      public MutationJournal getMutationJournal() {
+         return journal;
+      }
+
+      @Override
+      public void writeJournalSequence(long sequence) {
+         journalSequence = sequence;
+      }
+
+      @Override
+      public void endTransaction(boolean wasOpend) {
+         if (failCommit) {
+            throw new IllegalStateException("commit failed");
+         }
+         if (wasOpend) {
+            dataBase.commit();
+            dataBase.end();
+         }
+      }
+   }
+}
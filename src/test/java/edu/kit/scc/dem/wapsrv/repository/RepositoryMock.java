@@ -35,6 +35,8 @@ public class RepositoryMock {
       doCallRealMethod().when(wapObjectRepository).writeRdfTransaction(any(RdfTransactionExecuter.class));
       doCallRealMethod().when(wapObjectRepository).doRdfTransaction(any(TransactionRepository.Type.class),
             any(RdfTransactionExecuter.class));
+      doCallRealMethod().when(wapObjectRepository).promotableRdfTransaction(any(RdfTransactionExecuter.class),
+            any(RdfTransactionExecuter.class));
       return wapObjectRepository;
    }
 }
@@ -0,0 +1,222 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.UUID;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Tests the ResourceStatusIndex
+ */
+class ResourceStatusIndexTest {
+   private static final String CONTAINER = "http://www.example.org/wap/container/";
+   private final RDF rdf = new SimpleRDF();
+   private final IndexedRepository repository = new IndexedRepository(rdf.createDataset());
+   private final String active = CONTAINER + UUID.randomUUID();
+   private final String deleted = CONTAINER + UUID.randomUUID();
+
+   /**
+    * Stop the rebuild thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      if (repository.index != null) {
+         repository.index.close();
+      }
+   }
+
+   /**
+    * Test the index is built from the ETags and tombstones in the database.
+    */
+   @Test
+   final void testBuild() {
+      addObject(active, false);
+      addObject(deleted, true);
+      addObject(CONTAINER, false);
+      addObject(CONTAINER + "named", false);
+      ResourceStatusIndex index = repository.createIndex();
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(active));
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(CONTAINER));
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(CONTAINER + "named"));
+      assertNull(index.get(deleted), "Tombstones have to be checked in the database");
+      assertEquals(ResourceStatusIndex.Status.ABSENT, index.get(CONTAINER + UUID.randomUUID()));
+      assertEquals(ResourceStatusIndex.Status.ABSENT, index.get(CONTAINER + "other"));
+      assertEquals(3, index.getActiveEntries());
+      assertEquals(1, index.getTombstones());
+      assertEquals(5, index.getHits());
+      assertEquals(1, index.getMisses());
+      assertTrue(index.getFootprintBytes() > 0);
+   }
+
+   /**
+    * Test the status changes of a transaction are applied after its commit and dropped on abort.
+    */
+   @Test
+   final void testChangesOfTransactions() {
+      addObject(active, false);
+      ResourceStatusIndex index = repository.createIndex();
+      String created = CONTAINER + UUID.randomUUID();
+      repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().setStatus(created, ResourceStatusIndex.Status.ACTIVE);
+         TransactionContext.current().setStatus(active, ResourceStatusIndex.Status.DELETED);
+         assertEquals(ResourceStatusIndex.Status.ABSENT, index.get(created), "Not applied before the commit");
+      });
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(created));
+      assertNull(index.get(active));
+      String aborted = CONTAINER + UUID.randomUUID();
+      assertThrows(NotAnAnnotationException.class, () -> repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().setStatus(aborted, ResourceStatusIndex.Status.ACTIVE);
+         throw new NotAnAnnotationException();
+      }));
+      assertEquals(ResourceStatusIndex.Status.ABSENT, index.get(aborted));
+   }
+
+   /**
+    * Test the index is rebuilt after an invalidation.
+    *
+    * @throws InterruptedException
+    *                              if waiting for the rebuild is interrupted
+    */
+   @Test
+   final void testInvalidate() throws InterruptedException {
+      ResourceStatusIndex index = repository.createIndex();
+      addObject(active, false);
+      index.invalidate();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!index.isAvailable() && System.currentTimeMillis() < deadline) {
+         Thread.sleep(20);
+      }
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(active));
+      assertEquals(2, index.getRebuilds());
+   }
+
+   /**
+    * Test the status changes of a writing transaction nested in a reading one are applied after the commit of the
+    * outer transaction, without rebuilding the index.
+    */
+   @Test
+   final void testChangesOfNestedTransaction() {
+      ResourceStatusIndex index = repository.createIndex();
+      String created = CONTAINER + UUID.randomUUID();
+      repository.readRdfTransaction(ds -> {
+         repository.writeRdfTransaction(innerDs -> {
+            TransactionContext.current().setStatus(created, ResourceStatusIndex.Status.ACTIVE);
+         });
+         assertEquals(ResourceStatusIndex.Status.ABSENT, index.get(created), "Committed with the outer transaction");
+      });
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(created));
+      assertEquals(1, index.getRebuilds());
+      String aborted = CONTAINER + UUID.randomUUID();
+      assertThrows(NotAnAnnotationException.class, () -> repository.readRdfTransaction(ds -> {
+         repository.writeRdfTransaction(innerDs -> {
+            TransactionContext.current().setStatus(aborted, ResourceStatusIndex.Status.ACTIVE);
+         });
+         throw new NotAnAnnotationException();
+      }));
+      assertEquals(ResourceStatusIndex.Status.ABSENT, index.get(aborted));
+      assertEquals(1, index.getRebuilds());
+   }
+
+   /**
+    * Test an index invalidated on demand is rebuilt once with the next lookup.
+    *
+    * @throws InterruptedException
+    *                              if waiting for the rebuild is interrupted
+    */
+   @Test
+   final void testInvalidateOnDemand() throws InterruptedException {
+      ResourceStatusIndex index = repository.createIndex();
+      addObject(active, false);
+      index.invalidateOnDemand();
+      index.invalidateOnDemand();
+      Thread.sleep(100);
+      assertEquals(1, index.getRebuilds(), "Not rebuilt before the next lookup");
+      assertNull(index.get(active), "Not available while being rebuilt");
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!index.isAvailable() && System.currentTimeMillis() < deadline) {
+         Thread.sleep(20);
+      }
+      assertEquals(ResourceStatusIndex.Status.ACTIVE, index.get(active));
+      assertEquals(2, index.getRebuilds());
+   }
+
+   /**
+    * Test the UUID set grows and removes entries.
+    */
+   @Test
+   final void testUuidSet() {
+      ResourceStatusIndex.UuidSet set = new ResourceStatusIndex.UuidSet();
+      for (long i = 0; i < 10000; i++) {
+         assertTrue(set.add(i, -i));
+      }
+      assertFalse(set.add(5, -5));
+      for (long i = 0; i < 10000; i += 2) {
+         assertTrue(set.remove(i, -i));
+      }
+      assertEquals(5000, set.size());
+      assertFalse(set.contains(4, -4));
+      assertTrue(set.contains(5, -5));
+   }
+
+   private void addObject(String iriString, boolean isDeleted) {
+      IRI iri = rdf.createIRI(iriString);
+      Dataset dataset = repository.getTransactionDataset();
+      dataset.add(iri, iri, WapVocab.etag, rdf.createLiteral("etag"));
+      if (isDeleted) {
+         dataset.add(iri, iri, WapVocab.deleted, rdf.createLiteral("true"));
+      }
+   }
+
+   private static class IndexedRepository implements TransactionRepository {
+      private final Dataset dataset;
+      private ResourceStatusIndex index;
+      private boolean inTransaction;
+
+      IndexedRepository(Dataset dataset) {
+         this.dataset = dataset;
+      }
+
+      ResourceStatusIndex createIndex() {
+         index = new ResourceStatusIndex(this);
+         index.build();
+         return index;
+      }
+
+      @Override
+      public Dataset getTransactionDataset() {
+         return dataset;
+      }
+
+      @Override
+      public ResourceStatusIndex getResourceStatusIndex() {
+         return index;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         if (inTransaction) {
+            return false;
+         }
+         inTransaction = true;
+         return true;
+      }
+
+      @Override
+      public void abortTransaction() {
+         inTransaction = false;
+      }
+
+      @Override
+      public void endTransaction(boolean wasOpend) {
+         if (wasOpend) {
+            inTransaction = false;
+         }
+      }
+   }
+}
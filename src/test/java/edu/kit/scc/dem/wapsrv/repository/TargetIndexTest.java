@@ -0,0 +1,174 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.Optional;
+import org.apache.commons.rdf.api.BlankNode;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Tests the TargetIndex
+ */
+class TargetIndexTest {
+   private static final String CONTAINER = "http://www.example.org/wap/container/";
+   private static final String IMAGE = "http://www.example.org/images/1";
+   private static final String CANVAS = "http://www.example.org/manifest/canvas/";
+   private final RDF rdf = new SimpleRDF();
+   private final IndexedRepository repository = new IndexedRepository(rdf.createDataset());
+
+   /**
+    * Stop the rebuild thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      if (repository.index != null) {
+         repository.index.close();
+      }
+   }
+
+   /**
+    * Test the index is built from the targets and sources of the active annotations.
+    */
+   @Test
+   final void testBuild() {
+      addAnnotation(CONTAINER + "a", IMAGE, false);
+      addAnnotation(CONTAINER + "b", CANVAS + "1", true);
+      addAnnotation(CONTAINER + "c", CANVAS + "2", false);
+      addAnnotation(CONTAINER + "d", CANVAS + "1", false);
+      TargetIndex index = repository.createIndex();
+      assertEquals(3, index.getAnnotations());
+      assertEquals(Arrays.asList(CONTAINER + "a"), index.find(IMAGE, false, null, 0, 10).getAnnotationIris());
+      assertEquals(Arrays.asList(CONTAINER + "d"), index.find(CANVAS + "1", false, null, 0, 10).getAnnotationIris());
+      assertEquals(0, index.find(CANVAS, false, null, 0, 10).getTotal());
+      TargetIndex.Matches matches = index.find(CANVAS, true, null, 0, 10);
+      assertEquals(2, matches.getTotal());
+      assertEquals(Arrays.asList(CONTAINER + "c", CONTAINER + "d"), matches.getAnnotationIris());
+   }
+
+   /**
+    * Test the parts of the matches selected by cursor, skip and limit.
+    */
+   @Test
+   final void testSelect() {
+      for (int i = 0; i < 5; i++) {
+         addAnnotation(CONTAINER + i, CANVAS + i, false);
+      }
+      TargetIndex index = repository.createIndex();
+      TargetIndex.Matches matches = index.find(CANVAS, true, null, 1, 2);
+      assertEquals(5, matches.getTotal());
+      assertEquals(Arrays.asList(CONTAINER + 1, CONTAINER + 2), matches.getAnnotationIris());
+      matches = index.find(CANVAS, true, CONTAINER + 2, 0, 10);
+      assertEquals(Arrays.asList(CONTAINER + 3, CONTAINER + 4), matches.getAnnotationIris());
+      matches = TargetIndex.find(repository.getTransactionDataset(), CANVAS, true, CONTAINER + 2, 0, 10);
+      assertEquals(5, matches.getTotal());
+      assertEquals(Arrays.asList(CONTAINER + 3, CONTAINER + 4), matches.getAnnotationIris(),
+            "The database has to return the same as the index");
+   }
+
+   /**
+    * Test the targets of a transaction are applied after its commit and dropped on abort.
+    */
+   @Test
+   final void testChangesOfTransactions() {
+      addAnnotation(CONTAINER + "a", IMAGE, false);
+      TargetIndex index = repository.createIndex();
+      repository.writeRdfTransaction(ds -> {
+         addAnnotation(CONTAINER + "b", IMAGE, false);
+         TransactionContext.current().recordMutation(MutationJournal.Type.Create, CONTAINER + "b", "etag");
+         // Moved to another target
+         IRI moved = rdf.createIRI(CONTAINER + "a");
+         ds.remove(Optional.of(moved), moved, AnnoVocab.target, null);
+         addAnnotation(CONTAINER + "a", CANVAS + "1", false);
+         TransactionContext.current().recordMutation(MutationJournal.Type.Update, CONTAINER + "a", "etag");
+         assertEquals(1, index.find(IMAGE, false, null, 0, 10).getTotal(), "Not applied before the commit");
+      });
+      assertEquals(Arrays.asList(CONTAINER + "b"), index.find(IMAGE, false, null, 0, 10).getAnnotationIris());
+      assertEquals(Arrays.asList(CONTAINER + "a"), index.find(CANVAS + "1", false, null, 0, 10).getAnnotationIris());
+      assertThrows(NotAnAnnotationException.class, () -> repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().recordMutation(MutationJournal.Type.Delete, CONTAINER + "a", null);
+         throw new NotAnAnnotationException();
+      }));
+      assertEquals(1, index.find(CANVAS + "1", false, null, 0, 10).getTotal());
+      repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().recordMutation(MutationJournal.Type.Delete, CONTAINER + "a", null);
+      });
+      assertEquals(0, index.find(CANVAS + "1", false, null, 0, 10).getTotal());
+      assertEquals(1, index.getAnnotations());
+   }
+
+   /**
+    * Test the index is rebuilt after an invalidation.
+    *
+    * @throws InterruptedException
+    *                              if waiting for the rebuild is interrupted
+    */
+   @Test
+   final void testInvalidate() throws InterruptedException {
+      TargetIndex index = repository.createIndex();
+      addAnnotation(CONTAINER + "a", IMAGE, false);
+      index.invalidate();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!index.isAvailable() && System.currentTimeMillis() < deadline) {
+         Thread.sleep(20);
+      }
+      assertEquals(1, index.find(IMAGE, false, null, 0, 10).getTotal());
+      assertEquals(2, index.getRebuilds());
+   }
+
+   /**
+    * Adds an annotation on the target, canvases are targeted through a specific resource.
+    */
+   private void addAnnotation(String annotation, String target, boolean isDeleted) {
+      IRI iri = rdf.createIRI(annotation);
+      Dataset dataset = repository.getTransactionDataset();
+      dataset.add(iri, iri, WapVocab.etag, rdf.createLiteral("etag"));
+      if (target.startsWith(CANVAS)) {
+         BlankNode specificResource = rdf.createBlankNode();
+         dataset.add(iri, iri, AnnoVocab.target, specificResource);
+         dataset.add(iri, specificResource, AnnoVocab.source, rdf.createIRI(target));
+      } else {
+         dataset.add(iri, iri, AnnoVocab.target, rdf.createIRI(target));
+      }
+      if (isDeleted) {
+         dataset.add(iri, iri, WapVocab.deleted, rdf.createLiteral("true"));
+      }
+   }
+
+   private static class IndexedRepository implements TransactionRepository {
+      private final Dataset dataset;
+      private TargetIndex index;
+
+      IndexedRepository(Dataset dataset) {
+         this.dataset = dataset;
+      }
+
+      TargetIndex createIndex() {
+         index = new TargetIndex(this);
+         index.build();
+         return index;
+      }
+
+      @Override
+      public Dataset getTransactionDataset() {
+         return dataset;
+      }
+
+      @Override
+      public TargetIndex getTargetIndex() {
+         return index;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         return true;
+      }
+   }
+}
@@ -0,0 +1,226 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.apache.commons.rdf.api.BlankNode;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.FoafVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfSchemaVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Tests the TextIndex
+ */
+class TextIndexTest {
+   private static final String CONTAINER = "http://www.example.org/wap/container/";
+   private final RDF rdf = new SimpleRDF();
+   private final IndexedRepository repository = new IndexedRepository(rdf.createDataset());
+
+   /**
+    * Stop the rebuild thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      if (repository.index != null) {
+         repository.index.close();
+      }
+   }
+
+   /**
+    * Test the index is built from the texts of the active annotations.
+    */
+   @Test
+   final void testBuild() {
+      addAnnotation("a", "The black cat sleeps", "animal", "Anna Smith");
+      addAnnotation("b", "A cat and a café", null, null);
+      addAnnotation("c", "The dog barks", "animal", null);
+      addAnnotation("d", "A black cat", null, null);
+      IRI deleted = rdf.createIRI(CONTAINER + "d");
+      repository.getTransactionDataset().add(deleted, deleted, WapVocab.deleted, rdf.createLiteral("true"));
+      IRI container = rdf.createIRI(CONTAINER);
+      repository.getTransactionDataset().add(container, container, RdfSchemaVocab.label, rdf.createLiteral("cat"));
+      TextIndex index = repository.createIndex();
+      assertEquals(3, index.getAnnotations());
+      assertEquals(Arrays.asList(CONTAINER + "a", CONTAINER + "b"), iris(index.search("CAT", 0, 10)));
+      assertEquals(Arrays.asList(CONTAINER + "a"), iris(index.search("cat black", 0, 10)));
+      assertEquals(Arrays.asList(CONTAINER + "b"), iris(index.search("cafe", 0, 10)), "Without diacritics");
+      assertEquals(Arrays.asList(CONTAINER + "a", CONTAINER + "c"), iris(index.search("animal", 0, 10)));
+      assertEquals(Arrays.asList(CONTAINER + "a"), iris(index.search("smith", 0, 10)));
+      assertEquals(Arrays.asList(CONTAINER + "c"), iris(index.search("bark*", 0, 10)));
+      assertEquals(Arrays.asList(CONTAINER + "a", CONTAINER + "c"), iris(index.search("label", 0, 10)));
+      assertEquals(0, index.search("cat mouse", 0, 10).getTotal());
+   }
+
+   /**
+    * Test the hits are ordered by relevance and paged.
+    */
+   @Test
+   final void testRanking() {
+      addAnnotation("a", "cat", null, null);
+      addAnnotation("b", "cat cat cat", null, null);
+      addAnnotation("c", "cat", null, null);
+      addAnnotation("d", "dog", null, null);
+      TextIndex index = repository.createIndex();
+      TextIndex.Hits hits = index.search("cat", 0, 2);
+      assertEquals(3, hits.getTotal());
+      assertEquals(Arrays.asList(CONTAINER + "b", CONTAINER + "a"), iris(hits));
+      assertTrue(hits.getHits().get(0).getScore() > hits.getHits().get(1).getScore());
+      assertEquals(Arrays.asList(CONTAINER + "c"), iris(index.search("cat", 2, 2)));
+      hits = TextIndex.search(repository.getTransactionDataset(), "cat", 0, 2);
+      assertEquals(3, hits.getTotal());
+      assertEquals(Arrays.asList(CONTAINER + "b", CONTAINER + "a"), iris(hits),
+            "The database has to return the same as the index");
+   }
+
+   /**
+    * Test the words found are highlighted.
+    */
+   @Test
+   final void testHighlight() {
+      List<TextIndex.Term> terms = TextIndex.parse("Cat dog*");
+      assertEquals("The <em>cats</em> are <em>dogs</em>", TextIndex.highlight("The cats are dogs", TextIndex.parse(
+            "cat* dog*")));
+      assertNull(TextIndex.highlight("No match", terms));
+      assertEquals("a &lt;b&gt; <em>CAT</em>", TextIndex.highlight("a <b> CAT", terms));
+      StringBuilder longText = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+         longText.append("word").append(i).append(' ');
+      }
+      longText.append("cat");
+      for (int i = 0; i < 100; i++) {
+         longText.append(" more").append(i);
+      }
+      String fragment = TextIndex.highlight(longText.toString(), terms);
+      assertTrue(fragment.startsWith("…word9"), fragment);
+      assertTrue(fragment.contains("<em>cat</em> more0"));
+      assertTrue(fragment.endsWith("…"));
+      assertTrue(fragment.length() <= TextIndex.FRAGMENT_LENGTH + 2 + "<em></em>".length());
+      addAnnotation("a", "The black cat", "cat", null);
+      TextIndex.Hit hit = repository.createIndex().search("cat", 0, 1).getHits().get(0);
+      assertEquals(Arrays.asList("The black <em>cat</em>"), hit.getHighlights().get(TextIndex.BODY));
+      assertEquals(Arrays.asList("<em>cat</em>"), hit.getHighlights().get(TextIndex.TAG));
+      assertNull(hit.getHighlights().get(TextIndex.CREATOR));
+      assertFalse(TextIndex.isSearchable(" *, "));
+   }
+
+   /**
+    * Test the texts of a transaction are applied after its commit and dropped on abort.
+    */
+   @Test
+   final void testChangesOfTransactions() {
+      addAnnotation("a", "cat", null, null);
+      TextIndex index = repository.createIndex();
+      repository.writeRdfTransaction(ds -> {
+         addAnnotation("b", "cat", null, null);
+         TransactionContext.current().recordMutation(MutationJournal.Type.Create, CONTAINER + "b", "etag");
+         IRI changed = rdf.createIRI(CONTAINER + "a");
+         ds.remove(Optional.of(changed), null, RdfVocab.value, null);
+         addAnnotation("a", "dog", null, null);
+         TransactionContext.current().recordMutation(MutationJournal.Type.Update, CONTAINER + "a", "etag");
+         assertEquals(1, index.search("cat", 0, 10).getTotal(), "Not applied before the commit");
+      });
+      assertEquals(Arrays.asList(CONTAINER + "b"), iris(index.search("cat", 0, 10)));
+      assertEquals(Arrays.asList(CONTAINER + "a"), iris(index.search("dog", 0, 10)));
+      assertThrows(NotAnAnnotationException.class, () -> repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().recordMutation(MutationJournal.Type.Delete, CONTAINER + "a", null);
+         throw new NotAnAnnotationException();
+      }));
+      assertEquals(1, index.search("dog", 0, 10).getTotal());
+      repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().recordMutation(MutationJournal.Type.Delete, CONTAINER + "a", null);
+      });
+      assertEquals(0, index.search("dog", 0, 10).getTotal());
+      assertEquals(1, index.getAnnotations());
+   }
+
+   /**
+    * Test the index is rebuilt in the background and not available meanwhile.
+    *
+    * @throws InterruptedException
+    *                              if waiting for the rebuild is interrupted
+    */
+   @Test
+   final void testInvalidate() throws InterruptedException {
+      TextIndex index = repository.createIndex();
+      addAnnotation("a", "cat", null, null);
+      index.invalidate();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!index.isAvailable() && System.currentTimeMillis() < deadline) {
+         Thread.sleep(20);
+      }
+      assertEquals(1, index.search("cat", 0, 10).getTotal());
+      assertEquals(2, index.getRebuilds());
+   }
+
+   private List<String> iris(TextIndex.Hits hits) {
+      return hits.getHits().stream().map(TextIndex.Hit::getAnnotationIri).collect(Collectors.toList());
+   }
+
+   /**
+    * Adds an annotation with a textual body, a tag, a creator and a label.
+    */
+   private void addAnnotation(String name, String text, String tag, String creator) {
+      IRI iri = rdf.createIRI(CONTAINER + name);
+      Dataset dataset = repository.getTransactionDataset();
+      dataset.add(iri, iri, RdfVocab.type, AnnoVocab.annotation);
+      dataset.add(iri, iri, WapVocab.etag, rdf.createLiteral("etag"));
+      BlankNode body = rdf.createBlankNode();
+      dataset.add(iri, iri, AnnoVocab.body, body);
+      dataset.add(iri, body, RdfVocab.value, rdf.createLiteral(text));
+      if (tag != null) {
+         BlankNode tagBody = rdf.createBlankNode();
+         dataset.add(iri, iri, AnnoVocab.body, tagBody);
+         dataset.add(iri, tagBody, AnnoVocab.purpose, AnnoVocab.tagging);
+         dataset.add(iri, tagBody, RdfVocab.value, rdf.createLiteral(tag));
+         dataset.add(iri, iri, RdfSchemaVocab.label, rdf.createLiteral("label"));
+      }
+      if (creator != null) {
+         BlankNode person = rdf.createBlankNode();
+         dataset.add(iri, iri, DcTermsVocab.creator, person);
+         dataset.add(iri, person, FoafVocab.name, rdf.createLiteral(creator));
+      }
+   }
+
+   private static class IndexedRepository implements TransactionRepository {
+      private final Dataset dataset;
+      private TextIndex index;
+
+      IndexedRepository(Dataset dataset) {
+         this.dataset = dataset;
+      }
+
+      TextIndex createIndex() {
+         index = new TextIndex(this);
+         index.build();
+         return index;
+      }
+
+      @Override
+      public Dataset getTransactionDataset() {
+         return dataset;
+      }
+
+      @Override
+      public TextIndex getTextIndex() {
+         return index;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         return true;
+      }
+   }
+}
@@ -0,0 +1,223 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.apache.commons.rdf.simple.Types;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Tests the TimeIndex
+ */
+class TimeIndexTest {
+   private static final String CONTAINER = "http://www.example.org/wap/container/";
+   private static final String OTHER = "http://www.example.org/wap/other/";
+   private static final TimeIndex.Range ALL_CREATED = new TimeIndex.Range(false, null, null);
+   private final RDF rdf = new SimpleRDF();
+   private final IndexedRepository repository = new IndexedRepository(rdf.createDataset());
+
+   /**
+    * Stop the rebuild thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      if (repository.index != null) {
+         repository.index.close();
+      }
+   }
+
+   /**
+    * Test xsd:dateTime values with and without time zone are parsed.
+    */
+   @Test
+   final void testParseTime() {
+      assertEquals(Long.valueOf(3600000), TimeIndex.parseTime("1970-01-01T01:00:00Z"));
+      assertEquals(Long.valueOf(3600000), TimeIndex.parseTime("1970-01-01T02:00:00+01:00"));
+      assertEquals(Long.valueOf(3600500), TimeIndex.parseTime("1970-01-01T01:00:00.5"));
+      assertNull(TimeIndex.parseTime("yesterday"));
+      assertEquals("createdAfter=1970-01-01T01:00:00Z",
+            new TimeIndex.Range(false, 3600000L, null).toQuery());
+      assertEquals("modifiedAfter=1970-01-01T00:00:00Z&modifiedBefore=1970-01-01T01:00:00Z",
+            new TimeIndex.Range(true, 0L, 3600000L).toQuery());
+   }
+
+   /**
+    * Test the index is built from the times of the active annotations, by container.
+    */
+   @Test
+   final void testBuild() {
+      addAnnotation(CONTAINER + "a", 3, 5, false);
+      addAnnotation(CONTAINER + "b", 1, 7, false);
+      addAnnotation(CONTAINER + "c", 2, 2, true);
+      addAnnotation(OTHER + "d", 4, 4, false);
+      // A container has times too, but is no annotation
+      IRI container = rdf.createIRI(CONTAINER);
+      repository.getTransactionDataset().add(container, container, DcTermsVocab.created, time(0));
+      TimeIndex index = repository.createIndex();
+      assertEquals(3, index.getAnnotations());
+      assertEquals(Arrays.asList(CONTAINER + "b", CONTAINER + "a"), iris(index.find(CONTAINER, ALL_CREATED, null, 0,
+            10)));
+      assertEquals(Arrays.asList(CONTAINER + "a", CONTAINER + "b"),
+            iris(index.find(CONTAINER, new TimeIndex.Range(true, null, null), null, 0, 10)));
+      assertEquals(Arrays.asList(OTHER + "d"), iris(index.find(OTHER, ALL_CREATED, null, 0, 10)));
+      assertEquals(0, index.find(CONTAINER + "a/", ALL_CREATED, null, 0, 10).getTotal());
+   }
+
+   /**
+    * Test the ranges, cursors, skip and limit select the same from the index and the database.
+    */
+   @Test
+   final void testSelect() {
+      for (int i = 0; i < 10; i++) {
+         addAnnotation(CONTAINER + i, i, 10 - i, false);
+      }
+      // Same time, ordered by IRI
+      addAnnotation(CONTAINER + "x", 5, 5, false);
+      TimeIndex index = repository.createIndex();
+      Dataset ds = repository.getTransactionDataset();
+      TimeIndex.Range createdAfter = new TimeIndex.Range(false, millis(4), null);
+      TimeIndex.Matches matches = index.find(CONTAINER, createdAfter, null, 1, 2);
+      assertEquals(6, matches.getTotal());
+      assertEquals(Arrays.asList(CONTAINER + "x", CONTAINER + 6), iris(matches));
+      assertEquals(millis(5), matches.getStamps().get(0).getTime());
+      assertEquals(iris(matches), iris(TimeIndex.find(ds, CONTAINER, createdAfter, null, 1, 2)),
+            "The database has to return the same as the index");
+      TimeIndex.Stamp after = new TimeIndex.Stamp(millis(5), CONTAINER + 5);
+      assertEquals(Arrays.asList(CONTAINER + "x", CONTAINER + 6, CONTAINER + 7),
+            iris(index.find(CONTAINER, createdAfter, after, 0, 3)));
+      assertEquals(Arrays.asList(CONTAINER + "x", CONTAINER + 6, CONTAINER + 7),
+            iris(TimeIndex.find(ds, CONTAINER, createdAfter, after, 0, 3)));
+      TimeIndex.Range modifiedBetween = new TimeIndex.Range(true, millis(2), millis(5));
+      assertEquals(Arrays.asList(CONTAINER + 7, CONTAINER + 6), iris(index.find(CONTAINER, modifiedBetween, null,
+            0, 10)));
+      assertEquals(2, TimeIndex.find(ds, CONTAINER, modifiedBetween, null, 0, 10).getTotal());
+      TimeIndex.Range empty = new TimeIndex.Range(false, millis(5), millis(5));
+      assertEquals(0, index.find(CONTAINER, empty, null, 0, 10).getTotal());
+      assertEquals(0, index.find(CONTAINER, new TimeIndex.Range(false, Long.MAX_VALUE, null), null, 0, 10)
+            .getTotal());
+   }
+
+   /**
+    * Test the times of a transaction are applied after its commit and dropped on abort.
+    */
+   @Test
+   final void testChangesOfTransactions() {
+      addAnnotation(CONTAINER + "a", 1, 1, false);
+      TimeIndex index = repository.createIndex();
+      TimeIndex.Range modified = new TimeIndex.Range(true, millis(5), null);
+      repository.writeRdfTransaction(ds -> {
+         addAnnotation(CONTAINER + "b", 2, 2, false);
+         TransactionContext.current().recordMutation(MutationJournal.Type.Create, CONTAINER + "b", "etag");
+         // Modified again
+         IRI updated = rdf.createIRI(CONTAINER + "a");
+         ds.remove(Optional.of(updated), updated, DcTermsVocab.modified, null);
+         ds.add(updated, updated, DcTermsVocab.modified, time(9));
+         TransactionContext.current().recordMutation(MutationJournal.Type.Update, CONTAINER + "a", "etag");
+         assertEquals(1, index.find(CONTAINER, ALL_CREATED, null, 0, 10).getTotal(), "Not applied before the commit");
+      });
+      assertEquals(Arrays.asList(CONTAINER + "a", CONTAINER + "b"), iris(index.find(CONTAINER, ALL_CREATED, null, 0,
+            10)));
+      assertEquals(Arrays.asList(CONTAINER + "a"), iris(index.find(CONTAINER, modified, null, 0, 10)));
+      assertThrows(NotAnAnnotationException.class, () -> repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().recordMutation(MutationJournal.Type.Delete, CONTAINER + "a", null);
+         throw new NotAnAnnotationException();
+      }));
+      assertEquals(2, index.find(CONTAINER, ALL_CREATED, null, 0, 10).getTotal());
+      repository.writeRdfTransaction(ds -> {
+         TransactionContext.current().recordMutation(MutationJournal.Type.Delete, CONTAINER + "a", null);
+      });
+      assertEquals(Arrays.asList(CONTAINER + "b"), iris(index.find(CONTAINER, ALL_CREATED, null, 0, 10)));
+      assertEquals(0, index.find(CONTAINER, modified, null, 0, 10).getTotal());
+      assertEquals(1, index.getAnnotations());
+   }
+
+   /**
+    * Test the index is rebuilt after an invalidation.
+    *
+    * @throws InterruptedException
+    *                              if waiting for the rebuild is interrupted
+    */
+   @Test
+   final void testInvalidate() throws InterruptedException {
+      TimeIndex index = repository.createIndex();
+      addAnnotation(CONTAINER + "a", 1, 1, false);
+      index.invalidate();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!index.isAvailable() && System.currentTimeMillis() < deadline) {
+         Thread.sleep(20);
+      }
+      assertEquals(1, index.find(CONTAINER, ALL_CREATED, null, 0, 10).getTotal());
+      assertEquals(2, index.getRebuilds());
+   }
+
+   /**
+    * Adds an annotation created and modified at the given minutes after the epoch.
+    */
+   private void addAnnotation(String annotation, int created, int modified, boolean isDeleted) {
+      IRI iri = rdf.createIRI(annotation);
+      Dataset dataset = repository.getTransactionDataset();
+      dataset.add(iri, iri, RdfVocab.type, AnnoVocab.annotation);
+      dataset.add(iri, iri, DcTermsVocab.created, time(created));
+      dataset.add(iri, iri, DcTermsVocab.modified, time(modified));
+      if (isDeleted) {
+         dataset.add(iri, iri, WapVocab.deleted, rdf.createLiteral("true"));
+      }
+   }
+
+   private Literal time(int minutes) {
+      return rdf.createLiteral(String.format("1970-01-01T00:%02d:00Z", minutes), Types.XSD_DATETIME);
+   }
+
+   private static long millis(int minutes) {
+      return minutes * 60000L;
+   }
+
+   private static List<String> iris(TimeIndex.Matches matches) {
+      List<String> iris = new ArrayList<String>();
+      matches.getStamps().forEach(stamp -> iris.add(stamp.getAnnotationIri()));
+      return iris;
+   }
+
+   private static class IndexedRepository implements TransactionRepository {
+      private final Dataset dataset;
+      private TimeIndex index;
+
+      IndexedRepository(Dataset dataset) {
+         this.dataset = dataset;
+      }
+
+      TimeIndex createIndex() {
+         index = new TimeIndex(this);
+         index.build();
+         return index;
+      }
+
+      @Override
+      public Dataset getTransactionDataset() {
+         return dataset;
+      }
+
+      @Override
+      public TimeIndex getTimeIndex() {
+         return index;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         return true;
+      }
+   }
+}
@@ -0,0 +1,136 @@
+package edu.kit.scc.dem.wapsrv.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the TransactionContext
+ */
+class TransactionContextTest {
+   private final RDF rdf = new SimpleRDF();
+   private final CountingRepository repository = new CountingRepository(rdf.createDataset());
+
+   /**
+    * Make sure no context is left behind for other tests running in this thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      assertNull(TransactionContext.current(), "Context should be closed after the transaction");
+   }
+
+   /**
+    * Test nested reading transactions reuse the context of the outer one.
+    */
+   @Test
+   final void testNestedReadReusesContext() {
+      TransactionContext[] contexts = new TransactionContext[2];
+      repository.readRdfTransaction(ds -> {
+         contexts[0] = TransactionContext.current();
+         repository.readRdfTransaction(innerDs -> {
+            contexts[1] = TransactionContext.current();
+            assertSame(ds, innerDs, "Nested transaction should work on the same dataset");
+         });
+      });
+      assertNotNull(contexts[0]);
+      assertSame(contexts[0], contexts[1]);
+      assertEquals(1, repository.begun, "Nested read should not begin a transaction");
+   }
+
+   /**
+    * Test nested reading transactions within writing ones reuse the context.
+    */
+   @Test
+   final void testNestedReadInWriteReusesContext() {
+      TransactionContext[] contexts = new TransactionContext[2];
+      repository.writeRdfTransaction(ds -> {
+         contexts[0] = TransactionContext.current();
+         repository.readRdfTransaction(innerDs -> contexts[1] = TransactionContext.current());
+      });
+      assertSame(contexts[0], contexts[1]);
+      assertEquals(1, repository.begun);
+   }
+
+   /**
+    * Test nested writing transactions within reading ones get their own context.
+    */
+   @Test
+   final void testNestedWriteInReadOpensContext() {
+      TransactionContext[] contexts = new TransactionContext[3];
+      repository.readRdfTransaction(ds -> {
+         contexts[0] = TransactionContext.current();
+         repository.writeRdfTransaction(innerDs -> contexts[1] = TransactionContext.current());
+         contexts[2] = TransactionContext.current();
+      });
+      assertNotSame(contexts[0], contexts[1]);
+      assertSame(contexts[0], contexts[2], "Outer context should be restored");
+      assertEquals(2, repository.begun);
+   }
+
+   /**
+    * Test the context is closed if the transaction fails.
+    */
+   @Test
+   final void testContextClosedOnException() {
+      assertThrows(IllegalStateException.class, () -> repository.writeRdfTransaction(ds -> {
+         throw new IllegalStateException();
+      }));
+      assertEquals(1, repository.aborted);
+   }
+
+   /**
+    * Test IRIs and graphs are resolved only once per transaction.
+    */
+   @Test
+   final void testIriAndGraphCached() {
+      repository.readRdfTransaction(ds -> {
+         TransactionContext context = TransactionContext.of(ds);
+         IRI iri = context.getIri("http://example.org/anno", rdf);
+         assertSame(iri, context.getIri("http://example.org/anno", rdf));
+         Graph graph = context.getGraph(iri).get();
+         assertSame(graph, context.getGraph(iri).get());
+      });
+   }
+
+   /**
+    * Test a dataset without transaction gets a context not bound to the thread.
+    */
+   @Test
+   final void testOfWithoutTransaction() {
+      Dataset ds = rdf.createDataset();
+      TransactionContext context = TransactionContext.of(ds);
+      assertSame(ds, context.getDataset());
+      assertNull(TransactionContext.current());
+   }
+
+   private static class CountingRepository implements TransactionRepository {
+      private final Dataset dataset;
+      private int begun;
+      private int aborted;
+
+      CountingRepository(Dataset dataset) {
+         this.dataset = dataset;
+      }
+
+      @Override
+      public Dataset getTransactionDataset() {
+         return dataset;
+      }
+
+      @Override
+      public boolean beginTransaction(TransactionRepository.Type type) {
+         begun++;
+         return true;
+      }
+
+      @Override
+      public void abortTransaction() {
+         aborted++;
+      }
+   }
+}
@@ -0,0 +1,81 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Optional;
+import org.apache.commons.rdf.api.BlankNodeOrIRI;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.Types;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+
+/**
+ * Tests the class JenaMaintenance
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {JenaRepository.class, WapServerConfig.class, JenaDataBase.class, JenaRdfBackend.class,
+      JenaMaintenance.class})
+@ActiveProfiles("test")
+class JenaMaintenanceTest {
+   @Autowired
+   private JenaRepository repository;
+   @Autowired
+   private JenaMaintenance maintenance;
+
+   /**
+    * Test deleted objects are purged down to their tombstone while others stay untouched.
+    */
+   @Test
+   final void testPurgeDeletedObjects() {
+      RDF rdf = repository.getRdf();
+      IRI deleted = rdf.createIRI("http://www.example.org/maintenance/deleted");
+      IRI alive = rdf.createIRI("http://www.example.org/maintenance/alive");
+      Literal trueLiteral = rdf.createLiteral("true", Types.XSD_BOOLEAN);
+      repository.writeRdfTransaction(ds -> {
+         for (IRI iri : new IRI[] {deleted, alive}) {
+            ds.add(iri, iri, RdfVocab.type, AnnoVocab.annotation);
+            ds.add(iri, iri, WapVocab.etag, rdf.createLiteral("etag"));
+         }
+         ds.add(deleted, deleted, WapVocab.deleted, trueLiteral);
+      });
+      assertTrue(maintenance.purgeDeletedObjects() >= 1);
+      repository.readRdfTransaction(ds -> {
+         assertEquals(1, ds.stream(Optional.of(deleted), null, null, null).count(), "Only the tombstone is kept");
+         assertTrue(ds.contains(Optional.of(deleted), deleted, WapVocab.deleted, WapVocab.purged));
+         assertEquals(2, ds.stream(Optional.<BlankNodeOrIRI>of(alive), null, null, null).count());
+      });
+      assertEquals(0, maintenance.purgeDeletedObjects(), "Purged objects are not purged again");
+      // Deleted again, e.g. with its container
+      repository.writeRdfTransaction(ds -> ds.add(deleted, deleted, WapVocab.deleted, trueLiteral));
+      assertEquals(1, maintenance.purgeDeletedObjects());
+      repository.readRdfTransaction(ds -> {
+         assertEquals(1, ds.stream(Optional.of(deleted), null, null, null).count(), "Only one tombstone is kept");
+      });
+   }
+
+   /**
+    * Test the data is still there after compaction.
+    */
+   @Test
+   final void testCompact() {
+      RDF rdf = repository.getRdf();
+      IRI iri = rdf.createIRI("http://www.example.org/maintenance/compacted");
+      repository.writeRdfTransaction(ds -> ds.add(iri, iri, RdfVocab.type, AnnoVocab.annotation));
+      assertTrue(maintenance.getDataBaseSize() > 0);
+      maintenance.compact();
+      repository.readRdfTransaction(ds -> {
+         assertTrue(ds.contains(Optional.of(iri), iri, RdfVocab.type, AnnoVocab.annotation));
+      });
+      assertFalse(maintenance.isCompactionDue(), "Nothing has been written since the compaction");
+      repository.writeRdfTransaction(ds -> ds.remove(Optional.of(iri), null, null, null));
+   }
+}
@@ -2,7 +2,11 @@ package edu.kit.scc.dem.wapsrv.repository.jena;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.rdf.api.RDF;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,6 +21,10 @@ import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
 import edu.kit.scc.dem.wapsrv.model.WapObject;
 import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.model.rdf.WapObjectView;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.AnnoVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
 import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
 
 /**
@@ -95,6 +103,37 @@ class JenaRepositoryTest {
       });
    }
 
+   /**
+    * Test get WAP object view.
+    */
+   @Test
+   final void testGetWapObjectView() {
+      String paramIri = objWapServerConfig.getRootContainerIri();
+      org.apache.commons.rdf.api.Dataset copy = objJenaRepository.getWapObject(paramIri);
+      org.apache.commons.rdf.api.Dataset view = objJenaRepository.getWapObjectView(paramIri);
+      assertTrue(copy.getGraph().contains(null, WapVocab.etag, null));
+      assertFalse(view.getGraph().contains(null, WapVocab.etag, null), "The view must hide the ETag");
+      assertNotNull(((WapObjectView) view).getEtag());
+      assertEquals(copy.size() - 1, view.size());
+      assertThrows(NotExistentException.class, () -> {
+         objJenaRepository.getWapObjectView(objWapServerConfig.getRootContainerIri() + "invalidContainer9815/");
+      });
+   }
+
+   /**
+    * Test get several WAP objects at once.
+    */
+   @Test
+   final void testGetWapObjects() {
+      String rootIri = objWapServerConfig.getRootContainerIri();
+      String invalidIri = rootIri + "invalidContainer9815/";
+      Map<String, org.apache.commons.rdf.api.Dataset> actual =
+            objJenaRepository.getWapObjects(List.of(invalidIri, rootIri));
+      assertEquals(List.of(rootIri), new ArrayList<String>(actual.keySet()), "Not stored objects must be left out");
+      assertEquals(objJenaRepository.getWapObject(rootIri).size(), actual.get(rootIri).size());
+      assertTrue(objJenaRepository.getWapObjects(List.of()).isEmpty());
+   }
+
    /**
     * Test backup database.
     */
@@ -229,6 +268,67 @@ class JenaRepositoryTest {
       objJenaRepository.abortTransaction();
    }
 
+   /**
+    * Test removing an element keeps the order of the others and appending does not reuse the slot.
+    */
+   @Test
+   final void testRemoveElementKeepsOrder() {
+      String paramModelIri = "http://localhost:8080/wap/";
+      String paramSeqIri = "http://localhost:8080/wap/#containers";
+      objJenaRepository.abortTransaction();
+      assertTrue(objJenaRepository.beginTransaction(TransactionRepository.Type.Write));
+      int before = objJenaRepository.countElementsInSeq(paramModelIri, paramSeqIri);
+      objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/order1/");
+      objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/order2/");
+      objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/order3/");
+      objJenaRepository.removeElementFromRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/order2/");
+      objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/order4/");
+      assertEquals(before + 3, objJenaRepository.countElementsInSeq(paramModelIri, paramSeqIri));
+      List<String> actual = objJenaRepository.getRangeOfObjectIrisFromSeq(paramModelIri, paramSeqIri, before + 1,
+            before + 3);
+      assertEquals(List.of("http://localhost:8080/wap/order1/", "http://localhost:8080/wap/order3/",
+            "http://localhost:8080/wap/order4/"), actual);
+      // clean up by aborting transaction
+      objJenaRepository.abortTransaction();
+   }
+
+   /**
+    * Test reading a sequence after a member continues correctly after removals and after renumbering.
+    */
+   @Test
+   final void testGetObjectIrisFromSeqAfter() {
+      String paramModelIri = "http://localhost:8080/wap/";
+      String paramSeqIri = "http://localhost:8080/wap/#cursortest";
+      objJenaRepository.abortTransaction();
+      assertTrue(objJenaRepository.beginTransaction(TransactionRepository.Type.Write));
+      for (int i = 1; i <= 5; i++) {
+         objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/cursor" + i);
+      }
+      Map<Long, String> first = objJenaRepository.getObjectIrisFromSeqAfter(paramModelIri, paramSeqIri, 0, null, 2);
+      assertEquals(List.of("http://localhost:8080/wap/cursor1", "http://localhost:8080/wap/cursor2"),
+            new ArrayList<String>(first.values()));
+      long position = new ArrayList<Long>(first.keySet()).get(1);
+      // Removing members before and the one read last does not shift the following ones
+      objJenaRepository.removeElementFromRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/cursor1");
+      objJenaRepository.removeElementFromRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/cursor2");
+      Map<Long, String> next = objJenaRepository.getObjectIrisFromSeqAfter(paramModelIri, paramSeqIri, position,
+            "http://localhost:8080/wap/cursor2", 2);
+      assertEquals(List.of("http://localhost:8080/wap/cursor3", "http://localhost:8080/wap/cursor4"),
+            new ArrayList<String>(next.values()));
+      position = new ArrayList<Long>(next.keySet()).get(1);
+      // After renumbering the member is found again by its IRI
+      objJenaRepository.compactSeq(paramModelIri, paramSeqIri);
+      next = objJenaRepository.getObjectIrisFromSeqAfter(paramModelIri, paramSeqIri, position,
+            "http://localhost:8080/wap/cursor4", 2);
+      assertEquals(List.of("http://localhost:8080/wap/cursor5"), new ArrayList<String>(next.values()));
+      final long oldPosition = position;
+      objJenaRepository.removeElementFromRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/cursor4");
+      assertThrows(NotExistentException.class, () -> objJenaRepository.getObjectIrisFromSeqAfter(paramModelIri,
+            paramSeqIri, oldPosition, "http://localhost:8080/wap/cursor4", 2));
+      // clean up by aborting transaction
+      objJenaRepository.abortTransaction();
+   }
+
    /**
     * Test remove element from RDF sequential.
     */
@@ -252,6 +352,27 @@ class JenaRepositoryTest {
             "Could not count elements in seq for modeIri: " + paramModelIri + ", seqIri: " + paramSeqIri);
    }
 
+   /**
+    * Test the member count is maintained with every change of the sequence.
+    */
+   @Test
+   final void testCountElementsMaintained() {
+      String paramModelIri = "http://localhost:8080/wap/";
+      String paramSeqIri = "http://localhost:8080/wap/#annotations";
+      objJenaRepository.abortTransaction();
+      assertTrue(objJenaRepository.beginTransaction(TransactionRepository.Type.Write));
+      int before = objJenaRepository.countElementsInSeq(paramModelIri, paramSeqIri);
+      objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/count1");
+      objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/count2");
+      objJenaRepository.removeElementFromRdfSeq(paramModelIri, paramSeqIri, "http://localhost:8080/wap/count1");
+      assertEquals(before + 1, objJenaRepository.countElementsInSeq(paramModelIri, paramSeqIri));
+      assertEquals(before + 1, objJenaRepository.getAllObjectIrisOfSeq(paramModelIri, paramSeqIri).size());
+      objJenaRepository.emptySeq(paramModelIri, paramSeqIri);
+      assertEquals(0, objJenaRepository.countElementsInSeq(paramModelIri, paramSeqIri));
+      // clean up by aborting transaction
+      objJenaRepository.abortTransaction();
+   }
+
    /**
     * Test write object to database.
     */
@@ -279,6 +400,28 @@ class JenaRepositoryTest {
       objJenaRepository.abortTransaction();
    }
 
+   /**
+    * Test writing WapObjects with the bulk loader.
+    */
+   @Test
+   final void testBulkWriteObjectsToDatabase() {
+      String paramIri = objWapServerConfig.getRootContainerIri() + "bulkLoaded1";
+      RDF rdf = objRdfBackend.getRdf();
+      org.apache.commons.rdf.api.Dataset paramWapObjectDataset = rdf.createDataset();
+      paramWapObjectDataset.getGraph().add(rdf.createIRI(paramIri), RdfVocab.type, AnnoVocab.annotation);
+      WapObject paramWapObjectMock = Mockito.mock(WapObject.class);
+      when(paramWapObjectMock.getDataset()).thenReturn(paramWapObjectDataset);
+      when(paramWapObjectMock.getIriString()).thenReturn(paramIri);
+      when(paramWapObjectMock.getEtag()).thenReturn("bulk-etag");
+      // the bulk loader must not run within a transaction
+      objJenaRepository.abortTransaction();
+      assertEquals(1, objJenaRepository.bulkWriteObjectsToDatabase(List.of(paramWapObjectMock).iterator()));
+      assertTrue(objJenaRepository.beginTransaction(TransactionRepository.Type.Read));
+      org.apache.commons.rdf.api.Dataset actual = objJenaRepository.getWapObjectView(paramIri);
+      assertEquals(1, actual.size());
+      assertEquals("bulk-etag", ((WapObjectView) actual).getEtag());
+   }
+
    /**
     * Test get range of object IRIs from sequence.
     */
@@ -313,4 +456,80 @@ class JenaRepositoryTest {
       actual = objJenaRepository.getTransactionDataset();
       assertNotNull(actual, "Could not get trasaction dataset.");
    }
+
+   /**
+    * Test the sequence number of the last mutation journal entry is stored with the transaction writing it.
+    */
+   @Test
+   final void testJournalSequence() {
+      objJenaRepository.abortTransaction();
+      objJenaRepository.beginTransaction(TransactionRepository.Type.Write);
+      objJenaRepository.writeJournalSequence(41);
+      objJenaRepository.writeJournalSequence(42);
+      objJenaRepository.endTransaction(true);
+      assertEquals(42, objJenaRepository.readJournalSequence());
+      objJenaRepository.beginTransaction(TransactionRepository.Type.Write);
+      objJenaRepository.writeJournalSequence(43);
+      objJenaRepository.abortTransaction();
+      assertEquals(42, objJenaRepository.readJournalSequence());
+   }
+
+   /**
+    * Test readers always get the members of their own snapshot from the membership index while a writer appends.
+    */
+   @Test
+   final void testConcurrentReadsMatchSnapshot() throws Exception {
+      String paramModelIri = "http://localhost:8080/wap/";
+      String paramSeqIri = "http://localhost:8080/wap/#concurrencytest";
+      int writes = 200;
+      objJenaRepository.abortTransaction();
+      objJenaRepository.beginTransaction(TransactionRepository.Type.Write);
+      objJenaRepository.emptySeq(paramModelIri, paramSeqIri);
+      objJenaRepository.endTransaction(true);
+      List<String> failures = Collections.synchronizedList(new ArrayList<>());
+      AtomicBoolean writing = new AtomicBoolean(true);
+      Thread writer = new Thread(() -> {
+         try {
+            for (int i = 0; i < writes; i++) {
+               objJenaRepository.beginTransaction(TransactionRepository.Type.Write);
+               objJenaRepository.addElementToRdfSeq(paramModelIri, paramSeqIri,
+                     "http://localhost:8080/wap/concurrent" + i + "/");
+               objJenaRepository.endTransaction(true);
+            }
+         } finally {
+            writing.set(false);
+         }
+      });
+      List<Thread> readers = new ArrayList<>();
+      for (int r = 0; r < 4; r++) {
+         readers.add(new Thread(() -> {
+            while (writing.get() && failures.isEmpty()) {
+               objJenaRepository.beginTransaction(TransactionRepository.Type.Read);
+               try {
+                  List<String> expected = objJenaRepository.getAllObjectIrisOfSeq(paramModelIri, paramSeqIri);
+                  List<String> actual = objJenaRepository.getRangeOfObjectIrisFromSeq(paramModelIri, paramSeqIri, 1,
+                        Integer.MAX_VALUE);
+                  if (!expected.equals(actual)) {
+                     failures.add("Expected " + expected.size() + " members, index returned " + actual.size());
+                  }
+               } finally {
+                  objJenaRepository.abortTransaction();
+               }
+            }
+         }));
+      }
+      writer.start();
+      readers.forEach(Thread::start);
+      writer.join();
+      for (Thread reader : readers) {
+         reader.join();
+      }
+      assertTrue(failures.isEmpty(), failures.isEmpty() ? "" : failures.get(0));
+      // clean up
+      objJenaRepository.beginTransaction(TransactionRepository.Type.Write);
+      assertEquals(writes, objJenaRepository.countElementsInSeq(paramModelIri, paramSeqIri));
+      objJenaRepository.emptySeq(paramModelIri, paramSeqIri);
+      objJenaRepository.endTransaction(true);
+      objJenaRepository.beginTransaction(TransactionRepository.Type.Read);
+   }
 }
@@ -0,0 +1,182 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the SeqMembershipIndex
+ */
+class SeqMembershipIndexTest {
+   private static final String KEY = SeqMembershipIndex.toKey("http://example.org/wap/", "http://example.org/wap/#annotations");
+
+   /**
+    * Test positions are translated into slots skipping the gaps.
+    */
+   @Test
+   final void testSlotsWithGaps() {
+      SeqMembershipIndex.SlotIndex index = new SeqMembershipIndex.SlotIndex(new int[] {1, 2, 3, 4, 5});
+      index.remove(2);
+      index.remove(4);
+      assertEquals(3, index.size());
+      assertArrayEquals(new int[] {1, 3, 5}, index.slots(1, 3));
+      assertArrayEquals(new int[] {3, 5}, index.slots(2, 10));
+      assertArrayEquals(new int[0], index.slots(4, 5));
+      index.add(6);
+      assertEquals(6, index.getMaxSlot());
+      assertArrayEquals(new int[] {5, 6}, index.slots(3, 4));
+   }
+
+   /**
+    * Test the index grows beyond its initial capacity.
+    */
+   @Test
+   final void testGrowth() {
+      SeqMembershipIndex.SlotIndex index = new SeqMembershipIndex.SlotIndex(new int[0]);
+      for (int slot = 1; slot <= 10000; slot++) {
+         index.add(slot);
+      }
+      for (int slot = 1; slot <= 10000; slot += 2) {
+         index.remove(slot);
+      }
+      assertEquals(5000, index.size());
+      assertArrayEquals(new int[] {2, 4}, index.slots(1, 2));
+      assertArrayEquals(new int[] {10000}, index.slots(5000, 5000));
+      assertTrue(index.needsCompaction(), "Half of the slots are gaps");
+   }
+
+   /**
+    * Test changes are applied on commit and dropped on rollback.
+    */
+   @Test
+   final void testCommitAndRollback() {
+      SeqMembershipIndex membershipIndex = new SeqMembershipIndex();
+      membershipIndex.begin();
+      SeqMembershipIndex.SlotView index = membershipIndex.get(KEY, () -> new SeqMembershipIndex.SlotIndex(new int[] {1, 2}));
+      assertEquals(2, index.size());
+      // Write transaction appending one and removing one
+      membershipIndex.begin();
+      SeqMembershipIndex.PendingChanges changes = membershipIndex.changes(KEY, () -> 2);
+      assertEquals(3, changes.append());
+      changes.remove(1);
+      assertNull(membershipIndex.get(KEY, () -> fail("Not loaded while changed")),
+            "Seq changed in the transaction must be read from the database");
+      membershipIndex.commit();
+      membershipIndex.begin();
+      index = membershipIndex.get(KEY, () -> fail("Index should still be there"));
+      assertEquals(2, index.size());
+      assertArrayEquals(new int[] {2, 3}, index.slots(1, 2));
+      // Aborted change
+      membershipIndex.changes(KEY, () -> 3).append();
+      membershipIndex.end();
+      membershipIndex.begin();
+      assertEquals(2, membershipIndex.get(KEY, () -> fail("Index should still be there")).size());
+   }
+
+   /**
+    * Test transactions older than the last change do not load the index.
+    *
+    * @throws Exception
+    *                   if the writing thread is interrupted
+    */
+   @Test
+   final void testOutdatedSnapshot() throws Exception {
+      SeqMembershipIndex membershipIndex = new SeqMembershipIndex();
+      membershipIndex.begin();
+      Thread writer = new Thread(() -> {
+         membershipIndex.begin();
+         membershipIndex.changes(KEY, () -> 0).append();
+         membershipIndex.commit();
+      });
+      writer.start();
+      writer.join();
+      assertNull(membershipIndex.get(KEY, () -> new SeqMembershipIndex.SlotIndex(new int[0])));
+      membershipIndex.begin();
+      assertNotNull(membershipIndex.get(KEY, () -> new SeqMembershipIndex.SlotIndex(new int[] {1})));
+   }
+
+   /**
+    * Test transactions that began before a commit read the slots as of their snapshot, as long as the changes since
+    * are kept.
+    *
+    * @throws Exception
+    *                   if the writing thread is interrupted
+    */
+   @Test
+   final void testOlderSnapshot() throws Exception {
+      SeqMembershipIndex membershipIndex = new SeqMembershipIndex();
+      membershipIndex.begin();
+      SeqMembershipIndex.SlotView before = membershipIndex.get(KEY,
+            () -> new SeqMembershipIndex.SlotIndex(new int[] {1, 2, 3}));
+      Thread writer = new Thread(() -> {
+         membershipIndex.begin();
+         SeqMembershipIndex.PendingChanges changes = membershipIndex.changes(KEY, () -> 3);
+         changes.remove(2);
+         assertEquals(4, changes.append());
+         membershipIndex.commit();
+         membershipIndex.end();
+         membershipIndex.begin();
+         membershipIndex.changes(KEY, () -> 4).remove(1);
+         membershipIndex.commit();
+         membershipIndex.end();
+      });
+      writer.start();
+      writer.join();
+      SeqMembershipIndex.SlotView after = membershipIndex.get(KEY, () -> fail("Index should still be there"));
+      for (SeqMembershipIndex.SlotView view : Arrays.asList(before, after)) {
+         assertEquals(3, view.size());
+         assertEquals(3, view.getMaxSlot());
+         assertArrayEquals(new int[] {1, 2, 3}, view.slots(1, 3));
+         assertArrayEquals(new int[] {2, 3}, view.slots(2, 5));
+         assertArrayEquals(new int[] {2, 3}, view.slotsAfter(1, 10));
+      }
+      membershipIndex.end();
+      membershipIndex.begin();
+      SeqMembershipIndex.SlotView current = membershipIndex.get(KEY, () -> fail("Index should still be there"));
+      assertEquals(2, current.size());
+      assertEquals(4, current.getMaxSlot());
+      assertArrayEquals(new int[] {3, 4}, current.slots(1, 2));
+      assertArrayEquals(new int[] {4}, current.slotsAfter(3, 10));
+      // Beyond the changes kept the snapshot has to be read from the database
+      Thread manyWriters = new Thread(() -> {
+         for (int slot = 5; slot <= 5 + SeqMembershipIndex.MAX_HISTORY; slot++) {
+            final int maxSlot = slot - 1;
+            membershipIndex.begin();
+            membershipIndex.changes(KEY, () -> maxSlot).append();
+            membershipIndex.commit();
+            membershipIndex.end();
+         }
+      });
+      manyWriters.start();
+      manyWriters.join();
+      assertArrayEquals(new int[] {3, 4}, current.slots(1, 2));
+      assertNull(membershipIndex.get(KEY, () -> fail("Index should still be there")));
+      membershipIndex.end();
+      membershipIndex.begin();
+      assertEquals(3 + SeqMembershipIndex.MAX_HISTORY, membershipIndex.get(KEY, () -> fail("Index kept")).size());
+   }
+
+   /**
+    * Test emptying the seq drops its index.
+    */
+   @Test
+   final void testReset() {
+      SeqMembershipIndex membershipIndex = new SeqMembershipIndex();
+      membershipIndex.begin();
+      membershipIndex.get(KEY, () -> new SeqMembershipIndex.SlotIndex(new int[] {1, 2}));
+      membershipIndex.changes(KEY, () -> 2).reset(0);
+      membershipIndex.commit();
+      membershipIndex.begin();
+      assertEquals(0, membershipIndex.get(KEY, () -> new SeqMembershipIndex.SlotIndex(new int[0])).size());
+   }
+
+   /**
+    * Test the key can be split again.
+    */
+   @Test
+   final void testKey() {
+      String[] parts = SeqMembershipIndex.fromKey(KEY);
+      assertEquals("http://example.org/wap/", parts[0]);
+      assertEquals("http://example.org/wap/#annotations", parts[1]);
+   }
+}
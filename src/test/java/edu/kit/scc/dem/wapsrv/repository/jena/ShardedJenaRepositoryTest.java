@@ -0,0 +1,272 @@
+package edu.kit.scc.dem.wapsrv.repository.jena;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.system.Txn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfBackend;
+import edu.kit.scc.dem.wapsrv.repository.TransactionContext;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+
+/**
+ * Tests the ShardedJenaRepository
+ */
+class ShardedJenaRepositoryTest {
+   private static final String ROOT = "http://localhost:8080/wap/";
+   private static final long TIMEOUT_SECONDS = 10;
+   private final RdfBackend rdfBackend = new JenaRdfBackend();
+   private WapServerConfig wapServerConfig;
+   private ShardedJenaRepository repository;
+   private List<Dataset> dataBases;
+
+   /**
+    * Sets up three in-memory shards, containers starting with alpha are stored in the second one, those
+    * starting with alphabet in the third one and those starting with zero in the first one.
+    */
+   @BeforeEach
+   final void setUp() {
+      wapServerConfig = Mockito.mock(WapServerConfig.class);
+      Mockito.when(wapServerConfig.getRootContainerIri()).thenReturn(ROOT);
+      Mockito.when(wapServerConfig.getShardPrefixes()).thenReturn("alpha=1, alphabet=2, zero=0, invalid=7");
+      Mockito.when(wapServerConfig.getTransactionConcurrencyMode())
+            .thenReturn(TransactionRepository.ConcurrencyMode.ConcurrentReads);
+      List<JenaRepository> shards = new ArrayList<JenaRepository>();
+      for (int shard = 0; shard < 3; shard++) {
+         shards.add(createShard());
+      }
+      repository = new ShardedJenaRepository(wapServerConfig, rdfBackend, shards);
+      dataBases = repository.getShardDataBases();
+   }
+
+   /**
+    * Make sure no transaction is left behind for other tests running in this thread.
+    */
+   @AfterEach
+   final void tearDown() {
+      assertNull(TransactionContext.current(), "Context should be closed after the transaction");
+      for (Dataset dataBase : dataBases) {
+         assertFalse(dataBase.isInTransaction(), "Transaction should be ended");
+      }
+   }
+
+   /**
+    * Test the WapObjects are routed by their top level container.
+    */
+   @Test
+   final void testGetShardOf() {
+      assertEquals(0, repository.getShardOf(ROOT));
+      assertEquals(0, repository.getShardOf(ROOT + "anno"));
+      assertEquals(0, repository.getShardOf("http://www.example.org/other/"));
+      assertEquals(1, repository.getShardOf(ROOT + "alpha/"));
+      assertEquals(1, repository.getShardOf(ROOT + "alpha2/sub/anno"));
+      assertEquals(2, repository.getShardOf(ROOT + "alphabet/anno"));
+      int shard = repository.getShardOf(ROOT + "container17/");
+      assertTrue(shard >= 0 && shard < 3);
+      assertEquals(shard, repository.getShardOf(ROOT + "container17/anno"));
+   }
+
+   /**
+    * Test adding buckets to the jump consistent hash only moves keys to the new bucket.
+    */
+   @Test
+   final void testJumpConsistentHash() {
+      for (long key = 0; key < 1000; key++) {
+         assertEquals(0, ShardedJenaRepository.jumpConsistentHash(key, 1));
+         int before = ShardedJenaRepository.jumpConsistentHash(key * 31, 3);
+         int after = ShardedJenaRepository.jumpConsistentHash(key * 31, 4);
+         assertTrue(after == before || after == 3, "Key moved between old buckets");
+      }
+   }
+
+   /**
+    * Test the layout of the shards is stored on first use and a different one is refused.
+    */
+   @Test
+   final void testShardLayout() {
+      JenaRepository first = createShard();
+      repository.checkShardLayout(first, 3);
+      repository.checkShardLayout(first, 3);
+      assertThrows(IllegalStateException.class, () -> repository.checkShardLayout(first, 4));
+      Mockito.when(wapServerConfig.getShardPrefixes()).thenReturn("alpha=2, alphabet=2");
+      assertThrows(IllegalStateException.class, () -> repository.checkShardLayout(first, 3));
+      // Only the assignment counts, not how the prefixes are written
+      Mockito.when(wapServerConfig.getShardPrefixes()).thenReturn("zero=0,alphabet=2 ,alpha=1");
+      repository.checkShardLayout(first, 3);
+      // Containers written without shards all live in the first one
+      JenaRepository unsharded = createShard();
+      String seqIri = Container.toContainerSeqIriString(ROOT);
+      unsharded.writeRdfTransaction(ds -> unsharded.addElementToRdfSeq(ROOT, seqIri, ROOT + "old/"));
+      assertThrows(IllegalStateException.class, () -> repository.checkShardLayout(unsharded, 3));
+      Mockito.when(wapServerConfig.getShardPrefixes()).thenReturn("");
+      repository.checkShardLayout(unsharded, 1);
+      assertThrows(IllegalStateException.class, () -> repository.checkShardLayout(unsharded, 3));
+      assertFalse(first.getDataBase().isInTransaction());
+      assertFalse(unsharded.getDataBase().isInTransaction());
+   }
+
+   /**
+    * Test the named graphs are written to their shard and read from all of them.
+    */
+   @Test
+   final void testWriteToShard() {
+      IRI alpha = createIri(ROOT + "alpha/anno");
+      IRI alphabet = createIri(ROOT + "alphabet/anno");
+      repository.writeRdfTransaction(ds -> {
+         ds.add(alpha, alpha, alpha, alpha);
+         ds.add(alphabet, alphabet, alphabet, alphabet);
+      });
+      assertTrue(containsGraph(1, alpha));
+      assertFalse(containsGraph(2, alpha));
+      assertTrue(containsGraph(2, alphabet));
+      long[] count = new long[1];
+      repository.readRdfTransaction(ds -> {
+         count[0] = ds.stream(null, null, null, alpha).count() + ds.stream(null, null, null, alphabet).count();
+         assertTrue(ds.contains(Optional.of(alpha), alpha, alpha, alpha));
+         // Read from both shards, in the order requested
+         assertEquals(List.of(alphabet.getIRIString(), alpha.getIRIString()), new ArrayList<String>(
+               repository.getWapObjects(List.of(alphabet.getIRIString(), alpha.getIRIString())).keySet()));
+      });
+      assertEquals(2, count[0]);
+   }
+
+   /**
+    * Test the listing of the root container is merged from all shards.
+    */
+   @Test
+   final void testRootContainerListing() {
+      String seqIri = Container.toContainerSeqIriString(ROOT);
+      List<String> containers = List.of(ROOT + "alphabet/", ROOT + "alpha/", ROOT + "zero/");
+      for (String container : containers) {
+         repository.writeRdfTransaction(ds -> repository.addElementToRdfSeq(ROOT, seqIri, container));
+      }
+      repository.readRdfTransaction(ds -> {
+         assertEquals(3, repository.countElementsInSeq(ROOT, seqIri));
+         List<String> all = repository.getAllObjectIrisOfSeq(ROOT, seqIri);
+         assertEquals(3, all.size());
+         assertTrue(all.containsAll(containers));
+         assertEquals(all.subList(1, 3), repository.getRangeOfObjectIrisFromSeq(ROOT, seqIri, 2, 3));
+         org.apache.commons.rdf.api.Dataset root = repository.getWapObject(ROOT);
+         for (String container : containers) {
+            assertTrue(root.getGraph().contains(createIri(seqIri), null, createIri(container)));
+         }
+      });
+      for (Dataset dataBase : dataBases) {
+         assertEquals(1, (int) Txn.calculateRead(dataBase, () -> dataBase.getNamedModel(ROOT).getSeq(seqIri).size()));
+      }
+   }
+
+   /**
+    * Test a promotable transaction checks and writes in the shard.
+    */
+   @Test
+   final void testPromotable() {
+      IRI alpha = createIri(ROOT + "alpha/anno");
+      repository.promotableRdfTransaction(ds -> {
+         assertFalse(ds.contains(Optional.of(alpha), null, null, null));
+      }, ds -> {
+         ds.add(alpha, alpha, alpha, alpha);
+      });
+      assertTrue(containsGraph(1, alpha));
+   }
+
+   /**
+    * Test writes to different shards run in parallel.
+    */
+   @Test
+   final void testParallelWrites() throws InterruptedException {
+      IRI alpha = createIri(ROOT + "alpha/anno");
+      IRI alphabet = createIri(ROOT + "alphabet/anno");
+      CountDownLatch entered = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      Thread writer = holdShard(alpha, entered, release);
+      assertTrue(entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      // Would wait for the writer if the shards shared a lock
+      assertTimeoutPreemptively(Duration.ofSeconds(TIMEOUT_SECONDS),
+            () -> repository.writeRdfTransaction(ds -> ds.add(alphabet, alphabet, alphabet, alphabet)));
+      assertTrue(containsGraph(2, alphabet));
+      assertFalse(containsGraph(1, alpha));
+      release.countDown();
+      writer.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      assertTrue(containsGraph(1, alpha));
+   }
+
+   /**
+    * Test a transaction needing a lower shard than one it holds is executed again instead of deadlocking.
+    */
+   @Test
+   final void testRetryOnConflict() throws InterruptedException {
+      IRI alpha = createIri(ROOT + "alpha/anno");
+      IRI alphabet = createIri(ROOT + "alphabet/anno");
+      CountDownLatch entered = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      Thread holder = holdShard(alpha, entered, release);
+      assertTrue(entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      AtomicInteger attempts = new AtomicInteger();
+      IRI second = createIri(ROOT + "alpha/second");
+      Thread writer = new Thread(() -> repository.writeRdfTransaction(ds -> {
+         attempts.incrementAndGet();
+         ds.add(alphabet, alphabet, alphabet, alphabet);
+         ds.add(second, second, second, second);
+      }));
+      writer.start();
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (writer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+         Thread.sleep(10);
+      }
+      assertEquals(Thread.State.WAITING, writer.getState(), "Should wait for the lock of the lower shard");
+      assertFalse(containsGraph(2, alphabet), "The first attempt should have been aborted");
+      release.countDown();
+      holder.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      writer.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      assertFalse(writer.isAlive());
+      assertEquals(2, attempts.get());
+      assertTrue(containsGraph(1, alpha));
+      assertTrue(containsGraph(1, second));
+      assertTrue(containsGraph(2, alphabet));
+   }
+
+   /**
+    * Starts a thread writing to the shard of the graph, which keeps the transaction open until released.
+    */
+   private Thread holdShard(IRI graph, CountDownLatch entered, CountDownLatch release) {
+      Thread thread = new Thread(() -> repository.writeRdfTransaction(ds -> {
+         ds.add(graph, graph, graph, graph);
+         entered.countDown();
+         try {
+            release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }));
+      thread.start();
+      return thread;
+   }
+
+   private JenaRepository createShard() {
+      JenaDataBase dataBase = new JenaDataBase();
+      dataBase.init(null, ROOT);
+      return new JenaRepository(wapServerConfig, rdfBackend, dataBase.getDataBase());
+   }
+
+   private boolean containsGraph(int shard, IRI graph) {
+      Dataset dataBase = dataBases.get(shard);
+      return Txn.calculateRead(dataBase, () -> dataBase.containsNamedModel(graph.getIRIString()));
+   }
+
+   private IRI createIri(String iri) {
+      return rdfBackend.getRdf().createIRI(iri);
+   }
+}
@@ -1,6 +1,7 @@
 package edu.kit.scc.dem.wapsrv.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -105,12 +106,12 @@ class AbstractWapServiceTest{
     when(wapObjectRepository[0].getRdf()).thenReturn(simpleRDF);
     when(wapObjectRepository[0].getTransactionDataset()).thenReturn(dataset);
     when(wapObjectRepository[0].getWapObject(ROOT_IRI)).thenReturn(dataset);
-    when(modelFactoryMock.createContainer(any(Dataset.class), any(boolean.class), any(boolean.class)))
+    when(modelFactoryMock.createContainer(any(Dataset.class), any(boolean.class), any(boolean.class), anyInt()))
             .thenReturn(mock(Container.class));
     when(wapServerConfigMock.getPageSize()).thenReturn(10);
     Page pageMock = mock(Page.class);
-    when(modelFactoryMock.createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), any(boolean.class), any(boolean.class),
-            any(int.class), any(String.class), eq("label"))).thenReturn(pageMock);
+    when(modelFactoryMock.createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), anyInt(), any(boolean.class),
+            any(boolean.class), any(int.class), any(String.class), eq("label"))).thenReturn(pageMock);
     when(pageMock.getContainerIri()).thenReturn(ROOT_IRI);
     Dataset pageDataset = simpleRDF.createDataset();
     pageDataset.getGraph().add(root, WapVocab.deleted, WapVocab.deleted);
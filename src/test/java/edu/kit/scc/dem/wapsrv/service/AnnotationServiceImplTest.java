@@ -1,6 +1,53 @@
 package edu.kit.scc.dem.wapsrv.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import io.specto.hoverfly.junit5.HoverflyExtension;
+import io.specto.hoverfly.junit5.api.HoverflySimulate;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import edu.kit.scc.dem.wapsrv.app.EtagFactory;
+import edu.kit.scc.dem.wapsrv.app.EtagFactoryMock;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.model.Annotation;
+import edu.kit.scc.dem.wapsrv.model.AnnotationList;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfModelFactory;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.LdpVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+import edu.kit.scc.dem.wapsrv.model.validators.JsonLdValidator;
+import edu.kit.scc.dem.wapsrv.model.validators.Validator;
+import edu.kit.scc.dem.wapsrv.model.validators.ValidatorRegistry;
+import edu.kit.scc.dem.wapsrv.repository.ResourceStatusIndex;
+import edu.kit.scc.dem.wapsrv.repository.TransactionContext;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaDataBase;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRdfBackend;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRepository;
+import edu.kit.scc.dem.wapsrv.testscommon.TestDataStore;
 
 /**
  * Tests the class AnnotationServiceImpl
@@ -12,7 +59,33 @@ import org.junit.jupiter.api.Test;
  * @author  Timo Schmidt
  * @version 1.1
  */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {AnnotationServiceImpl.class, JenaRepository.class, JenaDataBase.class, JenaRdfBackend.class,
+      RdfModelFactory.class, EtagFactoryMock.class, JsonLdProfileRegistry.class, ValidatorRegistry.class,
+      WapServerConfig.class, JsonLdValidator.class, Validator.class})
+@ExtendWith(HoverflyExtension.class)
+@HoverflySimulate(source = @HoverflySimulate.Source(value = "w3c_simulation.json", type = HoverflySimulate.SourceType.DEFAULT_PATH))
+@ActiveProfiles("test")
 class AnnotationServiceImplTest {
+   private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+   @Autowired
+   private AnnotationService annotationService;
+   @Autowired
+   private JenaRepository repository;
+   @Autowired
+   private WapServerConfig wapServerConfig;
+   @Autowired
+   private EtagFactory etagFactoryMock;
+
+   /**
+    * Generate a new ETag on every call, the mock is shared with the other tests.
+    */
+   @BeforeEach
+   final void setupEtags() {
+      Mockito.reset(etagFactoryMock);
+      when(etagFactoryMock.generateEtag()).thenAnswer(invocation -> UUID.randomUUID().toString());
+   }
+
    /**
     * Test get annotation.
     */
@@ -52,4 +125,100 @@ class AnnotationServiceImplTest {
    final void testAddAnnotation() {
       // DOTEST write the test for this method
    }
+
+   /**
+    * Test posting several annotations appends them to the annotation seq in the order of the request, after the
+    * annotations already in the container, and maintains the member count of the seq.
+    */
+   @Test
+   final void testPostAnnotationsInOrder() {
+      String containerIri = createContainer();
+      List<String> first = iris(annotationService.postAnnotation(containerIri, annotations(3), Format.JSON_LD));
+      List<String> second = iris(annotationService.postAnnotation(containerIri, annotations(2), Format.JSON_LD));
+      List<String> expected = new ArrayList<String>(first);
+      expected.addAll(second);
+      assertEquals(5, expected.stream().distinct().count());
+      String seqIri = Container.toAnnotationSeqIriString(containerIri);
+      repository.readRdfTransaction(ds -> {
+         assertEquals(expected, repository.getAllObjectIrisOfSeq(containerIri, seqIri));
+         Graph graph = ds.getGraph(repository.getRdf().createIRI(containerIri)).get();
+         IRI seq = repository.getRdf().createIRI(seqIri);
+         for (int position = 1; position <= expected.size(); position++) {
+            IRI member = repository.getRdf().createIRI(RDF_NS + "_" + position);
+            List<String> members = graph.stream(seq, member, null).map(triple -> ((IRI) triple.getObject())
+                  .getIRIString()).collect(Collectors.toList());
+            assertEquals(List.of(expected.get(position - 1)), members, "Member at position " + position);
+         }
+         assertEquals(Optional.of("5"), graph.stream(seq, WapVocab.memberCount, null).map(Triple::getObject)
+               .map(object -> ((Literal) object).getLexicalForm()).findFirst());
+         assertEquals(5, repository.countElementsInSeq(containerIri, seqIri));
+      });
+      for (String iri : expected) {
+         assertEquals(ResourceStatusIndex.Status.ACTIVE, repository.getResourceStatusIndex().get(iri));
+      }
+   }
+
+   /**
+    * Test a failure while adding one annotation of a batch rolls back the whole batch, none of the annotations is
+    * written and neither the seq nor its member count change.
+    */
+   @Test
+   final void testPostAnnotationsRollback() {
+      String containerIri = createContainer();
+      List<String> existing = iris(annotationService.postAnnotation(containerIri, annotations(1), Format.JSON_LD));
+      // The new ETag of the container and that of the first annotation, the second one fails
+      when(etagFactoryMock.generateEtag()).thenReturn("container etag", "first etag")
+            .thenThrow(new IllegalStateException("etag"));
+      String request = annotations(3);
+      assertThrows(IllegalStateException.class,
+            () -> annotationService.postAnnotation(containerIri, request, Format.JSON_LD));
+      String seqIri = Container.toAnnotationSeqIriString(containerIri);
+      repository.readRdfTransaction(ds -> {
+         assertEquals(existing, repository.getAllObjectIrisOfSeq(containerIri, seqIri));
+         Graph graph = ds.getGraph(repository.getRdf().createIRI(containerIri)).get();
+         IRI seq = repository.getRdf().createIRI(seqIri);
+         assertEquals(Optional.of("1"), graph.stream(seq, WapVocab.memberCount, null).map(Triple::getObject)
+               .map(object -> ((Literal) object).getLexicalForm()).findFirst());
+         assertFalse(ds.contains(null, null, WapVocab.etag, repository.getRdf().createLiteral("first etag")),
+               "The first annotation of the batch must not be written");
+         assertFalse(graph.contains(null, WapVocab.etag, repository.getRdf().createLiteral("container etag")));
+      });
+   }
+
+   /**
+    * Creates an empty container below the root container.
+    *
+    * @return The IRI of the container
+    */
+   private String createContainer() {
+      String containerIri = wapServerConfig.getRootContainerIri() + UUID.randomUUID() + "/";
+      RDF rdf = repository.getRdf();
+      IRI container = rdf.createIRI(containerIri);
+      repository.writeRdfTransaction(ds -> {
+         ds.add(container, container, RdfVocab.type, LdpVocab.basicContainer);
+         ds.add(container, container, DcTermsVocab.modified,
+               RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), rdf));
+         ds.add(container, container, WapVocab.etag, rdf.createLiteral("container etag"));
+         TransactionContext.current().setStatus(containerIri, ResourceStatusIndex.Status.ACTIVE);
+      });
+      return containerIri;
+   }
+
+   /**
+    * Builds a JSON-LD array of example annotations.
+    *
+    * @param size The number of annotations
+    * @return The array
+    */
+   private static String annotations(int size) {
+      List<String> annotations = new ArrayList<String>();
+      for (int n = 0; n < size; n++) {
+         annotations.add(TestDataStore.getAnnotation("example" + (n + 1) + ".jsonld"));
+      }
+      return "[\n" + String.join(",\n", annotations) + "\n]";
+   }
+
+   private static List<String> iris(AnnotationList list) {
+      return list.getAnnotations().stream().map(Annotation::getIriString).collect(Collectors.toList());
+   }
 }
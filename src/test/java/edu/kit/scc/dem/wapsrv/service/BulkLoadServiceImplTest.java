@@ -0,0 +1,130 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import io.specto.hoverfly.junit5.HoverflyExtension;
+import io.specto.hoverfly.junit5.api.HoverflySimulate;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import edu.kit.scc.dem.wapsrv.app.EtagFactory;
+import edu.kit.scc.dem.wapsrv.app.EtagFactoryMock;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfigMock;
+import edu.kit.scc.dem.wapsrv.exceptions.NotAnAnnotationException;
+import edu.kit.scc.dem.wapsrv.model.Annotation;
+import edu.kit.scc.dem.wapsrv.model.AnnotationList;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.WapObject;
+import edu.kit.scc.dem.wapsrv.model.formats.Format;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.LdpVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+import edu.kit.scc.dem.wapsrv.model.validators.JsonLdValidator;
+import edu.kit.scc.dem.wapsrv.model.validators.Validator;
+import edu.kit.scc.dem.wapsrv.model.validators.ValidatorRegistry;
+import edu.kit.scc.dem.wapsrv.repository.CollectedRepository;
+import edu.kit.scc.dem.wapsrv.repository.RepositoryMock;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRdfBackend;
+import edu.kit.scc.dem.wapsrv.testscommon.ModelFactoryMock;
+
+/**
+ * Tests the class BulkLoadServiceImpl
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {BulkLoadServiceImpl.class, AnnotationServiceMock.class, RepositoryMock.class,
+      ModelFactoryMock.class, EtagFactoryMock.class, JsonLdProfileRegistry.class, ValidatorRegistry.class,
+      WapServerConfigMock.class, JsonLdValidator.class, Validator.class, JenaRdfBackend.class})
+@ExtendWith(HoverflyExtension.class)
+@HoverflySimulate(source = @HoverflySimulate.Source(value = "w3c_simulation.json", type = HoverflySimulate.SourceType.DEFAULT_PATH))
+@Configuration
+@ActiveProfiles("test")
+class BulkLoadServiceImplTest {
+   private static final String CONTAINER_IRI = "http://www.example.org/wap/container1/";
+   @Autowired
+   private BulkLoadService bulkLoadService;
+   @Autowired
+   private AnnotationService annotationServiceMock;
+   @Autowired
+   private CollectedRepository wapObjectRepositoryMock;
+   @Autowired
+   private EtagFactory etagFactoryMock;
+   private final SimpleRDF simpleRDF = new SimpleRDF();
+
+   /**
+    * Setup test.
+    */
+   @BeforeEach
+   void setupTest() {
+      Dataset dataset = simpleRDF.createDataset();
+      IRI container = simpleRDF.createIRI(CONTAINER_IRI);
+      dataset.add(container, container, RdfVocab.type, LdpVocab.basicContainer);
+      dataset.add(container, container, DcTermsVocab.modified,
+            RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), simpleRDF));
+      dataset.add(container, container, WapVocab.etag, simpleRDF.createLiteral("test etag"));
+      when(wapObjectRepositoryMock.getRdf()).thenReturn(simpleRDF);
+      when(wapObjectRepositoryMock.getTransactionDataset()).thenReturn(dataset);
+      when(etagFactoryMock.generateEtag()).thenReturn("new etag");
+   }
+
+   private void prepareAnnotation(String rawAnnotation, String iri) {
+      Annotation annotation = mock(Annotation.class);
+      Dataset annotationDataset = simpleRDF.createDataset();
+      when(annotation.getIri()).thenReturn(simpleRDF.createIRI(iri));
+      when(annotation.getIriString()).thenReturn(iri);
+      when(annotation.getDataset()).thenReturn(annotationDataset);
+      AnnotationList list = mock(AnnotationList.class);
+      when(list.getAnnotations()).thenReturn(List.of(annotation));
+      when(annotationServiceMock.prepareAnnotations(CONTAINER_IRI, rawAnnotation, Format.JSON_LD)).thenReturn(list);
+   }
+
+   /**
+    * Tests loading an NDJSON file, skipping invalid annotations and keeping the order.
+    *
+    * @throws IOException
+    *                     if the test file cannot be written
+    */
+   @SuppressWarnings("unchecked")
+   @Test
+   final void testLoadAnnotations() throws IOException {
+      File file = Files.createTempFile("annotations", ".ndjson").toFile();
+      file.deleteOnExit();
+      Files.write(file.toPath(), List.of("{\"a\":1}", "", "{\"invalid\":1}", "{\"b\":2}"), StandardCharsets.UTF_8);
+      prepareAnnotation("{\"a\":1}", CONTAINER_IRI + "a");
+      prepareAnnotation("{\"b\":2}", CONTAINER_IRI + "b");
+      when(annotationServiceMock.prepareAnnotations(CONTAINER_IRI, "{\"invalid\":1}", Format.JSON_LD))
+            .thenThrow(new NotAnAnnotationException());
+      List<String> written = new ArrayList<String>();
+      when(wapObjectRepositoryMock.bulkWriteObjectsToDatabase(any())).thenAnswer(invocation -> {
+         Iterator<? extends WapObject> wapObjects = (Iterator<? extends WapObject>) invocation.getArgument(0);
+         wapObjects.forEachRemaining(wapObject -> written.add(wapObject.getIriString()));
+         return (long) written.size();
+      });
+      assertEquals(2, bulkLoadService.loadAnnotations(CONTAINER_IRI, List.of(file), 4));
+      assertEquals(List.of(CONTAINER_IRI + "a", CONTAINER_IRI + "b"), written);
+      String seqIri = Container.toAnnotationSeqIriString(CONTAINER_IRI);
+      verify(wapObjectRepositoryMock).addElementsToRdfSeq(CONTAINER_IRI, seqIri,
+            List.of(CONTAINER_IRI + "a", CONTAINER_IRI + "b"));
+   }
+}
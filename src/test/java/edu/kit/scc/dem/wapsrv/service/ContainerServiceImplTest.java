@@ -1,8 +1,13 @@
 package edu.kit.scc.dem.wapsrv.service;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -11,28 +16,41 @@ import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import io.specto.hoverfly.junit5.HoverflyExtension;
 import io.specto.hoverfly.junit5.api.HoverflySimulate;
 import org.apache.commons.rdf.api.Dataset;
 import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Literal;
 import org.apache.commons.rdf.simple.SimpleRDF;
+import org.apache.commons.rdf.simple.Types;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import edu.kit.scc.dem.wapsrv.app.EtagFactory;
 import edu.kit.scc.dem.wapsrv.app.EtagFactoryMock;
 import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
 import edu.kit.scc.dem.wapsrv.app.WapServerConfigMock;
 import edu.kit.scc.dem.wapsrv.exceptions.ContainerNotEmptyException;
+import edu.kit.scc.dem.wapsrv.exceptions.IllegalPageIriException;
 import edu.kit.scc.dem.wapsrv.exceptions.InvalidContainerException;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
 import edu.kit.scc.dem.wapsrv.exceptions.ResourceDeletedException;
 import edu.kit.scc.dem.wapsrv.model.Container;
 import edu.kit.scc.dem.wapsrv.model.ContainerPreference;
@@ -125,6 +143,118 @@ class ContainerServiceImplTest {
       verify(wapObjectRepositoryMock, times(1)).emptySeq(any(), any());
    }
 
+   /**
+    * Tests containers with more annotations than the threshold are marked as deleted right away and their annotations
+    * are deleted in batches in the background.
+    */
+   @Test
+   final void testDeleteContainerInBackground() throws InterruptedException {
+      String seqIri = Container.toAnnotationSeqIriString(ROOT_IRI);
+      when(wapObjectRepositoryMock.countElementsInSeq(ROOT_IRI, Container.toContainerSeqIriString(ROOT_IRI)))
+            .thenReturn(0);
+      when(wapObjectRepositoryMock.countElementsInSeq(ROOT_IRI, seqIri)).thenReturn(2);
+      when(wapObjectRepositoryMock.getAllObjectIrisOfSeq(ROOT_IRI, seqIri)).thenReturn(new ArrayList<String>());
+      when(etagFactoryMock.generateEtag()).thenReturn("test etag");
+      startDeletions();
+      try {
+         // Not above the threshold, deleted within the request
+         assertNull(containerService.deleteContainer(ROOT_IRI, "test etag"));
+         dataset.remove(null, null, WapVocab.deleted, null);
+         when(wapObjectRepositoryMock.countElementsInSeq(ROOT_IRI, seqIri)).thenReturn(3);
+         CountDownLatch release = new CountDownLatch(1);
+         Queue<List<String>> batches = new ConcurrentLinkedQueue<List<String>>();
+         batches.add(List.of(ROOT_IRI + "anno1", ROOT_IRI + "anno2"));
+         batches.add(List.of(ROOT_IRI + "anno3"));
+         when(wapObjectRepositoryMock.getRangeOfObjectIrisFromSeq(ROOT_IRI, seqIri, 1, 2)).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return batches.isEmpty() ? new ArrayList<String>() : batches.poll();
+         });
+         Mockito.clearInvocations(wapObjectRepositoryMock);
+         String location = containerService.deleteContainer(ROOT_IRI, "test etag");
+         assertNotNull(location, "Expected to be answered with 202 and the status location");
+         String id = location.substring(location.lastIndexOf('/') + 1);
+         IRI root = simpleRDF.createIRI(ROOT_IRI);
+         assertTrue(dataset.contains(Optional.of(root), root, WapVocab.deletionPending, simpleRDF.createLiteral(id)));
+         assertTrue(dataset.contains(Optional.of(root), root, WapVocab.deleted, null));
+         ContainerDeletion deletion = containerService.getContainerDeletion(id);
+         assertEquals(ContainerDeletion.State.Running, deletion.getState());
+         assertEquals(3, deletion.getTotal());
+         release.countDown();
+         awaitEnd(deletion);
+         assertEquals(ContainerDeletion.State.Finished, deletion.getState());
+         assertEquals(3, deletion.getDeleted());
+         assertFalse(dataset.contains(null, null, WapVocab.deletionPending, null));
+         IRI anno = simpleRDF.createIRI(ROOT_IRI + "anno3");
+         assertTrue(dataset.contains(Optional.of(anno), anno, WapVocab.deleted, null));
+         verify(wapObjectRepositoryMock, times(3)).removeElementFromRdfSeq(eq(ROOT_IRI), eq(seqIri), any());
+         verify(wapObjectRepositoryMock, times(3)).getRangeOfObjectIrisFromSeq(ROOT_IRI, seqIri, 1, 2);
+         verify(wapObjectRepositoryMock).emptySeq(ROOT_IRI, seqIri);
+         assertThrows(NotExistentException.class, () -> containerService.getContainerDeletion("unknown"));
+      } finally {
+         stopDeletions();
+      }
+   }
+
+   /**
+    * Tests a deletion interrupted by a restart is resumed under its id, and the container cannot be recreated via slug
+    * until its annotations are gone.
+    */
+   @Test
+   final void testResumeDeletion() throws InterruptedException {
+      String containerIri = ROOT_IRI + "gone/";
+      String seqIri = Container.toAnnotationSeqIriString(containerIri);
+      IRI container = simpleRDF.createIRI(containerIri);
+      dataset.add(container, container, RdfVocab.type, LdpVocab.basicContainer);
+      dataset.add(container, container, WapVocab.deleted, simpleRDF.createLiteral("true", Types.XSD_BOOLEAN));
+      dataset.add(container, container, WapVocab.deletionPending, simpleRDF.createLiteral("resumed"));
+      assertThrows(ResourceDeletedException.class, () -> {
+         containerService.postContainer(ROOT_IRI, "gone", "{}", Format.JSON_LD);
+      });
+      when(wapObjectRepositoryMock.countElementsInSeq(containerIri, seqIri)).thenReturn(1);
+      Queue<List<String>> batches = new ConcurrentLinkedQueue<List<String>>();
+      batches.add(List.of(containerIri + "anno1"));
+      when(wapObjectRepositoryMock.getRangeOfObjectIrisFromSeq(containerIri, seqIri, 1, 2))
+            .thenAnswer(invocation -> batches.isEmpty() ? new ArrayList<String>() : batches.poll());
+      startDeletions();
+      try {
+         ContainerDeletion deletion = containerService.getContainerDeletion("resumed");
+         assertEquals(containerIri, deletion.getContainerIri());
+         assertEquals(1, deletion.getTotal());
+         awaitEnd(deletion);
+         assertEquals(ContainerDeletion.State.Finished, deletion.getState());
+         assertFalse(dataset.contains(Optional.of(container), container, WapVocab.deletionPending, null));
+         assertTrue(dataset.contains(Optional.of(container), container, WapVocab.deleted, null));
+      } finally {
+         stopDeletions();
+      }
+   }
+
+   /**
+    * Enables the background deletions as done at startup, which resumes the pending ones.
+    */
+   private void startDeletions() {
+      when(wapServerConfigMock.getAsyncContainerDeletionThreshold()).thenReturn(2);
+      when(wapServerConfigMock.getContainerDeletionBatchSize()).thenReturn(2);
+      when(wapServerConfigMock.getContainerDeletionPauseMillis()).thenReturn(0);
+      ReflectionTestUtils.invokeMethod(containerService, "init");
+   }
+
+   /**
+    * Disables the background deletions again for the other tests sharing the context.
+    */
+   private void stopDeletions() {
+      ReflectionTestUtils.invokeMethod(containerService, "shutdown");
+      ReflectionTestUtils.setField(containerService, "deletionExecutor", null);
+      when(wapServerConfigMock.getAsyncContainerDeletionThreshold()).thenReturn(0);
+   }
+
+   private static void awaitEnd(ContainerDeletion deletion) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (deletion.getState() == ContainerDeletion.State.Running && System.currentTimeMillis() < deadline) {
+         Thread.sleep(10);
+      }
+   }
+
    /**
     * Setup test.
     */
@@ -141,12 +271,13 @@ class ContainerServiceImplTest {
       when(wapObjectRepositoryMock.getRdf()).thenReturn(simpleRDF);
       when(wapObjectRepositoryMock.getTransactionDataset()).thenReturn(dataset);
       when(wapObjectRepositoryMock.getWapObject(ROOT_IRI)).thenReturn(dataset);
-      when(modelFactoryMock.createContainer(any(Dataset.class), any(boolean.class), any(boolean.class)))
+      when(wapObjectRepositoryMock.getWapObjectView(ROOT_IRI)).thenReturn(dataset);
+      when(modelFactoryMock.createContainer(any(Dataset.class), any(boolean.class), any(boolean.class), anyInt()))
             .thenReturn(mock(Container.class));
       when(wapServerConfigMock.getPageSize()).thenReturn(10);
       Page pageMock = mock(Page.class);
-      when(modelFactoryMock.createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), any(boolean.class), any(boolean.class),
-            any(int.class), any(String.class), eq("label"))).thenReturn(pageMock);
+      when(modelFactoryMock.createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), anyInt(), any(boolean.class),
+            any(boolean.class), any(int.class), any(String.class), eq("label"))).thenReturn(pageMock);
       when(pageMock.getContainerIri()).thenReturn(ROOT_IRI);
       Dataset pageDataset = simpleRDF.createDataset();
       pageDataset.getGraph().add(root, WapVocab.deleted, WapVocab.deleted);
@@ -164,17 +295,60 @@ class ContainerServiceImplTest {
       String paramContainerIri = ROOT_IRI;
       Set<Integer> paramPreferences = new HashSet<Integer>();
       paramPreferences.add(ContainerPreference.PREFER_MINIMAL_CONTAINER);
-      containerService.getContainer(paramContainerIri, paramPreferences);
-      verify(modelFactoryMock).createContainer(any(Dataset.class), eq(true), any(boolean.class));
+      containerService.getContainer(paramContainerIri, paramPreferences, 0);
+      verify(modelFactoryMock).createContainer(any(Dataset.class), eq(true), any(boolean.class), eq(10));
       when(wapObjectRepositoryMock.countElementsInSeq(any(), any())).thenReturn(5);
       // test get root container not minimal
       Set<Integer> paramPrefNotMinimal = new HashSet<Integer>();
-      containerService.getContainer(paramContainerIri, paramPrefNotMinimal);
-      verify(modelFactoryMock).createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), eq(false), any(boolean.class), eq(5),
-            any(String.class), eq("label"));
+      containerService.getContainer(paramContainerIri, paramPrefNotMinimal, 0);
+      verify(modelFactoryMock).createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), eq(10), eq(false),
+            any(boolean.class), eq(5), any(String.class), eq("label"));
       when(wapObjectRepositoryMock.countElementsInSeq(any(), any())).thenReturn(0);
       // test get root container not minimal
-      containerService.getContainer(paramContainerIri, paramPrefNotMinimal);
+      containerService.getContainer(paramContainerIri, paramPrefNotMinimal, 0);
+   }
+
+   /**
+    * Tests the container is read without the members of its annotation sequence, taking the number of annotations
+    * from the counter.
+    */
+   @Test
+   final void testGetContainerWithoutSeqMembers() {
+      IRI root = simpleRDF.createIRI(ROOT_IRI);
+      IRI annotationSeq = simpleRDF.createIRI(ROOT_IRI + "#annotations");
+      IRI containerSeq = simpleRDF.createIRI(ROOT_IRI + "#containers");
+      Dataset view = simpleRDF.createDataset();
+      view.getGraph().add(root, RdfVocab.type, LdpVocab.basicContainer);
+      view.getGraph().add(root, RdfSchemaVocab.label, simpleRDF.createLiteral("label"));
+      view.getGraph().add(root, WapVocab.etag, simpleRDF.createLiteral("test etag"));
+      view.getGraph().add(annotationSeq, RdfVocab.type, RdfVocab.seq);
+      view.getGraph().add(annotationSeq, simpleRDF.createIRI("http://www.w3.org/1999/02/22-rdf-syntax-ns#_1"),
+            simpleRDF.createIRI(ROOT_IRI + "anno1"));
+      view.getGraph().add(containerSeq, RdfVocab.type, RdfVocab.seq);
+      view.getGraph().add(containerSeq, simpleRDF.createIRI("http://www.w3.org/1999/02/22-rdf-syntax-ns#_1"),
+            simpleRDF.createIRI(ROOT_IRI + "sub/"));
+      when(wapObjectRepositoryMock.getWapObjectView(ROOT_IRI)).thenReturn(view);
+      when(wapObjectRepositoryMock.countElementsInSeq(ROOT_IRI, ROOT_IRI + "#annotations")).thenReturn(7);
+      Mockito.clearInvocations(modelFactoryMock);
+      Set<Integer> minimal = new HashSet<Integer>();
+      minimal.add(ContainerPreference.PREFER_MINIMAL_CONTAINER);
+      containerService.getContainer(ROOT_IRI, minimal, 0);
+      ArgumentCaptor<Dataset> captor = ArgumentCaptor.forClass(Dataset.class);
+      verify(modelFactoryMock).createContainer(captor.capture(), eq(true), any(boolean.class), eq(10));
+      Dataset container = captor.getValue();
+      assertTrue(container.getGraph().contains(root, RdfSchemaVocab.label, simpleRDF.createLiteral("label")));
+      assertTrue(container.getGraph().contains(root, WapVocab.etag, simpleRDF.createLiteral("test etag")));
+      assertEquals(1, container.getGraph().stream(annotationSeq, null, null).count());
+      assertEquals("7", ((Literal) container.getGraph().stream(annotationSeq, WapVocab.memberCount, null).findFirst()
+            .get().getObject()).getLexicalForm());
+      assertFalse(container.getGraph().contains(containerSeq, null, null));
+      // The subcontainers are only read if they are listed
+      Mockito.clearInvocations(modelFactoryMock);
+      containerService.getContainer(ROOT_IRI, new HashSet<Integer>(), 0);
+      verify(modelFactoryMock).createContainer(captor.capture(), eq(false), any(boolean.class), eq(10));
+      container = captor.getValue();
+      assertTrue(container.getGraph().contains(containerSeq, null, simpleRDF.createIRI(ROOT_IRI + "sub/")));
+      assertFalse(container.getGraph().contains(annotationSeq, null, simpleRDF.createIRI(ROOT_IRI + "anno1")));
    }
 
    /**
@@ -215,7 +389,54 @@ class ContainerServiceImplTest {
       iriList.add(ROOT_IRI);
       when(wapObjectRepositoryMock.getRangeOfObjectIrisFromSeq(ROOT_IRI, Container.toAnnotationSeqIriString(ROOT_IRI),
             1, 5)).thenReturn(iriList);
-      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, 0);
-      containerService.getPage(ROOT_IRI, 0, 0);
+      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, 0, 0);
+      containerService.getPage(ROOT_IRI, 0, 0, 0);
+   }
+
+   /**
+    * Tests getting a page with a page size chosen by the client.
+    */
+   @Test
+   final void testGetPageWithPageSize() {
+      Mockito.clearInvocations(modelFactoryMock);
+      when(wapObjectRepositoryMock.countElementsInSeq(any(), any())).thenReturn(5);
+      when(wapServerConfigMock.getMaxPageSize()).thenReturn(50);
+      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, 0, 20);
+      verify(modelFactoryMock).createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), eq(20), eq(true),
+            any(boolean.class), eq(5), any(String.class), eq("label"));
+      // Larger sizes are reduced to the max. page size
+      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, 0, 500);
+      verify(modelFactoryMock).createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), eq(50), eq(true),
+            any(boolean.class), eq(5), any(String.class), eq("label"));
+      // A max. page size below the page size does not reduce it
+      when(wapServerConfigMock.getMaxPageSize()).thenReturn(0);
+      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, 0, 500);
+      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, 0, 0);
+      verify(modelFactoryMock, times(2)).createPage(any(Dataset.class), eq(ROOT_IRI), eq(0), eq(10), eq(true),
+            any(boolean.class), eq(5), any(String.class), eq("label"));
+   }
+
+   /**
+    * Tests getting a page by cursor.
+    */
+   @Test
+   final void testGetPageByCursor() {
+      when(wapObjectRepositoryMock.countElementsInSeq(any(), any())).thenReturn(30);
+      Map<Long, String> members = new LinkedHashMap<Long, String>();
+      for (long i = 8; i <= 18; i++) {
+         members.put(i, ROOT_IRI + "anno" + i);
+      }
+      when(wapObjectRepositoryMock.getObjectIrisFromSeqAfter(ROOT_IRI, Container.toAnnotationSeqIriString(ROOT_IRI),
+            7, ROOT_IRI + "anno7", 11)).thenReturn(members);
+      Page pageMock = mock(Page.class);
+      String cursor = new PageCursor(7, ROOT_IRI + "anno7").toString(ROOT_IRI);
+      when(modelFactoryMock.createPage(any(Dataset.class), eq(ROOT_IRI), eq(cursor), eq(10), any(boolean.class),
+            any(int.class), any(String.class), eq("label"))).thenReturn(pageMock);
+      containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, cursor, 0);
+      verify(pageMock, times(10)).addAnnotationIri(any());
+      verify(pageMock).setNextCursor(new PageCursor(17, ROOT_IRI + "anno17").toString(ROOT_IRI));
+      assertThrows(IllegalPageIriException.class, () -> {
+         containerService.getPage(ROOT_IRI, ContainerPreference.PREFER_CONTAINED_IRIS, "not a cursor", 0);
+      });
    }
 }
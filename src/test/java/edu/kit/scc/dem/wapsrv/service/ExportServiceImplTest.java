@@ -0,0 +1,255 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import io.specto.hoverfly.junit5.HoverflyExtension;
+import io.specto.hoverfly.junit5.api.HoverflySimulate;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import edu.kit.scc.dem.wapsrv.app.EtagFactoryMock;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfigMock;
+import edu.kit.scc.dem.wapsrv.exceptions.NotExistentException;
+import edu.kit.scc.dem.wapsrv.model.Annotation;
+import edu.kit.scc.dem.wapsrv.model.Container;
+import edu.kit.scc.dem.wapsrv.model.ModelFactory;
+import edu.kit.scc.dem.wapsrv.model.formats.FormatRegistry;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdFormatter;
+import edu.kit.scc.dem.wapsrv.model.formats.JsonLdProfileRegistry;
+import edu.kit.scc.dem.wapsrv.model.rdf.RdfUtilities;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.DcTermsVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.LdpVocab;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.RdfVocab;
+import edu.kit.scc.dem.wapsrv.model.validators.JsonLdValidator;
+import edu.kit.scc.dem.wapsrv.model.validators.Validator;
+import edu.kit.scc.dem.wapsrv.model.validators.ValidatorRegistry;
+import edu.kit.scc.dem.wapsrv.repository.CollectedRepository;
+import edu.kit.scc.dem.wapsrv.repository.RepositoryMock;
+import edu.kit.scc.dem.wapsrv.repository.TransactionContext;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRdfBackend;
+import edu.kit.scc.dem.wapsrv.service.ExportService.ExportFormat;
+import edu.kit.scc.dem.wapsrv.testscommon.ModelFactoryMock;
+
+/**
+ * Tests the class ExportServiceImpl
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {ExportServiceImpl.class, RepositoryMock.class, ModelFactoryMock.class, EtagFactoryMock.class,
+      JsonLdProfileRegistry.class, ValidatorRegistry.class, WapServerConfigMock.class, JenaRdfBackend.class,
+      JsonLdValidator.class, Validator.class, FormatRegistry.class, JsonLdFormatter.class})
+@ExtendWith(HoverflyExtension.class)
+@HoverflySimulate(source = @HoverflySimulate.Source(value = "w3c_simulation.json", type = HoverflySimulate.SourceType.DEFAULT_PATH))
+@Configuration
+@ActiveProfiles("test")
+class ExportServiceImplTest {
+   private static final String CONTAINER_IRI = "http://www.example.org/wap/container1/";
+   private static final String SUB_CONTAINER_IRI = CONTAINER_IRI + "sub/";
+   private static final IRI HAS_TARGET = new SimpleRDF().createIRI("http://www.w3.org/ns/oa#hasTarget");
+   @Autowired
+   private ExportService exportService;
+   @Autowired
+   private CollectedRepository wapObjectRepositoryMock;
+   @Autowired
+   private ModelFactory modelFactoryMock;
+   private final SimpleRDF simpleRDF = new SimpleRDF();
+
+   /**
+    * Setup test.
+    */
+   @BeforeEach
+   void setupTest() {
+      Dataset dataset = simpleRDF.createDataset();
+      for (String containerIri : List.of(CONTAINER_IRI, SUB_CONTAINER_IRI)) {
+         IRI container = simpleRDF.createIRI(containerIri);
+         dataset.add(container, container, RdfVocab.type, LdpVocab.basicContainer);
+         dataset.add(container, container, DcTermsVocab.modified,
+               RdfUtilities.rdfLiteralFromCalendar(Calendar.getInstance(), simpleRDF));
+      }
+      when(wapObjectRepositoryMock.getRdf()).thenReturn(simpleRDF);
+      when(wapObjectRepositoryMock.getTransactionDataset()).thenReturn(dataset);
+      List<String> annotations = new ArrayList<String>();
+      for (int n = 0; n < 150; n++) {
+         annotations.add(CONTAINER_IRI + "anno" + n);
+      }
+      stubSeq(CONTAINER_IRI, Container.toAnnotationSeqIriString(CONTAINER_IRI), annotations);
+      stubSeq(CONTAINER_IRI, Container.toContainerSeqIriString(CONTAINER_IRI), List.of(SUB_CONTAINER_IRI));
+      stubSeq(SUB_CONTAINER_IRI, Container.toAnnotationSeqIriString(SUB_CONTAINER_IRI),
+            List.of(SUB_CONTAINER_IRI + "anno"));
+      when(wapObjectRepositoryMock.getWapObjects(anyList())).thenAnswer(invocation -> {
+         Map<String, Dataset> objects = new LinkedHashMap<String, Dataset>();
+         for (Object iri : (List<?>) invocation.getArgument(0)) {
+            Dataset annotation = simpleRDF.createDataset();
+            annotation.add(null, simpleRDF.createIRI((String) iri), HAS_TARGET, simpleRDF.createIRI("http://x/t"));
+            objects.put((String) iri, annotation);
+         }
+         return objects;
+      });
+      when(modelFactoryMock.createAnnotation(any(Dataset.class))).thenAnswer(invocation -> {
+         Dataset dataset2 = invocation.getArgument(0);
+         Annotation annotation = mock(Annotation.class);
+         when(annotation.getIri()).thenReturn(dataset2.getGraph().iterate().iterator().next().getSubject());
+         when(annotation.getDataset()).thenReturn(dataset2);
+         return annotation;
+      });
+   }
+
+   /**
+    * Lets the repository return the members of the seq from the given position on, the positions are the indexes.
+    */
+   private void stubSeq(String modelIri, String seqIri, List<String> members) {
+      when(wapObjectRepositoryMock.getObjectIrisFromSeqAfter(eq(modelIri), eq(seqIri), anyLong(), any(),
+            eq(ExportServiceImpl.BATCH_SIZE))).thenAnswer(invocation -> {
+               long after = invocation.getArgument(2);
+               Map<Long, String> range = new LinkedHashMap<Long, String>();
+               for (long n = after + 1; n <= Math.min(members.size(), after + ExportServiceImpl.BATCH_SIZE); n++) {
+                  range.put(n, members.get((int) n - 1));
+               }
+               return range;
+            });
+   }
+
+   /**
+    * Tests exporting the annotations of a container in more than one batch as N-Quads.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testExportNquads() throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(150, exportService.exportContainer(CONTAINER_IRI, false, ExportFormat.NQUADS, out));
+      String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+      assertEquals(150, lines.length);
+      for (int n = 0; n < lines.length; n++) {
+         String iri = "<" + CONTAINER_IRI + "anno" + n + ">";
+         assertTrue(lines[n].startsWith(iri) && lines[n].endsWith(iri + " ."), "Unexpected quad " + lines[n]);
+      }
+   }
+
+   /**
+    * Tests exporting the containers below too.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testExportRecursive() throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(151, exportService.exportContainer(CONTAINER_IRI, true, ExportFormat.RDF_THRIFT, out));
+      out = new ByteArrayOutputStream();
+      assertEquals(151, exportService.exportContainer(CONTAINER_IRI, true, ExportFormat.NQUADS, out));
+      assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("<" + SUB_CONTAINER_IRI + "anno> .\n"));
+   }
+
+   /**
+    * Tests a write runs while a serialized export writes to the stream, as the batches are read in transactions of
+    * their own.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testWriteDuringExport() throws IOException {
+      AtomicBoolean started = new AtomicBoolean();
+      AtomicBoolean written = new AtomicBoolean();
+      AtomicBoolean writtenDuringExport = new AtomicBoolean();
+      OutputStream out = new StreamWriteHook(() -> {
+         if (started.compareAndSet(false, true)) {
+            Thread writer = new Thread(() -> wapObjectRepositoryMock.writeRdfTransaction(ds -> written.set(true)));
+            writer.start();
+            try {
+               writer.join(5000);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+            writtenDuringExport.set(written.get());
+         }
+      });
+      assertEquals(150, exportService.exportContainer(CONTAINER_IRI, false, ExportFormat.NQUADS, out));
+      assertTrue(started.get());
+      assertTrue(writtenDuringExport.get(), "The write has to run while the export writes to the stream");
+   }
+
+   /**
+    * Tests the export reads one snapshot with concurrent reads.
+    *
+    * @throws IOException
+    *                     never
+    */
+   @Test
+   final void testExportSnapshot() throws IOException {
+      when(wapObjectRepositoryMock.getConcurrencyMode()).thenReturn(TransactionRepository.ConcurrencyMode.ConcurrentReads);
+      try {
+         AtomicBoolean outside = new AtomicBoolean();
+         OutputStream out = new StreamWriteHook(() -> {
+            if (TransactionContext.current() == null) {
+               outside.set(true);
+            }
+         });
+         assertEquals(150, exportService.exportContainer(CONTAINER_IRI, false, ExportFormat.NQUADS, out));
+         assertFalse(outside.get(), "The stream has to be written within the read transaction");
+      } finally {
+         when(wapObjectRepositoryMock.getConcurrencyMode()).thenReturn(null);
+      }
+   }
+
+   /**
+    * Runs a hook before every write to the stream.
+    */
+   private static final class StreamWriteHook extends ByteArrayOutputStream {
+      private final Runnable hook;
+
+      private StreamWriteHook(Runnable hook) {
+         this.hook = hook;
+      }
+
+      @Override
+      public synchronized void write(int b) {
+         hook.run();
+         super.write(b);
+      }
+
+      @Override
+      public synchronized void write(byte[] b, int off, int len) {
+         hook.run();
+         super.write(b, off, len);
+      }
+   }
+
+   /**
+    * Tests exporting a container that does not exist.
+    */
+   @Test
+   final void testExportNotExistent() {
+      assertThrows(NotExistentException.class, () -> {
+         exportService.checkExportable(CONTAINER_IRI + "other/");
+      });
+   }
+}
@@ -0,0 +1,26 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import org.mockito.Mockito;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Provides a mock of the export service for the controller tests
+ */
+@Configuration
+@Profile("test")
+public class ExportServiceMock {
+   /**
+    * Gets an Export Service mock object
+    * 
+    * @return An export service mock object
+    */
+   @Bean
+   @Primary
+   public ExportService exportService() {
+      ExportService exportServiceMock = Mockito.mock(ExportService.class);
+      return exportServiceMock;
+   }
+}
@@ -0,0 +1,26 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import org.mockito.Mockito;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Provides a mock of the journal service for the controller tests
+ */
+@Configuration
+@Profile("test")
+public class JournalServiceMock {
+   /**
+    * Gets a Journal Service mock object
+    * 
+    * @return A journal service mock object
+    */
+   @Bean
+   @Primary
+   public JournalService journalService() {
+      JournalService journalServiceMock = Mockito.mock(JournalService.class);
+      return journalServiceMock;
+   }
+}
@@ -0,0 +1,26 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import org.mockito.Mockito;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Provides a mock of the search service for the controller tests
+ */
+@Configuration
+@Profile("test")
+public class SearchServiceMock {
+   /**
+    * Gets a Search Service mock object
+    * 
+    * @return A search service mock object
+    */
+   @Bean
+   @Primary
+   public SearchService searchService() {
+      SearchService searchServiceMock = Mockito.mock(SearchService.class);
+      return searchServiceMock;
+   }
+}
@@ -0,0 +1,26 @@
+package edu.kit.scc.dem.wapsrv.service;
+
+import org.mockito.Mockito;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Provides a mock of the target service for the controller tests
+ */
+@Configuration
+@Profile("test")
+public class TargetServiceMock {
+   /**
+    * Gets a Target Service mock object
+    * 
+    * @return A target service mock object
+    */
+   @Bean
+   @Primary
+   public TargetService targetService() {
+      TargetService targetServiceMock = Mockito.mock(TargetService.class);
+      return targetServiceMock;
+   }
+}
@@ -0,0 +1,136 @@
+package edu.kit.scc.dem.wapsrv.testsbenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.rdf.api.Dataset;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import edu.kit.scc.dem.wapsrv.app.WapServerConfig;
+import edu.kit.scc.dem.wapsrv.model.rdf.vocabulary.WapVocab;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRdfBackend;
+import edu.kit.scc.dem.wapsrv.repository.jena.JenaRepository;
+
+/**
+ * Benchmarks reading the annotations of a page with embedded descriptions from
+ * an in memory TDB2 dataset. Reading them one by one, each in a nested read
+ * transaction with a check and a view of its own as the page used to, is
+ * compared with reading all of them with one multi-get, for page sizes from 20
+ * to 1000. Both copy the triples into one graph like the page does.
+ */
+public class PageFetchBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageFetchBenchmark.class);
+
+    private static final int ANNOTATIONS = 1000;
+    private static final int[] PAGE_SIZES = {20, 50, 100, 200, 500, 1000};
+    private static final int READ_ANNOTATIONS = 50000;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final String CONTAINER = "http://example.org/wap/container/";
+
+    /**
+     * The main method.
+     *
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        org.apache.jena.query.Dataset dataset = TDB2Factory.createDataset();
+        List<String> iris = fill(dataset);
+        JenaRdfBackend rdfBackend = new JenaRdfBackend();
+        WapServerConfig wapServerConfig = Mockito.mock(WapServerConfig.class);
+        Mockito.when(wapServerConfig.getTransactionConcurrencyMode())
+                .thenReturn(TransactionRepository.ConcurrencyMode.ConcurrentReads);
+        JenaRepository repository = new JenaRepository();
+        repository.setWapServerConfig(wapServerConfig);
+        repository.setDataBase(dataset);
+        ReflectionTestUtils.setField(repository, "rdfBackend", rdfBackend);
+        RDF rdf = rdfBackend.getRdf();
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            boolean report = round == WARMUP_ROUNDS;
+            for (int pageSize : PAGE_SIZES) {
+                List<String> page = iris.subList(0, pageSize);
+                int pages = Math.max(1, READ_ANNOTATIONS / pageSize);
+                long start = System.nanoTime();
+                for (int i = 0; i < pages; i++) {
+                    readOneByOne(repository, rdf, page);
+                }
+                double oneByOne = millis(start, pages);
+                start = System.nanoTime();
+                for (int i = 0; i < pages; i++) {
+                    readAtOnce(repository, rdf, page);
+                }
+                double atOnce = millis(start, pages);
+                if (report) {
+                    logger.info(String.format("page size %5d  one by one %10.3f ms  multi-get %10.3f ms  %5.2fx",
+                            pageSize, oneByOne, atOnce, oneByOne / atOnce));
+                }
+            }
+        }
+    }
+
+    private static List<String> fill(org.apache.jena.query.Dataset dataset) {
+        List<String> iris = new ArrayList<>(ANNOTATIONS);
+        dataset.begin(ReadWrite.WRITE);
+        try {
+            for (int a = 0; a < ANNOTATIONS; a++) {
+                String iri = CONTAINER + "anno" + a;
+                Model model = dataset.getNamedModel(iri);
+                Resource annotation = model.createResource(iri);
+                annotation.addProperty(model.createProperty(WapVocab.etag.getIRIString()), "etag" + a);
+                annotation.addProperty(model.createProperty("http://purl.org/dc/terms/created"), "2020-01-01");
+                annotation.addProperty(model.createProperty("http://www.w3.org/ns/oa#hasTarget"),
+                        model.createResource("http://example.org/target" + a));
+                for (int b = 0; b < 3; b++) {
+                    Resource body = model.createResource();
+                    body.addProperty(model.createProperty("http://www.w3.org/1999/02/22-rdf-syntax-ns#value"),
+                            "body " + b + " of annotation " + a);
+                    body.addProperty(model.createProperty("http://purl.org/dc/terms/format"), "text/plain");
+                    annotation.addProperty(model.createProperty("http://www.w3.org/ns/oa#hasBody"), body);
+                }
+                iris.add(iri);
+            }
+            dataset.commit();
+        } finally {
+            dataset.end();
+        }
+        return iris;
+    }
+
+    private static void readOneByOne(JenaRepository repository, RDF rdf, List<String> page) {
+        Graph target = rdf.createGraph();
+        repository.readRdfTransaction(ds -> {
+            for (String iri : page) {
+                repository.readRdfTransaction(inner -> {
+                    Dataset view = repository.getWapObjectView(iri);
+                    if (view.getGraph().contains(null, WapVocab.deleted, null)) {
+                        throw new IllegalStateException("Deleted " + iri);
+                    }
+                    view.getGraph().iterate().forEach(target::add);
+                });
+            }
+        });
+    }
+
+    private static void readAtOnce(JenaRepository repository, RDF rdf, List<String> page) {
+        Graph target = rdf.createGraph();
+        repository.readRdfTransaction(ds -> {
+            Map<String, Dataset> annotations = repository.getWapObjects(page);
+            for (String iri : page) {
+                annotations.get(iri).getGraph().iterate().forEach(target::add);
+            }
+        });
+    }
+
+    private static double millis(long start, int repetitions) {
+        return (System.nanoTime() - start) / 1000000.0 / repetitions;
+    }
+}
@@ -0,0 +1,136 @@
+package edu.kit.scc.dem.wapsrv.testsbenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import edu.kit.scc.dem.wapsrv.dao.ISequenceDao;
+import edu.kit.scc.dem.wapsrv.model.ext.SequenceResource;
+
+/**
+ * Benchmarks the sequence store used by the jena+jdbc repository with an in
+ * memory H2 database holding a container of 1M members next to a small one.
+ * The old access patterns (loading all rows to count or empty a sequence,
+ * OFFSET paging, removing by the annotation IRI only) are compared with the
+ * count query, keyset pagination, bulk deletes and batch inserts.
+ */
+public class SequenceDaoBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceDaoBenchmark.class);
+
+    private static final int MEMBERS = 1000000;
+    private static final int SMALL_MEMBERS = 1000;
+    private static final int INSERT_CHUNK = 10000;
+    private static final int PAGE_SIZE = 20;
+    private static final int REPETITIONS = 20;
+    private static final String SEQ = "http://example.org/wap/big/#annotations";
+    private static final String SMALL_SEQ = "http://example.org/wap/small/#annotations";
+
+    /**
+     * The main method.
+     *
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:sequences",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop", "--logging.level.root=WARN",
+                        "--logging.level.edu.kit.scc.dem.wapsrv=INFO")) {
+            run(context.getBean(ISequenceDao.class));
+        }
+    }
+
+    private static void run(ISequenceDao dao) {
+        long start = System.nanoTime();
+        for (int first = 0; first < MEMBERS; first += INSERT_CHUNK) {
+            dao.appendAll(SEQ, iris("big", first, INSERT_CHUNK));
+        }
+        report("batch insert of " + MEMBERS, start, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < SMALL_MEMBERS; i++) {
+            dao.save(SequenceResource.create(SMALL_SEQ, "http://example.org/wap/small/anno" + i));
+        }
+        report("single inserts of " + SMALL_MEMBERS, start, 1);
+
+        start = System.nanoTime();
+        int loaded = dao.findBySequenceIriEquals(SEQ).size();
+        report("count by loading all " + loaded, start, 1);
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            dao.countBySequenceIriEquals(SEQ);
+        }
+        report("count query", start, REPETITIONS);
+
+        int lastPage = MEMBERS / PAGE_SIZE - 1;
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            dao.findBySequenceIriEquals(SEQ, PageRequest.of(lastPage, PAGE_SIZE)).getContent();
+        }
+        report("OFFSET page " + lastPage, start, REPETITIONS);
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            Long previousId = dao.findIdsBySequenceIri(SEQ, PageRequest.of(lastPage * PAGE_SIZE - 1, 1)).get(0);
+            dao.findNextBySequenceIri(SEQ, previousId, PageRequest.of(0, PAGE_SIZE));
+        }
+        report("keyset page " + lastPage + " from unknown position", start, REPETITIONS);
+        List<SequenceResource> page = dao.findNextBySequenceIri(SEQ, 0L,
+                PageRequest.of(0, PAGE_SIZE));
+        start = System.nanoTime();
+        int pages = 0;
+        while (!page.isEmpty() && pages < MEMBERS / PAGE_SIZE) {
+            page = dao.findNextBySequenceIri(SEQ, page.get(page.size() - 1).getId(),
+                    PageRequest.of(0, PAGE_SIZE));
+            pages++;
+        }
+        report("keyset page following the previous one (" + pages + " pages)", start, pages);
+
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            dao.findByAnnotationIriEquals("http://example.org/wap/big/anno" + (MEMBERS - 1 - i)).ifPresent(dao::delete);
+        }
+        report("remove by loading the annotation IRI", start, REPETITIONS);
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            dao.deleteBySequenceIriAndAnnotationIri(SEQ, "http://example.org/wap/big/anno" + i);
+        }
+        report("remove by bulk delete", start, REPETITIONS);
+
+        start = System.nanoTime();
+        int deleted = dao.deleteAllBySequenceIri(SEQ);
+        report("bulk delete of " + deleted, start, 1);
+        logger.info("Members left in the small sequence: " + dao.countBySequenceIriEquals(SMALL_SEQ));
+    }
+
+    private static List<String> iris(String container, int first, int count) {
+        List<String> iris = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++) {
+            iris.add("http://example.org/wap/" + container + "/anno" + i);
+        }
+        return iris;
+    }
+
+    private static void report(String operation, long start, int repetitions) {
+        double millis = (System.nanoTime() - start) / 1000000.0 / repetitions;
+        logger.info(String.format("%-60s %12.3f ms", operation, millis));
+    }
+
+    /**
+     * Only the data source and the sequence DAO.
+     */
+    @Configuration
+    @EnableAutoConfiguration
+    @EnableJpaRepositories(basePackageClasses = ISequenceDao.class)
+    @EntityScan(basePackageClasses = SequenceResource.class)
+    static class BenchmarkConfiguration {
+    }
+}
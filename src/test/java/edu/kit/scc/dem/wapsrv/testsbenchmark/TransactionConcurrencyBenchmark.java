@@ -0,0 +1,152 @@
+package edu.kit.scc.dem.wapsrv.testsbenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.jena.commonsrdf.JenaCommonsRDF;
+import org.apache.jena.commonsrdf.JenaRDF;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.kit.scc.dem.wapsrv.repository.TransactionRepository;
+
+/**
+ * Benchmarks the throughput of read transactions (as used by GET requests) with
+ * a growing number of reading threads, once with serialized transactions and
+ * once with concurrent reads. The database is an in memory TDB2 dataset filled
+ * with small named graphs, similar to the ones of annotations.
+ */
+public class TransactionConcurrencyBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionConcurrencyBenchmark.class);
+
+    private static final int GRAPH_COUNT = 1000;
+    private static final int TRIPLES_PER_GRAPH = 20;
+    private static final long DURATION_MILLIS = 3000;
+    private static final String GRAPH_PREFIX = "http://example.org/anno";
+    private static final JenaRDF RDF = new JenaRDF();
+
+    /**
+     * The main method.
+     *
+     * @param args The command line arguments
+     * @throws Exception If the benchmark threads fail
+     */
+    public static void main(String[] args) throws Exception {
+        org.apache.jena.query.Dataset dataset = TDB2Factory.createDataset();
+        fill(dataset);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (TransactionRepository.ConcurrencyMode mode : TransactionRepository.ConcurrencyMode.values()) {
+            BenchmarkRepository repository = new BenchmarkRepository(dataset, mode);
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                long reads = runReaders(repository, threads);
+                logger.info(String.format("%-16s threads=%3d reads/s=%10d", mode, threads,
+                        reads * 1000 / DURATION_MILLIS));
+            }
+        }
+    }
+
+    private static void fill(org.apache.jena.query.Dataset dataset) {
+        dataset.begin(ReadWrite.WRITE);
+        try {
+            for (int g = 0; g < GRAPH_COUNT; g++) {
+                Model model = dataset.getNamedModel(GRAPH_PREFIX + g);
+                Resource subject = model.createResource(GRAPH_PREFIX + g);
+                for (int t = 0; t < TRIPLES_PER_GRAPH; t++) {
+                    subject.addProperty(model.createProperty("http://example.org/p" + t), "value " + t);
+                }
+            }
+            dataset.commit();
+        } finally {
+            dataset.end();
+        }
+    }
+
+    private static long runReaders(BenchmarkRepository repository, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicLong reads = new AtomicLong();
+        long end = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int n = 0; n < threads; n++) {
+            futures.add(executor.submit(() -> {
+                while (System.currentTimeMillis() < end) {
+                    String graph = GRAPH_PREFIX + ThreadLocalRandom.current().nextInt(GRAPH_COUNT);
+                    repository.readRdfTransaction(ds -> {
+                        org.apache.commons.rdf.api.Graph rdfGraph = ds.getGraph(RDF.createIRI(graph)).get();
+                        if (rdfGraph.size() != TRIPLES_PER_GRAPH) {
+                            throw new IllegalStateException("Unexpected graph size " + rdfGraph.size());
+                        }
+                    });
+                    reads.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return reads.get();
+    }
+
+    /**
+     * Minimal repository using the transaction handling of
+     * {@link TransactionRepository} the same way the Jena repository does.
+     */
+    private static class BenchmarkRepository implements TransactionRepository {
+
+        private final org.apache.jena.query.Dataset dataset;
+        private final TransactionRepository.ConcurrencyMode mode;
+
+        BenchmarkRepository(org.apache.jena.query.Dataset dataset, TransactionRepository.ConcurrencyMode mode) {
+            this.dataset = dataset;
+            this.mode = mode;
+        }
+
+        @Override
+        public org.apache.commons.rdf.api.Dataset getTransactionDataset() {
+            return JenaCommonsRDF.fromJena(dataset.asDatasetGraph());
+        }
+
+        @Override
+        public TransactionRepository.ConcurrencyMode getConcurrencyMode() {
+            return mode;
+        }
+
+        @Override
+        public boolean beginTransaction(TransactionRepository.Type type) {
+            if (!dataset.isInTransaction()) {
+                dataset.begin(type == TransactionRepository.Type.Read ? ReadWrite.READ : ReadWrite.WRITE);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void abortTransaction() {
+            if (dataset.isInTransaction()) {
+                dataset.abort();
+                dataset.end();
+            }
+        }
+
+        @Override
+        public void endTransaction(boolean wasOpend) {
+            if (wasOpend) {
+                try {
+                    if (dataset.isInTransaction()) {
+                        dataset.commit();
+                    }
+                } finally {
+                    dataset.end();
+                }
+            }
+        }
+    }
+}